@@ -0,0 +1,199 @@
+package ru.concerteza.util.collection.pipe;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import ru.concerteza.util.collection.EndOfDataBlockingQueueIterator;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Base class for bounded lock-free single-consumer pipes over preallocated ring buffer.
+ * Blocking operations wait using provided {@link WaitStrategy} instead of locks and conditions.
+ * Implements {@link BlockingQueue}, so may be consumed with {@link EndOfDataBlockingQueueIterator}:
+ * producer puts end-of-data or error marker object into the pipe after the last element
+ * (see {@link #consumingIterator(Object, Object)}). Batch operations ({@link #putAll(List)},
+ * {@link #drainTo(Collection, int)}, {@link #takeBatch(Collection, int)}) claim and publish
+ * multiple slots at once. Only one consumer thread is supported, {@link #iterator()} is not supported.
+ *
+ * @author alexkasko
+ * Date: 1/9/15
+ * @see SpscRingPipe
+ * @see MpscRingPipe
+ */
+public abstract class AbstractRingPipe<T> extends AbstractQueue<T> implements BlockingQueue<T> {
+    protected final int capacity;
+    protected final int mask;
+    protected final WaitStrategy waitStrategy;
+
+    /**
+     * @param capacity min pipe capacity, will be rounded up to power of two
+     * @param waitStrategy strategy for waiting on full or empty pipe
+     */
+    protected AbstractRingPipe(int capacity, WaitStrategy waitStrategy) {
+        checkArgument(capacity > 0 && capacity <= 1 << 30, "Invalid capacity: '%s'", capacity);
+        checkNotNull(waitStrategy, "Provided wait strategy is null");
+        int cap = 1;
+        while(cap < capacity) cap <<= 1;
+        this.capacity = cap;
+        this.mask = cap - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * Publishes as many elements from the list (starting from given index) as pipe has free slots for
+     *
+     * @param src source elements, must not contain nulls
+     * @param from index of the first element to publish
+     * @return count of published elements, zero if pipe is full
+     */
+    protected abstract int offerBatch(List<? extends T> src, int from);
+
+    /**
+     * Publishes all provided elements, waits for free slots if necessary.
+     * Elements are published in chunks limited with free slots count
+     *
+     * @param batch elements to publish
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void putAll(List<? extends T> batch) throws InterruptedException {
+        checkNotNull(batch, "Provided batch is null");
+        for(T el : batch) checkNotNull(el, "Null elements are not supported");
+        int pos = 0;
+        int attempt = 0;
+        while(pos < batch.size()) {
+            int published = offerBatch(batch, pos);
+            if(published > 0) {
+                pos += published;
+                attempt = 0;
+            } else waitStrategy.await(++attempt);
+        }
+    }
+
+    /**
+     * Waits for at least one element and takes all available elements up to the limit
+     *
+     * @param dest collection to add elements to
+     * @param maxElements max elements to take
+     * @return count of taken elements
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public int takeBatch(Collection<? super T> dest, int maxElements) throws InterruptedException {
+        checkNotNull(dest, "Provided collection is null");
+        checkArgument(maxElements > 0, "Max elements must be positive, but was: '%s'", maxElements);
+        int attempt = 0;
+        for(;;) {
+            int res = drainTo(dest, maxElements);
+            if(res > 0) return res;
+            waitStrategy.await(++attempt);
+        }
+    }
+
+    /**
+     * @param eod end-of-data marker object
+     * @param error error marker object
+     * @return iterator, that consumes this pipe until end-of-data marker
+     */
+    public EndOfDataBlockingQueueIterator<T> consumingIterator(T eod, T error) {
+        return new EndOfDataBlockingQueueIterator<T>(this, eod, error);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(T t) throws InterruptedException {
+        int attempt = 0;
+        while(!offer(t)) waitStrategy.await(++attempt);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean offer(T t, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int attempt = 0;
+        while(!offer(t)) {
+            if(System.nanoTime() - deadline >= 0) return false;
+            waitStrategy.await(++attempt);
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T take() throws InterruptedException {
+        int attempt = 0;
+        for(;;) {
+            T res = poll();
+            if(null != res) return res;
+            waitStrategy.await(++attempt);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int attempt = 0;
+        for(;;) {
+            T res = poll();
+            if(null != res) return res;
+            if(System.nanoTime() - deadline >= 0) return null;
+            waitStrategy.await(++attempt);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int drainTo(Collection<? super T> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Not supported
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public Iterator<T> iterator() {
+        throw new UnsupportedOperationException("Iteration over ring pipe is not supported, use 'consumingIterator' instead");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("capacity", capacity).
+                append("size", size()).
+                append("waitStrategy", waitStrategy).
+                toString();
+    }
+
+    protected int index(long sequence) {
+        return (int) sequence & mask;
+    }
+}
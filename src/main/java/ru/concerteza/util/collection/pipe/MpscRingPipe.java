@@ -0,0 +1,159 @@
+package ru.concerteza.util.collection.pipe;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Multi-producer single-consumer ring pipe. Producers claim slots (one or a batch) with CAS
+ * on claim sequence and publish each element with ordered write into its slot, consumer treats
+ * non-null slot as published and releases consumed slots with single ordered write of head sequence.
+ * Elements from one producer are consumed in publish order. Won't work for multiple consumers.
+ *
+ * @author alexkasko
+ * Date: 1/9/15
+ */
+public class MpscRingPipe<T> extends AbstractRingPipe<T> {
+    private final AtomicReferenceArray<T> buffer;
+    // next sequence to consume, written only by consumer
+    private final AtomicLong head = new AtomicLong();
+    // next sequence to claim
+    private final AtomicLong claimed = new AtomicLong();
+    // stale head value shared between producers
+    private volatile long headCache = 0;
+
+    /**
+     * Constructor with {@link WaitStrategy#YIELD} strategy
+     *
+     * @param capacity min pipe capacity, will be rounded up to power of two
+     */
+    public MpscRingPipe(int capacity) {
+        this(capacity, WaitStrategy.YIELD);
+    }
+
+    /**
+     * @param capacity min pipe capacity, will be rounded up to power of two
+     * @param waitStrategy strategy for waiting on full or empty pipe
+     */
+    public MpscRingPipe(int capacity, WaitStrategy waitStrategy) {
+        super(capacity, waitStrategy);
+        this.buffer = new AtomicReferenceArray<T>(this.capacity);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean offer(T t) {
+        checkNotNull(t, "Null elements are not supported");
+        long start = claim(1);
+        if(start < 0) return false;
+        buffer.lazySet(index(start), t);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int offerBatch(List<? extends T> src, int from) {
+        int requested = src.size() - from;
+        for(;;) {
+            long cl = claimed.get();
+            long free = headCache + capacity - cl;
+            if(free < requested) {
+                long hd = head.get();
+                headCache = hd;
+                free = hd + capacity - cl;
+            }
+            int count = (int) Math.min(free, requested);
+            if(count <= 0) return 0;
+            if(claimed.compareAndSet(cl, cl + count)) {
+                for(int i = 0; i < count; i++) {
+                    buffer.lazySet(index(cl + i), src.get(from + i));
+                }
+                return count;
+            }
+        }
+    }
+
+    /**
+     * Returns {@code null} if head slot is claimed but not yet published, so producer preempted
+     * between claim and publish cannot hang the consumer here, blocking methods wait for such slot
+     * with wait strategy
+     *
+     * @return head element or {@code null} if pipe is empty or head element is not yet published
+     */
+    @Override
+    public T poll() {
+        long hd = head.get();
+        int idx = index(hd);
+        T res = buffer.get(idx);
+        if(null == res) return null;
+        buffer.lazySet(idx, null);
+        head.lazySet(hd + 1);
+        return res;
+    }
+
+    /**
+     * Returns {@code null} if head slot is claimed but not yet published, see {@link #poll()}
+     *
+     * @return head element or {@code null} if pipe is empty or head element is not yet published
+     */
+    @Override
+    public T peek() {
+        return buffer.get(index(head.get()));
+    }
+
+    /**
+     * Drains published elements in sequence order, stops on the first claimed but not yet published slot
+     *
+     * @param c collection to add elements to
+     * @param maxElements max elements to drain
+     * @return count of drained elements
+     */
+    @Override
+    public int drainTo(Collection<? super T> c, int maxElements) {
+        checkNotNull(c, "Provided collection is null");
+        checkArgument(c != this, "Cannot drain pipe to itself");
+        long hd = head.get();
+        int count = 0;
+        while(count < maxElements) {
+            int idx = index(hd + count);
+            T el = buffer.get(idx);
+            if(null == el) break;
+            c.add(el);
+            buffer.lazySet(idx, null);
+            count += 1;
+        }
+        if(count > 0) head.lazySet(hd + count);
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        // head first to not get negative size, claimed but not yet published slots are included
+        long hd = head.get();
+        return (int) Math.min(claimed.get() - hd, capacity);
+    }
+
+    // returns first claimed sequence or -1 if pipe is full
+    private long claim(int count) {
+        for(;;) {
+            long cl = claimed.get();
+            if(cl + count - headCache > capacity) {
+                long hd = head.get();
+                headCache = hd;
+                if(cl + count - hd > capacity) return -1;
+            }
+            if(claimed.compareAndSet(cl, cl + count)) return cl;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package ru.concerteza.util.collection.pipe;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Single-producer single-consumer ring pipe. Producer publishes elements (one or a batch)
+ * with single ordered write of tail sequence, consumer releases slots with ordered write of head sequence.
+ * Both sides cache the other side's sequence and read it only when cached value is exhausted.
+ * Won't work for multiple producers or consumers, use {@link MpscRingPipe} for multiple producers.
+ *
+ * @author alexkasko
+ * Date: 1/9/15
+ */
+public class SpscRingPipe<T> extends AbstractRingPipe<T> {
+    private final Object[] buffer;
+    // next sequence to consume, written only by consumer
+    private final AtomicLong head = new AtomicLong();
+    // next sequence to publish, written only by producer
+    private final AtomicLong tail = new AtomicLong();
+    // deliberately non-volatile, used only from producer thread
+    private long headCache = 0;
+    // deliberately non-volatile, used only from consumer thread
+    private long tailCache = 0;
+
+    /**
+     * Constructor with {@link WaitStrategy#YIELD} strategy
+     *
+     * @param capacity min pipe capacity, will be rounded up to power of two
+     */
+    public SpscRingPipe(int capacity) {
+        this(capacity, WaitStrategy.YIELD);
+    }
+
+    /**
+     * @param capacity min pipe capacity, will be rounded up to power of two
+     * @param waitStrategy strategy for waiting on full or empty pipe
+     */
+    public SpscRingPipe(int capacity, WaitStrategy waitStrategy) {
+        super(capacity, waitStrategy);
+        this.buffer = new Object[this.capacity];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean offer(T t) {
+        checkNotNull(t, "Null elements are not supported");
+        long tl = tail.get();
+        if(tl - headCache >= capacity) {
+            headCache = head.get();
+            if(tl - headCache >= capacity) return false;
+        }
+        buffer[index(tl)] = t;
+        tail.lazySet(tl + 1);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int offerBatch(List<? extends T> src, int from) {
+        int requested = src.size() - from;
+        long tl = tail.get();
+        long free = capacity - (tl - headCache);
+        if(free < requested) {
+            headCache = head.get();
+            free = capacity - (tl - headCache);
+        }
+        int count = (int) Math.min(free, requested);
+        for(int i = 0; i < count; i++) {
+            buffer[index(tl + i)] = src.get(from + i);
+        }
+        if(count > 0) tail.lazySet(tl + count);
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long hd = head.get();
+        if(hd >= tailCache) {
+            tailCache = tail.get();
+            if(hd >= tailCache) return null;
+        }
+        int idx = index(hd);
+        T res = (T) buffer[idx];
+        buffer[idx] = null;
+        head.lazySet(hd + 1);
+        return res;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        long hd = head.get();
+        if(hd >= tailCache) {
+            tailCache = tail.get();
+            if(hd >= tailCache) return null;
+        }
+        return (T) buffer[index(hd)];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public int drainTo(Collection<? super T> c, int maxElements) {
+        checkNotNull(c, "Provided collection is null");
+        checkArgument(c != this, "Cannot drain pipe to itself");
+        if(maxElements <= 0) return 0;
+        long hd = head.get();
+        // one read of producer sequence per batch
+        tailCache = tail.get();
+        if(hd >= tailCache) return 0;
+        int count = (int) Math.min(tailCache - hd, maxElements);
+        for(int i = 0; i < count; i++) {
+            int idx = index(hd + i);
+            c.add((T) buffer[idx]);
+            buffer[idx] = null;
+        }
+        head.lazySet(hd + count);
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        // head first to not get negative size
+        long hd = head.get();
+        return (int) (tail.get() - hd);
+    }
+}
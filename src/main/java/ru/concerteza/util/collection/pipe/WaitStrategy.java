@@ -0,0 +1,59 @@
+package ru.concerteza.util.collection.pipe;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Strategies for waiting on full or empty ring pipe. All strategies are interruptible.
+ *
+ * @author alexkasko
+ * Date: 1/9/15
+ * @see AbstractRingPipe
+ */
+public enum WaitStrategy {
+    /**
+     * Busy spin, lowest latency, burns CPU core for each waiting thread
+     */
+    BUSY_SPIN {
+        @Override
+        void idle(int attempt) {
+            // spin
+        }
+    },
+    /**
+     * Spins first, then yields CPU to other threads
+     */
+    YIELD {
+        @Override
+        void idle(int attempt) {
+            if(attempt > SPIN_ATTEMPTS) Thread.yield();
+        }
+    },
+    /**
+     * Spins first, then yields, then parks waiting thread for short periods,
+     * suitable when pipe may be idle for a long time
+     */
+    PARK {
+        @Override
+        void idle(int attempt) {
+            if(attempt > SPIN_ATTEMPTS + YIELD_ATTEMPTS) LockSupport.parkNanos(PARK_NANOS);
+            else if(attempt > SPIN_ATTEMPTS) Thread.yield();
+        }
+    };
+
+    private static final int SPIN_ATTEMPTS = 100;
+    private static final int YIELD_ATTEMPTS = 100;
+    private static final long PARK_NANOS = 100000;
+
+    /**
+     * Waits once
+     *
+     * @param attempt number of consecutive unsuccessful attempts
+     * @throws InterruptedException if waiting thread was interrupted
+     */
+    void await(int attempt) throws InterruptedException {
+        if(Thread.interrupted()) throw new InterruptedException();
+        idle(attempt);
+    }
+
+    abstract void idle(int attempt);
+}
@@ -0,0 +1,364 @@
+package ru.concerteza.util.concurrency;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.concerteza.util.db.metrics.Gauge;
+import ru.concerteza.util.db.metrics.MetricsRegistry;
+import ru.concerteza.util.db.metrics.NoOpMetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+import static ru.concerteza.util.string.CtzFormatUtils.format;
+
+/**
+ * Limits count of concurrently running tasks per key (e.g. per {@code DataSource}) over the same target executor.
+ * Unlike {@link LimitedExecutorServiceWrapper}, tasks over the limit are kept in per-key FIFO queues
+ * and are sent to target executor only when permit becomes free, so target threads are never blocked
+ * waiting for permits. Queue lengths are exposed with getters and as metrics:
+ * <ul>
+ *     <li>{@code prefix.queued} gauge: total count of queued tasks</li>
+ *     <li>{@code prefix.active} gauge: total count of tasks sent to target executor</li>
+ *     <li>{@code prefix.key.queued} gauge: count of queued tasks for key</li>
+ *     <li>{@code prefix.key.active} gauge: count of tasks sent to target executor for key</li>
+ * </ul>
+ * Per-key gauges are registered only for keys with limits set with {@link #setLimit(Object, int)},
+ * so registry size does not grow with count of dynamic keys.
+ * Per-key state is removed when key has no queued and running tasks, unless limit was set for it explicitly,
+ * so dynamic keys may be used. Queued tasks rejected by target executor are dropped, futures
+ * returned by {@link #submit(Object, java.util.concurrent.Callable)} are cancelled for them.
+ * Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 1/7/15
+ */
+public class KeyedLimitedExecutor<K> {
+    private static final Logger logger = LoggerFactory.getLogger(KeyedLimitedExecutor.class);
+
+    private final Executor target;
+    private final int defaultLimit;
+    private final MetricsRegistry registry;
+    private final String prefix;
+    private final ConcurrentMap<K, Slot> slots = new ConcurrentHashMap<K, Slot>();
+
+    /**
+     * @param target target executor
+     * @param defaultLimit concurrency limit for keys without explicitly set limits
+     */
+    public KeyedLimitedExecutor(Executor target, int defaultLimit) {
+        this(target, defaultLimit, NoOpMetricsRegistry.INSTANCE, "limited");
+    }
+
+    /**
+     * @param target target executor
+     * @param defaultLimit concurrency limit for keys without explicitly set limits
+     * @param registry metrics registry
+     * @param prefix metrics names prefix
+     */
+    public KeyedLimitedExecutor(Executor target, int defaultLimit, MetricsRegistry registry, String prefix) {
+        checkNotNull(target, "Provided executor is null");
+        checkArgument(defaultLimit > 0, "Limit must be positive, but was: '%s'", defaultLimit);
+        checkNotNull(registry, "Provided registry is null");
+        checkArgument(isNotBlank(prefix), "Provided prefix is blank");
+        this.target = target;
+        this.defaultLimit = defaultLimit;
+        this.registry = registry;
+        this.prefix = prefix;
+        registry.gauge(prefix + ".queued", new TotalQueuedGauge());
+        registry.gauge(prefix + ".active", new TotalActiveGauge());
+    }
+
+    /**
+     * Sets concurrency limit for given key, queued tasks are sent to target executor if limit was increased,
+     * registers per-key gauges on the first call for the key
+     *
+     * @param key limit key
+     * @param limit max count of concurrently running tasks for this key
+     * @return executor itself for chained init
+     */
+    public KeyedLimitedExecutor<K> setLimit(K key, int limit) {
+        checkArgument(limit > 0, "Limit must be positive, but was: '%s'", limit);
+        for(;;) {
+            Slot slot = slot(key);
+            List<Runnable> ready = new ArrayList<Runnable>();
+            boolean first;
+            synchronized (slot) {
+                // removed as idle concurrently
+                if(slot.removed) continue;
+                first = !slot.explicit;
+                slot.limit = limit;
+                slot.explicit = true;
+                while(slot.active < slot.limit && !slot.queue.isEmpty()) {
+                    slot.active += 1;
+                    ready.add(slot.queue.poll());
+                }
+            }
+            if(first) {
+                // slots with explicit limits are never removed, so gauges count is bounded by configured keys
+                registry.gauge(prefix + "." + key + ".queued", new QueuedGauge(key));
+                registry.gauge(prefix + "." + key + ".active", new ActiveGauge(key));
+            }
+            for(Runnable re : ready) forwardQueued(slot, re);
+            return this;
+        }
+    }
+
+    /**
+     * Executes task immediately if permit for given key is free, queues it otherwise
+     *
+     * @param key limit key
+     * @param command task
+     * @throws RejectedExecutionException if target executor rejected task
+     */
+    public void execute(K key, Runnable command) {
+        checkNotNull(command, "Provided command is null");
+        for(;;) {
+            Slot slot = slot(key);
+            boolean permitted;
+            synchronized (slot) {
+                // removed as idle concurrently
+                if(slot.removed) continue;
+                permitted = slot.active < slot.limit;
+                if(permitted) slot.active += 1;
+                else slot.queue.add(command);
+            }
+            if(permitted) {
+                try {
+                    target.execute(new SlotRunnable(slot, command));
+                } catch(RejectedExecutionException e) {
+                    // other task may be queued while permit was held
+                    Runnable next = releaseAndPoll(slot);
+                    if(null != next) forwardQueued(slot, next);
+                    throw e;
+                }
+            }
+            return;
+        }
+    }
+
+    /**
+     * @param key limit key
+     * @param task task
+     * @param <T> task result type
+     * @return future for task result
+     */
+    public <T> Future<T> submit(K key, Callable<T> task) {
+        FutureTask<T> res = new FutureTask<T>(task);
+        execute(key, res);
+        return res;
+    }
+
+    /**
+     * @param key limit key
+     * @return executor view, that executes tasks with given key
+     */
+    public Executor forKey(K key) {
+        checkNotNull(key, "Provided key is null");
+        return new KeyExecutor(key);
+    }
+
+    /**
+     * @param key limit key
+     * @return count of queued tasks for key
+     */
+    public int getQueueLength(K key) {
+        Slot slot = slots.get(key);
+        if(null == slot) return 0;
+        synchronized (slot) {
+            return slot.queue.size();
+        }
+    }
+
+    /**
+     * @return total count of queued tasks
+     */
+    public int getQueueLength() {
+        int res = 0;
+        for(Slot slot : slots.values()) {
+            synchronized (slot) {
+                res += slot.queue.size();
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @param key limit key
+     * @return count of tasks sent to target executor for key
+     */
+    public int getActiveCount(K key) {
+        Slot slot = slots.get(key);
+        if(null == slot) return 0;
+        synchronized (slot) {
+            return slot.active;
+        }
+    }
+
+    /**
+     * @return count of keys, that have queued or running tasks or explicitly set limits
+     */
+    public int getKeysCount() {
+        return slots.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("target", target).
+                append("defaultLimit", defaultLimit).
+                append("prefix", prefix).
+                toString();
+    }
+
+    private Slot slot(K key) {
+        checkNotNull(key, "Provided key is null");
+        Slot existed = slots.get(key);
+        if(null != existed) return existed;
+        Slot created = new Slot(key, defaultLimit);
+        existed = slots.putIfAbsent(key, created);
+        return null != existed ? existed : created;
+    }
+
+    // permit is already taken for this command
+    private void forwardQueued(Slot slot, Runnable command) {
+        Runnable next = command;
+        while(null != next) {
+            try {
+                target.execute(new SlotRunnable(slot, next));
+                next = null;
+            } catch(RejectedExecutionException e) {
+                logger.error(format("Queued task rejected by target executor and dropped: '{}'", next), e);
+                // let caller of submit know, that task won't be run
+                if(next instanceof Future) ((Future<?>) next).cancel(false);
+                next = releaseAndPoll(slot);
+            }
+        }
+    }
+
+    // returns next queued task keeping permit or releases permit
+    private Runnable releaseAndPoll(Slot slot) {
+        synchronized (slot) {
+            Runnable res = slot.active <= slot.limit ? slot.queue.poll() : null;
+            if(null == res) {
+                slot.active -= 1;
+                removeIfIdle(slot);
+            }
+            return res;
+        }
+    }
+
+    // must be called holding slot lock
+    private void removeIfIdle(Slot slot) {
+        if(slot.active > 0 || !slot.queue.isEmpty() || slot.explicit) return;
+        slot.removed = true;
+        slots.remove(slot.key, slot);
+    }
+
+    private class Slot {
+        private final K key;
+        private final LinkedList<Runnable> queue = new LinkedList<Runnable>();
+        private int limit;
+        private int active = 0;
+        private boolean explicit = false;
+        private boolean removed = false;
+
+        private Slot(K key, int limit) {
+            this.key = key;
+            this.limit = limit;
+        }
+    }
+
+    private class SlotRunnable implements Runnable {
+        private final Slot slot;
+        private final Runnable command;
+
+        private SlotRunnable(Slot slot, Runnable command) {
+            this.slot = slot;
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            try {
+                command.run();
+            } finally {
+                Runnable next = releaseAndPoll(slot);
+                if(null != next) forwardQueued(slot, next);
+            }
+        }
+    }
+
+    private class KeyExecutor implements Executor {
+        private final K key;
+
+        private KeyExecutor(K key) {
+            this.key = key;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            KeyedLimitedExecutor.this.execute(key, command);
+        }
+    }
+
+    private class TotalQueuedGauge implements Gauge {
+        @Override
+        public long getValue() {
+            return getQueueLength();
+        }
+    }
+
+    private class TotalActiveGauge implements Gauge {
+        @Override
+        public long getValue() {
+            long res = 0;
+            for(Slot slot : slots.values()) {
+                synchronized (slot) {
+                    res += slot.active;
+                }
+            }
+            return res;
+        }
+    }
+
+    private class QueuedGauge implements Gauge {
+        private final K key;
+
+        private QueuedGauge(K key) {
+            this.key = key;
+        }
+
+        @Override
+        public long getValue() {
+            return getQueueLength(key);
+        }
+    }
+
+    private class ActiveGauge implements Gauge {
+        private final K key;
+
+        private ActiveGauge(K key) {
+            this.key = key;
+        }
+
+        @Override
+        public long getValue() {
+            return getActiveCount(key);
+        }
+    }
+}
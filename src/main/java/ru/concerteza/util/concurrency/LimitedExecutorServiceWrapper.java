@@ -15,6 +15,8 @@ import static com.google.common.base.Preconditions.checkNotNull;
 /**
  * {@link ExecutorService} wrapper, limit max parallel threads to provided limit.
  * May be useful for task with different parrallelism over the same executor.
+ * Tasks over the limit occupy target threads waiting for permits, use {@link KeyedLimitedExecutor}
+ * to keep such tasks in queue.
  *
  * @author alexey
  * Date: 7/6/12
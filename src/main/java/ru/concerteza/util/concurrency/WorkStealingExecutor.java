@@ -0,0 +1,135 @@
+package ru.concerteza.util.concurrency;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * {@link Executor} implementation with fixed number of worker threads, each worker has its own deque.
+ * External submissions are distributed between workers round-robin and are taken by workers in FIFO order,
+ * submissions from worker threads go to the head of the worker's own deque. Idle worker waits on its
+ * own deque up to {@code stealIntervalMillis} and then steals from the tail of other workers deques.
+ * Exceptions thrown by commands are logged and do not stop workers. Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/24/14
+ */
+public class WorkStealingExecutor implements Executor {
+    private static final Logger logger = LoggerFactory.getLogger(WorkStealingExecutor.class);
+
+    private final Worker[] workers;
+    private final long stealIntervalMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ThreadLocal<Worker> current = new ThreadLocal<Worker>();
+    private volatile boolean shutdown = false;
+
+    /**
+     * Constructor with daemon threads and 10 ms steal interval
+     *
+     * @param threadsCount workers count
+     * @param threadsPrefix worker threads names prefix
+     */
+    public WorkStealingExecutor(int threadsCount, String threadsPrefix) {
+        this(threadsCount, new ExecutorThreadFactory(threadsPrefix), 10);
+    }
+
+    /**
+     * @param threadsCount workers count
+     * @param threadFactory worker threads factory
+     * @param stealIntervalMillis max time idle worker waits on its own deque before stealing attempt
+     */
+    public WorkStealingExecutor(int threadsCount, ThreadFactory threadFactory, long stealIntervalMillis) {
+        checkArgument(threadsCount > 0, "Threads count must be positive, but was: '%s'", threadsCount);
+        checkNotNull(threadFactory, "Provided thread factory is null");
+        checkArgument(stealIntervalMillis > 0, "Steal interval must be positive, but was: '%s'", stealIntervalMillis);
+        this.stealIntervalMillis = stealIntervalMillis;
+        this.workers = new Worker[threadsCount];
+        for(int i = 0; i < threadsCount; i++) workers[i] = new Worker(i);
+        for(Worker wo : workers) threadFactory.newThread(wo).start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(Runnable command) {
+        checkNotNull(command, "Provided command is null");
+        if(shutdown) throw new RejectedExecutionException("Executor is shutted down");
+        Worker own = current.get();
+        if(null != own) {
+            own.deque.addFirst(command);
+        } else {
+            int idx = (next.getAndIncrement() & Integer.MAX_VALUE) % workers.length;
+            workers[idx].deque.addLast(command);
+        }
+    }
+
+    /**
+     * @return count of commands waiting in workers deques
+     */
+    public int getQueuedCount() {
+        int res = 0;
+        for(Worker wo : workers) res += wo.deque.size();
+        return res;
+    }
+
+    /**
+     * Stops accepting new commands, workers exit after all queued commands are done
+     */
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    private Runnable steal(int thief) {
+        for(int i = 1; i < workers.length; i++) {
+            Runnable res = workers[(thief + i) % workers.length].deque.pollLast();
+            if(null != res) return res;
+        }
+        return null;
+    }
+
+    private class Worker implements Runnable {
+        private final int index;
+        private final BlockingDeque<Runnable> deque = new LinkedBlockingDeque<Runnable>();
+
+        private Worker(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            current.set(this);
+            try {
+                for(;;) {
+                    Runnable command = deque.pollFirst();
+                    if(null == command) command = steal(index);
+                    if(null == command) {
+                        if(shutdown && 0 == getQueuedCount()) break;
+                        command = deque.pollFirst(stealIntervalMillis, TimeUnit.MILLISECONDS);
+                    }
+                    if(null == command) continue;
+                    try {
+                        command.run();
+                    } catch(Throwable e) {
+                        // worker must survive errors too, otherwise its deque won't be drained
+                        logger.error("Error running command: '" + command + "'", e);
+                    }
+                }
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                current.remove();
+            }
+        }
+    }
+}
@@ -4,12 +4,11 @@ import com.google.common.base.Function;
 import com.google.common.collect.ImmutableMap;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
-import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
-import org.springframework.jdbc.core.namedparam.ParsedSql;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import ru.concerteza.util.db.blob.BlobException;
 import ru.concerteza.util.db.blob.WritableBlob;
 import ru.concerteza.util.db.blob.compress.Compressor;
+import ru.concerteza.util.db.springjdbc.ParsedSqlCache;
 import ru.concerteza.util.io.TempFileOutputInputStream;
 import ru.concerteza.util.value.Pair;
 
@@ -128,13 +127,13 @@ public class TmpFileJdbcBlobTool extends AbstractJdbcBlobTool {
 
             @Override
             public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
-                // substitute named params, see NamedParameterJdbcTemplate#getPreparedStatementCreator(String sql, SqlParameterSource paramSource)
-                ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(insertSQL);
+                // substitute named params using cached parsed sql,
+                // see NamedParameterJdbcTemplate#getPreparedStatementCreator(String sql, SqlParameterSource paramSource)
                 Map<String, Object> paramsMap = ImmutableMap.of("id", id, "data", data);
                 SqlParameterSource paramSource = new MapSqlParameterSource(paramsMap);
-                String sqlToUse = NamedParameterUtils.substituteNamedParameters(parsedSql, paramSource);
-		        Object[] params = NamedParameterUtils.buildValueArray(parsedSql, paramSource, null);
-                PreparedStatement stmt = con.prepareStatement(sqlToUse);
+                ParsedSqlCache.ExpandedSql expanded = ParsedSqlCache.shared().expand(insertSQL, paramSource);
+                Object[] params = expanded.getValues();
+                PreparedStatement stmt = con.prepareStatement(expanded.getSql());
                 stmt.setLong(1, (Long) params[0]);
                 if(useLongForBlobsLength) {
                     stmt.setBinaryStream(2, (InputStream) params[1], length);
@@ -0,0 +1,33 @@
+package ru.concerteza.util.db.csv;
+
+import java.sql.Types;
+
+/**
+ * Column types supported by {@link TypedCsvResultSet}
+ *
+ * @author alexkasko
+ * Date: 11/26/14
+ */
+public enum CsvColumnType {
+    STRING(Types.VARCHAR),
+    INT(Types.INTEGER),
+    LONG(Types.BIGINT),
+    DOUBLE(Types.DOUBLE),
+    /**
+     * Datetime in {@code yyyyMMddHHmmss} format, see {@link ru.concerteza.util.objectless.CtzDateParser}
+     */
+    DATE(Types.TIMESTAMP);
+
+    private final int sqlType;
+
+    CsvColumnType(int sqlType) {
+        this.sqlType = sqlType;
+    }
+
+    /**
+     * @return {@link java.sql.Types} constant
+     */
+    public int getSqlType() {
+        return sqlType;
+    }
+}
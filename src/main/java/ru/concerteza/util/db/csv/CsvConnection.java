@@ -1,8 +1,10 @@
 package ru.concerteza.util.db.csv;
 
+import com.google.common.base.Supplier;
 import ru.concerteza.util.db.jdbcstub.AbstractConnection;
 
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
@@ -13,13 +15,13 @@ import java.sql.Statement;
  * Date: 6/29/12
  */
 class CsvConnection extends AbstractConnection {
-    private final CsvMapIterable iterable;
+    private final Supplier<? extends ResultSet> resultSets;
 
     /**
-     * @param iterable CSV data iterable
+     * @param resultSets CSV result sets supplier
      */
-    public CsvConnection(CsvMapIterable iterable) {
-        this.iterable = iterable;
+    public CsvConnection(Supplier<? extends ResultSet> resultSets) {
+        this.resultSets = resultSets;
     }
 
     /**
@@ -27,7 +29,7 @@ class CsvConnection extends AbstractConnection {
      */
     @Override
     public Statement createStatement() throws SQLException {
-        return new CsvPreparedStatement(iterable);
+        return new CsvPreparedStatement(resultSets);
     }
 
     /**
@@ -35,7 +37,7 @@ class CsvConnection extends AbstractConnection {
      */
     @Override
     public PreparedStatement prepareStatement(String sql) throws SQLException {
-        return new CsvPreparedStatement(iterable);
+        return new CsvPreparedStatement(resultSets);
     }
 
     /**
@@ -1,14 +1,21 @@
 package ru.concerteza.util.db.csv;
 
 import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import org.springframework.core.io.Resource;
 import ru.concerteza.util.db.jdbcstub.AbstractDataSource;
 import ru.concerteza.util.io.CtzResourceUtils;
 
 import javax.annotation.Nullable;
+import javax.sql.DataSource;
+import java.io.File;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Map;
 
 import static ru.concerteza.util.string.CtzConstants.UTF8;
@@ -21,7 +28,7 @@ import static ru.concerteza.util.string.CtzConstants.UTF8;
  */
 public class CsvDataSource extends AbstractDataSource {
     private static final String NULL_VALUE = "NULL";
-    private final CsvMapIterable iterable;
+    private final Supplier<? extends ResultSet> resultSets;
 
     /**
      * Shortcut constructor
@@ -53,7 +60,54 @@ public class CsvDataSource extends AbstractDataSource {
      */
     @SuppressWarnings("unchecked")
     public CsvDataSource(Resource resource, String delimiter, String encoding) {
-        this.iterable = new CsvMapIterable(resource, delimiter, encoding, SubstituteNullsFunction.INSTANCE);
+        Iterable<Map<String, String>> iterable = new CsvMapIterable(resource, delimiter, encoding, SubstituteNullsFunction.INSTANCE);
+        this.resultSets = new MapResultSetSupplier(iterable);
+    }
+
+    private CsvDataSource(Supplier<? extends ResultSet> resultSets) {
+        this.resultSets = resultSets;
+    }
+
+    /**
+     * Splits local CSV file into line-aligned parts and creates separate data source for each part.
+     * Each part is memory-mapped on query execution, so result sets of different data sources
+     * may be read from different threads (e.g. using {@link ru.concerteza.util.db.springjdbc.parallel.ParallelQueriesIterator}).
+     *
+     * @param file local CSV file
+     * @param delimiter CSV fields delimiter
+     * @param encoding ASCII-compatible CSV file encoding
+     * @param splitsCount requested number of parts
+     * @return list of data sources, one per file part
+     * @see ParallelCsvReader
+     */
+    public static List<DataSource> mapped(File file, String delimiter, String encoding, int splitsCount) {
+        MappedCsvFile mcf = new MappedCsvFile(file, delimiter, encoding);
+        ImmutableList.Builder<DataSource> builder = ImmutableList.builder();
+        for(MappedCsvSplit split : mcf.split(splitsCount)) {
+            Iterable<Map<String, String>> iterable = Iterables.transform(split, SubstituteNullsFunction.INSTANCE);
+            builder.add(new CsvDataSource(new MapResultSetSupplier(iterable)));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Splits local CSV file into line-aligned parts and creates separate data source for each part.
+     * Result sets are typed according to provided schema, see {@link TypedCsvResultSet}.
+     *
+     * @param file local CSV file
+     * @param delimiter CSV fields delimiter
+     * @param encoding ASCII-compatible CSV file encoding
+     * @param splitsCount requested number of parts
+     * @param schema column types, column names must be the same as file headers
+     * @return list of data sources, one per file part
+     */
+    public static List<DataSource> mapped(File file, String delimiter, String encoding, int splitsCount, CsvSchema schema) {
+        MappedCsvFile mcf = new MappedCsvFile(file, delimiter, encoding);
+        ImmutableList.Builder<DataSource> builder = ImmutableList.builder();
+        for(MappedCsvSplit split : mcf.split(splitsCount)) {
+            builder.add(new CsvDataSource(new TypedResultSetSupplier(split, schema)));
+        }
+        return builder.build();
     }
 
     /**
@@ -61,7 +115,7 @@ public class CsvDataSource extends AbstractDataSource {
      */
     @Override
     public Connection getConnection() throws SQLException {
-        return new CsvConnection(iterable);
+        return new CsvConnection(resultSets);
     }
 
     /**
@@ -72,16 +126,44 @@ public class CsvDataSource extends AbstractDataSource {
         return getConnection();
     }
 
-    private enum SubstituteNullsFunction implements Function<Map<String, String>, Map<String, String>> {
+    private enum SubstituteNullsFunction implements Function<Map<String, ?>, Map<String, String>> {
         INSTANCE;
         @Override
-        public Map<String, String> apply(@Nullable Map<String, String> input) {
+        public Map<String, String> apply(@Nullable Map<String, ?> input) {
             Map<String, String> res = Maps.newLinkedHashMap();
-            for(Map.Entry<String, String> en : input.entrySet()) {
-                String val = NULL_VALUE.equals(en.getValue()) ? null : en.getValue();
+            for(Map.Entry<String, ?> en : input.entrySet()) {
+                String val = NULL_VALUE.equals(en.getValue()) ? null : (String) en.getValue();
                 res.put(en.getKey(), val);
             }
             return res;
         }
     }
+
+    private static class MapResultSetSupplier implements Supplier<ResultSet> {
+        private final Iterable<Map<String, String>> iterable;
+
+        private MapResultSetSupplier(Iterable<Map<String, String>> iterable) {
+            this.iterable = iterable;
+        }
+
+        @Override
+        public ResultSet get() {
+            return new MapIteratorResultSet(iterable.iterator());
+        }
+    }
+
+    private static class TypedResultSetSupplier implements Supplier<ResultSet> {
+        private final MappedCsvSplit split;
+        private final CsvSchema schema;
+
+        private TypedResultSetSupplier(MappedCsvSplit split, CsvSchema schema) {
+            this.split = split;
+            this.schema = schema;
+        }
+
+        @Override
+        public ResultSet get() {
+            return new TypedCsvResultSet(split, schema);
+        }
+    }
 }
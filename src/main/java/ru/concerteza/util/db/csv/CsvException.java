@@ -0,0 +1,25 @@
+package ru.concerteza.util.db.csv;
+
+/**
+ * Specific exception for CSV reading classes
+ *
+ * @author alexkasko
+ * Date: 11/24/14
+ */
+public class CsvException extends RuntimeException {
+    private static final long serialVersionUID = -2108344721460285937L;
+
+    /**
+     * {@inheritDoc}
+     */
+    public CsvException(String message) {
+        super(message);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public CsvException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,5 +1,6 @@
 package ru.concerteza.util.db.csv;
 
+import com.google.common.base.Supplier;
 import ru.concerteza.util.db.jdbcstub.NoOpPreparedStatement;
 
 import java.sql.*;
@@ -12,13 +13,13 @@ import java.sql.*;
  * Date: 6/29/12
  */
 class CsvPreparedStatement extends NoOpPreparedStatement {
-    private final CsvMapIterable iterable;
+    private final Supplier<? extends ResultSet> resultSets;
 
     /**
-     * @param iterable CSV file data iterable
+     * @param resultSets CSV result sets supplier
      */
-    public CsvPreparedStatement(CsvMapIterable iterable) {
-        this.iterable = iterable;
+    public CsvPreparedStatement(Supplier<? extends ResultSet> resultSets) {
+        this.resultSets = resultSets;
     }
 
     /**
@@ -26,7 +27,7 @@ class CsvPreparedStatement extends NoOpPreparedStatement {
      */
     @Override
     public ResultSet executeQuery() throws SQLException {
-        return new MapIteratorResultSet(iterable.iterator());
+        return resultSets.get();
     }
 
     /**
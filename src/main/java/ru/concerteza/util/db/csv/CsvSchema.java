@@ -0,0 +1,118 @@
+package ru.concerteza.util.db.csv;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+
+/**
+ * Ordered list of typed CSV columns, column names must be the same as CSV headers.
+ * Immutable, use {@link #builder()} to create.
+ *
+ * @author alexkasko
+ * Date: 11/26/14
+ * @see TypedCsvResultSet
+ */
+public class CsvSchema {
+    private final List<String> names;
+    private final CsvColumnType[] types;
+    private final Map<String, Integer> indexes;
+
+    private CsvSchema(List<String> names, List<CsvColumnType> types) {
+        this.names = names;
+        this.types = types.toArray(new CsvColumnType[types.size()]);
+        this.indexes = new HashMap<String, Integer>();
+        for(int i = 0; i < names.size(); i++) {
+            Integer existed = indexes.put(names.get(i), i + 1);
+            checkArgument(null == existed, "Duplicate column name: '%s'", names.get(i));
+        }
+    }
+
+    /**
+     * @return schema builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return columns count
+     */
+    public int size() {
+        return types.length;
+    }
+
+    /**
+     * @return column names
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * @param index column index, starts from 1
+     * @return column type
+     */
+    public CsvColumnType getType(int index) {
+        return types[index - 1];
+    }
+
+    /**
+     * @param name column name
+     * @return column index, starts from 1
+     */
+    public int indexOf(String name) {
+        // explicit check to not allocate varargs on each call
+        Integer res = indexes.get(name);
+        if(null == res) throw new IllegalArgumentException("Unknown column: '" + name + "', schema: '" + names + "'");
+        return res;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("names", names).
+                append("types", types).
+                toString();
+    }
+
+    /**
+     * Schema builder
+     */
+    public static class Builder {
+        private final ImmutableList.Builder<String> names = ImmutableList.builder();
+        private final ImmutableList.Builder<CsvColumnType> types = ImmutableList.builder();
+
+        private Builder() {
+        }
+
+        /**
+         * @param name column name
+         * @param type column type
+         * @return builder itself
+         */
+        public Builder column(String name, CsvColumnType type) {
+            checkArgument(isNotBlank(name), "Column name is blank");
+            checkNotNull(type, "Column type is null");
+            names.add(name);
+            types.add(type);
+            return this;
+        }
+
+        /**
+         * @return schema instance
+         */
+        public CsvSchema build() {
+            return new CsvSchema(names.build(), types.build());
+        }
+    }
+}
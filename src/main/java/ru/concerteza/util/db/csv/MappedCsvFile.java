@@ -0,0 +1,201 @@
+package ru.concerteza.util.db.csv;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.Math.max;
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+import static org.apache.commons.lang.StringUtils.isNotEmpty;
+
+/**
+ * Local CSV file, that may be split into line-aligned byte ranges, each range is read
+ * through its own memory mapping. Headers line is read once on instance creation.
+ * Encoding must be ASCII-compatible (UTF-8, windows-1251 etc.), line feed byte is used to find line boundaries.
+ * Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 11/24/14
+ * @see MappedCsvSplit
+ * @see ParallelCsvReader
+ */
+public class MappedCsvFile {
+    // single mapping cannot exceed 2GB
+    static final long MAX_SPLIT_LENGTH = Integer.MAX_VALUE;
+    private static final int SCAN_BUFFER_SIZE = 8192;
+
+    private final File file;
+    private final String delimiter;
+    private final Charset encoding;
+    private final Splitter splitter;
+    private final List<String> headers;
+    private final long dataStart;
+    private final long length;
+
+    /**
+     * Main constructor
+     *
+     * @param file local CSV file
+     * @param delimiter CSV fields delimiter
+     * @param encoding ASCII-compatible CSV file encoding
+     */
+    public MappedCsvFile(File file, String delimiter, String encoding) {
+        checkNotNull(file, "Provided file is null");
+        checkArgument(file.isFile(), "Provided file is not a file: '%s'", file.getAbsolutePath());
+        checkArgument(isNotEmpty(delimiter), "Delimiter is empty");
+        checkArgument(isNotEmpty(encoding), "Encoding is empty");
+        this.file = file;
+        this.delimiter = delimiter;
+        this.encoding = Charset.forName(encoding);
+        this.splitter = Splitter.on(delimiter);
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel ch = raf.getChannel();
+            this.length = ch.size();
+            this.dataStart = nextLineStart(ch, 0, length);
+            if(0 == dataStart) throw new CsvException("Cannot read CSV headers, input file is empty: '" + file.getAbsolutePath() + "'");
+            ByteBuffer hbuf = ByteBuffer.allocate((int) dataStart);
+            while(hbuf.hasRemaining()) {
+                if(ch.read(hbuf, hbuf.position()) < 0) break;
+            }
+            this.headers = parseList(hbuf.array(), 0, lineLength(hbuf.array(), 0, (int) dataStart));
+        } catch(IOException e) {
+            throw new CsvException("Cannot read CSV file: '" + file.getAbsolutePath() + "'", e);
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+    }
+
+    /**
+     * Splits data part of the file into line-aligned byte ranges. Resulting list may contain
+     * less than requested splits for small files and more than requested for files
+     * where split size would exceed 2GB mapping limit.
+     *
+     * @param count requested splits count
+     * @return list of splits covering all data lines of the file
+     */
+    public List<MappedCsvSplit> split(int count) {
+        checkArgument(count > 0, "Splits count must be positive, but was: '%s'", count);
+        long dataLength = length - dataStart;
+        int actual = (int) max(count, (dataLength + MAX_SPLIT_LENGTH - 1) / MAX_SPLIT_LENGTH);
+        ImmutableList.Builder<MappedCsvSplit> builder = ImmutableList.builder();
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel ch = raf.getChannel();
+            long start = dataStart;
+            int index = 0;
+            for(int i = 1; i <= actual && start < length; i++) {
+                long nominal = dataStart + dataLength * i / actual;
+                long end = i == actual ? length : nextLineStart(ch, max(nominal, start + 1) - 1, length);
+                if(end - start > MAX_SPLIT_LENGTH) throw new CsvException("Too long line found in CSV file: '" + file.getAbsolutePath() + "', " +
+                        "starting from position: '" + start + "'");
+                builder.add(new MappedCsvSplit(this, index++, start, end));
+                start = end;
+            }
+        } catch(IOException e) {
+            throw new CsvException("Cannot read CSV file: '" + file.getAbsolutePath() + "'", e);
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return CSV file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return CSV fields delimiter
+     */
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    /**
+     * @return CSV file encoding
+     */
+    public Charset getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * @return CSV headers
+     */
+    public List<String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return file length in bytes
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return position of the first data line in file
+     */
+    public long getDataStart() {
+        return dataStart;
+    }
+
+    List<String> parseList(byte[] buf, int offset, int len) {
+        String line = new String(buf, offset, len, encoding);
+        checkArgument(isNotBlank(line), "CSV input line is blank, file: '%s', line: '%s'", file.getAbsolutePath(), line);
+        return ImmutableList.copyOf(splitter.split(line));
+    }
+
+    // line length without trailing CR LF
+    static int lineLength(byte[] buf, int offset, int len) {
+        int res = len;
+        if(res > 0 && '\n' == buf[offset + res - 1]) res -= 1;
+        if(res > 0 && '\r' == buf[offset + res - 1]) res -= 1;
+        return res;
+    }
+
+    // position right after the first LF found starting from 'pos', or file length
+    private static long nextLineStart(FileChannel ch, long pos, long length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long cur = pos;
+        while(cur < length) {
+            buf.clear();
+            int read = ch.read(buf, cur);
+            if(read <= 0) break;
+            for(int i = 0; i < read; i++) {
+                if('\n' == buf.get(i)) return cur + i + 1;
+            }
+            cur += read;
+        }
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("file", file).
+                append("encoding", encoding).
+                append("headers", headers).
+                append("dataStart", dataStart).
+                append("length", length).
+                toString();
+    }
+}
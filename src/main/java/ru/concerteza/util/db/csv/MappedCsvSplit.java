@@ -0,0 +1,101 @@
+package ru.concerteza.util.db.csv;
+
+import com.google.common.collect.AbstractIterator;
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static ru.concerteza.util.collection.CtzCollectionUtils.listsToMap;
+
+/**
+ * Line-aligned byte range of the {@link MappedCsvFile}, iterates over its lines as maps
+ * with CSV headers as keys. Each iterator maps its range into memory separately,
+ * so different splits of the same file may be read from different threads.
+ *
+ * @author alexkasko
+ * Date: 11/24/14
+ */
+public class MappedCsvSplit implements Iterable<Map<String, String>> {
+    private final MappedCsvFile file;
+    private final int index;
+    private final long start;
+    private final long end;
+
+    /**
+     * @param file CSV file
+     * @param index split index in file
+     * @param start start position, inclusive
+     * @param end end position, exclusive
+     */
+    MappedCsvSplit(MappedCsvFile file, int index, long start, long end) {
+        this.file = file;
+        this.index = index;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<Map<String, String>> iterator() {
+        return new SplitIterator();
+    }
+
+    /**
+     * @return CSV file
+     */
+    public MappedCsvFile getFile() {
+        return file;
+    }
+
+    /**
+     * @return split index in file
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return start position, inclusive
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return end position, exclusive
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("file", file.getFile()).
+                append("index", index).
+                append("start", start).
+                append("end", end).
+                toString();
+    }
+
+    private class SplitIterator extends AbstractIterator<Map<String, String>> {
+        private final MappedLineReader reader = new MappedLineReader(MappedCsvSplit.this);
+        private final List<String> headers = file.getHeaders();
+
+        @Override
+        protected Map<String, String> computeNext() {
+            if(!reader.readLine()) return endOfData();
+            List<String> values = file.parseList(reader.line(), 0, reader.length());
+            if(headers.size() != values.size()) throw new CsvException("Invalid CSV line, headers: '" + headers + "', " +
+                    "values: '" + values + "', file: '" + file.getFile().getAbsolutePath() + "'");
+            return listsToMap(headers, values);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ru.concerteza.util.db.csv;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static java.lang.System.arraycopy;
+
+/**
+ * Reads lines from memory-mapped split into reusable byte buffer, line content
+ * is valid until next {@code readLine()} call. <b>NOT</b> thread-safe.
+ *
+ * @author alexkasko
+ * Date: 11/26/14
+ */
+class MappedLineReader {
+    private static final int INITIAL_LINE_BUFFER_SIZE = 1024;
+
+    private final MappedByteBuffer buf;
+    private byte[] line = new byte[INITIAL_LINE_BUFFER_SIZE];
+    private int length = 0;
+
+    /**
+     * @param split split to map
+     */
+    MappedLineReader(MappedCsvSplit split) {
+        MappedCsvFile file = split.getFile();
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file.getFile(), "r");
+            // mapping remains valid after channel close
+            this.buf = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, split.getStart(), split.getEnd() - split.getStart());
+        } catch(IOException e) {
+            throw new CsvException("Cannot map CSV file: '" + file.getFile().getAbsolutePath() + "', " +
+                    "start: '" + split.getStart() + "', end: '" + split.getEnd() + "'", e);
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+    }
+
+    /**
+     * Reads next line into buffer
+     *
+     * @return false on end of split
+     */
+    boolean readLine() {
+        if(!buf.hasRemaining()) return false;
+        int len = 0;
+        while(buf.hasRemaining()) {
+            byte b = buf.get();
+            if(len == line.length) {
+                byte[] grown = new byte[line.length * 2];
+                arraycopy(line, 0, grown, 0, len);
+                line = grown;
+            }
+            line[len++] = b;
+            if('\n' == b) break;
+        }
+        this.length = MappedCsvFile.lineLength(line, 0, len);
+        return true;
+    }
+
+    /**
+     * @return line buffer
+     */
+    byte[] line() {
+        return line;
+    }
+
+    /**
+     * @return current line length without CR LF
+     */
+    int length() {
+        return length;
+    }
+}
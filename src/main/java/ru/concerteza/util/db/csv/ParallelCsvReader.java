@@ -0,0 +1,253 @@
+package ru.concerteza.util.db.csv;
+
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import ru.concerteza.util.concurrency.ExecutorThreadFactory;
+import ru.concerteza.util.concurrency.FirstValueHolder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static ru.concerteza.util.string.CtzConstants.UTF8;
+
+/**
+ * Reads local CSV file in parallel: file is split into line-aligned byte ranges (see {@link MappedCsvFile}),
+ * each range is memory-mapped and parsed in separate executor task. Converter function is applied
+ * in worker threads. Parsed rows are passed to client in batches through bounded blocking queues.
+ * Rows may be provided in file order or in arrival order (faster, rows from different splits are interleaved).
+ * Ordered mode requires executor to run tasks in submission order (as standard thread pools do).
+ * Worker exceptions are rethrown as {@link CsvException} on {@code hasNext()} or {@code next()} calls.
+ * Reader created with {@link #of(java.io.File, String)} owns its thread pool and should be closed after use,
+ * readers created with constructors don't shutdown provided executors on close.
+ * Reader instance is thread-safe, returned iterators are <b>NOT</b> thread-safe.
+ *
+ * @author alexkasko
+ * Date: 11/24/14
+ * @see MappedCsvFile
+ * @see CsvDataSource#mapped(java.io.File, String, String, int)
+ */
+public class ParallelCsvReader<T> implements Closeable {
+    private static final int DEFAULT_BATCH_SIZE = 1024;
+    private static final int BATCHES_PER_SPLIT = 2;
+
+    private final MappedCsvFile file;
+    private final int splitsCount;
+    private final ExecutorService executor;
+    private final Function<Map<String, ?>, T> converter;
+    private final int batchSize;
+    private final boolean ownsExecutor;
+
+    /**
+     * Shortcut constructor, uses UTF-8 encoding and splits file into
+     * count of available processors parts, read threads are daemons.
+     * Created thread pool is shut down on {@link #close()}
+     *
+     * @param file local CSV file
+     * @param delimiter CSV fields delimiter
+     * @return reader returning rows as maps
+     */
+    @SuppressWarnings("unchecked")
+    public static ParallelCsvReader<Map<String, String>> of(File file, String delimiter) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ExecutorThreadFactory("ParallelCsvReader"));
+        return new ParallelCsvReader<Map<String, String>>(new MappedCsvFile(file, delimiter, UTF8), threads, executor,
+                (Function) Functions.identity(), DEFAULT_BATCH_SIZE, true);
+    }
+
+    /**
+     * Shortcut constructor
+     *
+     * @param file CSV file
+     * @param splitsCount number of parts to split file into
+     * @param executor executor to run parse tasks into
+     * @param converter CSV row converter function, applied in worker threads
+     */
+    public ParallelCsvReader(MappedCsvFile file, int splitsCount, ExecutorService executor, Function<Map<String, ?>, T> converter) {
+        this(file, splitsCount, executor, converter, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Main constructor
+     *
+     * @param file CSV file
+     * @param splitsCount number of parts to split file into
+     * @param executor executor to run parse tasks into
+     * @param converter CSV row converter function, applied in worker threads
+     * @param batchSize number of rows passed from worker to client at once
+     */
+    public ParallelCsvReader(MappedCsvFile file, int splitsCount, ExecutorService executor, Function<Map<String, ?>, T> converter, int batchSize) {
+        this(file, splitsCount, executor, converter, batchSize, false);
+    }
+
+    private ParallelCsvReader(MappedCsvFile file, int splitsCount, ExecutorService executor, Function<Map<String, ?>, T> converter,
+                              int batchSize, boolean ownsExecutor) {
+        checkNotNull(file, "Provided file is null");
+        checkArgument(splitsCount > 0, "Splits count must be positive, but was: '%s'", splitsCount);
+        checkNotNull(executor, "Provided executor is null");
+        checkNotNull(converter, "Provided converter is null");
+        checkArgument(batchSize > 0, "Batch size must be positive, but was: '%s'", batchSize);
+        this.file = file;
+        this.splitsCount = splitsCount;
+        this.executor = executor;
+        this.converter = converter;
+        this.batchSize = batchSize;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Starts parsing and returns rows in file order
+     *
+     * @return iterator over converted rows, should be cancelled if not read to end
+     */
+    public CsvIterator<T> orderedIterator() {
+        return new CsvIterator<T>(file.split(splitsCount), true, executor, converter, batchSize);
+    }
+
+    /**
+     * Starts parsing and returns rows in arrival order
+     *
+     * @return iterator over converted rows, should be cancelled if not read to end
+     */
+    public CsvIterator<T> unorderedIterator() {
+        return new CsvIterator<T>(file.split(splitsCount), false, executor, converter, batchSize);
+    }
+
+    /**
+     * Shuts down thread pool created by {@link #of(java.io.File, String)}, running parse tasks are interrupted.
+     * Does nothing for executors provided to constructors.
+     */
+    @Override
+    public void close() {
+        if(ownsExecutor) executor.shutdownNow();
+    }
+
+    /**
+     * Iterator over parsed rows, parsing is started on creation
+     */
+    public static class CsvIterator<T> extends AbstractIterator<T> {
+        private final Object endOfDataObject = new Object();
+        private final Object errorObject = new Object();
+        private final FirstValueHolder<RuntimeException> exceptionHolder = new FirstValueHolder<RuntimeException>();
+        private final List<BlockingQueue<Object>> queues;
+        private final Function<Map<String, ?>, T> converter;
+        private final int batchSize;
+        private final List<Future<?>> futures;
+        private int queueIndex = 0;
+        private int splitsRemained;
+        private Iterator<T> batch = Collections.<T>emptyList().iterator();
+
+        private CsvIterator(List<MappedCsvSplit> splits, boolean ordered, ExecutorService executor,
+                            Function<Map<String, ?>, T> converter, int batchSize) {
+            this.converter = converter;
+            this.batchSize = batchSize;
+            this.splitsRemained = splits.size();
+            ImmutableList.Builder<BlockingQueue<Object>> qb = ImmutableList.builder();
+            if(ordered) {
+                for(int i = 0; i < splits.size(); i++) qb.add(new ArrayBlockingQueue<Object>(BATCHES_PER_SPLIT));
+            } else {
+                qb.add(new ArrayBlockingQueue<Object>(BATCHES_PER_SPLIT * Math.max(splits.size(), 1)));
+            }
+            this.queues = qb.build();
+            ImmutableList.Builder<Future<?>> fb = ImmutableList.builder();
+            for(MappedCsvSplit sp : splits) {
+                BlockingQueue<Object> queue = ordered ? queues.get(sp.getIndex()) : queues.get(0);
+                fb.add(executor.submit(new Worker(sp, queue)));
+            }
+            this.futures = fb.build();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        protected T computeNext() {
+            while(!batch.hasNext()) {
+                if(0 == splitsRemained) return endOfData();
+                Object ob = take(queues.get(queueIndex));
+                if(errorObject == ob || null != exceptionHolder.get()) {
+                    cancel();
+                    throw exceptionHolder.get();
+                } else if(endOfDataObject == ob) {
+                    splitsRemained -= 1;
+                    if(queues.size() > 1) queueIndex += 1;
+                } else {
+                    batch = ((List<T>) ob).iterator();
+                }
+            }
+            return batch.next();
+        }
+
+        /**
+         * Cancels parsing of all splits
+         *
+         * @return count of tasks that were actually cancelled
+         */
+        public int cancel() {
+            int res = 0;
+            for(Future<?> fu : futures) {
+                if(fu.cancel(true)) res += 1;
+            }
+            return res;
+        }
+
+        private Object take(BlockingQueue<Object> queue) {
+            try {
+                return queue.take();
+            } catch(InterruptedException e) {
+                cancel();
+                throw new CsvException("CSV parsing interrupted", e);
+            }
+        }
+
+        private class Worker implements Runnable {
+            private final MappedCsvSplit split;
+            private final BlockingQueue<Object> queue;
+
+            private Worker(MappedCsvSplit split, BlockingQueue<Object> queue) {
+                this.split = split;
+                this.queue = queue;
+            }
+
+            @Override
+            public void run() {
+                try {
+                    List<T> list = new ArrayList<T>(batchSize);
+                    for(Map<String, String> row : split) {
+                        list.add(converter.apply(row));
+                        if(list.size() == batchSize) {
+                            queue.put(list);
+                            list = new ArrayList<T>(batchSize);
+                        }
+                    }
+                    if(list.size() > 0) queue.put(list);
+                    queue.put(endOfDataObject);
+                } catch(InterruptedException e) {
+                    // cancelled, client is not interested in results anymore
+                    Thread.currentThread().interrupt();
+                } catch(Throwable e) {
+                    exceptionHolder.set(new CsvException("CSV parsing error, split: '" + split + "'", e));
+                    try {
+                        queue.put(errorObject);
+                    } catch(InterruptedException e1) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+    }
+}
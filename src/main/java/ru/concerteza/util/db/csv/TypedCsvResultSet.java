@@ -0,0 +1,448 @@
+package ru.concerteza.util.db.csv;
+
+import ru.concerteza.util.db.jdbcstub.AbstractResultSet;
+import ru.concerteza.util.db.jdbcstub.AbstractResultSetMetadata;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+import static ru.concerteza.util.objectless.CtzDateParser.parseDate;
+import static ru.concerteza.util.objectless.CtzNumericParser.parseDouble;
+import static ru.concerteza.util.objectless.CtzNumericParser.parseLong;
+
+/**
+ * {@link java.sql.ResultSet} implementation over memory-mapped CSV split with declared column types.
+ * Numeric and date fields are parsed directly from line bytes into primitive column slots on {@code next()} call,
+ * so {@code getInt}, {@code getLong} and {@code getDouble} do not allocate. Strings are decoded on demand.
+ * Empty fields and {@code NULL} fields are treated as SQL NULLs.
+ * Negative numbers are supported, numbers are checked using assertions only (see {@link ru.concerteza.util.objectless.CtzNumericParser}).
+ * <b>NOT</b> thread-safe.
+ *
+ * @author alexkasko
+ * Date: 11/26/14
+ * @see CsvSchema
+ * @see CsvDataSource#mapped(java.io.File, String, String, int, CsvSchema)
+ */
+public class TypedCsvResultSet extends AbstractResultSet {
+    private static final byte[] NULL_VALUE = {'N', 'U', 'L', 'L'};
+    // yyyyMMddHHmmss
+    private static final int DATE_LENGTH = 14;
+
+    private final MappedCsvSplit split;
+    private final CsvSchema schema;
+    private final byte[] delimiter;
+    private final MappedLineReader reader;
+    // column slots, indexes start from 1 to match JDBC
+    private final int[] starts;
+    private final int[] lengths;
+    private final boolean[] nulls;
+    private final long[] longs;
+    private final double[] doubles;
+    private boolean wasNull = false;
+
+    /**
+     * @param split CSV split to read
+     * @param schema column types, column names must be the same as file headers
+     */
+    public TypedCsvResultSet(MappedCsvSplit split, CsvSchema schema) {
+        if(!split.getFile().getHeaders().equals(schema.getNames())) throw new CsvException(
+                "Schema: '" + schema + "' doesn't match CSV headers: '" + split.getFile().getHeaders() + "'");
+        this.split = split;
+        this.schema = schema;
+        this.delimiter = split.getFile().getDelimiter().getBytes(split.getFile().getEncoding());
+        this.reader = new MappedLineReader(split);
+        int size = schema.size() + 1;
+        this.starts = new int[size];
+        this.lengths = new int[size];
+        this.nulls = new boolean[size];
+        this.longs = new long[size];
+        this.doubles = new double[size];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean next() throws SQLException {
+        if(!reader.readLine()) return false;
+        tokenize(reader.line(), reader.length());
+        byte[] line = reader.line();
+        for(int i = 1; i < starts.length; i++) {
+            if(nulls[i]) continue;
+            switch(schema.getType(i)) {
+                case INT:
+                case LONG: longs[i] = parseSignedLong(line, starts[i], lengths[i]); break;
+                case DOUBLE: doubles[i] = parseSignedDouble(line, starts[i], lengths[i]); break;
+                case DATE:
+                    if(DATE_LENGTH != lengths[i]) throw invalidLine(line, reader.length());
+                    longs[i] = parseDate(line, starts[i]);
+                    break;
+                default: // strings are decoded lazily
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws SQLException {
+        // mapping will be released on GC
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean wasNull() throws SQLException {
+        return wasNull;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int findColumn(String columnLabel) throws SQLException {
+        return schema.indexOf(columnLabel);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResultSetMetaData getMetaData() throws SQLException {
+        return new Metadata();
+    }
+
+    // get methods
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getString(int columnIndex) throws SQLException {
+        if(checkNull(columnIndex)) return null;
+        return new String(reader.line(), starts[columnIndex], lengths[columnIndex], split.getFile().getEncoding());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean getBoolean(int columnIndex) throws SQLException {
+        String str = getString(columnIndex);
+        return null != str && Boolean.parseBoolean(str);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte getByte(int columnIndex) throws SQLException {
+        return (byte) getLong(columnIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public short getShort(int columnIndex) throws SQLException {
+        return (short) getLong(columnIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInt(int columnIndex) throws SQLException {
+        return (int) getLong(columnIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLong(int columnIndex) throws SQLException {
+        if(checkNull(columnIndex)) return 0;
+        switch(schema.getType(columnIndex)) {
+            case DOUBLE: return (long) doubles[columnIndex];
+            case STRING: return parseSignedLong(reader.line(), starts[columnIndex], lengths[columnIndex]);
+            default: return longs[columnIndex];
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public float getFloat(int columnIndex) throws SQLException {
+        return (float) getDouble(columnIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getDouble(int columnIndex) throws SQLException {
+        if(checkNull(columnIndex)) return 0;
+        switch(schema.getType(columnIndex)) {
+            case DOUBLE: return doubles[columnIndex];
+            case STRING: return parseSignedDouble(reader.line(), starts[columnIndex], lengths[columnIndex]);
+            default: return longs[columnIndex];
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+        String str = getString(columnIndex);
+        return null != str ? new BigDecimal(str) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Date getDate(int columnIndex) throws SQLException {
+        if(CsvColumnType.DATE != schema.getType(columnIndex)) {
+            String str = getString(columnIndex);
+            return null != str ? Date.valueOf(str) : null;
+        }
+        return checkNull(columnIndex) ? null : new Date(longs[columnIndex]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Time getTime(int columnIndex) throws SQLException {
+        if(CsvColumnType.DATE != schema.getType(columnIndex)) {
+            String str = getString(columnIndex);
+            return null != str ? Time.valueOf(str) : null;
+        }
+        return checkNull(columnIndex) ? null : new Time(longs[columnIndex]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Timestamp getTimestamp(int columnIndex) throws SQLException {
+        if(CsvColumnType.DATE != schema.getType(columnIndex)) {
+            String str = getString(columnIndex);
+            return null != str ? Timestamp.valueOf(str) : null;
+        }
+        return checkNull(columnIndex) ? null : new Timestamp(longs[columnIndex]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getObject(int columnIndex) throws SQLException {
+        if(checkNull(columnIndex)) return null;
+        switch(schema.getType(columnIndex)) {
+            case INT: return (int) longs[columnIndex];
+            case LONG: return longs[columnIndex];
+            case DOUBLE: return doubles[columnIndex];
+            case DATE: return new Timestamp(longs[columnIndex]);
+            default: return getString(columnIndex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getString(String columnLabel) throws SQLException {
+        return getString(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean getBoolean(String columnLabel) throws SQLException {
+        return getBoolean(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte getByte(String columnLabel) throws SQLException {
+        return getByte(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public short getShort(String columnLabel) throws SQLException {
+        return getShort(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInt(String columnLabel) throws SQLException {
+        return getInt(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLong(String columnLabel) throws SQLException {
+        return getLong(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public float getFloat(String columnLabel) throws SQLException {
+        return getFloat(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getDouble(String columnLabel) throws SQLException {
+        return getDouble(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+        return getBigDecimal(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Date getDate(String columnLabel) throws SQLException {
+        return getDate(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Time getTime(String columnLabel) throws SQLException {
+        return getTime(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Timestamp getTimestamp(String columnLabel) throws SQLException {
+        return getTimestamp(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getObject(String columnLabel) throws SQLException {
+        return getObject(findColumn(columnLabel));
+    }
+
+    private boolean checkNull(int columnIndex) {
+        wasNull = nulls[columnIndex];
+        return wasNull;
+    }
+
+    private void tokenize(byte[] line, int length) {
+        int col = 1;
+        int start = 0;
+        int i = 0;
+        while(i <= length - delimiter.length) {
+            if(matches(line, i, delimiter)) {
+                if(col == starts.length - 1) throw invalidLine(line, length);
+                setField(col++, line, start, i - start);
+                i += delimiter.length;
+                start = i;
+            } else i += 1;
+        }
+        if(col != starts.length - 1) throw invalidLine(line, length);
+        setField(col, line, start, length - start);
+    }
+
+    private void setField(int col, byte[] line, int start, int length) {
+        starts[col] = start;
+        lengths[col] = length;
+        nulls[col] = 0 == length || (NULL_VALUE.length == length && matches(line, start, NULL_VALUE));
+    }
+
+    private CsvException invalidLine(byte[] line, int length) {
+        return new CsvException("Invalid CSV line, schema: '" + schema + "', line: '" +
+                new String(line, 0, length, split.getFile().getEncoding()) + "', split: '" + split + "'");
+    }
+
+    private static boolean matches(byte[] line, int offset, byte[] pattern) {
+        for(int j = 0; j < pattern.length; j++) {
+            if(line[offset + j] != pattern[j]) return false;
+        }
+        return true;
+    }
+
+    private long parseSignedLong(byte[] line, int start, int length) {
+        boolean negative = '-' == line[start];
+        int offset = negative ? 1 : 0;
+        if(!hasDigits(line, start + offset, length - offset)) throw invalidLine(line, reader.length());
+        long res = parseLong(line, start + offset, length - offset);
+        return negative ? -res : res;
+    }
+
+    private double parseSignedDouble(byte[] line, int start, int length) {
+        boolean negative = '-' == line[start];
+        int offset = negative ? 1 : 0;
+        if(!hasDigits(line, start + offset, length - offset)) throw invalidLine(line, reader.length());
+        double res = parseDouble(line, start + offset, length - offset);
+        return negative ? -res : res;
+    }
+
+    // rejects empty mantissas like "-" or "."
+    private static boolean hasDigits(byte[] line, int start, int length) {
+        for(int i = start; i < start + length; i++) {
+            if(line[i] >= '0' && line[i] <= '9') return true;
+        }
+        return false;
+    }
+
+    private class Metadata extends AbstractResultSetMetadata {
+        @Override
+        public int getColumnCount() throws SQLException {
+            return schema.size();
+        }
+
+        @Override
+        public String getColumnName(int column) throws SQLException {
+            return schema.getNames().get(column - 1);
+        }
+
+        @Override
+        public String getColumnLabel(int column) throws SQLException {
+            return getColumnName(column);
+        }
+
+        @Override
+        public int getColumnType(int column) throws SQLException {
+            return schema.getType(column).getSqlType();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package ru.concerteza.util.db.datasource;
+
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.concerteza.util.collection.accessor.AbstractAccessor;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Data source accessor, that routes to the least loaded healthy data source using power-of-two-choices:
+ * two random healthy data sources are compared by load score (in-flight connections count weighted with
+ * average connection hold time, see {@link LoadTrackingDataSource}) and the less loaded one is returned.
+ * Data sources, that fail to borrow connection {@code maxFailures} times in a row, are ejected and are not
+ * returned while there are healthy ones. Ejected data sources are probed in background with provided executor
+ * after ejection time expires, and are reinstated on successful probe (or on successful borrow when all data sources
+ * are ejected). Returned data sources must be used
+ * for borrowing connections (they are load tracking wrappers over target data sources). Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/18/14
+ * @see RoundRobinDataSourceAccessor
+ */
+public class LoadAwareDataSourceAccessor extends AbstractAccessor<LoadTrackingDataSource> {
+    private static final Logger logger = LoggerFactory.getLogger(LoadAwareDataSourceAccessor.class);
+    private static final int DEFAULT_MAX_FAILURES = 3;
+    private static final long DEFAULT_EJECT_MILLIS = 30000;
+    private static final long DEFAULT_PROBE_INTERVAL_MILLIS = 5000;
+    private static final int PROBE_VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final Random random = new Random();
+    private final ScheduledFuture<?> probeFuture;
+
+    /**
+     * Constructor with default settings: eject after 3 failures for 30 seconds, probe every 5 seconds
+     *
+     * @param targets target data sources
+     * @param executor executor to run background probes into
+     */
+    public LoadAwareDataSourceAccessor(Collection<? extends DataSource> targets, ScheduledExecutorService executor) {
+        this(targets, executor, DEFAULT_MAX_FAILURES, DEFAULT_EJECT_MILLIS, DEFAULT_PROBE_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param targets target data sources
+     * @param executor executor to run background probes into
+     * @param maxFailures consecutive borrow failures count to eject data source after
+     * @param ejectMillis min time between ejection and probe in milliseconds
+     * @param probeIntervalMillis background probe interval in milliseconds
+     */
+    public LoadAwareDataSourceAccessor(Collection<? extends DataSource> targets, ScheduledExecutorService executor,
+                                       int maxFailures, long ejectMillis, long probeIntervalMillis) {
+        super(wrap(targets, maxFailures, ejectMillis));
+        checkNotNull(executor, "Provided executor is null");
+        checkArgument(probeIntervalMillis > 0, "Probe interval must be positive, but was: '%s'", probeIntervalMillis);
+        this.probeFuture = executor.scheduleWithFixedDelay(new Prober(), probeIntervalMillis, probeIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Chooses less loaded of two random healthy data sources,
+     * if all data sources are ejected, chooses the one with the earliest probe time
+     *
+     * @return load tracking data source
+     */
+    @Override
+    public LoadTrackingDataSource get() {
+        List<LoadTrackingDataSource> healthy = new ArrayList<LoadTrackingDataSource>(target.size());
+        for(LoadTrackingDataSource ds : target) {
+            if(!ds.isEjected()) healthy.add(ds);
+        }
+        if(healthy.isEmpty()) return leastEjected();
+        if(1 == healthy.size()) return healthy.get(0);
+        int first = random.nextInt(healthy.size());
+        int second = random.nextInt(healthy.size() - 1);
+        if(second >= first) second += 1;
+        LoadTrackingDataSource ds1 = healthy.get(first);
+        LoadTrackingDataSource ds2 = healthy.get(second);
+        return ds1.score() <= ds2.score() ? ds1 : ds2;
+    }
+
+    /**
+     * @return count of not ejected data sources
+     */
+    public int healthyCount() {
+        int res = 0;
+        for(LoadTrackingDataSource ds : target) {
+            if(!ds.isEjected()) res += 1;
+        }
+        return res;
+    }
+
+    /**
+     * Stops background probes, doesn't close target data sources
+     */
+    public void close() {
+        probeFuture.cancel(false);
+    }
+
+    private LoadTrackingDataSource leastEjected() {
+        LoadTrackingDataSource res = target.get(0);
+        for(LoadTrackingDataSource ds : target) {
+            if(ds.getEjectedUntil() < res.getEjectedUntil()) res = ds;
+        }
+        return res;
+    }
+
+    private static List<LoadTrackingDataSource> wrap(Collection<? extends DataSource> targets, int maxFailures, long ejectMillis) {
+        checkNotNull(targets, "Provided data sources are null");
+        checkArgument(maxFailures > 0, "Max failures must be positive, but was: '%s'", maxFailures);
+        checkArgument(ejectMillis > 0, "Eject time must be positive, but was: '%s'", ejectMillis);
+        ImmutableList.Builder<LoadTrackingDataSource> res = ImmutableList.builder();
+        for(DataSource ds : targets) {
+            checkNotNull(ds, "Provided data sources must be non null, data sources: '%s'", targets);
+            res.add(new LoadTrackingDataSource(ds, maxFailures, ejectMillis));
+        }
+        return res.build();
+    }
+
+    // any error escaped from run() will cancel scheduled probes, so each probe is guarded
+    private class Prober implements Runnable {
+        @Override
+        public void run() {
+            long now = System.currentTimeMillis();
+            for(LoadTrackingDataSource ds : target) {
+                try {
+                    long until = ds.getEjectedUntil();
+                    // ejected and probe time has come
+                    if(0 != until && until <= now) ds.probe(PROBE_VALIDATION_TIMEOUT_SECONDS);
+                } catch(Throwable e) {
+                    logger.error("Probe error, data source: [" + ds + "]", e);
+                }
+            }
+        }
+    }
+}
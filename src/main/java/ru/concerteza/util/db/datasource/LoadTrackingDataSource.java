@@ -0,0 +1,271 @@
+package ru.concerteza.util.db.datasource;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Data source wrapper, that tracks count of borrowed (in-flight) connections, exponentially weighted
+ * average of connection hold time (from borrow start to close, it is not a query latency)
+ * and consecutive borrow failures.
+ * After {@code maxFailures} consecutive failures data source is ejected until successful probe
+ * or successful borrow, probes are done by {@link LoadAwareDataSourceAccessor} not earlier than
+ * {@code ejectMillis} after ejection or after previous failed probe. Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/18/14
+ * @see LoadAwareDataSourceAccessor
+ */
+public class LoadTrackingDataSource implements DataSource {
+    private static final Logger logger = LoggerFactory.getLogger(LoadTrackingDataSource.class);
+    // weight of the last sample in average
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final DataSource target;
+    private final int maxFailures;
+    private final long ejectMillis;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    // racy updates are acceptable for average
+    private volatile double holdMillis = 0;
+    private volatile long ejectedUntil = 0;
+
+    /**
+     * @param target target data source
+     * @param maxFailures consecutive borrow failures count to eject data source after
+     * @param ejectMillis min time between ejection and probe in milliseconds
+     */
+    LoadTrackingDataSource(DataSource target, int maxFailures, long ejectMillis) {
+        this.target = target;
+        this.maxFailures = maxFailures;
+        this.ejectMillis = ejectMillis;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.currentTimeMillis();
+        inFlight.incrementAndGet();
+        try {
+            return track(target.getConnection(), start);
+        } catch(SQLException e) {
+            release(start);
+            fail();
+            throw e;
+        } catch(RuntimeException e) {
+            release(start);
+            fail();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.currentTimeMillis();
+        inFlight.incrementAndGet();
+        try {
+            return track(target.getConnection(username, password), start);
+        } catch(SQLException e) {
+            release(start);
+            fail();
+            throw e;
+        } catch(RuntimeException e) {
+            release(start);
+            fail();
+            throw e;
+        }
+    }
+
+    /**
+     * @return target data source
+     */
+    public DataSource getTarget() {
+        return target;
+    }
+
+    /**
+     * @return count of borrowed connections
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return average connection hold time (from borrow start to close) in milliseconds
+     */
+    public double getHoldMillis() {
+        return holdMillis;
+    }
+
+    /**
+     * @return whether data source is ejected now
+     */
+    public boolean isEjected() {
+        return 0 != ejectedUntil;
+    }
+
+    /**
+     * Load score used to compare data sources, lower is better
+     *
+     * @return load score
+     */
+    double score() {
+        return (inFlight.get() + 1) * (holdMillis + 1);
+    }
+
+    /**
+     * @return time when data source may be probed, {@code 0} if not ejected
+     */
+    long getEjectedUntil() {
+        return ejectedUntil;
+    }
+
+    /**
+     * Checks ejected data source, reinstates it on success, extends ejection on any failure
+     *
+     * @param validationTimeoutSeconds connection validation timeout
+     */
+    void probe(int validationTimeoutSeconds) {
+        try {
+            Connection conn = target.getConnection();
+            try {
+                if(!conn.isValid(validationTimeoutSeconds)) throw new SQLException("Connection is not valid");
+            } finally {
+                conn.close();
+            }
+            failures.set(0);
+            ejectedUntil = 0;
+        } catch(Throwable e) {
+            ejectedUntil = System.currentTimeMillis() + ejectMillis;
+            logger.debug("Probe failed, data source: [" + target + "]", e);
+        }
+    }
+
+    private Connection track(Connection conn, long start) {
+        failures.set(0);
+        ejectedUntil = 0;
+        return (Connection) Proxy.newProxyInstance(LoadTrackingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(conn, start));
+    }
+
+    private void release(long start) {
+        inFlight.decrementAndGet();
+        long elapsed = System.currentTimeMillis() - start;
+        holdMillis = holdMillis + EWMA_ALPHA * (elapsed - holdMillis);
+    }
+
+    private void fail() {
+        if(failures.incrementAndGet() >= maxFailures) {
+            ejectedUntil = System.currentTimeMillis() + ejectMillis;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return target.getLogWriter();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        target.setLogWriter(out);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        target.setLoginTimeout(seconds);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return target.getLoginTimeout();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if(iface.isInstance(this)) return iface.cast(this);
+        return target.unwrap(iface);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || target.isWrapperFor(iface);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("target", target).
+                append("inFlight", inFlight.get()).
+                append("holdMillis", holdMillis).
+                append("failures", failures.get()).
+                append("ejected", isEjected()).
+                toString();
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+        private final Connection conn;
+        private final long start;
+        private boolean closed = false;
+
+        private ConnectionHandler(Connection conn, long start) {
+            this.conn = conn;
+            this.start = start;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if("equals".equals(name)) return proxy == args[0];
+            if("hashCode".equals(name)) return System.identityHashCode(proxy);
+            if("close".equals(name)) {
+                synchronized(this) {
+                    if(!closed) {
+                        closed = true;
+                        release(start);
+                    }
+                }
+            }
+            try {
+                return method.invoke(conn, args);
+            } catch(InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package ru.concerteza.util.db.datasource;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.concerteza.util.concurrency.ExecutorThreadFactory;
+import ru.concerteza.util.io.CtzIOUtils;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * {@link javax.sql.DataSource} implementation with native connection pool.
+ * Idle connections are kept in lock-free (Treiber) stack, so most recently used connections are borrowed first.
+ * Connection, that was last used by current thread, is cached per thread and is tried before the stack.
+ * Borrowed connections are not validated, instead idle connections are validated in background
+ * with JDBC4 {@code java.sql.Connection#isValid()} method after {@code validationIntervalMillis} of idleness.
+ * Connections that have thrown {@code SQLException} with connection error SQL state ({@code 08xxx})
+ * are discarded on close. On return transaction is rolled back, auto-commit, read-only and transaction isolation
+ * are restored to the values connection had on creation. When pool is exhausted, {@code getConnection} waits up to {@code maxWaitMillis}
+ * for returned connection. Validation is started on first {@code getConnection} call.
+ * Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/20/14
+ * @see ValidConnectionDataSource
+ */
+public class LockFreePooledDataSource extends AbstractDbcpMimicringDataSource {
+    private static final Logger logger = LoggerFactory.getLogger(LockFreePooledDataSource.class);
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AtomicReference<Node> head = new AtomicReference<Node>();
+    private final Queue<Entry> registry = new ConcurrentLinkedQueue<Entry>();
+    private final AtomicInteger total = new AtomicInteger();
+    private final ThreadLocal<WeakReference<Entry>> affine = new ThreadLocal<WeakReference<Entry>>();
+    private volatile boolean closed = false;
+    private volatile ScheduledFuture<?> validationFuture;
+    private ScheduledExecutorService ownExecutor;
+
+    private int maxActive = 8;
+    private long maxWaitMillis = 30000;
+    private long validationIntervalMillis = 30000;
+    private int validationTimeoutSeconds = 5;
+    private ScheduledExecutorService validationExecutor;
+
+    /**
+     * @param maxActive max count of physical connections in pool, {@code 8} by default
+     */
+    @Override
+    public void setMaxActive(int maxActive) {
+        checkArgument(maxActive > 0, "Max active must be positive, but was: '%s'", maxActive);
+        this.maxActive = maxActive;
+    }
+
+    /**
+     * @param maxWaitMillis max time to wait for connection on exhausted pool, {@code 30000} by default
+     */
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        checkArgument(maxWaitMillis >= 0, "Max wait must be non negative, but was: '%s'", maxWaitMillis);
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * @param validationIntervalMillis idle time after which connection is validated in background,
+     *                                 also used as validation period, {@code 30000} by default
+     */
+    public void setValidationIntervalMillis(long validationIntervalMillis) {
+        checkArgument(validationIntervalMillis > 0, "Validation interval must be positive, but was: '%s'", validationIntervalMillis);
+        this.validationIntervalMillis = validationIntervalMillis;
+    }
+
+    /**
+     * @param validationTimeoutSeconds timeout to wait for on validness check, {@code 5} by default
+     */
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        checkArgument(validationTimeoutSeconds >= 0, "Validation timeout must be non negative, but was: '%s'", validationTimeoutSeconds);
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    /**
+     * @param validationExecutor executor to run background validation in, single daemon thread
+     *                           executor will be created (and shutted down on close) if not set
+     */
+    public void setValidationExecutor(ScheduledExecutorService validationExecutor) {
+        checkNotNull(validationExecutor, "Provided executor is null");
+        this.validationExecutor = validationExecutor;
+    }
+
+    /**
+     * @return pooled connection, returned to pool on close
+     * @throws SQLException on connection opening error or on wait timeout
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if(closed) throw new SQLException("Data source is closed: '" + this + "'");
+        if(null == validationFuture) startValidation();
+        Entry en = borrow();
+        affine.set(en.ref);
+        return (Connection) Proxy.newProxyInstance(LockFreePooledDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(en));
+    }
+
+    /**
+     * @return count of physical connections in pool
+     */
+    public int getTotalCount() {
+        return total.get();
+    }
+
+    /**
+     * @return count of idle connections in pool
+     */
+    public int getIdleCount() {
+        int res = 0;
+        for(Entry en : registry) {
+            if(Entry.IDLE == en.state.get()) res += 1;
+        }
+        return res;
+    }
+
+    /**
+     * Stops background validation and closes idle connections,
+     * borrowed connections will be closed on return
+     */
+    @Override
+    public void close() {
+        closed = true;
+        ScheduledFuture<?> fu = validationFuture;
+        if(null != fu) fu.cancel(false);
+        synchronized(this) {
+            if(null != ownExecutor) ownExecutor.shutdownNow();
+        }
+        for(Entry en : registry) {
+            if(en.state.compareAndSet(Entry.IDLE, Entry.BORROWED)) discard(en);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).
+                append("url", url).
+                append("username", username).
+                append("maxActive", maxActive).
+                append("total", total.get()).
+                toString();
+    }
+
+    private Entry borrow() throws SQLException {
+        // thread affine connection first
+        WeakReference<Entry> ref = affine.get();
+        if(null != ref) {
+            Entry cached = ref.get();
+            if(null != cached && cached.state.compareAndSet(Entry.IDLE, Entry.BORROWED)) return cached;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        long parkNanos = 1000;
+        for(;;) {
+            Entry en = pop();
+            if(null != en) return en;
+            en = create();
+            if(null != en) return en;
+            long left = deadline - System.nanoTime();
+            if(left <= 0) throw new SQLException("Timeout on waiting for connection, maxWaitMillis: '" +
+                    maxWaitMillis + "', data source: '" + this + "'");
+            if(closed) throw new SQLException("Data source is closed: '" + this + "'");
+            LockSupport.parkNanos(Math.min(parkNanos, left));
+            parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+        }
+    }
+
+    // entries claimed through thread local leave stale nodes in stack, they are skipped here
+    private Entry pop() {
+        for(;;) {
+            Node top = head.get();
+            if(null == top) return null;
+            if(!head.compareAndSet(top, top.next)) continue;
+            Entry en = top.entry;
+            en.stacked.set(false);
+            if(en.state.compareAndSet(Entry.IDLE, Entry.BORROWED)) return en;
+        }
+    }
+
+    private void push(Entry en) {
+        if(!en.stacked.compareAndSet(false, true)) return;
+        Node node = new Node(en);
+        for(;;) {
+            Node top = head.get();
+            node.next = top;
+            if(head.compareAndSet(top, node)) return;
+        }
+    }
+
+    private Entry create() throws SQLException {
+        for(;;) {
+            int cur = total.get();
+            if(cur >= maxActive) return null;
+            if(total.compareAndSet(cur, cur + 1)) break;
+        }
+        Connection conn = null;
+        try {
+            conn = DriverManager.getConnection(url, username, password);
+            Entry en = new Entry(conn);
+            registry.add(en);
+            return en;
+        } catch(SQLException e) {
+            total.decrementAndGet();
+            CtzIOUtils.closeQuietly(conn);
+            throw e;
+        } catch(RuntimeException e) {
+            total.decrementAndGet();
+            CtzIOUtils.closeQuietly(conn);
+            throw e;
+        }
+    }
+
+    private void release(Entry en) {
+        if(closed || en.broken) {
+            discard(en);
+            return;
+        }
+        try {
+            reset(en);
+        } catch(SQLException e) {
+            discard(en);
+            return;
+        } catch(RuntimeException e) {
+            discard(en);
+            return;
+        }
+        en.lastUsed = System.currentTimeMillis();
+        en.state.set(Entry.IDLE);
+        push(en);
+    }
+
+    // auto-commit is restored last, so it won't commit anything,
+    // read-only and isolation are restored only if setters were called to save round-trips
+    private void reset(Entry en) throws SQLException {
+        Connection conn = en.conn;
+        boolean autoCommit = conn.getAutoCommit();
+        if(!autoCommit) conn.rollback();
+        if(en.settingsChanged) {
+            if(conn.isReadOnly() != en.readOnly) conn.setReadOnly(en.readOnly);
+            if(conn.getTransactionIsolation() != en.isolation) conn.setTransactionIsolation(en.isolation);
+            en.settingsChanged = false;
+        }
+        if(autoCommit != en.autoCommit) conn.setAutoCommit(en.autoCommit);
+    }
+
+    private void discard(Entry en) {
+        en.state.set(Entry.REMOVED);
+        registry.remove(en);
+        total.decrementAndGet();
+        CtzIOUtils.closeQuietly(en.conn);
+    }
+
+    private synchronized void startValidation() {
+        if(null != validationFuture) return;
+        ScheduledExecutorService exec = validationExecutor;
+        if(null == exec) {
+            ownExecutor = Executors.newSingleThreadScheduledExecutor(new ExecutorThreadFactory("LockFreePooledDataSource"));
+            exec = ownExecutor;
+        }
+        validationFuture = exec.scheduleWithFixedDelay(new Validator(), validationIntervalMillis,
+                validationIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private class Validator implements Runnable {
+        @Override
+        public void run() {
+            long threshold = System.currentTimeMillis() - validationIntervalMillis;
+            for(Entry en : registry) {
+                if(en.lastUsed > threshold) continue;
+                // reserve idle connection, so it won't be borrowed during validation
+                if(!en.state.compareAndSet(Entry.IDLE, Entry.BORROWED)) continue;
+                boolean valid;
+                try {
+                    valid = en.conn.isValid(validationTimeoutSeconds);
+                } catch(Throwable e) {
+                    // any error escaped from run() will cancel scheduled validation
+                    logger.warn("Connection validation error, connection: [" + en.conn + "]", e);
+                    valid = false;
+                }
+                if(valid) release(en);
+                else discard(en);
+            }
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+        private final Entry entry;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private ConnectionHandler(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if("equals".equals(name)) return proxy == args[0];
+            if("hashCode".equals(name)) return System.identityHashCode(proxy);
+            if("toString".equals(name)) return "Pooled" + entry.conn;
+            if("isClosed".equals(name) && released.get()) return true;
+            if("close".equals(name)) {
+                if(released.compareAndSet(false, true)) release(entry);
+                return null;
+            }
+            if(released.get()) throw new SQLException("Connection is closed");
+            if("setReadOnly".equals(name) || "setTransactionIsolation".equals(name)) entry.settingsChanged = true;
+            try {
+                return method.invoke(entry.conn, args);
+            } catch(InvocationTargetException e) {
+                Throwable target = e.getTargetException();
+                if(target instanceof SQLException) {
+                    String state = ((SQLException) target).getSQLState();
+                    if(null != state && state.startsWith("08")) entry.broken = true;
+                }
+                throw target;
+            }
+        }
+    }
+
+    private static class Entry {
+        private static final int IDLE = 0;
+        private static final int BORROWED = 1;
+        private static final int REMOVED = 2;
+
+        private final Connection conn;
+        // connection settings on creation, restored on return
+        private final boolean autoCommit;
+        private final boolean readOnly;
+        private final int isolation;
+        private final AtomicInteger state = new AtomicInteger(BORROWED);
+        // whether entry has a node in idle stack
+        private final AtomicBoolean stacked = new AtomicBoolean(false);
+        private final WeakReference<Entry> ref = new WeakReference<Entry>(this);
+        private volatile long lastUsed = System.currentTimeMillis();
+        private volatile boolean broken = false;
+        private volatile boolean settingsChanged = false;
+
+        private Entry(Connection conn) throws SQLException {
+            this.conn = conn;
+            this.autoCommit = conn.getAutoCommit();
+            this.readOnly = conn.isReadOnly();
+            this.isolation = conn.getTransactionIsolation();
+        }
+    }
+
+    private static class Node {
+        private final Entry entry;
+        private Node next;
+
+        private Node(Entry entry) {
+            this.entry = entry;
+        }
+    }
+}
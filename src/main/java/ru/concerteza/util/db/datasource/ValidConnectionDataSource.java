@@ -11,11 +11,15 @@ import java.sql.SQLException;
 /**
  * {@link DataSource} implementation, uses JDBC4 {@code java.sql.Connection#isValid()} method
  * to check connection state before its returning from the pool.
+ * Consider using {@link LockFreePooledDataSource} that validates idle connections in background
+ * instead of validating them on each borrow.
  *
  * @author alexey
  * Date: 6/13/12
  */
 public class ValidConnectionDataSource extends DataSource {
+    private static final Method BORROW_METHOD = borrowMethod();
+
     private int checkValidTimeoutSeconds = 0;
     private int checkValidCyclesCount = -1;
     private boolean checkValidEnable = true;
@@ -115,11 +119,7 @@ public class ValidConnectionDataSource extends DataSource {
         //            PooledConnection con = borrowConnection(-1,null,null);
         private PooledConnection borrow() {
             try {
-                Method borrow = ConnectionPool.class.getDeclaredMethod("borrowConnection", Integer.TYPE, String.class, String.class);
-                if(!borrow.isAccessible()) borrow.setAccessible(true);
-                return (PooledConnection) borrow.invoke(this, -1, null, null);
-            } catch(NoSuchMethodException e) {
-                throw new UnhandledException(e);
+                return (PooledConnection) BORROW_METHOD.invoke(this, -1, null, null);
             } catch(InvocationTargetException e) {
                 throw new UnhandledException(e);
             } catch(IllegalAccessException e) {
@@ -127,4 +127,15 @@ public class ValidConnectionDataSource extends DataSource {
             }
         }
     }
+
+    // looked up once, not on each borrow
+    private static Method borrowMethod() {
+        try {
+            Method res = ConnectionPool.class.getDeclaredMethod("borrowConnection", Integer.TYPE, String.class, String.class);
+            res.setAccessible(true);
+            return res;
+        } catch(NoSuchMethodException e) {
+            throw new UnhandledException(e);
+        }
+    }
 }
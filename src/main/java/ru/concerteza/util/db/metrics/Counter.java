@@ -0,0 +1,20 @@
+package ru.concerteza.util.db.metrics;
+
+/**
+ * Monotonically increasing counter, implementations must be thread-safe
+ *
+ * @author alexkasko
+ * Date: 12/22/14
+ */
+public interface Counter {
+
+    /**
+     * @param delta value to add to counter
+     */
+    void inc(long delta);
+
+    /**
+     * @return current counter value
+     */
+    long getCount();
+}
@@ -0,0 +1,15 @@
+package ru.concerteza.util.db.metrics;
+
+/**
+ * Instant value, that is read on snapshot, implementations must be thread-safe
+ *
+ * @author alexkasko
+ * Date: 12/22/14
+ */
+public interface Gauge {
+
+    /**
+     * @return current value
+     */
+    long getValue();
+}
@@ -0,0 +1,15 @@
+package ru.concerteza.util.db.metrics;
+
+/**
+ * Distribution of values (latencies, sizes), implementations must be thread-safe
+ *
+ * @author alexkasko
+ * Date: 12/22/14
+ */
+public interface Histogram {
+
+    /**
+     * @param value value to add to distribution
+     */
+    void update(long value);
+}
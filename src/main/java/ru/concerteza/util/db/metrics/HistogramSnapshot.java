@@ -0,0 +1,92 @@
+package ru.concerteza.util.db.metrics;
+
+/**
+ * Histogram values at some point in time, percentiles are approximate. Immutable.
+ *
+ * @author alexkasko
+ * Date: 12/22/14
+ */
+public class HistogramSnapshot {
+    private final long count;
+    private final long min;
+    private final long max;
+    private final double mean;
+    private final long p50;
+    private final long p95;
+    private final long p99;
+
+    HistogramSnapshot(long count, long min, long max, double mean, long p50, long p95, long p99) {
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
+    }
+
+    /**
+     * @return count of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return min value
+     */
+    public long getMin() {
+        return min;
+    }
+
+    /**
+     * @return max value
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return mean value
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * @return median
+     */
+    public long getP50() {
+        return p50;
+    }
+
+    /**
+     * @return 95th percentile
+     */
+    public long getP95() {
+        return p95;
+    }
+
+    /**
+     * @return 99th percentile
+     */
+    public long getP99() {
+        return p99;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("count=").append(count);
+        sb.append(", min=").append(min);
+        sb.append(", max=").append(max);
+        sb.append(", mean=").append(String.format("%.2f", mean));
+        sb.append(", p50=").append(p50);
+        sb.append(", p95=").append(p95);
+        sb.append(", p99=").append(p99);
+        return sb.toString();
+    }
+}
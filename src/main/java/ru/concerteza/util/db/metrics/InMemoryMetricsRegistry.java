@@ -0,0 +1,172 @@
+package ru.concerteza.util.db.metrics;
+
+import com.google.common.collect.ImmutableSortedMap;
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+
+/**
+ * In-process metrics registry. Counters are atomic longs, histograms keep counts in power-of-two buckets
+ * (updates are lock-free, percentiles are interpolated inside buckets), gauges are read on snapshot.
+ * Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/22/14
+ * @see MetricsReporter
+ */
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+    private final ConcurrentMap<String, AtomicCounter> counters = new ConcurrentHashMap<String, AtomicCounter>();
+    private final ConcurrentMap<String, BucketHistogram> histograms = new ConcurrentHashMap<String, BucketHistogram>();
+    private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<String, Gauge>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Counter counter(String name) {
+        checkArgument(isNotBlank(name), "Provided name is blank");
+        AtomicCounter existed = counters.get(name);
+        if(null != existed) return existed;
+        AtomicCounter created = new AtomicCounter();
+        existed = counters.putIfAbsent(name, created);
+        return null != existed ? existed : created;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Histogram histogram(String name) {
+        checkArgument(isNotBlank(name), "Provided name is blank");
+        BucketHistogram existed = histograms.get(name);
+        if(null != existed) return existed;
+        BucketHistogram created = new BucketHistogram();
+        existed = histograms.putIfAbsent(name, created);
+        return null != existed ? existed : created;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void gauge(String name, Gauge gauge) {
+        checkArgument(isNotBlank(name), "Provided name is blank");
+        checkNotNull(gauge, "Provided gauge is null");
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Collects current values of all metrics, concurrent updates may be partially included
+     *
+     * @return metrics snapshot
+     */
+    public MetricsSnapshot snapshot() {
+        ImmutableSortedMap.Builder<String, Long> co = ImmutableSortedMap.naturalOrder();
+        for(Map.Entry<String, AtomicCounter> en : counters.entrySet()) co.put(en.getKey(), en.getValue().getCount());
+        ImmutableSortedMap.Builder<String, Long> ga = ImmutableSortedMap.naturalOrder();
+        for(Map.Entry<String, Gauge> en : gauges.entrySet()) ga.put(en.getKey(), en.getValue().getValue());
+        ImmutableSortedMap.Builder<String, HistogramSnapshot> hi = ImmutableSortedMap.naturalOrder();
+        for(Map.Entry<String, BucketHistogram> en : histograms.entrySet()) hi.put(en.getKey(), en.getValue().snapshot());
+        return new MetricsSnapshot(System.currentTimeMillis(), co.build(), ga.build(), hi.build());
+    }
+
+    /**
+     * Removes all registered metrics
+     */
+    public void clear() {
+        counters.clear();
+        histograms.clear();
+        gauges.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("counters", counters.keySet()).
+                append("histograms", histograms.keySet()).
+                append("gauges", gauges.keySet()).
+                toString();
+    }
+
+    private static class AtomicCounter implements Counter {
+        private final AtomicLong count = new AtomicLong();
+
+        @Override
+        public void inc(long delta) {
+            count.addAndGet(delta);
+        }
+
+        @Override
+        public long getCount() {
+            return count.get();
+        }
+    }
+
+    // bucket 0 holds zeros, bucket i holds values from [2^(i-1), 2^i - 1]
+    private static class BucketHistogram implements Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+        @Override
+        public void update(long value) {
+            long val = Math.max(value, 0);
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(val));
+            count.incrementAndGet();
+            sum.addAndGet(val);
+            for(;;) {
+                long cur = min.get();
+                if(val >= cur || min.compareAndSet(cur, val)) break;
+            }
+            for(;;) {
+                long cur = max.get();
+                if(val <= cur || max.compareAndSet(cur, val)) break;
+            }
+        }
+
+        private HistogramSnapshot snapshot() {
+            long[] counts = new long[buckets.length()];
+            long total = 0;
+            for(int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            if(0 == total) return new HistogramSnapshot(0, 0, 0, 0, 0, 0, 0);
+            long mi = min.get();
+            long ma = max.get();
+            double mean = (double) sum.get() / count.get();
+            return new HistogramSnapshot(total, mi, ma, mean, percentile(counts, total, 0.5, mi, ma),
+                    percentile(counts, total, 0.95, mi, ma), percentile(counts, total, 0.99, mi, ma));
+        }
+
+        private static long percentile(long[] counts, long total, double quantile, long min, long max) {
+            double rank = quantile * total;
+            long cumulative = 0;
+            for(int i = 0; i < counts.length; i++) {
+                if(0 == counts[i]) continue;
+                if(cumulative + counts[i] >= rank) {
+                    long lower = 0 == i ? 0 : 1L << (i - 1);
+                    long upper = 0 == i ? 0 : (1L << i) - 1;
+                    double fraction = (rank - cumulative) / counts[i];
+                    long res = lower + (long) ((upper - lower) * fraction);
+                    return Math.min(Math.max(res, min), max);
+                }
+                cumulative += counts[i];
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package ru.concerteza.util.db.metrics;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+
+/**
+ * Data source wrapper, that records connection and statement metrics into provided registry.
+ * Connections, statements and result sets are wrapped with {@link Proxy}s. Metrics names start with
+ * provided prefix:
+ * <ul>
+ *     <li>{@code prefix.borrow.micros} histogram: connection borrow (pool wait) time</li>
+ *     <li>{@code prefix.borrow.failures} counter: failed borrows</li>
+ *     <li>{@code prefix.hold.millis} histogram: time from borrow to connection close</li>
+ *     <li>{@code prefix.active} gauge: borrowed connections count</li>
+ *     <li>{@code prefix.statement.micros} histogram: {@code execute*} methods latency</li>
+ *     <li>{@code prefix.statement.failures} counter: failed {@code execute*} calls</li>
+ *     <li>{@code prefix.rows} counter: total rows fetched from result sets</li>
+ *     <li>{@code prefix.query.rows} histogram: rows fetched per result set,
+ *     recorded on result set or statement close</li>
+ * </ul>
+ * Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/22/14
+ */
+public class MetricsDataSource implements DataSource {
+    private static final ClassLoader CL = MetricsDataSource.class.getClassLoader();
+
+    private final DataSource target;
+    private final String prefix;
+    private final AtomicInteger active = new AtomicInteger();
+    private final Histogram borrowMicros;
+    private final Counter borrowFailures;
+    private final Histogram holdMillis;
+    private final Histogram statementMicros;
+    private final Counter statementFailures;
+    private final Counter rows;
+    private final Histogram queryRows;
+
+    /**
+     * @param target target data source
+     * @param registry metrics registry
+     * @param prefix metrics names prefix
+     */
+    public MetricsDataSource(DataSource target, MetricsRegistry registry, String prefix) {
+        checkNotNull(target, "Provided data source is null");
+        checkNotNull(registry, "Provided registry is null");
+        checkArgument(isNotBlank(prefix), "Provided prefix is blank");
+        this.target = target;
+        this.prefix = prefix;
+        this.borrowMicros = registry.histogram(prefix + ".borrow.micros");
+        this.borrowFailures = registry.counter(prefix + ".borrow.failures");
+        this.holdMillis = registry.histogram(prefix + ".hold.millis");
+        this.statementMicros = registry.histogram(prefix + ".statement.micros");
+        this.statementFailures = registry.counter(prefix + ".statement.failures");
+        this.rows = registry.counter(prefix + ".rows");
+        this.queryRows = registry.histogram(prefix + ".query.rows");
+        registry.gauge(prefix + ".active", new ActiveGauge());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return wrap(target.getConnection(), start);
+        } catch(SQLException e) {
+            borrowFailures.inc(1);
+            throw e;
+        } catch(RuntimeException e) {
+            borrowFailures.inc(1);
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return wrap(target.getConnection(username, password), start);
+        } catch(SQLException e) {
+            borrowFailures.inc(1);
+            throw e;
+        } catch(RuntimeException e) {
+            borrowFailures.inc(1);
+            throw e;
+        }
+    }
+
+    /**
+     * @return target data source
+     */
+    public DataSource getTarget() {
+        return target;
+    }
+
+    private Connection wrap(Connection conn, long start) {
+        long now = System.nanoTime();
+        borrowMicros.update((now - start) / 1000);
+        active.incrementAndGet();
+        return (Connection) Proxy.newProxyInstance(CL, new Class<?>[]{Connection.class}, new ConnectionHandler(conn, now));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return target.getLogWriter();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        target.setLogWriter(out);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        target.setLoginTimeout(seconds);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return target.getLoginTimeout();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if(iface.isInstance(this)) return iface.cast(this);
+        return target.unwrap(iface);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || target.isWrapperFor(iface);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("target", target).
+                append("prefix", prefix).
+                append("active", active.get()).
+                toString();
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch(InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private class ActiveGauge implements Gauge {
+        @Override
+        public long getValue() {
+            return active.get();
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+        private final Connection conn;
+        private final long start;
+        private boolean closed = false;
+
+        private ConnectionHandler(Connection conn, long start) {
+            this.conn = conn;
+            this.start = start;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if("equals".equals(name)) return proxy == args[0];
+            if("hashCode".equals(name)) return System.identityHashCode(proxy);
+            if("close".equals(name)) {
+                synchronized(this) {
+                    if(!closed) {
+                        closed = true;
+                        active.decrementAndGet();
+                        holdMillis.update((System.nanoTime() - start) / 1000000);
+                    }
+                }
+            }
+            Object res = MetricsDataSource.invoke(conn, method, args);
+            if(res instanceof Statement && ("createStatement".equals(name) ||
+                    "prepareStatement".equals(name) || "prepareCall".equals(name))) {
+                return Proxy.newProxyInstance(CL, new Class<?>[]{method.getReturnType()},
+                        new StatementHandler((Statement) res, (Connection) proxy));
+            }
+            return res;
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+        private final Statement stmt;
+        private final Connection connProxy;
+        // last opened result set, is flushed on statement close
+        private ResultSetHandler current;
+
+        private StatementHandler(Statement stmt, Connection connProxy) {
+            this.stmt = stmt;
+            this.connProxy = connProxy;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if("equals".equals(name)) return proxy == args[0];
+            if("hashCode".equals(name)) return System.identityHashCode(proxy);
+            if("getConnection".equals(name)) return connProxy;
+            if("close".equals(name)) flushCurrent();
+            final Object res;
+            if(name.startsWith("execute")) {
+                long start = System.nanoTime();
+                try {
+                    res = MetricsDataSource.invoke(stmt, method, args);
+                } catch(Throwable e) {
+                    statementFailures.inc(1);
+                    throw e;
+                } finally {
+                    statementMicros.update((System.nanoTime() - start) / 1000);
+                }
+            } else res = MetricsDataSource.invoke(stmt, method, args);
+            if(res instanceof ResultSet && ("executeQuery".equals(name) || "getResultSet".equals(name))) {
+                flushCurrent();
+                current = new ResultSetHandler((ResultSet) res);
+                return Proxy.newProxyInstance(CL, new Class<?>[]{ResultSet.class}, current);
+            }
+            return res;
+        }
+
+        private void flushCurrent() {
+            if(null != current) {
+                current.flush();
+                current = null;
+            }
+        }
+    }
+
+    private class ResultSetHandler implements InvocationHandler {
+        private final ResultSet rs;
+        private long count = 0;
+        private boolean flushed = false;
+
+        private ResultSetHandler(ResultSet rs) {
+            this.rs = rs;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if("equals".equals(name)) return proxy == args[0];
+            if("hashCode".equals(name)) return System.identityHashCode(proxy);
+            if("close".equals(name)) flush();
+            Object res = MetricsDataSource.invoke(rs, method, args);
+            if("next".equals(name) && Boolean.TRUE.equals(res)) count += 1;
+            return res;
+        }
+
+        // result set is used by single thread
+        private void flush() {
+            if(flushed) return;
+            flushed = true;
+            rows.inc(count);
+            queryRows.update(count);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ru.concerteza.util.db.metrics;
+
+/**
+ * Metrics SPI, implementations may keep metrics in memory (see {@link InMemoryMetricsRegistry})
+ * or may forward them into external monitoring system. Metrics with the same name
+ * must be returned for repeated calls. Implementations must be thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/22/14
+ * @see MetricsDataSource
+ */
+public interface MetricsRegistry {
+
+    /**
+     * @param name metric name
+     * @return counter registered with specified name
+     */
+    Counter counter(String name);
+
+    /**
+     * @param name metric name
+     * @return histogram registered with specified name
+     */
+    Histogram histogram(String name);
+
+    /**
+     * Registers gauge, previously registered gauge with the same name is replaced
+     *
+     * @param name metric name
+     * @param gauge gauge
+     */
+    void gauge(String name, Gauge gauge);
+}
@@ -0,0 +1,60 @@
+package ru.concerteza.util.db.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Periodically dumps snapshots of in-process registry into log with {@code INFO} level
+ *
+ * @author alexkasko
+ * Date: 12/22/14
+ */
+public class MetricsReporter {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsReporter.class);
+
+    private final InMemoryMetricsRegistry registry;
+    private final ScheduledFuture<?> future;
+
+    /**
+     * @param registry registry to dump
+     * @param executor executor to run dumps in
+     * @param periodMillis dump period in milliseconds
+     */
+    public MetricsReporter(InMemoryMetricsRegistry registry, ScheduledExecutorService executor, long periodMillis) {
+        checkNotNull(registry, "Provided registry is null");
+        checkNotNull(executor, "Provided executor is null");
+        checkArgument(periodMillis > 0, "Period must be positive, but was: '%s'", periodMillis);
+        this.registry = registry;
+        this.future = executor.scheduleAtFixedRate(new Dumper(), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops periodic dumps and dumps last snapshot
+     */
+    public void close() {
+        future.cancel(false);
+        dump();
+    }
+
+    private void dump() {
+        if(logger.isInfoEnabled()) logger.info(registry.snapshot().toString());
+    }
+
+    private class Dumper implements Runnable {
+        @Override
+        public void run() {
+            try {
+                dump();
+            } catch(Exception e) {
+                logger.warn("Error dumping metrics", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ru.concerteza.util.db.metrics;
+
+import java.util.Map;
+
+/**
+ * Metrics values at some point in time, maps are sorted by metric name. Immutable.
+ *
+ * @author alexkasko
+ * Date: 12/22/14
+ * @see InMemoryMetricsRegistry#snapshot()
+ */
+public class MetricsSnapshot {
+    private final long timestamp;
+    private final Map<String, Long> counters;
+    private final Map<String, Long> gauges;
+    private final Map<String, HistogramSnapshot> histograms;
+
+    MetricsSnapshot(long timestamp, Map<String, Long> counters, Map<String, Long> gauges,
+                    Map<String, HistogramSnapshot> histograms) {
+        this.timestamp = timestamp;
+        this.counters = counters;
+        this.gauges = gauges;
+        this.histograms = histograms;
+    }
+
+    /**
+     * @return snapshot time in milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return counters values
+     */
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    /**
+     * @return gauges values
+     */
+    public Map<String, Long> getGauges() {
+        return gauges;
+    }
+
+    /**
+     * @return histograms values
+     */
+    public Map<String, HistogramSnapshot> getHistograms() {
+        return histograms;
+    }
+
+    /**
+     * @return multiline dump, one metric per line
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("MetricsSnapshot{timestamp=").append(timestamp).append('}');
+        for(Map.Entry<String, Long> en : counters.entrySet()) {
+            sb.append("\n  counter ").append(en.getKey()).append(": ").append(en.getValue());
+        }
+        for(Map.Entry<String, Long> en : gauges.entrySet()) {
+            sb.append("\n  gauge ").append(en.getKey()).append(": ").append(en.getValue());
+        }
+        for(Map.Entry<String, HistogramSnapshot> en : histograms.entrySet()) {
+            sb.append("\n  histogram ").append(en.getKey()).append(": ").append(en.getValue());
+        }
+        return sb.toString();
+    }
+}
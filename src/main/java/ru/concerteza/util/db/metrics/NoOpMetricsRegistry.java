@@ -0,0 +1,65 @@
+package ru.concerteza.util.db.metrics;
+
+/**
+ * Metrics registry that discards all values, may be used to disable metrics
+ *
+ * @author alexkasko
+ * Date: 12/22/14
+ */
+public class NoOpMetricsRegistry implements MetricsRegistry, Counter, Histogram {
+    public static final NoOpMetricsRegistry INSTANCE = new NoOpMetricsRegistry();
+
+    /**
+     * Use {@link #INSTANCE}
+     */
+    private NoOpMetricsRegistry() {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Counter counter(String name) {
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Histogram histogram(String name) {
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void gauge(String name, Gauge gauge) {
+        // this method is intentionally left blank
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void inc(long delta) {
+        // this method is intentionally left blank
+    }
+
+    /**
+     * @return zero
+     */
+    @Override
+    public long getCount() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void update(long value) {
+        // this method is intentionally left blank
+    }
+}
@@ -6,6 +6,10 @@ import org.postgresql.copy.CopyManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.concerteza.util.collection.SingleUseIterable;
+import ru.concerteza.util.db.metrics.Counter;
+import ru.concerteza.util.db.metrics.Histogram;
+import ru.concerteza.util.db.metrics.MetricsRegistry;
+import ru.concerteza.util.db.metrics.NoOpMetricsRegistry;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
@@ -14,6 +18,7 @@ import java.sql.Statement;
 import java.util.Iterator;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 import static ru.concerteza.util.db.postgrescopy.PostgresCopyUtils.unwrap;
 import static ru.concerteza.util.io.CtzIOUtils.closeQuietly;
@@ -35,6 +40,9 @@ public class PostgresCopyPersister {
     private final PostgresCopyProvider provider;
     private final Iterator<byte[]> data;
     private final byte[] buffer = new byte[1<<17];
+    private final Counter bytesCounter;
+    private final Counter rowsCounter;
+    private final Histogram copyMillis;
 
     /**
      * Constructor
@@ -44,9 +52,29 @@ public class PostgresCopyPersister {
      * @param data
      */
     public PostgresCopyPersister(DataSource dataSource, PostgresCopyProvider provider, Iterator<byte[]> data) {
+        this(dataSource, provider, data, NoOpMetricsRegistry.INSTANCE, "postgrescopy");
+    }
+
+    /**
+     * Constructor, records {@code prefix.bytes} and {@code prefix.rows} counters
+     * and {@code prefix.millis} copy time histogram
+     *
+     * @param dataSource postgres data source
+     * @param provider contains logic for copying row into copy buffer
+     * @param data rows iterator
+     * @param registry metrics registry
+     * @param prefix metrics names prefix
+     */
+    public PostgresCopyPersister(DataSource dataSource, PostgresCopyProvider provider, Iterator<byte[]> data,
+                                 MetricsRegistry registry, String prefix) {
+        checkNotNull(registry, "Provided registry is null");
+        checkArgument(isNotBlank(prefix), "Provided prefix is blank");
         this.ds = dataSource;
         this.provider = provider;
         this.data = data;
+        this.bytesCounter = registry.counter(prefix + ".bytes");
+        this.rowsCounter = registry.counter(prefix + ".rows");
+        this.copyMillis = registry.histogram(prefix + ".millis");
     }
 
     /**
@@ -77,17 +105,23 @@ public class PostgresCopyPersister {
 
     private void copyData(CopyManager cm, String sql) throws SQLException {
         CopyIn ci = null;
+        long start = System.currentTimeMillis();
         try {
             ci = cm.copyIn(sql);
             ci.writeToCopy(HEADER_BYTES, 0, HEADER_BYTES.length);
             long count = 0;
+            long written = 0;
             for (byte[] input : SingleUseIterable.of(data)) {
                 int len = provider.fillCopyBuf(input, buffer);
                 ci.writeToCopy(buffer, 0, len);
                 count += input.length;
+                written += len;
             }
             ci.writeToCopy(EOF_BYTES, 0, EOF_BYTES.length);
             long rows = ci.endCopy();
+            bytesCounter.inc(written);
+            rowsCounter.inc(rows);
+            copyMillis.update(System.currentTimeMillis() - start);
             logger.debug("Copy stream read, bytes: [{}], rows: [{}]", count, rows);
         } catch (Exception e) {
             if (null != ci && ci.isActive()) {
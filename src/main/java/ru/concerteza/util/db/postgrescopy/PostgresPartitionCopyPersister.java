@@ -12,6 +12,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.concerteza.util.collection.CountingIterator;
 import ru.concerteza.util.collection.SingleUseIterable;
+import ru.concerteza.util.db.metrics.Counter;
+import ru.concerteza.util.db.metrics.Histogram;
+import ru.concerteza.util.db.metrics.MetricsRegistry;
+import ru.concerteza.util.db.metrics.NoOpMetricsRegistry;
 import ru.concerteza.util.db.partition.Partition;
 import ru.concerteza.util.db.partition.PartitionManager;
 
@@ -39,10 +43,31 @@ public class PostgresPartitionCopyPersister {
 
     private final DataSource ds;
     private final PartitionManager pm;
+    private final Counter bytesCounter;
+    private final Counter rowsCounter;
+    private final Histogram copyMillis;
 
     public PostgresPartitionCopyPersister(DataSource ds, PartitionManager pm) {
+        this(ds, pm, NoOpMetricsRegistry.INSTANCE, "postgrescopy");
+    }
+
+    /**
+     * Constructor, records {@code prefix.bytes} and {@code prefix.rows} counters
+     * and {@code prefix.millis} copy time histogram
+     *
+     * @param ds postgres data source
+     * @param pm partition manager
+     * @param registry metrics registry
+     * @param prefix metrics names prefix
+     */
+    public PostgresPartitionCopyPersister(DataSource ds, PartitionManager pm, MetricsRegistry registry, String prefix) {
+        checkNotNull(registry, "Provided registry is null");
+        checkArgument(isNotBlank(prefix), "Provided prefix is blank");
         this.ds = ds;
         this.pm = pm;
+        this.bytesCounter = registry.counter(prefix + ".bytes");
+        this.rowsCounter = registry.counter(prefix + ".rows");
+        this.copyMillis = registry.histogram(prefix + ".millis");
     }
 
     public long persist(PostgresPartitionCopyProvider provider, String sqlTemplate, String table, String uid, Iterator<byte[]> data) {
@@ -50,16 +75,19 @@ public class PostgresPartitionCopyPersister {
         checkNotNull(data, "Provided data iter is null");
         checkNotNull(provider, "Provided copy provider is null");
         Map<String, CopySession> map = new HashMap<String, CopySession>();
+        long start = System.currentTimeMillis();
         try {
             CountingIterator<byte[]> counter = CountingIterator.of(data);
-//            long bytes = 0;
+            long bytes = 0;
             for (byte[] input : SingleUseIterable.of(counter)) {
                 Partition part = pm.ensurePartition(table, provider.date(input), uid);
                 CopySession cs = cs(provider, map, sqlTemplate, part);
-                cs.write(input);
-//                bytes += input.length;
+                bytes += cs.write(input);
             }
             end(map);
+            bytesCounter.inc(bytes);
+            rowsCounter.inc(counter.getCount());
+            copyMillis.update(System.currentTimeMillis() - start);
             return counter.getCount();
         } catch (Exception e) {
             cancel(map);
@@ -109,9 +137,10 @@ public class PostgresPartitionCopyPersister {
             ci.writeToCopy(HEADER_BYTES, 0, HEADER_BYTES.length);
         }
 
-        private void write(byte[] data) throws SQLException {
+        private int write(byte[] data) throws SQLException {
             int len = provider.fillCopyBuf(data, buf);
             ci.writeToCopy(buf, 0, len);
+            return len;
         }
 
         private void begin() throws SQLException {
@@ -7,7 +7,9 @@ import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 
 /**
- * Wrapper for {@code BeanPropertySqlParameterSource}, retains link to original object
+ * Wrapper for {@code BeanPropertySqlParameterSource}, retains link to original object.
+ * Creates new {@code BeanWrapper} for each object, use {@link CompiledParameterSourceFactory#forProperties(Class)}
+ * for bulk operations.
  *
  * @author alexey
  * Date: 9/1/12
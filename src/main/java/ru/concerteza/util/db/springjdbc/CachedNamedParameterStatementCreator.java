@@ -0,0 +1,78 @@
+package ru.concerteza.util.db.springjdbc;
+
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+
+/**
+ * {@code PreparedStatementCreator} implementation for SQL queries with spring-jdbc named parameters,
+ * uses {@link ParsedSqlCache} so the query is parsed and expanded once for each parameters shape.
+ * Collection parameters are supported the same way as in {@code NamedParameterJdbcTemplate}.
+ *
+ * @author alexkasko
+ * Date: 12/14/14
+ */
+public class CachedNamedParameterStatementCreator implements PreparedStatementCreator, SqlProvider {
+    private final ParsedSqlCache cache;
+    private final String sql;
+    private final SqlParameterSource params;
+
+    /**
+     * Constructor using shared cache
+     *
+     * @param sql SQL query with named parameters
+     * @param params parameters source
+     */
+    public CachedNamedParameterStatementCreator(String sql, SqlParameterSource params) {
+        this(ParsedSqlCache.shared(), sql, params);
+    }
+
+    /**
+     * @param cache parsed SQL cache
+     * @param sql SQL query with named parameters
+     * @param params parameters source
+     */
+    public CachedNamedParameterStatementCreator(ParsedSqlCache cache, String sql, SqlParameterSource params) {
+        checkNotNull(cache, "Provided cache is null");
+        checkArgument(isNotBlank(sql), "Provided sql query is blank");
+        checkNotNull(params, "Provided parameters source is null");
+        this.cache = cache;
+        this.sql = sql;
+        this.params = params;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+        ParsedSqlCache.ExpandedSql expanded = cache.expand(sql, params);
+        PreparedStatement ps = con.prepareStatement(expanded.getSql());
+        try {
+            expanded.setValues(ps);
+            return ps;
+        } catch(SQLException e) {
+            ps.close();
+            throw e;
+        } catch(RuntimeException e) {
+            ps.close();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getSql() {
+        return sql;
+    }
+}
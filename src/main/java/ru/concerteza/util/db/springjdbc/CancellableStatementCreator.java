@@ -1,20 +1,14 @@
 package ru.concerteza.util.db.springjdbc;
 
 import org.springframework.jdbc.core.PreparedStatementCreator;
-import org.springframework.jdbc.core.SqlParameter;
-import org.springframework.jdbc.core.namedparam.ParsedSql;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
-import static org.springframework.jdbc.core.StatementCreatorUtils.setParameterValue;
-import static org.springframework.jdbc.core.namedparam.NamedParameterUtils.*;
-
 /**
  * {@code PreparedStatementCreator} implementation, that places created {@link PreparedStatement}
  * into provided {@link AtomicReference} for possible cancellation from other thread.
@@ -59,16 +53,9 @@ public class CancellableStatementCreator implements PreparedStatementCreator {
     public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
         final PreparedStatement stmt;
         if(null != params) {
-            // substitute named params,
+            // substitute named params using cached parsed sql,
             // see NamedParameterJdbcTemplate#getPreparedStatementCreator(String sql, SqlParameterSource paramSource)
-            ParsedSql parsedSql = parseSqlStatement(sql);
-            String sqlToUse = substituteNamedParameters(parsedSql, params);
-            stmt = con.prepareStatement(sqlToUse);
-            Object[] parArray = buildValueArray(parsedSql, params, null);
-            List<SqlParameter> parList = buildSqlParameterList(parsedSql, params);
-            for(int i = 0; i < parArray.length; i++) {
-                setParameterValue(stmt, i + 1, parList.get(i), parArray[i]);
-            }
+            stmt = new CachedNamedParameterStatementCreator(sql, params).createPreparedStatement(con);
         } else stmt = con.prepareStatement(sql);
         stmtRef.set(stmt);
         return stmt;
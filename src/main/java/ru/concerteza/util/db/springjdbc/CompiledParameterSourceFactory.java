@@ -0,0 +1,269 @@
+package ru.concerteza.util.db.springjdbc;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import org.apache.commons.lang.UnhandledException;
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+import org.springframework.beans.BeanUtils;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import ru.concerteza.util.reflect.CtzReflectionUtils;
+
+import javax.annotation.Nullable;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Precompiled factory of {@link SqlParameterSource}s for objects of single class.
+ * Parameter accessors (accessible fields or bean property getters) and SQL types are resolved once per class
+ * and cached globally, produced parameter sources only hold the object and the link to factory,
+ * so no reflective lookups or {@code BeanWrapper} instances are created per object.
+ * Parameter sources retain the link to original object, see {@link CompiledParameterSource#getObject()}.
+ * Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/12/14
+ * @see FieldSqlParameterFunction
+ * @see BeanPropertyMemoSqlParameterSource
+ */
+public class CompiledParameterSourceFactory<T> implements Function<T, SqlParameterSource> {
+    private static final ConcurrentMap<Class<?>, CompiledParameterSourceFactory<?>> FIELDS_CACHE =
+            new ConcurrentHashMap<Class<?>, CompiledParameterSourceFactory<?>>();
+    private static final ConcurrentMap<Class<?>, CompiledParameterSourceFactory<?>> PROPERTIES_CACHE =
+            new ConcurrentHashMap<Class<?>, CompiledParameterSourceFactory<?>>();
+
+    private final Class<T> clazz;
+    private final Map<String, Integer> indexes;
+    private final ValueReader[] readers;
+    private final int[] sqlTypes;
+
+    private CompiledParameterSourceFactory(Class<T> clazz, List<String> names, List<ValueReader> readers, List<Class<?>> types) {
+        this.clazz = clazz;
+        Map<String, Integer> map = new HashMap<String, Integer>(names.size() * 2);
+        for(int i = 0; i < names.size(); i++) {
+            Integer existed = map.put(names.get(i), i);
+            checkArgument(null == existed, "Duplicate parameter name: '%s', class: '%s'", names.get(i), clazz.getName());
+        }
+        this.indexes = map;
+        this.readers = readers.toArray(new ValueReader[readers.size()]);
+        this.sqlTypes = new int[types.size()];
+        for(int i = 0; i < sqlTypes.length; i++) {
+            sqlTypes[i] = StatementCreatorUtils.javaTypeToSqlParameterType(types.get(i));
+        }
+    }
+
+    /**
+     * Returns cached factory, that reads parameters from all non-static fields of the class and its superclasses
+     *
+     * @param clazz objects class
+     * @param <T> objects type
+     * @return factory instance
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompiledParameterSourceFactory<T> forFields(Class<T> clazz) {
+        checkNotNull(clazz, "Provided class is null");
+        CompiledParameterSourceFactory<?> existed = FIELDS_CACHE.get(clazz);
+        if(null != existed) return (CompiledParameterSourceFactory<T>) existed;
+        List<Field> fields = CtzReflectionUtils.collectFields(clazz, NotStaticPredicate.INSTANCE);
+        List<String> names = new ArrayList<String>(fields.size());
+        List<ValueReader> readers = new ArrayList<ValueReader>(fields.size());
+        List<Class<?>> types = new ArrayList<Class<?>>(fields.size());
+        for(Field fi : fields) {
+            names.add(fi.getName());
+            readers.add(new FieldReader(fi));
+            types.add(fi.getType());
+        }
+        CompiledParameterSourceFactory<T> created = new CompiledParameterSourceFactory<T>(clazz, names, readers, types);
+        existed = FIELDS_CACHE.putIfAbsent(clazz, created);
+        return null != existed ? (CompiledParameterSourceFactory<T>) existed : created;
+    }
+
+    /**
+     * Returns cached factory, that reads parameters from all readable bean properties of the class,
+     * the same properties are available in {@link org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource}
+     *
+     * @param clazz objects class
+     * @param <T> objects type
+     * @return factory instance
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompiledParameterSourceFactory<T> forProperties(Class<T> clazz) {
+        checkNotNull(clazz, "Provided class is null");
+        CompiledParameterSourceFactory<?> existed = PROPERTIES_CACHE.get(clazz);
+        if(null != existed) return (CompiledParameterSourceFactory<T>) existed;
+        PropertyDescriptor[] pds = BeanUtils.getPropertyDescriptors(clazz);
+        List<String> names = new ArrayList<String>(pds.length);
+        List<ValueReader> readers = new ArrayList<ValueReader>(pds.length);
+        List<Class<?>> types = new ArrayList<Class<?>>(pds.length);
+        for(PropertyDescriptor pd : pds) {
+            if(null == pd.getReadMethod()) continue;
+            names.add(pd.getName());
+            readers.add(new GetterReader(pd.getReadMethod()));
+            types.add(pd.getPropertyType());
+        }
+        CompiledParameterSourceFactory<T> created = new CompiledParameterSourceFactory<T>(clazz, names, readers, types);
+        existed = PROPERTIES_CACHE.putIfAbsent(clazz, created);
+        return null != existed ? (CompiledParameterSourceFactory<T>) existed : created;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompiledParameterSource<T> apply(@Nullable T input) {
+        return new CompiledParameterSource<T>(this, input);
+    }
+
+    /**
+     * @return objects class
+     */
+    public Class<T> getObjectClass() {
+        return clazz;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).
+                append("clazz", clazz.getName()).
+                append("parameters", indexes.keySet()).
+                toString();
+    }
+
+    private int indexOf(String paramName) {
+        Integer idx = indexes.get(paramName);
+        checkArgument(null != idx, "Key not found: '%s', existed keys: '%s'", paramName, indexes.keySet());
+        return idx;
+    }
+
+    /**
+     * Lightweight parameter source produced by {@link CompiledParameterSourceFactory}
+     *
+     * @param <T> object type
+     */
+    public static class CompiledParameterSource<T> implements SqlParameterSource {
+        private final CompiledParameterSourceFactory<T> factory;
+        private final T object;
+
+        private CompiledParameterSource(CompiledParameterSourceFactory<T> factory, T object) {
+            checkNotNull(object, "Provided object is null");
+            this.factory = factory;
+            this.object = object;
+        }
+
+        /**
+         * @return original object
+         */
+        public T getObject() {
+            return object;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean hasValue(String paramName) {
+            return factory.indexes.containsKey(paramName);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object getValue(String paramName) throws IllegalArgumentException {
+            return factory.readers[factory.indexOf(paramName)].read(object);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getSqlType(String paramName) {
+            return factory.sqlTypes[factory.indexOf(paramName)];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getTypeName(String paramName) {
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).
+                    append("object", object).
+                    toString();
+        }
+    }
+
+    private interface ValueReader {
+        Object read(Object target);
+    }
+
+    private static class FieldReader implements ValueReader {
+        private final Field field;
+
+        private FieldReader(Field field) {
+            if(!field.isAccessible()) field.setAccessible(true);
+            this.field = field;
+        }
+
+        @Override
+        public Object read(Object target) {
+            try {
+                return field.get(target);
+            } catch(IllegalAccessException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+
+    private static class GetterReader implements ValueReader {
+        private static final Object[] NO_ARGS = new Object[0];
+        private final Method getter;
+
+        private GetterReader(Method getter) {
+            if(!getter.isAccessible()) getter.setAccessible(true);
+            this.getter = getter;
+        }
+
+        @Override
+        public Object read(Object target) {
+            try {
+                return getter.invoke(target, NO_ARGS);
+            } catch(IllegalAccessException e) {
+                throw new IllegalArgumentException(e);
+            } catch(InvocationTargetException e) {
+                throw new UnhandledException("Getter invocation error, method: '" + getter + "'", e.getCause());
+            }
+        }
+    }
+
+    private enum NotStaticPredicate implements Predicate<Field> {
+        INSTANCE;
+        @Override
+        public boolean apply(Field input) {
+            return !Modifier.isStatic(input.getModifiers());
+        }
+    }
+}
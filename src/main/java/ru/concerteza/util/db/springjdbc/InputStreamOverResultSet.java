@@ -1,20 +1,18 @@
 package ru.concerteza.util.db.springjdbc;
 
 import org.springframework.jdbc.InvalidResultSetAccessException;
-import ru.concerteza.util.io.ReadableByteArrayOutputStream;
-import ru.concerteza.util.io.RuntimeIOException;
+import ru.concerteza.util.db.springjdbc.rowcodec.RowBuffer;
+import ru.concerteza.util.db.springjdbc.rowcodec.RowEncoder;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.math.BigDecimal;
-import java.sql.*;
-
-import static ru.concerteza.util.db.springjdbc.CtzJdbcUtils.javaClassFromSqlType;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 
 /**
  * {@link InputStream} wrapper for {@link ResultSet}. All column values from all rows are read and serialized
- * using {@link DataOutputStream}. Dates are serialized as strings.
+ * using {@link RowEncoder}, column types are resolved once on creation. Stream may be read back
+ * with {@link ru.concerteza.util.db.springjdbc.rowcodec.RowDecoder}.
  *
  * @author alexey
  * Date: 8/28/12
@@ -22,17 +20,16 @@ import static ru.concerteza.util.db.springjdbc.CtzJdbcUtils.javaClassFromSqlType
  */
 public class InputStreamOverResultSet extends InputStream {
     private final ResultSet rs;
-    private final ResultSetMetaData rsmd;
-    private final ReadableByteArrayOutputStream rbaos;
-    private final DataOutputStream dos;
+    private final RowEncoder encoder;
+    private final RowBuffer buffer;
     private final byte[] single = new byte[1];
 
     public InputStreamOverResultSet(ResultSet rs) {
         try {
             this.rs = rs;
-            this.rsmd = rs.getMetaData();
-            this.rbaos = new ReadableByteArrayOutputStream();
-            this.dos = new DataOutputStream(rbaos);
+            this.encoder = new RowEncoder(rs.getMetaData());
+            this.buffer = new RowBuffer();
+            encoder.writeHeader(buffer);
         } catch(SQLException e) {
             throw new InvalidResultSetAccessException(e);
         }
@@ -53,13 +50,15 @@ public class InputStreamOverResultSet extends InputStream {
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
-        int wasRead = rbaos.read(b, off, len);
+        int wasRead = buffer.read(b, off, len);
         if(wasRead == len) return wasRead;
         try {
             if(-1 == wasRead) wasRead = 0;
             while (rs.next()) {
-                readRow();
-                wasRead += rbaos.read(b, off + wasRead, len - wasRead);
+                // buffer is drained here
+                buffer.reset();
+                encoder.writeRow(rs, buffer);
+                wasRead += buffer.read(b, off + wasRead, len - wasRead);
                 if(wasRead == len) return wasRead;
             }
             return wasRead > 0 ? wasRead : -1;
@@ -68,70 +67,8 @@ public class InputStreamOverResultSet extends InputStream {
         }
     }
 
-    private void readRow() {
-        try {
-            rbaos.reset();
-            for(int i = 1; i <= rsmd.getColumnCount(); i++) {
-                Class<?> clazz = javaClassFromSqlType(rsmd.getColumnType(i));
-                writeFromRs(rs, clazz, i);
-                dos.flush();
-            }
-        } catch(SQLException e) {
-            throw new InvalidResultSetAccessException(e);
-        } catch(IOException e) {
-            throw new RuntimeIOException(e);
-        }
-    }
-
-    private void writeFromRs(ResultSet rs, Class<?> clazz, int ind) throws SQLException, IOException {
-        if(String.class.equals(clazz)) {
-            String data = rs.getString(ind);
-            if(null != data) dos.writeUTF(data);
-        } else if(boolean.class.equals(clazz)) {
-            boolean data = rs.getBoolean(ind);
-            dos.writeBoolean(data);
-        } else if(byte.class.equals(clazz)) {
-            byte data = rs.getByte(ind);
-            dos.writeByte(data);
-        } else if(short.class.equals(clazz)) {
-            short data = rs.getShort(ind);
-            dos.writeShort(data);
-        } else if(int.class.equals(clazz)) {
-            int data = rs.getInt(ind);
-            dos.writeInt(data);
-        } else if(long.class.equals(clazz)) {
-            long data = rs.getLong(ind);
-            dos.writeLong(data);
-        } else if(float.class.equals(clazz)) {
-            float data = rs.getFloat(ind);
-            dos.writeFloat(data);
-        } else if(double.class.equals(clazz)) {
-            double data = rs.getDouble(ind);
-            dos.writeDouble(data);
-        } else if(BigDecimal.class.equals(clazz)) {
-            BigDecimal data = rs.getBigDecimal(ind);
-            double primitive = null != data ? data.doubleValue() : 0;
-            dos.writeDouble(primitive);
-        } else if(byte[].class.equals(clazz)) {
-            byte[] data = rs.getBytes(ind);
-            if(null != data) dos.write(data);
-        } else if(java.sql.Date.class.equals(clazz)) {
-            java.sql.Date data = rs.getDate(ind);
-            if(null != data) dos.writeUTF(data.toString());
-        } else if(Time.class.equals(clazz)) {
-            Time data = rs.getTime(ind);
-            if(null != data) dos.writeUTF(data.toString());
-        } else if(Timestamp.class.equals(clazz)) {
-            Timestamp data = rs.getTimestamp(ind);
-            if(null != data) dos.writeUTF(data.toString());
-        } else {
-            Object data = rs.getObject(ind);
-            if(null != data) dos.writeUTF(data.toString());
-        }
-    }
-
     @Override
     public void close() throws IOException {
-        dos.close();
+        buffer.close();
     }
-}
\ No newline at end of file
+}
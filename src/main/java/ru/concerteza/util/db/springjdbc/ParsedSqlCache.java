@@ -0,0 +1,241 @@
+package ru.concerteza.util.db.springjdbc;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+import static org.springframework.jdbc.core.StatementCreatorUtils.setParameterValue;
+import static org.springframework.jdbc.core.namedparam.NamedParameterUtils.buildSqlParameterList;
+import static org.springframework.jdbc.core.namedparam.NamedParameterUtils.buildValueArray;
+import static org.springframework.jdbc.core.namedparam.NamedParameterUtils.parseSqlStatement;
+import static org.springframework.jdbc.core.namedparam.NamedParameterUtils.substituteNamedParameters;
+
+/**
+ * Bounded LRU cache of parsed SQL queries with spring-jdbc named parameters.
+ * Expanded SQL (with named parameters replaced by placeholders) is cached for each parsed query
+ * per parameters shape: collection parameters are expanded into multiple placeholders, so shape is defined by
+ * collection sizes (and by tuple sizes for collections of arrays). Scalar-only queries have single shape.
+ * Number of shapes cached for one query is limited, expanded SQL is computed without caching for others.
+ * Shared instance may be obtained with {@link #shared()}. Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/14/14
+ * @see CachedNamedParameterStatementCreator
+ */
+public class ParsedSqlCache {
+    private static final int DEFAULT_MAX_SIZE = 1024;
+    private static final int MAX_SHAPES = 64;
+    private static final ParsedSqlCache SHARED = new ParsedSqlCache(DEFAULT_MAX_SIZE);
+
+    private final Cache<String, Entry> cache;
+
+    /**
+     * @param maxSize max count of cached queries
+     */
+    public ParsedSqlCache(int maxSize) {
+        checkArgument(maxSize > 0, "Max size must be positive, but was: '%s'", maxSize);
+        this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).build(new Loader());
+    }
+
+    /**
+     * @return shared cache instance
+     */
+    public static ParsedSqlCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param sql SQL query with named parameters
+     * @return parsed query
+     */
+    public ParsedSql parse(String sql) {
+        checkArgument(isNotBlank(sql), "Provided sql query is blank");
+        return cache.getUnchecked(sql).parsed;
+    }
+
+    /**
+     * Expands named parameters for given parameter source
+     *
+     * @param sql SQL query with named parameters
+     * @param params parameters source
+     * @return expanded query with parameters values in placeholders order
+     */
+    public ExpandedSql expand(String sql, SqlParameterSource params) {
+        checkArgument(isNotBlank(sql), "Provided sql query is blank");
+        checkNotNull(params, "Provided parameters source is null");
+        Entry en = cache.getUnchecked(sql);
+        Object[] values = buildValueArray(en.parsed, params, null);
+        List<SqlParameter> declared = buildSqlParameterList(en.parsed, params);
+        Shape shape = Shape.of(values);
+        String expanded = en.shapes.get(shape);
+        if(null == expanded) {
+            expanded = substituteNamedParameters(en.parsed, params);
+            if(en.shapes.size() < MAX_SHAPES) en.shapes.putIfAbsent(shape, expanded);
+        }
+        return new ExpandedSql(expanded, values, declared);
+    }
+
+    /**
+     * @return count of cached queries
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Clears cache
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("size", cache.size()).
+                toString();
+    }
+
+    /**
+     * Query with named parameters replaced by placeholders
+     */
+    public static class ExpandedSql {
+        private final String sql;
+        private final Object[] values;
+        private final List<SqlParameter> declared;
+
+        private ExpandedSql(String sql, Object[] values, List<SqlParameter> declared) {
+            this.sql = sql;
+            this.values = values;
+            this.declared = declared;
+        }
+
+        /**
+         * @return SQL query with placeholders
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * @return parameters values in named parameters order, may contain collections
+         *         and {@link SqlParameterValue}s
+         */
+        public Object[] getValues() {
+            return values;
+        }
+
+        /**
+         * Sets parameters values to statement expanding collections the same way
+         * {@link org.springframework.jdbc.core.PreparedStatementCreatorFactory} does
+         *
+         * @param ps statement created from {@link #getSql()}
+         * @throws SQLException on parameter setting error
+         */
+        public void setValues(PreparedStatement ps) throws SQLException {
+            int idx = 1;
+            for(int i = 0; i < values.length; i++) {
+                Object in = values[i];
+                SqlParameter param = declared.get(i);
+                if(in instanceof SqlParameterValue) {
+                    param = (SqlParameterValue) in;
+                    in = ((SqlParameterValue) in).getValue();
+                }
+                if(in instanceof Collection && Types.ARRAY != param.getSqlType()) {
+                    for(Object entry : (Collection<?>) in) {
+                        if(entry instanceof Object[]) {
+                            for(Object el : (Object[]) entry) setParameterValue(ps, idx++, param, el);
+                        } else setParameterValue(ps, idx++, param, entry);
+                    }
+                } else setParameterValue(ps, idx++, param, in);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return new ToStringBuilder(this).
+                    append("sql", sql).
+                    append("values", values).
+                    toString();
+        }
+    }
+
+    private static class Entry {
+        private final ParsedSql parsed;
+        private final ConcurrentMap<Shape, String> shapes = new ConcurrentHashMap<Shape, String>();
+
+        private Entry(ParsedSql parsed) {
+            this.parsed = parsed;
+        }
+    }
+
+    // collection and tuple sizes, -1 for scalars
+    private static class Shape {
+        private final int[] sizes;
+        private final int hash;
+
+        private Shape(int[] sizes) {
+            this.sizes = sizes;
+            this.hash = Arrays.hashCode(sizes);
+        }
+
+        private static Shape of(Object[] values) {
+            int[] sizes = new int[values.length * 2];
+            for(int i = 0; i < values.length; i++) {
+                Object val = values[i] instanceof SqlParameterValue ? ((SqlParameterValue) values[i]).getValue() : values[i];
+                if(val instanceof Collection) {
+                    Collection<?> coll = (Collection<?>) val;
+                    sizes[2 * i] = coll.size();
+                    Object first = coll.isEmpty() ? null : coll.iterator().next();
+                    sizes[2 * i + 1] = first instanceof Object[] ? ((Object[]) first).length : -1;
+                } else {
+                    sizes[2 * i] = -1;
+                    sizes[2 * i + 1] = -1;
+                }
+            }
+            return new Shape(sizes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof Shape)) return false;
+            return Arrays.equals(sizes, ((Shape) o).sizes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class Loader extends CacheLoader<String, Entry> {
+        @Override
+        public Entry load(String key) throws Exception {
+            return new Entry(parseSqlStatement(key));
+        }
+    }
+}
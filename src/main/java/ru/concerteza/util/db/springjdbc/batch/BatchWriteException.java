@@ -0,0 +1,34 @@
+package ru.concerteza.util.db.springjdbc.batch;
+
+import org.springframework.dao.DataAccessException;
+
+/**
+ * Exception for errors in batch write sessions, provides count of rows
+ * already committed by successful batches
+ *
+ * @author alexkasko
+ * Date: 12/10/14
+ * @see BatchWriter
+ */
+public class BatchWriteException extends DataAccessException {
+    private static final long serialVersionUID = -3217760947213498713L;
+
+    private final long writtenRows;
+
+    /**
+     * @param msg error message
+     * @param writtenRows count of rows committed before error
+     * @param cause error cause
+     */
+    public BatchWriteException(String msg, long writtenRows, Throwable cause) {
+        super(msg, cause);
+        this.writtenRows = writtenRows;
+    }
+
+    /**
+     * @return count of rows committed before error
+     */
+    public long getWrittenRows() {
+        return writtenRows;
+    }
+}
@@ -0,0 +1,79 @@
+package ru.concerteza.util.db.springjdbc.batch;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+/**
+ * Batch write statistics
+ *
+ * @author alexkasko
+ * Date: 12/10/14
+ * @see BatchWriter
+ */
+public class BatchWriteResult {
+    private final long rows;
+    private final long batches;
+    private final long retries;
+    private final long elapsedMillis;
+
+    /**
+     * @param rows count of written rows
+     * @param batches count of committed batches
+     * @param retries count of batch retries
+     * @param elapsedMillis write time in milliseconds
+     */
+    public BatchWriteResult(long rows, long batches, long retries, long elapsedMillis) {
+        this.rows = rows;
+        this.batches = batches;
+        this.retries = retries;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return count of written rows
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return count of committed batches
+     */
+    public long getBatches() {
+        return batches;
+    }
+
+    /**
+     * @return count of batch retries
+     */
+    public long getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return write time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return write throughput
+     */
+    public double getRowsPerSecond() {
+        return rows * 1000D / Math.max(elapsedMillis, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("rows", rows).
+                append("batches", batches).
+                append("retries", retries).
+                append("elapsedMillis", elapsedMillis).
+                append("rowsPerSecond", (long) getRowsPerSecond()).
+                toString();
+    }
+}
@@ -0,0 +1,246 @@
+package ru.concerteza.util.db.springjdbc.batch;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.concerteza.util.collection.accessor.Accessor;
+import ru.concerteza.util.collection.accessor.RoundRobinAccessor;
+
+import javax.sql.DataSource;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+
+/**
+ * Writes rows from iterator into database using JDBC batches. Rows are read from iterator and converted
+ * into parameter sources (e.g. with {@link ru.concerteza.util.db.springjdbc.FieldSqlParameterFunction})
+ * in the calling thread, each batch is executed in separate transaction ({@code REQUIRES_NEW}) using data source
+ * chosen by accessor. Up to {@code sessions} batches are executed concurrently in provided executor,
+ * iterator reading is suspended while all sessions are busy.
+ * Failed batch is rolled back entirely, transient errors (see {@link TransientDataAccessException}
+ * and {@link RecoverableDataAccessException}) are retried with linear backoff up to {@code maxAttempts} times.
+ * On non-retryable error iterator reading is stopped, running batches are awaited and {@link BatchWriteException}
+ * is thrown, batches committed before it are not rolled back. Thread-safe, writer may be used for multiple
+ * concurrent writes.
+ *
+ * @author alexkasko
+ * Date: 12/10/14
+ * @see BatchWriteResult
+ */
+public class BatchWriter<T> {
+    private static final Log logger = LogFactory.getLog(BatchWriter.class);
+    private static final long DEFAULT_RETRY_DELAY_MILLIS = 100;
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    private final Accessor<? extends DataSource> sources;
+    private final ExecutorService executor;
+    private final String sql;
+    private final Function<? super T, ? extends SqlParameterSource> paramsFun;
+    private final int batchSize;
+    private final int sessions;
+    private final int maxAttempts;
+    private final long retryDelayMillis;
+
+    /**
+     * Constructor for sequential writer, that executes batches in calling thread
+     *
+     * @param ds data source
+     * @param sql insert or update query with named parameters
+     * @param paramsFun function to convert rows into parameter sources
+     * @param batchSize max count of rows in batch
+     */
+    public BatchWriter(DataSource ds, String sql, Function<? super T, ? extends SqlParameterSource> paramsFun, int batchSize) {
+        this(RoundRobinAccessor.of(ImmutableList.of(checkNotNull(ds, "Provided data source is null"))),
+                MoreExecutors.sameThreadExecutor(), sql, paramsFun, batchSize, 1, DEFAULT_MAX_ATTEMPTS, DEFAULT_RETRY_DELAY_MILLIS);
+    }
+
+    /**
+     * @param sources data sources accessor, may contain the same data source multiple times
+     * @param executor executor service to run batches into
+     * @param sql insert or update query with named parameters
+     * @param paramsFun function to convert rows into parameter sources
+     * @param batchSize max count of rows in batch
+     * @param sessions max count of concurrently executed batches
+     * @param maxAttempts max count of attempts for batch failed with transient errors
+     * @param retryDelayMillis delay before first retry, increased linearly with attempt number
+     */
+    public BatchWriter(Accessor<? extends DataSource> sources, ExecutorService executor, String sql,
+                       Function<? super T, ? extends SqlParameterSource> paramsFun, int batchSize, int sessions,
+                       int maxAttempts, long retryDelayMillis) {
+        checkNotNull(sources, "Provided data source accessor is null");
+        checkArgument(sources.size() > 0, "No data sources provided");
+        checkNotNull(executor, "Provided executor is null");
+        checkArgument(isNotBlank(sql), "Provided sql query is blank");
+        checkNotNull(paramsFun, "Provided params function is null");
+        checkArgument(batchSize > 0, "Batch size must be positive, but was: '%s'", batchSize);
+        checkArgument(sessions > 0, "Sessions count must be positive, but was: '%s'", sessions);
+        checkArgument(maxAttempts > 0, "Max attempts must be positive, but was: '%s'", maxAttempts);
+        checkArgument(retryDelayMillis >= 0, "Retry delay must be non negative, but was: '%s'", retryDelayMillis);
+        this.sources = sources;
+        this.executor = executor;
+        this.sql = sql;
+        this.paramsFun = paramsFun;
+        this.batchSize = batchSize;
+        this.sessions = sessions;
+        this.maxAttempts = maxAttempts;
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    /**
+     * Writes all rows from iterator
+     *
+     * @param iter rows iterator
+     * @return write statistics
+     * @throws BatchWriteException on batch error
+     */
+    public BatchWriteResult write(Iterator<? extends T> iter) {
+        checkNotNull(iter, "Provided iterator is null");
+        long start = System.currentTimeMillis();
+        Session session = new Session();
+        long offset = 0;
+        try {
+            while(iter.hasNext() && null == session.error) {
+                SqlParameterSource[] batch = readBatch(iter);
+                session.permits.acquire();
+                if(null != session.error) {
+                    session.permits.release();
+                    break;
+                }
+                try {
+                    executor.execute(new Worker(session, sources.get(), batch, offset));
+                } catch(RejectedExecutionException e) {
+                    session.permits.release();
+                    session.fail(e, offset);
+                }
+                offset += batch.length;
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            session.fail(e, offset);
+        } finally {
+            session.permits.acquireUninterruptibly(sessions);
+        }
+        if(null != session.error) throw new BatchWriteException("Batch write error, failed batch offset: '" +
+                session.errorOffset + "', rows written: '" + session.rows.get() + "', sql: '" + sql + "'",
+                session.rows.get(), session.error);
+        BatchWriteResult res = new BatchWriteResult(session.rows.get(), session.batches.get(), session.retries.get(),
+                System.currentTimeMillis() - start);
+        if(logger.isDebugEnabled()) logger.debug("Batch write finished: [" + res + "], sql: [" + sql + "]");
+        return res;
+    }
+
+    private SqlParameterSource[] readBatch(Iterator<? extends T> iter) {
+        SqlParameterSource[] buf = new SqlParameterSource[batchSize];
+        int size = 0;
+        while(size < batchSize && iter.hasNext()) {
+            buf[size++] = paramsFun.apply(iter.next());
+        }
+        if(size == batchSize) return buf;
+        SqlParameterSource[] res = new SqlParameterSource[size];
+        System.arraycopy(buf, 0, res, 0, size);
+        return res;
+    }
+
+    private static boolean isRetryable(Exception e) {
+        return e instanceof TransientDataAccessException || e instanceof RecoverableDataAccessException;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("BatchWriter");
+        sb.append("{sql='").append(sql).append('\'');
+        sb.append(", batchSize=").append(batchSize);
+        sb.append(", sessions=").append(sessions);
+        sb.append(", maxAttempts=").append(maxAttempts);
+        sb.append(", retryDelayMillis=").append(retryDelayMillis);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    // state of single write call
+    private class Session {
+        private final Semaphore permits = new Semaphore(sessions);
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private volatile Throwable error;
+        private volatile long errorOffset;
+
+        private synchronized void fail(Throwable e, long offset) {
+            if(null != error) return;
+            errorOffset = offset;
+            error = e;
+        }
+    }
+
+    private class Worker implements Runnable, TransactionCallback<int[]> {
+        private final Session session;
+        private final NamedParameterJdbcTemplate jt;
+        private final TransactionTemplate tt;
+        private final SqlParameterSource[] batch;
+        private final long offset;
+
+        private Worker(Session session, DataSource ds, SqlParameterSource[] batch, long offset) {
+            this.session = session;
+            this.jt = new NamedParameterJdbcTemplate(ds);
+            this.tt = new TransactionTemplate(new DataSourceTransactionManager(ds));
+            this.tt.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            this.batch = batch;
+            this.offset = offset;
+        }
+
+        @Override
+        public void run() {
+            try {
+                execute();
+            } catch(Throwable e) { // we do not believe to JDBC drivers' error reporting
+                session.fail(e, offset);
+            } finally {
+                session.permits.release();
+            }
+        }
+
+        @Override
+        public int[] doInTransaction(TransactionStatus status) {
+            return jt.batchUpdate(sql, batch);
+        }
+
+        private void execute() throws InterruptedException {
+            for(int attempt = 1; null == session.error; attempt++) {
+                try {
+                    tt.execute(this);
+                    session.rows.addAndGet(batch.length);
+                    session.batches.incrementAndGet();
+                    return;
+                } catch(RuntimeException e) {
+                    if(!isRetryable(e) || attempt >= maxAttempts) throw e;
+                    logger.warn("Retrying batch, offset: [" + offset + "], size: [" + batch.length + "], " +
+                            "attempt: [" + attempt + "], sql: [" + sql + "]", e);
+                    session.retries.incrementAndGet();
+                    Thread.sleep(retryDelayMillis * attempt);
+                }
+            }
+        }
+    }
+}
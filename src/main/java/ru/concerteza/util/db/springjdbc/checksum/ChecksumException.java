@@ -0,0 +1,22 @@
+package ru.concerteza.util.db.springjdbc.checksum;
+
+import org.springframework.dao.DataAccessException;
+
+/**
+ * Exception for errors in chunk checksum workers
+ *
+ * @author alexkasko
+ * Date: 12/4/14
+ * @see ChunkedChecksumEngine
+ */
+public class ChecksumException extends DataAccessException {
+    private static final long serialVersionUID = 2893604171286012378L;
+
+    /**
+     * @param msg error message
+     * @param cause error cause
+     */
+    public ChecksumException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+}
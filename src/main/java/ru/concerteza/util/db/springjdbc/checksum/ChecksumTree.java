@@ -0,0 +1,139 @@
+package ru.concerteza.util.db.springjdbc.checksum;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.util.encoders.Hex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static ru.concerteza.util.string.CtzConstants.UTF8_CHARSET;
+
+/**
+ * Merkle-style tree of SHA1 digests over key ranges. Leaves hold digests of chunk rows,
+ * inner nodes hold digests of their children digests. Trees built for the same key range
+ * and chunks count have the same shape and may be compared with {@link #diff(ChecksumTree)}. Immutable.
+ *
+ * @author alexkasko
+ * Date: 12/4/14
+ * @see ChunkedChecksumEngine
+ */
+public class ChecksumTree {
+    private static final int FAN_OUT = 2;
+
+    private final KeyRange range;
+    private final String digest;
+    private final List<ChecksumTree> children;
+
+    private ChecksumTree(KeyRange range, String digest, List<ChecksumTree> children) {
+        this.range = range;
+        this.digest = digest;
+        this.children = children;
+    }
+
+    /**
+     * Leaf factory method
+     *
+     * @param range chunk key range
+     * @param digest chunk digest
+     * @return leaf node
+     */
+    public static ChecksumTree leaf(KeyRange range, String digest) {
+        checkNotNull(range, "Provided range is null");
+        checkNotNull(digest, "Provided digest is null");
+        return new ChecksumTree(range, digest, ImmutableList.<ChecksumTree>of());
+    }
+
+    /**
+     * Builds tree bottom-up from leaves
+     *
+     * @param leaves leaves for adjacent ranges in key order
+     * @return tree root
+     */
+    public static ChecksumTree build(List<ChecksumTree> leaves) {
+        checkArgument(leaves.size() > 0, "Provided leaves are empty");
+        List<ChecksumTree> level = leaves;
+        while(level.size() > 1) {
+            List<ChecksumTree> parents = new ArrayList<ChecksumTree>((level.size() + FAN_OUT - 1) / FAN_OUT);
+            for(int i = 0; i < level.size(); i += FAN_OUT) {
+                List<ChecksumTree> group = level.subList(i, Math.min(i + FAN_OUT, level.size()));
+                parents.add(1 == group.size() ? group.get(0) : node(group));
+            }
+            level = parents;
+        }
+        return level.get(0);
+    }
+
+    /**
+     * Finds mismatched leaf ranges descending only into subtrees with different digests
+     *
+     * @param other tree built for the same range and chunks count on another database
+     * @return mismatched ranges in key order, empty list if trees are equal
+     */
+    public List<KeyRange> diff(ChecksumTree other) {
+        checkArgument(range.equals(other.range), "Trees ranges differ, this: '%s', other: '%s'", range, other.range);
+        if(digest.equals(other.digest)) return ImmutableList.of();
+        if(isLeaf() || children.size() != other.children.size()) return ImmutableList.of(range);
+        ImmutableList.Builder<KeyRange> builder = ImmutableList.builder();
+        for(int i = 0; i < children.size(); i++) {
+            builder.addAll(children.get(i).diff(other.children.get(i)));
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return whether this node is a leaf
+     */
+    public boolean isLeaf() {
+        return children.isEmpty();
+    }
+
+    /**
+     * @return key range
+     */
+    public KeyRange getRange() {
+        return range;
+    }
+
+    /**
+     * @return hex encoded SHA1 digest
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    /**
+     * @return children nodes, empty for leaf
+     */
+    public List<ChecksumTree> getChildren() {
+        return children;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("range", range).
+                append("digest", digest).
+                append("childrenCount", children.size()).
+                toString();
+    }
+
+    private static ChecksumTree node(List<ChecksumTree> group) {
+        Digest sha1 = new SHA1Digest();
+        for(ChecksumTree ch : group) {
+            byte[] bytes = ch.digest.getBytes(UTF8_CHARSET);
+            sha1.update(bytes, 0, bytes.length);
+        }
+        byte[] res = new byte[sha1.getDigestSize()];
+        sha1.doFinal(res, 0);
+        KeyRange range = new KeyRange(group.get(0).range.getStart(), group.get(group.size() - 1).range.getEnd());
+        return new ChecksumTree(range, new String(Hex.encode(res), UTF8_CHARSET), ImmutableList.copyOf(group));
+    }
+}
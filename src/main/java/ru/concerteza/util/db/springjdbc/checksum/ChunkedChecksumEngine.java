@@ -0,0 +1,183 @@
+package ru.concerteza.util.db.springjdbc.checksum;
+
+import com.google.common.collect.ImmutableList;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import ru.concerteza.util.collection.accessor.Accessor;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+import static ru.concerteza.util.db.springjdbc.SHA1ResultSetExtractor.SHA1_EXTRACTOR;
+
+/**
+ * Computes table checksums splitting it into numeric key ranges (chunks). Each chunk is hashed
+ * with {@link ru.concerteza.util.db.springjdbc.SHA1ResultSetExtractor} in separate task using provided executor
+ * and data source chosen by accessor, so different chunks are read concurrently through different connections.
+ * Chunk digests are combined into {@link ChecksumTree}. To compare two databases compute trees on both of them
+ * for the same key range and chunks count and use {@link ChecksumTree#diff(ChecksumTree)} to find mismatched
+ * chunks, that may be checked again with smaller chunks. Key ranges of compared tables may differ,
+ * so shared range should be used for both of them (see {@link #diffTable(ChunkedChecksumEngine, String, String, int)}).
+ * Chunk query must contain {@code :start} (inclusive) and {@code :last} (inclusive) or {@code :end} (exclusive)
+ * named parameters and must order rows deterministically, only {@code :last} allows to include {@code Long.MAX_VALUE} key.
+ * All remaining chunk tasks are cancelled on one task error. Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/4/14
+ * @see ChecksumTree
+ */
+public class ChunkedChecksumEngine {
+    public static final String START_PARAM = "start";
+    public static final String END_PARAM = "end";
+    public static final String LAST_PARAM = "last";
+
+    private final Accessor<? extends DataSource> sources;
+    private final ExecutorService executor;
+
+    /**
+     * @param sources data sources accessor, may contain the same data source multiple times
+     * @param executor executor service to run chunk tasks into
+     */
+    public ChunkedChecksumEngine(Accessor<? extends DataSource> sources, ExecutorService executor) {
+        checkNotNull(sources, "Provided data source accessor is null");
+        checkArgument(sources.size() > 0, "No data sources provided");
+        checkNotNull(executor, "Provided executor is null");
+        this.sources = sources;
+        this.executor = executor;
+    }
+
+    /**
+     * Builds chunk query for all table columns ordered by key
+     *
+     * @param table table name
+     * @param keyColumn numeric unique key column name
+     * @return chunk query
+     */
+    public static String rangeSql(String table, String keyColumn) {
+        checkArgument(isNotBlank(table), "Provided table is blank");
+        checkArgument(isNotBlank(keyColumn), "Provided key column is blank");
+        return "select * from " + table + " where " + keyColumn + " >= :" + START_PARAM +
+                " and " + keyColumn + " <= :" + LAST_PARAM + " order by " + keyColumn;
+    }
+
+    /**
+     * Selects key range of the table
+     *
+     * @param table table name
+     * @param keyColumn numeric key column name
+     * @return key range from min key to max key inclusive, empty range for empty table
+     */
+    public KeyRange keyRange(String table, String keyColumn) {
+        checkArgument(isNotBlank(table), "Provided table is blank");
+        checkArgument(isNotBlank(keyColumn), "Provided key column is blank");
+        String sql = "select min(" + keyColumn + ") as min_key, max(" + keyColumn + ") as max_key from " + table;
+        Map<String, Object> map = new JdbcTemplate(sources.get()).queryForMap(sql);
+        Number min = (Number) map.get("min_key");
+        Number max = (Number) map.get("max_key");
+        if(null == min || null == max) return new KeyRange(0, 0);
+        long last = max.longValue();
+        // range ending with max long value includes it
+        return new KeyRange(min.longValue(), Long.MAX_VALUE == last ? last : last + 1);
+    }
+
+    /**
+     * Computes checksum tree for the table in given key range
+     *
+     * @param table table name
+     * @param keyColumn numeric unique key column name
+     * @param range key range, should be the same for all compared tables
+     * @param chunks max chunks count
+     * @return checksum tree
+     */
+    public ChecksumTree checksumTable(String table, String keyColumn, KeyRange range, int chunks) {
+        return checksum(rangeSql(table, keyColumn), range, chunks);
+    }
+
+    /**
+     * Compares table with the same table accessed through other engine. Both tables are split
+     * into chunks over the range, that covers keys of both tables
+     *
+     * @param other engine for the other database
+     * @param table table name
+     * @param keyColumn numeric unique key column name
+     * @param chunks max chunks count
+     * @return mismatched chunks ranges
+     */
+    public List<KeyRange> diffTable(ChunkedChecksumEngine other, String table, String keyColumn, int chunks) {
+        checkNotNull(other, "Provided engine is null");
+        KeyRange range = keyRange(table, keyColumn).span(other.keyRange(table, keyColumn));
+        return checksumTable(table, keyColumn, range, chunks).diff(other.checksumTable(table, keyColumn, range, chunks));
+    }
+
+    /**
+     * Computes checksum tree for given key range
+     *
+     * @param sql chunk query with {@code :start} and {@code :end} parameters
+     * @param range key range
+     * @param chunks max chunks count
+     * @return checksum tree
+     * @throws ChecksumException on chunk task error
+     */
+    public ChecksumTree checksum(String sql, KeyRange range, int chunks) {
+        checkArgument(isNotBlank(sql), "Provided sql query is blank");
+        checkNotNull(range, "Provided range is null");
+        List<KeyRange> ranges = range.split(chunks);
+        List<Future<String>> futures = new ArrayList<Future<String>>(ranges.size());
+        for(KeyRange kr : ranges) {
+            futures.add(executor.submit(new Worker(sources.get(), sql, kr)));
+        }
+        List<ChecksumTree> leaves = new ArrayList<ChecksumTree>(ranges.size());
+        try {
+            for(int i = 0; i < ranges.size(); i++) {
+                leaves.add(ChecksumTree.leaf(ranges.get(i), futures.get(i).get()));
+            }
+        } catch(ExecutionException e) {
+            cancel(futures);
+            throw new ChecksumException("Chunk checksum error, range: '" + range + "', sql: '" + sql + "'", e.getCause());
+        } catch(InterruptedException e) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new ChecksumException("Checksum interrupted, range: '" + range + "', sql: '" + sql + "'", e);
+        }
+        return ChecksumTree.build(ImmutableList.copyOf(leaves));
+    }
+
+    private static void cancel(List<Future<String>> futures) {
+        for(Future<String> fu : futures) fu.cancel(true);
+    }
+
+    private static class Worker implements Callable<String> {
+        private final NamedParameterJdbcTemplate jt;
+        private final String sql;
+        private final SqlParameterSource params;
+
+        private Worker(DataSource ds, String sql, KeyRange range) {
+            this.jt = new NamedParameterJdbcTemplate(ds);
+            this.sql = sql;
+            if(range.isEmpty()) {
+                // matches no keys for both end and last
+                this.params = new MapSqlParameterSource(START_PARAM, 1L).addValue(END_PARAM, 0L).addValue(LAST_PARAM, 0L);
+            } else {
+                this.params = new MapSqlParameterSource(START_PARAM, range.getStart()).
+                        addValue(END_PARAM, range.getEnd()).
+                        addValue(LAST_PARAM, range.getLast());
+            }
+        }
+
+        @Override
+        public String call() throws Exception {
+            return jt.query(sql, params, SHA1_EXTRACTOR);
+        }
+    }
+}
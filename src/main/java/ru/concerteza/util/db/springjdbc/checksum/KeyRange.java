@@ -0,0 +1,123 @@
+package ru.concerteza.util.db.springjdbc.checksum;
+
+import com.google.common.collect.ImmutableList;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Range of numeric key values, start is inclusive, end is exclusive. As a special case non-empty range
+ * ending with {@code Long.MAX_VALUE} includes {@code Long.MAX_VALUE} key, so any key may be covered. Immutable.
+ *
+ * @author alexkasko
+ * Date: 12/4/14
+ * @see ChunkedChecksumEngine
+ */
+public class KeyRange {
+    private final long start;
+    private final long end;
+
+    /**
+     * @param start start key, inclusive
+     * @param end end key, exclusive
+     */
+    public KeyRange(long start, long end) {
+        checkArgument(start <= end, "Invalid range, start: '%s', end: '%s'", start, end);
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Splits range into nearly equal subranges, empty subranges are not created
+     *
+     * @param count max subranges count
+     * @return list of subranges in key order, contains this range if it cannot be split
+     */
+    public List<KeyRange> split(int count) {
+        checkArgument(count > 0, "Split count must be positive, but was: '%s'", count);
+        // size may not fit into long
+        BigInteger size = BigInteger.valueOf(end).subtract(BigInteger.valueOf(start));
+        if(size.compareTo(BigInteger.ONE) <= 0 || 1 == count) return ImmutableList.of(this);
+        int parts = size.min(BigInteger.valueOf(count)).intValue();
+        BigInteger[] sr = size.divideAndRemainder(BigInteger.valueOf(parts));
+        long step = sr[0].longValue();
+        int remainder = sr[1].intValue();
+        ImmutableList.Builder<KeyRange> builder = ImmutableList.builder();
+        long from = start;
+        for(int i = 0; i < parts; i++) {
+            long to = i < parts - 1 ? from + step + (i < remainder ? 1 : 0) : end;
+            builder.add(new KeyRange(from, to));
+            from = to;
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param other another range
+     * @return minimal range that covers both ranges
+     */
+    public KeyRange span(KeyRange other) {
+        if(start == end) return other;
+        if(other.start == other.end) return this;
+        return new KeyRange(Math.min(start, other.start), Math.max(end, other.end));
+    }
+
+    /**
+     * @return whether range contains no keys
+     */
+    public boolean isEmpty() {
+        return start == end;
+    }
+
+    /**
+     * @return last key of non-empty range, inclusive
+     */
+    public long getLast() {
+        checkState(!isEmpty(), "Empty range has no last key: '%s'", this);
+        return Long.MAX_VALUE == end ? end : end - 1;
+    }
+
+    /**
+     * @return start key, inclusive
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return end key, exclusive
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        KeyRange that = (KeyRange) o;
+        return start == that.start && end == that.end;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return 31 * (int) (start ^ (start >>> 32)) + (int) (end ^ (end >>> 32));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + ")";
+    }
+}
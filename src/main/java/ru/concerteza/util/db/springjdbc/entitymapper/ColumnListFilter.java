@@ -58,7 +58,21 @@ public abstract class ColumnListFilter<T> implements EntityFilter {
         return res.build();
     }
 
-    private Object decorateWrapError(String colname, Object value) {
+    /**
+     * @return columns to apply this filter to
+     */
+    List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Applies this filter to single column value, used by {@link FusedFilterChain}
+     *
+     * @param colname column name
+     * @param value in column value
+     * @return out column value
+     */
+    Object decorateWrapError(String colname, Object value) {
         try {
             return filterColumn(colname, value);
         } catch (Exception e) {
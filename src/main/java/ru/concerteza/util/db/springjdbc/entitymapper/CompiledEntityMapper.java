@@ -0,0 +1,209 @@
+package ru.concerteza.util.db.springjdbc.entitymapper;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+import org.apache.commons.lang.UnhandledException;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static ru.concerteza.util.reflect.CtzReflectionUtils.invokeMethod;
+import static ru.concerteza.util.reflect.CtzReflectionUtils.isInner;
+
+/**
+ * Entity mapper implementation for single entity class, that doesn't build intermediate row map.
+ * Column indexes are resolved from {@link ResultSetMetaData} once per result set (column labels are
+ * matched case-insensitively, so {@link EntityFilters#columnsToLower()} is not needed), then fields are
+ * assigned using typed result set getters through cached accessible fields, see {@link FieldAccessor}.
+ * SQL NULLs are allowed for non-primitive fields. Preprocessing filters are compiled into {@link FusedFilterChain}
+ * once per result set: converted columns are read with {@code getObject} and passed through fused steps,
+ * other columns still use typed getters. Column filters reject NULLs in all columns (as {@link ColumnListFilter} does),
+ * so not mapped columns are also read when chain contains column filters. If chain contains filters that cannot be fused, row is read
+ * into reusable per-thread array and is converted to map for them.
+ * Thread-safe, but is the most effective when used from one thread at a time.
+ *
+ * @author alexkasko
+ * Date: 11/28/14
+ * @see EntityMapper#compiledForClass(Class, EntityFilter...)
+ */
+class CompiledEntityMapper<T> extends EntityMapper<T> {
+    private final EntityClass<T> ec;
+    private final Constructor<T> constructor;
+    private final Map<String, FieldAccessor> accessors;
+    private final ThreadLocal<Object[]> rows = new ThreadLocal<Object[]>();
+    private volatile Plan plan = new Plan(null, FusedFilterChain.compile(ImmutableList.<String>of(), ImmutableList.<EntityFilter>of()),
+            new int[0], new FieldAccessor[0], new boolean[0], new boolean[0], new int[0]);
+
+    /**
+     * @param ec entity class
+     */
+    CompiledEntityMapper(EntityClass<T> ec) {
+        if(isInner(ec.getClazz())) throw new IllegalArgumentException(
+                "Inner classes are not supported by compiled mapper, class: '" + ec.getClazz().getName() + "'");
+        this.ec = ec;
+        try {
+            this.constructor = ec.getClazz().getDeclaredConstructor();
+            if(!constructor.isAccessible()) constructor.setAccessible(true);
+        } catch(NoSuchMethodException e) {
+            throw new UnhandledException(e);
+        }
+        Map<String, FieldAccessor> map = new HashMap<String, FieldAccessor>();
+        for(Map.Entry<String, Field> en : ec.getColumnMap().entrySet()) {
+            map.put(en.getKey(), FieldAccessor.forField(en.getValue()));
+        }
+        this.accessors = map;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T mapRow(ResultSet rs, int rowNum) throws SQLException {
+        Plan pl = plan;
+        if(rs != pl.rs.get()) {
+            pl = resolve(rs);
+            plan = pl;
+        }
+        if(pl.chain.hasTail()) return mapRowThroughMap(rs, pl.chain);
+        T res = newInstance();
+        for(int i = 0; i < pl.indexes.length; i++) {
+            int idx = pl.indexes[i];
+            if(pl.converted[i]) {
+                Object val = JdbcUtils.getResultSetValue(rs, idx);
+                pl.accessors[i].assignValue(res, pl.chain.convert(idx - 1, val));
+            } else {
+                pl.accessors[i].assign(res, rs, idx);
+                // convert throws on null for checked columns
+                if(pl.checked[i] && rs.wasNull()) pl.chain.convert(idx - 1, null);
+            }
+        }
+        for(int idx : pl.unmappedChecked) pl.chain.convert(idx - 1, JdbcUtils.getResultSetValue(rs, idx));
+        for(Method me : ec.getPostLoadMethods()) invokeMethod(res, me);
+        return res;
+    }
+
+    /**
+     * Maps data using reflection, the same way as {@link SingleEntityMapper} does,
+     * filters are applied to map one by one
+     *
+     * @param dataMap row data
+     * @return mapped entity
+     */
+    @Override
+    public T map(Map<String, ?> dataMap) {
+        return mapFiltered(ec.applyFilters(dataMap));
+    }
+
+    private T mapRowThroughMap(ResultSet rs, FusedFilterChain chain) throws SQLException {
+        int size = chain.getInputNames().size();
+        Object[] row = rows.get();
+        if(null == row || row.length != size) {
+            row = new Object[size];
+            rows.set(row);
+        }
+        try {
+            for(int i = 0; i < size; i++) row[i] = JdbcUtils.getResultSetValue(rs, i + 1);
+            chain.apply(row);
+            return mapFiltered(chain.toMap(row));
+        } finally {
+            // do not hold row values between calls
+            Arrays.fill(row, null);
+        }
+    }
+
+    private T mapFiltered(Map<String, ?> dataMap) {
+        T res = newInstance();
+        for(Map.Entry<String, FieldAccessor> en : accessors.entrySet()) {
+            if(!dataMap.containsKey(en.getKey())) throw new IllegalArgumentException("Cannot find input value for column: '" +
+                    en.getKey() + "', class: '" + ec.getClazz().getName() + "', dataMap: '" + dataMap + "'");
+            en.getValue().assignValue(res, dataMap.get(en.getKey()));
+        }
+        for(Method me : ec.getPostLoadMethods()) invokeMethod(res, me);
+        return res;
+    }
+
+    private Plan resolve(ResultSet rs) throws SQLException {
+        ResultSetMetaData md = rs.getMetaData();
+        List<String> columns = new ArrayList<String>(md.getColumnCount());
+        for(int i = 1; i <= md.getColumnCount(); i++) columns.add(md.getColumnLabel(i));
+        FusedFilterChain chain = FusedFilterChain.compile(columns, ec.getFilters());
+        // tail filters may rename columns, fields will be resolved by map keys
+        if(chain.hasTail()) return new Plan(rs, chain, new int[0], new FieldAccessor[0], new boolean[0], new boolean[0], new int[0]);
+        Map<String, Integer> labels = new HashMap<String, Integer>();
+        for(int i = 0; i < chain.getNames().size(); i++) {
+            labels.put(chain.getNames().get(i).toLowerCase(Locale.ENGLISH), i + 1);
+        }
+        int[] indexes = new int[accessors.size()];
+        FieldAccessor[] fas = new FieldAccessor[accessors.size()];
+        boolean[] converted = new boolean[accessors.size()];
+        boolean[] checked = new boolean[accessors.size()];
+        Set<Integer> unmapped = new LinkedHashSet<Integer>();
+        for(int j = 1; j <= chain.getNames().size(); j++) {
+            if(chain.isNullChecked(j - 1)) unmapped.add(j);
+        }
+        int i = 0;
+        for(Map.Entry<String, FieldAccessor> en : accessors.entrySet()) {
+            Integer idx = labels.get(en.getKey());
+            if(null == idx) throw new IllegalArgumentException("Cannot find input column: '" + en.getKey() + "', " +
+                    "class: '" + ec.getClazz().getName() + "', columns: '" + labels.keySet() + "'");
+            indexes[i] = idx;
+            fas[i] = en.getValue();
+            converted[i] = chain.isConverted(idx - 1);
+            checked[i] = chain.isNullChecked(idx - 1);
+            unmapped.remove(idx);
+            i += 1;
+        }
+        return new Plan(rs, chain, indexes, fas, converted, checked, Ints.toArray(unmapped));
+    }
+
+    private T newInstance() {
+        try {
+            return constructor.newInstance();
+        } catch(InstantiationException e) {
+            throw new UnhandledException(e);
+        } catch(IllegalAccessException e) {
+            throw new UnhandledException(e);
+        } catch(InvocationTargetException e) {
+            throw new UnhandledException(e);
+        }
+    }
+
+    // column indexes and filters resolved for particular result set
+    private static class Plan {
+        // weak to not prevent closed result set from GC
+        private final WeakReference<ResultSet> rs;
+        private final FusedFilterChain chain;
+        private final int[] indexes;
+        private final FieldAccessor[] accessors;
+        private final boolean[] converted;
+        private final boolean[] checked;
+        // not mapped columns, that must be checked for nulls
+        private final int[] unmappedChecked;
+
+        private Plan(ResultSet rs, FusedFilterChain chain, int[] indexes, FieldAccessor[] accessors, boolean[] converted,
+                     boolean[] checked, int[] unmappedChecked) {
+            this.rs = new WeakReference<ResultSet>(rs);
+            this.chain = chain;
+            this.indexes = indexes;
+            this.accessors = accessors;
+            this.converted = converted;
+            this.checked = checked;
+            this.unmappedChecked = unmappedChecked;
+        }
+    }
+}
@@ -30,6 +30,8 @@ class EntityClass<T> {
     private final Map<String, Field> columnMap;
     private final List<EntityFilter> filters;
     private final List<Method> postLoadMethods;
+    // compiled for the last seen columns list
+    private volatile FusedFilterChain chain;
 
     /**
      * @param clazz class of target entity
@@ -63,6 +65,23 @@ class EntityClass<T> {
         return filters;
     }
 
+    /**
+     * Applies preprocessing filters to row data, filters are fused into {@link FusedFilterChain},
+     * that is compiled on the first call and on row columns change
+     *
+     * @param data row data
+     * @return filtered row data
+     */
+    Map<String, ?> applyFilters(Map<String, ?> data) {
+        if(filters.isEmpty()) return data;
+        FusedFilterChain ch = chain;
+        if(null == ch || !ch.matches(data.keySet())) {
+            ch = FusedFilterChain.compile(ImmutableList.copyOf(data.keySet()), filters);
+            chain = ch;
+        }
+        return ch.apply(data);
+    }
+
     /**
      * @return list of entity post load methods
      */
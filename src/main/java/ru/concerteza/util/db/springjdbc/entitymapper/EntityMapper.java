@@ -32,6 +32,7 @@ import static java.util.Arrays.asList;
  * @see EntityChooser
  * @see SingleEntityMapper
  * @see SubclassesEntityMapper
+ * @see CompiledEntityMapper
  */
 
 public abstract class EntityMapper<T> implements RowMapper<T> {
@@ -66,6 +67,23 @@ public abstract class EntityMapper<T> implements RowMapper<T> {
         return new SingleEntityMapper<T>(ec);
     }
 
+    /**
+     * Single entity class factory method for compiled mode: no intermediate row map is created,
+     * column indexes are resolved once per result set and fields are assigned
+     * using typed result set getters. Preprocessing filters are fused into per-column conversions,
+     * see {@link FusedFilterChain}.
+     *
+     * @param clazz class of target entity
+     * @param filters list of preprocessing filters
+     * @param <T> entity class param
+     * @return entity mapper instance
+     * @see CompiledEntityMapper
+     */
+    public static <T> EntityMapper<T> compiledForClass(Class<T> clazz, EntityFilter... filters) {
+        EntityClass<T> ec = new EntityClass<T>(clazz, asList(filters));
+        return new CompiledEntityMapper<T>(ec);
+    }
+
     /**
      * Method for hierarchy mapping
      *
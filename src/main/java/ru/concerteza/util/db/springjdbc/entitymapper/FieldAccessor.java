@@ -0,0 +1,230 @@
+package ru.concerteza.util.db.springjdbc.entitymapper;
+
+import org.apache.commons.lang.UnhandledException;
+import org.joda.time.LocalDateTime;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import static ru.concerteza.util.date.CtzDateUtils.toLocalDateTime;
+import static ru.concerteza.util.reflect.CtzReflectionUtils.isAssignableBoxed;
+
+/**
+ * Assigns result set column value to entity field using typed {@link ResultSet} getter
+ * chosen once for field type. Primitive fields are assigned without boxing.
+ * Field is made accessible once on creation. Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 11/28/14
+ * @see CompiledEntityMapper
+ */
+abstract class FieldAccessor {
+    protected final Field field;
+
+    /**
+     * @param field entity field
+     */
+    protected FieldAccessor(Field field) {
+        if(!field.isAccessible()) field.setAccessible(true);
+        this.field = field;
+    }
+
+    /**
+     * Chooses accessor implementation for field type
+     *
+     * @param field entity field
+     * @return accessor instance
+     */
+    static FieldAccessor forField(Field field) {
+        Class<?> type = field.getType();
+        if(long.class == type) return new LongAccessor(field);
+        if(int.class == type) return new IntAccessor(field);
+        if(double.class == type) return new DoubleAccessor(field);
+        if(boolean.class == type) return new BooleanAccessor(field);
+        if(short.class == type) return new ShortAccessor(field);
+        if(byte.class == type) return new ByteAccessor(field);
+        if(float.class == type) return new FloatAccessor(field);
+        if(String.class == type) return new StringAccessor(field);
+        if(Long.class == type) return new BoxedLongAccessor(field);
+        if(Integer.class == type) return new BoxedIntAccessor(field);
+        if(Double.class == type) return new BoxedDoubleAccessor(field);
+        if(BigDecimal.class == type) return new BigDecimalAccessor(field);
+        if(Date.class == type || Timestamp.class == type) return new TimestampAccessor(field);
+        if(LocalDateTime.class == type) return new LocalDateTimeAccessor(field);
+        return new ObjectAccessor(field);
+    }
+
+    /**
+     * Reads column value from result set and assigns it to field
+     *
+     * @param target entity instance
+     * @param rs result set
+     * @param index column index
+     * @throws SQLException on result set read error
+     */
+    void assign(Object target, ResultSet rs, int index) throws SQLException {
+        try {
+            assignChecked(target, rs, index);
+        } catch(IllegalAccessException e) {
+            throw new UnhandledException(e);
+        }
+    }
+
+    /**
+     * Assigns already read (or converted) value to field
+     *
+     * @param target entity instance
+     * @param value value to assign
+     */
+    void assignValue(Object target, Object value) {
+        try {
+            if(null == value) {
+                checkNotPrimitive();
+            } else if(!isAssignableBoxed(field.getType(), value.getClass())) {
+                throw new IllegalArgumentException("Cannot map field: '" + field.getName() + "', " +
+                        "source type: '" + value.getClass() + "', target type: '" + field.getType() + "'");
+            }
+            field.set(target, value);
+        } catch(IllegalAccessException e) {
+            throw new UnhandledException(e);
+        }
+    }
+
+    protected abstract void assignChecked(Object target, ResultSet rs, int index) throws SQLException, IllegalAccessException;
+
+    protected void checkNotNull(ResultSet rs) throws SQLException {
+        if(rs.wasNull()) checkNotPrimitive();
+    }
+
+    private void checkNotPrimitive() {
+        if(field.getType().isPrimitive()) throw new IllegalArgumentException(
+                "Cannot map NULL value to primitive field: '" + field.getName() + "', class: '" + field.getDeclaringClass().getName() + "'");
+    }
+
+    private static class LongAccessor extends FieldAccessor {
+        LongAccessor(Field field) { super(field); }
+        @Override protected void assignChecked(Object target, ResultSet rs, int index) throws SQLException, IllegalAccessException {
+            long val = rs.getLong(index);
+            checkNotNull(rs);
+            field.setLong(target, val);
+        }
+    }
+
+    private static class IntAccessor extends FieldAccessor {
+        IntAccessor(Field field) { super(field); }
+        @Override protected void assignChecked(Object target, ResultSet rs, int index) throws SQLException, IllegalAccessException {
+            int val = rs.getInt(index);
+            checkNotNull(rs);
+            field.setInt(target, val);
+        }
+    }
+
+    private static class DoubleAccessor extends FieldAccessor {
+        DoubleAccessor(Field field) { super(field); }
+        @Override protected void assignChecked(Object target, ResultSet rs, int index) throws SQLException, IllegalAccessException {
+            double val = rs.getDouble(index);
+            checkNotNull(rs);
+            field.setDouble(target, val);
+        }
+    }
+
+    private static class BooleanAccessor extends FieldAccessor {
+        BooleanAccessor(Field field) { super(field); }
+        @Override protected void assignChecked(Object target, ResultSet rs, int index) throws SQLException, IllegalAccessException {
+            boolean val = rs.getBoolean(index);
+            checkNotNull(rs);
+            field.setBoolean(target, val);
+        }
+    }
+
+    private static class ShortAccessor extends FieldAccessor {
+        ShortAccessor(Field field) { super(field); }
+        @Override protected void assignChecked(Object target, ResultSet rs, int index) throws SQLException, IllegalAccessException {
+            short val = rs.getShort(index);
+            checkNotNull(rs);
+            field.setShort(target, val);
+        }
+    }
+
+    private static class ByteAccessor extends FieldAccessor {
+        ByteAccessor(Field field) { super(field); }
+        @Override protected void assignChecked(Object target, ResultSet rs, int index) throws SQLException, IllegalAccessException {
+            byte val = rs.getByte(index);
+            checkNotNull(rs);
+            field.setByte(target, val);
+        }
+    }
+
+    private static class FloatAccessor extends FieldAccessor {
+        FloatAccessor(Field field) { super(field); }
+        @Override protected void assignChecked(Object target, ResultSet rs, int index) throws SQLException, IllegalAccessException {
+            float val = rs.getFloat(index);
+            checkNotNull(rs);
+            field.setFloat(target, val);
+        }
+    }
+
+    private static class StringAccessor extends FieldAccessor {
+        StringAccessor(Field field) { super(field); }
+        @Override protected void assignChecked(Object target, ResultSet rs, int index) throws SQLException, IllegalAccessException {
+            field.set(target, rs.getString(index));
+        }
+    }
+
+    private static class BoxedLongAccessor extends FieldAccessor {
+        BoxedLongAccessor(Field field) { super(field); }
+        @Override protected void assignChecked(Object target, ResultSet rs, int index) throws SQLException, IllegalAccessException {
+            long val = rs.getLong(index);
+            field.set(target, rs.wasNull() ? null : val);
+        }
+    }
+
+    private static class BoxedIntAccessor extends FieldAccessor {
+        BoxedIntAccessor(Field field) { super(field); }
+        @Override protected void assignChecked(Object target, ResultSet rs, int index) throws SQLException, IllegalAccessException {
+            int val = rs.getInt(index);
+            field.set(target, rs.wasNull() ? null : val);
+        }
+    }
+
+    private static class BoxedDoubleAccessor extends FieldAccessor {
+        BoxedDoubleAccessor(Field field) { super(field); }
+        @Override protected void assignChecked(Object target, ResultSet rs, int index) throws SQLException, IllegalAccessException {
+            double val = rs.getDouble(index);
+            field.set(target, rs.wasNull() ? null : val);
+        }
+    }
+
+    private static class BigDecimalAccessor extends FieldAccessor {
+        BigDecimalAccessor(Field field) { super(field); }
+        @Override protected void assignChecked(Object target, ResultSet rs, int index) throws SQLException, IllegalAccessException {
+            field.set(target, rs.getBigDecimal(index));
+        }
+    }
+
+    private static class TimestampAccessor extends FieldAccessor {
+        TimestampAccessor(Field field) { super(field); }
+        @Override protected void assignChecked(Object target, ResultSet rs, int index) throws SQLException, IllegalAccessException {
+            field.set(target, rs.getTimestamp(index));
+        }
+    }
+
+    private static class LocalDateTimeAccessor extends FieldAccessor {
+        LocalDateTimeAccessor(Field field) { super(field); }
+        @Override protected void assignChecked(Object target, ResultSet rs, int index) throws SQLException, IllegalAccessException {
+            Timestamp ts = rs.getTimestamp(index);
+            field.set(target, null != ts ? toLocalDateTime(ts) : null);
+        }
+    }
+
+    private static class ObjectAccessor extends FieldAccessor {
+        ObjectAccessor(Field field) { super(field); }
+        @Override protected void assignChecked(Object target, ResultSet rs, int index) throws SQLException, IllegalAccessException {
+            assignValue(target, rs.getObject(index));
+        }
+    }
+}
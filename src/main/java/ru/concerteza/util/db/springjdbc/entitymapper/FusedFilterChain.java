@@ -0,0 +1,260 @@
+package ru.concerteza.util.db.springjdbc.entitymapper;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.commons.lang.UnhandledException;
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Compiled form of the {@link EntityFilter} chain for the fixed list of input columns.
+ * Column filters ({@link ColumnListFilter} subclasses, including all column filters from {@link EntityFilters})
+ * are fused into per-column conversion steps, subclasses that override {@link ColumnListFilter#apply(java.util.Map)}
+ * are not fused, so their overrides are not bypassed, {@link EntityFilters#columnsToLower()} renames are applied once
+ * on compilation and {@link EntityFilters#identity()} is dropped. So the row is converted in one pass over
+ * the values array without building intermediate maps.
+ * Other filters may change the row arbitrarily, they are supported through the map adapter: when the first such filter
+ * is met, it and all the following filters are applied one by one to the map built from values array (see {@link #toMap(Object[])}).
+ * NULL values are handled the same way as {@link ColumnListFilter#apply(java.util.Map)} does: values are passed
+ * to column filters as is, and all values in the row must be non-null after each column filter.
+ * Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 11/30/14
+ * @see CompiledEntityMapper
+ */
+public class FusedFilterChain {
+    private static final Step[] NO_STEPS = new Step[0];
+
+    private final List<String> inputNames;
+    private final List<String> names;
+    private final Step[][] steps;
+    // input value must be non-null, column is checked without conversion by the first column filter
+    private final boolean[] nullChecked;
+    // whether any filter was fused, so map must be rebuilt
+    private final boolean fused;
+    private final List<EntityFilter> tail;
+
+    private FusedFilterChain(List<String> inputNames, List<String> names, Step[][] steps, boolean[] nullChecked,
+                             boolean fused, List<EntityFilter> tail) {
+        this.inputNames = inputNames;
+        this.names = names;
+        this.steps = steps;
+        this.nullChecked = nullChecked;
+        this.fused = fused;
+        this.tail = tail;
+    }
+
+    /**
+     * Compiles filter chain for given columns
+     *
+     * @param columns input column names in row order
+     * @param filters preprocessing filters in application order
+     * @return compiled chain
+     */
+    public static FusedFilterChain compile(List<String> columns, List<? extends EntityFilter> filters) {
+        checkNotNull(columns, "Provided columns must be non null");
+        checkNotNull(filters, "Provided filters must be non null");
+        String[] names = columns.toArray(new String[columns.size()]);
+        List<List<Step>> steps = new ArrayList<List<Step>>(names.length);
+        for(int i = 0; i < names.length; i++) steps.add(new ArrayList<Step>(0));
+        boolean[] nullChecked = new boolean[names.length];
+        ImmutableList.Builder<EntityFilter> tail = ImmutableList.builder();
+        boolean fusing = true;
+        boolean fused = false;
+        boolean columnFilterMet = false;
+        for(EntityFilter fi : filters) {
+            checkNotNull(fi, "Provided filters must be non null, filters: '%s'", filters);
+            if(!fusing) {
+                tail.add(fi);
+            } else if(EntityFilters.identity() == fi) {
+                // skip
+            } else if(EntityFilters.columnsToLower() == fi) {
+                for(int i = 0; i < names.length; i++) names[i] = names[i].toLowerCase(Locale.ENGLISH);
+                fused = true;
+            } else if(fi instanceof ColumnListFilter && !overridesApply(fi)) {
+                ColumnListFilter<?> clf = (ColumnListFilter<?>) fi;
+                for(int i = 0; i < names.length; i++) {
+                    // column filter sees names produced by previous filters
+                    boolean applied = clf.getColumns().contains(names[i]);
+                    if(applied) steps.get(i).add(new Step(clf, names[i]));
+                    // first column filter checks input values of all the columns it doesn't convert,
+                    // values checked or converted once are checked after each conversion
+                    else if(!columnFilterMet) nullChecked[i] = true;
+                }
+                columnFilterMet = true;
+                fused = true;
+            } else {
+                fusing = false;
+                tail.add(fi);
+            }
+        }
+        Step[][] arr = new Step[names.length][];
+        for(int i = 0; i < names.length; i++) {
+            List<Step> li = steps.get(i);
+            arr[i] = li.isEmpty() ? NO_STEPS : li.toArray(new Step[li.size()]);
+        }
+        return new FusedFilterChain(ImmutableList.copyOf(columns), ImmutableList.copyOf(names), arr, nullChecked,
+                fused, tail.build());
+    }
+
+    /**
+     * @return input column names
+     */
+    public List<String> getInputNames() {
+        return inputNames;
+    }
+
+    /**
+     * @return column names after applying fused filters
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * @return whether chain contains filters that must be applied through the map adapter
+     */
+    public boolean hasTail() {
+        return !tail.isEmpty();
+    }
+
+    /**
+     * @param index zero-based column index
+     * @return whether any fused filter will be applied to this column
+     */
+    public boolean isConverted(int index) {
+        return steps[index].length > 0;
+    }
+
+    /**
+     * @param index zero-based column index
+     * @return whether column value must be non-null even if it is not converted
+     */
+    public boolean isNullChecked(int index) {
+        return nullChecked[index];
+    }
+
+    /**
+     * @param columns input column names
+     * @return whether chain was compiled for given columns
+     */
+    public boolean matches(Collection<String> columns) {
+        if(columns.size() != inputNames.size()) return false;
+        Iterator<String> it = columns.iterator();
+        for(String name : inputNames) {
+            if(!name.equals(it.next())) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Applies fused filters to single column value
+     *
+     * @param index zero-based column index
+     * @param value input column value
+     * @return converted column value
+     * @throws NullPointerException if value is null before or after column filter
+     */
+    public Object convert(int index, Object value) {
+        Object res = value;
+        if(nullChecked[index]) checkNotNull(res, "Value is null for key: '%s'", names.get(index));
+        for(Step st : steps[index]) {
+            res = st.filter.decorateWrapError(st.column, res);
+            checkNotNull(res, "Value is null for key: '%s'", st.column);
+        }
+        return res;
+    }
+
+    /**
+     * Applies fused filters to the row in place
+     *
+     * @param row row values in input columns order
+     */
+    public void apply(Object[] row) {
+        checkArgument(row.length == steps.length, "Invalid row length: '%s', expected: '%s'", row.length, steps.length);
+        for(int i = 0; i < row.length; i++) {
+            if(steps[i].length > 0 || nullChecked[i]) row[i] = convert(i, row[i]);
+        }
+    }
+
+    /**
+     * Applies whole chain to the row map, map keys must match input columns (see {@link #matches(java.util.Collection)}).
+     * Map is rebuilt once for all fused filters, remaining non-fused filters are applied one by one
+     *
+     * @param data row data
+     * @return filtered row data
+     */
+    public Map<String, ?> apply(Map<String, ?> data) {
+        checkArgument(matches(data.keySet()), "Invalid row keys: '%s', expected: '%s'", data.keySet(), inputNames);
+        Map<String, ?> res = data;
+        if(fused) {
+            ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
+            int i = 0;
+            for(Object val : data.values()) {
+                builder.put(names.get(i), steps[i].length > 0 || nullChecked[i] ? convert(i, val) : val);
+                i += 1;
+            }
+            res = builder.build();
+        }
+        for(EntityFilter fi : tail) res = fi.apply(res);
+        return res;
+    }
+
+    /**
+     * Map adapter, builds case-insensitive map from the row (that must be already processed with {@link #apply(Object[])})
+     * and applies remaining non-fused filters to it
+     *
+     * @param row row values after fused filters
+     * @return row data map
+     */
+    public Map<String, ?> toMap(Object[] row) {
+        checkArgument(row.length == names.size(), "Invalid row length: '%s', expected: '%s'", row.length, names.size());
+        Map<String, Object> map = new LinkedCaseInsensitiveMap<Object>(row.length);
+        for(int i = 0; i < row.length; i++) map.put(names.get(i), row[i]);
+        Map<String, ?> res = map;
+        for(EntityFilter fi : tail) res = fi.apply(res);
+        return res;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("inputNames", inputNames).
+                append("names", names).
+                append("tail", tail).
+                toString();
+    }
+
+    // fused steps call column conversion directly, so they cannot honour overridden apply
+    private static boolean overridesApply(EntityFilter fi) {
+        try {
+            return ColumnListFilter.class != fi.getClass().getMethod("apply", Map.class).getDeclaringClass();
+        } catch(NoSuchMethodException e) {
+            throw new UnhandledException(e);
+        }
+    }
+
+    private static class Step {
+        private final ColumnListFilter<?> filter;
+        private final String column;
+
+        private Step(ColumnListFilter<?> filter, String column) {
+            this.filter = filter;
+            this.column = column;
+        }
+    }
+}
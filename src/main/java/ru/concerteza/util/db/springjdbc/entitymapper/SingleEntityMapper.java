@@ -28,7 +28,7 @@ class SingleEntityMapper<T> extends EntityMapper<T> {
      */
     @Override
     public T map(Map<String, ?> dataMap) {
-        for(EntityFilter fi : ec.getFilters()) dataMap = fi.apply(dataMap);
+        dataMap = ec.applyFilters(dataMap);
         T res = mapToObject(dataMap, ec.getClazz(), ec.getColumnMap());
         for(Method me : ec.getPostLoadMethods()) invokeMethod(res, me);
         return res;
@@ -34,7 +34,7 @@ class SubclassesEntityMapper<T> extends EntityMapper<T> {
         Class<? extends T> clazz = chooser.choose(dataMap);
         EntityClass<? extends T> ec = ecMap.get(clazz.getName());
         checkArgument(null != ec, "Cannot find entry for chosen subclass: '%s', subclasses: '%s'", clazz, ecMap.keySet());
-        for(EntityFilter fi : ec.getFilters()) dataMap = fi.apply(dataMap);
+        dataMap = ec.applyFilters(dataMap);
         T res = mapToObject(dataMap, clazz, ec.getColumnMap());
         for(Method me : ec.getPostLoadMethods()) invokeMethod(res, me);
         return res;
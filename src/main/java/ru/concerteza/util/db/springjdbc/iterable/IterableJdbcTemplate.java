@@ -24,6 +24,8 @@ import java.util.Map;
 public class IterableJdbcTemplate extends JdbcTemplate implements IterableJdbcOperations {
     private static final Log logger = LogFactory.getLog(IterableJdbcTemplate.class);
 
+    private volatile StreamingPolicy streamingPolicy;
+
     /**
      * Constructor
      *
@@ -33,6 +35,23 @@ public class IterableJdbcTemplate extends JdbcTemplate implements IterableJdbcOp
         super(dataSource);
     }
 
+    /**
+     * Sets streaming policy, that overrides fetch size of this template for iterable queries
+     * and enables cursor-based fetching for detected driver
+     *
+     * @param streamingPolicy streaming policy, {@code null} to disable
+     */
+    public void setStreamingPolicy(StreamingPolicy streamingPolicy) {
+        this.streamingPolicy = streamingPolicy;
+    }
+
+    /**
+     * @return streaming policy, may be null
+     */
+    public StreamingPolicy getStreamingPolicy() {
+        return streamingPolicy;
+    }
+
     /**
      * Static method to use in finally methods for closing
      * {@link CloseableIterator}s. Writes warning into log on exception.
@@ -76,6 +95,7 @@ public class IterableJdbcTemplate extends JdbcTemplate implements IterableJdbcOp
         Connection con = DataSourceUtils.getConnection(ds);
         PreparedStatement ps = null;
         ResultSet rs = null;
+        StreamingContext sc = null;
         try {
             Connection conToUse = con;
             NativeJdbcExtractor nje = getNativeJdbcExtractor();
@@ -84,6 +104,10 @@ public class IterableJdbcTemplate extends JdbcTemplate implements IterableJdbcOp
             }
             ps = psc.createPreparedStatement(conToUse);
             applyStatementSettings(ps);
+            StreamingPolicy sp = streamingPolicy;
+            if(null != sp) {
+                sc = sp.prepare(con, ps, getSql(psc));
+            }
             PreparedStatement psToUse = ps;
             if(nje != null) {
                 psToUse = nje.getNativePreparedStatement(ps);
@@ -96,9 +120,12 @@ public class IterableJdbcTemplate extends JdbcTemplate implements IterableJdbcOp
             if(nje != null) {
                 rsToUse = nje.getNativeResultSet(rs);
             }
+            if(null != sc) {
+                sc.afterExecute(rsToUse);
+            }
             // warnings are handled after query execution but before data access
             handleWarnings(ps);
-            return new PreparedStatementCloseableIterator<T>(ds, con, psc, pss, ps, rs, rsToUse, rowMapper);
+            return new PreparedStatementCloseableIterator<T>(ds, con, psc, pss, ps, rs, rsToUse, rowMapper, sc);
         } catch(SQLException ex) {
             // Release Connection early, to avoid potential connection pool deadlock
             // in the case when the exception translator hasn't been initialized yet.
@@ -111,6 +138,9 @@ public class IterableJdbcTemplate extends JdbcTemplate implements IterableJdbcOp
             rs = null;
             JdbcUtils.closeStatement(ps);
             ps = null;
+            if(null != sc) {
+                sc.rollback();
+            }
             DataSourceUtils.releaseConnection(con, getDataSource());
             con = null;
             throw getExceptionTranslator().translate("PreparedStatementCallback", sql, ex);
@@ -136,6 +166,7 @@ public class IterableJdbcTemplate extends JdbcTemplate implements IterableJdbcOp
         Connection con = DataSourceUtils.getConnection(ds);
         Statement stmt = null;
         ResultSet rs = null;
+        StreamingContext sc = null;
         try {
             Connection conToUse = con;
             NativeJdbcExtractor nje = getNativeJdbcExtractor();
@@ -144,6 +175,10 @@ public class IterableJdbcTemplate extends JdbcTemplate implements IterableJdbcOp
             }
             stmt = conToUse.createStatement();
             applyStatementSettings(stmt);
+            StreamingPolicy sp = streamingPolicy;
+            if(null != sp) {
+                sc = sp.prepare(con, stmt, sql);
+            }
             Statement stmtToUse = stmt;
             if(nje != null) {
                 stmtToUse = nje.getNativeStatement(stmt);
@@ -153,9 +188,12 @@ public class IterableJdbcTemplate extends JdbcTemplate implements IterableJdbcOp
             if(nje != null) {
                 rsToUse = nje.getNativeResultSet(rs);
             }
+            if(null != sc) {
+                sc.afterExecute(rsToUse);
+            }
             // warnings are handled after query execution but before data access
             handleWarnings(stmt);
-            return new StatementCloseableIterator<T>(ds, con, stmt, rs, rsToUse, rowMapper);
+            return new StatementCloseableIterator<T>(ds, con, stmt, rs, rsToUse, rowMapper, sc);
         } catch(SQLException ex) {
             JdbcUtils.closeResultSet(rs);
             rs = null;
@@ -163,6 +201,9 @@ public class IterableJdbcTemplate extends JdbcTemplate implements IterableJdbcOp
             // in the case when the exception translator hasn't been initialized yet.
             JdbcUtils.closeStatement(stmt);
             stmt = null;
+            if(null != sc) {
+                sc.rollback();
+            }
             DataSourceUtils.releaseConnection(con, getDataSource());
             con = null;
             throw getExceptionTranslator().translate("StatementCallback", getSql(sql), ex);
@@ -0,0 +1,19 @@
+package ru.concerteza.util.db.springjdbc.iterable;
+
+/**
+ * Closeable iterator over JDBC result set, releases JDBC resources on exhaustion by default.
+ * Resources must be released from the thread that borrowed them, so iterators, that are read from
+ * other threads (see {@link PrefetchingCloseableIterator}), disable closing on exhaustion
+ * and are closed explicitly from the borrowing thread.
+ *
+ * @author alexkasko
+ * Date: 12/6/14
+ */
+@SuppressWarnings("deprecation") // CloseableIterator
+interface JdbcCloseableIterator<T> extends CloseableIterator<T> {
+
+    /**
+     * Disables closing on exhaustion, {@link #close()} must be called explicitly
+     */
+    void disableCloseOnExhaustion();
+}
@@ -0,0 +1,91 @@
+package ru.concerteza.util.db.springjdbc.iterable;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * JDBC drivers known to {@link StreamingPolicy}, with their cursor-based fetching requirements
+ *
+ * @author alexkasko
+ * Date: 12/8/14
+ */
+public enum JdbcDriverType {
+    /**
+     * Loads whole result set into memory unless fetch size is positive and auto-commit is disabled
+     */
+    POSTGRESQL("jdbc:postgresql:", "postgresql", true),
+    /**
+     * Always uses cursors, default fetch size is 10 rows
+     */
+    ORACLE("jdbc:oracle:", "oracle", false),
+    /**
+     * Spools large results to disk, fetch size is used by remote (TCP) connections
+     */
+    H2("jdbc:h2:", "h2 jdbc", false),
+    /**
+     * Uses server cursors only if {@code useCursors=true} is specified in URL, fetch size is used with cursors
+     */
+    JTDS("jdbc:jtds:", "jtds", false),
+    /**
+     * Unknown driver, only fetch size is applied
+     */
+    OTHER("", "", false);
+
+    private final String urlPrefix;
+    private final String namePart;
+    private final boolean transactionRequired;
+
+    JdbcDriverType(String urlPrefix, String namePart, boolean transactionRequired) {
+        this.urlPrefix = urlPrefix;
+        this.namePart = namePart;
+        this.transactionRequired = transactionRequired;
+    }
+
+    /**
+     * @return whether driver uses cursor-based fetching only with auto-commit disabled
+     */
+    public boolean isTransactionRequired() {
+        return transactionRequired;
+    }
+
+    /**
+     * Detects driver by connection URL with fallback to driver name
+     *
+     * @param conn connection
+     * @return driver type, {@code OTHER} if unknown
+     * @throws SQLException on metadata access error
+     */
+    public static JdbcDriverType detect(Connection conn) throws SQLException {
+        DatabaseMetaData md = conn.getMetaData();
+        JdbcDriverType res = forUrl(md.getURL());
+        return OTHER != res ? res : forDriverName(md.getDriverName());
+    }
+
+    /**
+     * @param url JDBC URL, may be null
+     * @return driver type, {@code OTHER} if unknown
+     */
+    public static JdbcDriverType forUrl(String url) {
+        if(null == url) return OTHER;
+        String lower = url.toLowerCase(Locale.ENGLISH);
+        for(JdbcDriverType dt : values()) {
+            if(OTHER != dt && lower.startsWith(dt.urlPrefix)) return dt;
+        }
+        return OTHER;
+    }
+
+    /**
+     * @param driverName driver name from {@link DatabaseMetaData#getDriverName()}, may be null
+     * @return driver type, {@code OTHER} if unknown
+     */
+    public static JdbcDriverType forDriverName(String driverName) {
+        if(null == driverName) return OTHER;
+        String lower = driverName.toLowerCase(Locale.ENGLISH);
+        for(JdbcDriverType dt : values()) {
+            if(OTHER != dt && lower.contains(dt.namePart)) return dt;
+        }
+        return OTHER;
+    }
+}
@@ -0,0 +1,207 @@
+package ru.concerteza.util.db.springjdbc.iterable;
+
+import com.google.common.collect.AbstractIterator;
+import org.apache.commons.lang.UnhandledException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * {@link CloseableIterator} wrapper, that reads (and maps) source rows in background task
+ * into bounded queue of row batches, so database fetches overlap with consumer processing.
+ * Iterators returned by {@link IterableJdbcTemplate} are not closed by background task on exhaustion,
+ * JDBC resources are always released from the consumer thread (the one that borrowed connection, so thread-bound
+ * transactional connections are handled properly): on exhaustion, on error or on {@link #close()} call.
+ * Errors from background task are rethrown on {@code hasNext()} or {@code next()} call.
+ * {@code close()} stops background task and waits for it to finish current fetch.
+ * Must be used from one consumer thread, <b>NOT</b> thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/6/14
+ * @see IterableJdbcTemplate
+ */
+@SuppressWarnings("deprecation") // CloseableIterator
+public class PrefetchingCloseableIterator<T> extends AbstractIterator<T> implements CloseableIterator<T> {
+    private static final Log logger = LogFactory.getLog(PrefetchingCloseableIterator.class);
+    private static final int DEFAULT_BATCH_SIZE = 256;
+    private static final int DEFAULT_QUEUE_SIZE = 4;
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private final Object endOfDataMarker = new Object();
+    private final CloseableIterator<T> source;
+    private final int batchSize;
+    // was made non-generic to allow markers
+    private final ArrayBlockingQueue<Object> queue;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile boolean cancelled = false;
+    private volatile Throwable error;
+    private Iterator<T> batch = new ArrayList<T>(0).iterator();
+    private boolean closed = false;
+
+    /**
+     * Starts background task on creation, source iterator is closed if task is rejected by executor
+     *
+     * @param source source iterator, will be read from background thread
+     * @param executor executor to run background task into
+     * @param batchSize max count of rows in batch
+     * @param queueSize max count of fetched batches waiting for consumer
+     */
+    @SuppressWarnings("unchecked")
+    public PrefetchingCloseableIterator(CloseableIterator<T> source, ExecutorService executor, int batchSize, int queueSize) {
+        checkNotNull(source, "Provided source iterator is null");
+        checkNotNull(executor, "Provided executor is null");
+        checkArgument(batchSize > 0, "Batch size must be positive, but was: '%s'", batchSize);
+        checkArgument(queueSize > 0, "Queue size must be positive, but was: '%s'", queueSize);
+        if(source instanceof JdbcCloseableIterator) ((JdbcCloseableIterator) source).disableCloseOnExhaustion();
+        this.source = source;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<Object>(queueSize);
+        try {
+            executor.execute(new Fetcher());
+        } catch(RejectedExecutionException e) {
+            source.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Factory method with default batch size and queue size
+     *
+     * @param source source iterator, will be read from background thread
+     * @param executor executor to run background task into
+     * @param <T> row type
+     * @return prefetching iterator
+     */
+    public static <T> PrefetchingCloseableIterator<T> of(CloseableIterator<T> source, ExecutorService executor) {
+        return new PrefetchingCloseableIterator<T>(source, executor, DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected T computeNext() {
+        if(closed) return endOfData();
+        if(batch.hasNext()) return batch.next();
+        Object ob = take();
+        if(endOfDataMarker == ob) {
+            close();
+            if(null != error) throw propagate(error);
+            return endOfData();
+        }
+        batch = ((List<T>) ob).iterator();
+        return batch.next();
+    }
+
+    /**
+     * Stops background task, waits for it to finish and closes source iterator.
+     * If the iterator is already closed then invoking this method has no effect.
+     */
+    @Override
+    public void close() {
+        if(closed) return;
+        closed = true;
+        cancelled = true;
+        // release fetcher blocked on full queue
+        queue.clear();
+        try {
+            finished.await();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted awaiting fetch task finish, iterator: [" + this + "]");
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("PrefetchingCloseableIterator");
+        sb.append("{source=").append(source);
+        sb.append(", batchSize=").append(batchSize);
+        sb.append(", queued=").append(queue.size());
+        sb.append(", closed=").append(closed);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    private Object take() {
+        try {
+            for(;;) {
+                Object ob = queue.poll(OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if(null != ob) return ob;
+                // fetcher was interrupted before end marker was put
+                if(0 == finished.getCount() && queue.isEmpty()) return endOfDataMarker;
+            }
+        } catch(InterruptedException e) {
+            close();
+            throw new UnhandledException(e);
+        }
+    }
+
+    private static RuntimeException propagate(Throwable e) {
+        if(e instanceof RuntimeException) return (RuntimeException) e;
+        if(e instanceof Error) throw (Error) e;
+        return new UnhandledException(e);
+    }
+
+    private class Fetcher implements Runnable {
+        @Override
+        public void run() {
+            try {
+                List<T> li = new ArrayList<T>(batchSize);
+                while(!cancelled && source.hasNext()) {
+                    li.add(source.next());
+                    if(li.size() == batchSize) {
+                        if(!put(li)) return;
+                        li = new ArrayList<T>(batchSize);
+                    }
+                }
+                if(li.size() > 0 && !put(li)) return;
+                put(endOfDataMarker);
+            } catch(Throwable e) { // we do not believe to JDBC drivers' error reporting
+                error = e;
+                put(endOfDataMarker);
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        private boolean put(Object ob) {
+            try {
+                while(!cancelled) {
+                    if(queue.offer(ob, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) return true;
+                }
+                return false;
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if(null == error) error = e;
+                return false;
+            }
+        }
+    }
+}
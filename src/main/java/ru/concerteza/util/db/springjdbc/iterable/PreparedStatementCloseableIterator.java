@@ -16,14 +16,14 @@ import java.util.NoSuchElementException;
 
 /**
  * Closable iterator implementation, returns mapped roes from provided result set.
- * Will be closed automatically on exhaustion.
+ * Will be closed automatically on exhaustion (unless {@link #disableCloseOnExhaustion()} was called).
  * Iterator implementation borrowed from guava's {@code AbstractIterator}.
  * NOT thread-safe.
  *
  * @author alexkasko
  * Date: 11/7/12
  */
-class PreparedStatementCloseableIterator<T> implements CloseableIterator<T> {
+class PreparedStatementCloseableIterator<T> implements JdbcCloseableIterator<T> {
     private static final Log logger = LogFactory.getLog(PreparedStatementCloseableIterator.class);
 
     private final DataSource ds;
@@ -34,12 +34,14 @@ class PreparedStatementCloseableIterator<T> implements CloseableIterator<T> {
     private final ResultSet wrappedRs;
     private final ResultSet rsToUse;
     private final RowMapper<T> mapper;
+    private final StreamingContext streaming;
 
     private enum State {READY, NOT_READY, DONE, FAILED}
 
     private State state = State.NOT_READY;
     private T next;
     private boolean closed = false;
+    private boolean closeOnExhaustion = true;
     private int rowNum = 0;
 
     /**
@@ -52,10 +54,11 @@ class PreparedStatementCloseableIterator<T> implements CloseableIterator<T> {
      * @param wrappedRs provided here for proper JDBC resources releasing
      * @param rsToUse result set to iterate over
      * @param mapper row mapper to use
+     * @param streaming streaming state of the query, may be null
      */
     PreparedStatementCloseableIterator(DataSource ds, Connection conn, PreparedStatementCreator psc,
                                        PreparedStatementSetter pss, PreparedStatement ps,
-                                       ResultSet wrappedRs, ResultSet rsToUse, RowMapper<T> mapper) {
+                                       ResultSet wrappedRs, ResultSet rsToUse, RowMapper<T> mapper, StreamingContext streaming) {
         this.ds = ds;
         this.conn = conn;
         this.psc = psc;
@@ -64,6 +67,7 @@ class PreparedStatementCloseableIterator<T> implements CloseableIterator<T> {
         this.wrappedRs = wrappedRs;
         this.rsToUse = rsToUse;
         this.mapper = mapper;
+        this.streaming = streaming;
     }
 
     /**
@@ -117,10 +121,19 @@ class PreparedStatementCloseableIterator<T> implements CloseableIterator<T> {
             ((ParameterDisposer) psc).cleanupParameters();
         }
         JdbcUtils.closeStatement(ps);
+        if(null != streaming) streaming.finish(rowNum);
         DataSourceUtils.releaseConnection(conn, ds);
         closed = true;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void disableCloseOnExhaustion() {
+        this.closeOnExhaustion = false;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -152,6 +165,7 @@ class PreparedStatementCloseableIterator<T> implements CloseableIterator<T> {
         sb.append(", wrappedRs=").append(wrappedRs);
         sb.append(", rsToUse=").append(rsToUse);
         sb.append(", mapper=").append(mapper);
+        sb.append(", streaming=").append(streaming);
         sb.append(", closed=").append(closed);
         sb.append(", rowNum=").append(rowNum);
         sb.append('}');
@@ -181,7 +195,7 @@ class PreparedStatementCloseableIterator<T> implements CloseableIterator<T> {
     private T computeNextInternal() throws SQLException {
         if(closed) return endOfData();
         if(rsToUse.next()) return mapper.mapRow(rsToUse, rowNum++);
-        close();
+        if(closeOnExhaustion) close();
         return endOfData();
     }
 
@@ -0,0 +1,105 @@
+package ru.concerteza.util.db.springjdbc.iterable;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fetch statistics for single SQL query collected by {@link StreamingPolicy}.
+ * Round-trips are estimated from rows count and fetch sizes used, drivers don't report actual
+ * network fetches. Last row width and fetch size are used for the next execution of the same query.
+ * Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/8/14
+ */
+public class QueryFetchStats {
+    private final String sql;
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong roundTrips = new AtomicLong();
+    private volatile JdbcDriverType driver = JdbcDriverType.OTHER;
+    private volatile int rowWidth;
+    private volatile int fetchSize;
+
+    /**
+     * @param sql SQL query
+     */
+    QueryFetchStats(String sql) {
+        this.sql = sql;
+    }
+
+    void record(JdbcDriverType driver, int rowWidth, int fetchSize, long rowsCount, long roundTripsCount) {
+        this.driver = driver;
+        this.rowWidth = rowWidth;
+        this.fetchSize = fetchSize;
+        executions.incrementAndGet();
+        rows.addAndGet(rowsCount);
+        roundTrips.addAndGet(roundTripsCount);
+    }
+
+    /**
+     * @return SQL query
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return count of finished executions
+     */
+    public long getExecutions() {
+        return executions.get();
+    }
+
+    /**
+     * @return total count of rows read over all executions
+     */
+    public long getRows() {
+        return rows.get();
+    }
+
+    /**
+     * @return estimated total count of fetch round-trips over all executions
+     */
+    public long getRoundTrips() {
+        return roundTrips.get();
+    }
+
+    /**
+     * @return driver detected on last execution
+     */
+    public JdbcDriverType getDriver() {
+        return driver;
+    }
+
+    /**
+     * @return row width in bytes estimated on last execution
+     */
+    public int getRowWidth() {
+        return rowWidth;
+    }
+
+    /**
+     * @return fetch size used on last execution
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("sql", sql).
+                append("executions", executions).
+                append("rows", rows).
+                append("roundTrips", roundTrips).
+                append("driver", driver).
+                append("rowWidth", rowWidth).
+                append("fetchSize", fetchSize).
+                toString();
+    }
+}
@@ -0,0 +1,117 @@
+package ru.concerteza.util.db.springjdbc.iterable;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Streaming state of single query execution, created by {@link StreamingPolicy}.
+ * Must be finished (or rolled back on execution error) before connection is released.
+ * Only implicit transaction opened for the query is ended (with rollback, it is used only for reading)
+ * and original auto-commit mode is restored, caller's transactions are never committed or rolled back.
+ * NOT thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/8/14
+ */
+class StreamingContext {
+    private static final Log logger = LogFactory.getLog(StreamingContext.class);
+
+    private final StreamingPolicy policy;
+    private final Connection conn;
+    private final JdbcDriverType driver;
+    private final QueryFetchStats stats;
+    private final int initialFetchSize;
+    // whether auto-commit was disabled for the query and implicit transaction is opened
+    private boolean resetAutoCommit;
+    private int fetchSize;
+    private int rowWidth;
+
+    /**
+     * @param policy streaming policy
+     * @param conn connection, auto-commit will be restored on it
+     * @param driver detected driver
+     * @param stats query statistics, may be null
+     * @param initialFetchSize fetch size set to statement
+     * @param resetAutoCommit whether auto-commit was disabled for this query
+     */
+    StreamingContext(StreamingPolicy policy, Connection conn, JdbcDriverType driver, QueryFetchStats stats,
+                     int initialFetchSize, boolean resetAutoCommit) {
+        this.policy = policy;
+        this.conn = conn;
+        this.driver = driver;
+        this.stats = stats;
+        this.initialFetchSize = initialFetchSize;
+        this.fetchSize = initialFetchSize;
+        this.resetAutoCommit = resetAutoCommit;
+    }
+
+    /**
+     * Adjusts fetch size of the result set for the row width estimated from its metadata
+     *
+     * @param rs executed result set
+     * @throws SQLException on metadata access error
+     */
+    void afterExecute(ResultSet rs) throws SQLException {
+        rowWidth = StreamingPolicy.estimateRowWidth(rs.getMetaData());
+        int adjusted = policy.fetchSizeFor(rowWidth);
+        if(adjusted != fetchSize) {
+            rs.setFetchSize(adjusted);
+            fetchSize = adjusted;
+        }
+    }
+
+    /**
+     * Records statistics, ends implicit transaction and restores auto-commit
+     *
+     * @param rowsCount count of rows read
+     */
+    void finish(int rowsCount) {
+        if(null != stats) stats.record(driver, rowWidth, fetchSize, rowsCount, estimateRoundTrips(rowsCount));
+        endImplicitTransaction();
+    }
+
+    /**
+     * Ends implicit transaction and restores auto-commit, used on query execution error
+     */
+    void rollback() {
+        endImplicitTransaction();
+    }
+
+    // rollback is used, so setAutoCommit(true) won't commit anything
+    private void endImplicitTransaction() {
+        if(!resetAutoCommit) return;
+        resetAutoCommit = false;
+        try {
+            conn.rollback();
+            conn.setAutoCommit(true);
+        } catch(SQLException e) {
+            logger.warn("Error restoring auto-commit, connection: [" + conn + "]", e);
+        }
+    }
+
+    // first fetch is done on execution with statement fetch size,
+    // one more fetch is required to find out that result set is exhausted
+    private long estimateRoundTrips(int rowsCount) {
+        if(rowsCount < initialFetchSize) return 1;
+        return 1 + (rowsCount - initialFetchSize) / fetchSize + 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("driver", driver).
+                append("initialFetchSize", initialFetchSize).
+                append("fetchSize", fetchSize).
+                append("rowWidth", rowWidth).
+                append("resetAutoCommit", resetAutoCommit).
+                toString();
+    }
+}
@@ -0,0 +1,194 @@
+package ru.concerteza.util.db.springjdbc.iterable;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+import java.sql.Connection;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Streaming mode policy for {@link IterableJdbcTemplate}. Enables cursor-based fetching for detected driver
+ * (see {@link JdbcDriverType}): sets fetch size on statements and, for PostgreSQL, disables auto-commit
+ * on connections in auto-commit mode for the query duration (on iterator close the implicit transaction is rolled back
+ * and auto-commit is restored, connections with disabled auto-commit are not touched). Fetch size is chosen to fit rows fetched in one round-trip into memory budget.
+ * Row width is estimated from result set metadata after query execution, result set fetch size is adjusted
+ * for the following fetches and remembered for the next execution of the same query.
+ * Fetch statistics (see {@link QueryFetchStats}) are collected per query for limited number of distinct queries.
+ * Thread-safe, may be shared between templates.
+ *
+ * @author alexkasko
+ * Date: 12/8/14
+ * @see IterableJdbcTemplate#setStreamingPolicy(StreamingPolicy)
+ */
+public class StreamingPolicy {
+    private static final int DEFAULT_MEMORY_BUDGET_BYTES = 4 * 1024 * 1024;
+    private static final int DEFAULT_MIN_FETCH_SIZE = 16;
+    private static final int DEFAULT_MAX_FETCH_SIZE = 10000;
+    private static final int MAX_TRACKED_QUERIES = 1024;
+    // used before first execution of the query
+    private static final int DEFAULT_ROW_WIDTH = 256;
+    // per value object overhead
+    private static final int VALUE_OVERHEAD = 16;
+    private static final int MAX_CHARS_WIDTH = 1024;
+    private static final int LOB_WIDTH = 1024;
+
+    private final int memoryBudgetBytes;
+    private final int minFetchSize;
+    private final int maxFetchSize;
+    private final ConcurrentMap<String, QueryFetchStats> stats = new ConcurrentHashMap<String, QueryFetchStats>();
+
+    /**
+     * Constructor with 4MB memory budget and fetch size limited to [16, 10000] rows
+     */
+    public StreamingPolicy() {
+        this(DEFAULT_MEMORY_BUDGET_BYTES, DEFAULT_MIN_FETCH_SIZE, DEFAULT_MAX_FETCH_SIZE);
+    }
+
+    /**
+     * @param memoryBudgetBytes max estimated size of rows fetched in one round-trip
+     * @param minFetchSize min fetch size
+     * @param maxFetchSize max fetch size
+     */
+    public StreamingPolicy(int memoryBudgetBytes, int minFetchSize, int maxFetchSize) {
+        checkArgument(memoryBudgetBytes > 0, "Memory budget must be positive, but was: '%s'", memoryBudgetBytes);
+        checkArgument(minFetchSize > 0, "Min fetch size must be positive, but was: '%s'", minFetchSize);
+        checkArgument(maxFetchSize >= minFetchSize, "Max fetch size: '%s' must not be less than min fetch size: '%s'",
+                maxFetchSize, minFetchSize);
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.minFetchSize = minFetchSize;
+        this.maxFetchSize = maxFetchSize;
+    }
+
+    /**
+     * @param sql SQL query
+     * @return statistics for specified query, {@code null} if query wasn't tracked
+     */
+    public QueryFetchStats getStats(String sql) {
+        return stats.get(sql);
+    }
+
+    /**
+     * @return statistics for all tracked queries
+     */
+    public Collection<QueryFetchStats> getStats() {
+        return Collections.unmodifiableCollection(stats.values());
+    }
+
+    /**
+     * Clears collected statistics
+     */
+    public void resetStats() {
+        stats.clear();
+    }
+
+    /**
+     * Configures statement for streaming, must be called before query execution
+     *
+     * @param conn connection the statement was created with
+     * @param stmt statement
+     * @param sql SQL query, may be null, statistics are not collected for null queries
+     * @return streaming context for the query
+     * @throws SQLException on driver detection or statement configuration error
+     */
+    StreamingContext prepare(Connection conn, Statement stmt, String sql) throws SQLException {
+        JdbcDriverType driver = JdbcDriverType.detect(conn);
+        QueryFetchStats st = trackedStats(sql);
+        int fetchSize = null != st && st.getExecutions() > 0 ? st.getFetchSize() : fetchSizeFor(DEFAULT_ROW_WIDTH);
+        stmt.setFetchSize(fetchSize);
+        boolean resetAutoCommit = false;
+        if(driver.isTransactionRequired() && conn.getAutoCommit()) {
+            conn.setAutoCommit(false);
+            resetAutoCommit = true;
+        }
+        return new StreamingContext(this, conn, driver, st, fetchSize, resetAutoCommit);
+    }
+
+    /**
+     * @param rowWidth estimated row width in bytes
+     * @return fetch size that fits memory budget
+     */
+    int fetchSizeFor(int rowWidth) {
+        int res = memoryBudgetBytes / Math.max(rowWidth, 1);
+        return Math.min(Math.max(res, minFetchSize), maxFetchSize);
+    }
+
+    /**
+     * Estimates row width from declared column types and sizes
+     *
+     * @param md result set metadata
+     * @return estimated row width in bytes
+     * @throws SQLException on metadata access error
+     */
+    static int estimateRowWidth(ResultSetMetaData md) throws SQLException {
+        int res = 0;
+        for(int i = 1; i <= md.getColumnCount(); i++) {
+            res += VALUE_OVERHEAD + columnWidth(md, i);
+        }
+        return res;
+    }
+
+    private static int columnWidth(ResultSetMetaData md, int col) throws SQLException {
+        switch(md.getColumnType(col)) {
+            case Types.BIT:
+            case Types.BOOLEAN:
+            case Types.TINYINT: return 1;
+            case Types.SMALLINT: return 2;
+            case Types.INTEGER:
+            case Types.REAL: return 4;
+            case Types.BIGINT:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+            case Types.DATE:
+            case Types.TIME: return 8;
+            case Types.TIMESTAMP: return 12;
+            case Types.NUMERIC:
+            case Types.DECIMAL: return 24;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.LONGNVARCHAR: return 2 * charsWidth(md.getPrecision(col));
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY: return charsWidth(md.getPrecision(col));
+            default: return LOB_WIDTH;
+        }
+    }
+
+    private static int charsWidth(int precision) {
+        // unbounded columns report zero or huge precision
+        return precision > 0 && precision < MAX_CHARS_WIDTH ? precision : MAX_CHARS_WIDTH;
+    }
+
+    private QueryFetchStats trackedStats(String sql) {
+        if(null == sql) return null;
+        QueryFetchStats existed = stats.get(sql);
+        if(null != existed) return existed;
+        if(stats.size() >= MAX_TRACKED_QUERIES) return null;
+        QueryFetchStats created = new QueryFetchStats(sql);
+        existed = stats.putIfAbsent(sql, created);
+        return null != existed ? existed : created;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("memoryBudgetBytes", memoryBudgetBytes).
+                append("minFetchSize", minFetchSize).
+                append("maxFetchSize", maxFetchSize).
+                append("trackedQueries", stats.size()).
+                toString();
+    }
+}
@@ -1,12 +1,15 @@
 package ru.concerteza.util.db.springjdbc.named;
 
-import com.google.common.collect.Maps;
-import ru.concerteza.util.db.springjdbc.RowIterable;
+import com.google.common.collect.ImmutableList;
+import org.springframework.jdbc.support.JdbcUtils;
 import ru.concerteza.util.reflect.named.NamedConstructor;
 
+import java.lang.ref.WeakReference;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
 import static ru.concerteza.util.reflect.named.NamedConstructor.CaseType.INSENSITIVE;
@@ -14,7 +17,9 @@ import static ru.concerteza.util.reflect.named.NamedConstructor.MatchMode.ADDITI
 
 /**
  * Named constructor mapper implementation for single class.
- * Converts result set row into lower case map and applies {@link ru.concerteza.util.reflect.named.NamedConstructor} to it.
+ * Resolves {@link ru.concerteza.util.reflect.named.NamedConstructor} for lower cased result set columns once
+ * per result set (resolution is reused for next result sets with the same columns),
+ * then reads only used columns by index and invokes resolved constructor.
  *
  * @author alexey
  * Date: 7/6/12
@@ -24,6 +29,7 @@ import static ru.concerteza.util.reflect.named.NamedConstructor.MatchMode.ADDITI
  */
 class NamedConstructorSingleMapper<T> extends NamedConstructorMapper<T> {
     private final NamedConstructor<T> nc;
+    private volatile Plan<T> plan = new Plan<T>(null, null, new boolean[0]);
 
     /**
      * @param nc function to apply to row
@@ -37,10 +43,55 @@ class NamedConstructorSingleMapper<T> extends NamedConstructorMapper<T> {
      */
     @Override
     public T mapRow(ResultSet rs, int rowNum) throws SQLException {
-        HashMap<String, Object> map = Maps.newHashMap();
-        for(RowIterable.Cell cell : RowIterable.of(rs)) {
-            map.put(cell.getColumnName().toLowerCase(Locale.ENGLISH), cell.getValue());
+        Plan<T> pl = plan;
+        if(rs != pl.rs.get()) {
+            pl = resolve(rs, pl);
+            plan = pl;
+        }
+        Object[] row = new Object[pl.used.length];
+        for(int i = 0; i < row.length; i++) {
+            if(pl.used[i]) row[i] = JdbcUtils.getResultSetValue(rs, i + 1);
+        }
+        return pl.invoker.invoke(row);
+    }
+
+    private Plan<T> resolve(ResultSet rs, Plan<T> previous) throws SQLException {
+        List<String> columns = lowerColumns(rs.getMetaData());
+        if(null != previous.invoker && columns.equals(previous.invoker.getColumns())) {
+            return new Plan<T>(rs, previous.invoker, previous.used);
+        }
+        NamedConstructor.RowInvoker<T> invoker = nc.forColumns(columns, ADDITIONAL_ALLOWED, INSENSITIVE);
+        boolean[] used = new boolean[columns.size()];
+        for(int i = 0; i < used.length; i++) used[i] = invoker.uses(i);
+        return new Plan<T>(rs, invoker, used);
+    }
+
+    /**
+     * Inner use method, reads lower cased column names from metadata
+     *
+     * @param md result set metadata
+     * @return lower cased column names
+     * @throws SQLException on metadata access error
+     */
+    static List<String> lowerColumns(ResultSetMetaData md) throws SQLException {
+        List<String> res = new ArrayList<String>(md.getColumnCount());
+        for(int i = 1; i <= md.getColumnCount(); i++) {
+            res.add(JdbcUtils.lookupColumnName(md, i).toLowerCase(Locale.ENGLISH));
+        }
+        return ImmutableList.copyOf(res);
+    }
+
+    // constructor resolved for particular result set
+    private static class Plan<T> {
+        // weak to not prevent closed result set from GC
+        private final WeakReference<ResultSet> rs;
+        private final NamedConstructor.RowInvoker<T> invoker;
+        private final boolean[] used;
+
+        private Plan(ResultSet rs, NamedConstructor.RowInvoker<T> invoker, boolean[] used) {
+            this.rs = new WeakReference<ResultSet>(rs);
+            this.invoker = invoker;
+            this.used = used;
         }
-        return nc.invoke(map, ADDITIONAL_ALLOWED, INSENSITIVE);
     }
 }
@@ -1,25 +1,30 @@
 package ru.concerteza.util.db.springjdbc.named;
 
-import com.google.common.collect.Maps;
-import ru.concerteza.util.db.springjdbc.RowIterable;
+import org.springframework.jdbc.support.JdbcUtils;
 import ru.concerteza.util.reflect.named.NamedConstructor;
 
+import java.lang.ref.WeakReference;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
-import static ru.concerteza.util.reflect.named.NamedConstructor.CaseType;
+import static ru.concerteza.util.db.springjdbc.named.NamedConstructorSingleMapper.lowerColumns;
 import static ru.concerteza.util.reflect.named.NamedConstructor.CaseType.INSENSITIVE;
 import static ru.concerteza.util.reflect.named.NamedConstructor.MatchMode.ADDITIONAL_ALLOWED;
 import static ru.concerteza.util.string.CtzFormatUtils.format;
 
 /**
- * Named constructor implementation for class hierarchy mapping. Converts result set row into lower case map,
- * chooses function by discriminator column value and applies it.
+ * Named constructor implementation for class hierarchy mapping. Chooses function by discriminator column value
+ * and applies it to lower cased result set columns (except discriminator).
+ * Constructors are resolved lazily once per result set and discriminator value (resolution is reused
+ * for next result sets with the same columns), per row only used columns are read by index.
  *
  * @author alexey
  * Date: 7/6/12
@@ -30,6 +35,7 @@ import static ru.concerteza.util.string.CtzFormatUtils.format;
 class NamedConstructorSubclassesMapper<T> extends NamedConstructorMapper<T> {
     private final String discColumn;
     private final Map<String, NamedConstructor<? extends T>> ncMap;
+    private volatile Plan<T> plan = new Plan<T>(null, null, null, -1, new int[0]);
 
     /**
      * @param ncMap discriminator value -> named constructor function mapping
@@ -47,17 +53,88 @@ class NamedConstructorSubclassesMapper<T> extends NamedConstructorMapper<T> {
      */
     @Override
     public T mapRow(ResultSet rs, int rowNum) throws SQLException {
-        HashMap<String, Object> map = Maps.newHashMap();
-        String discVal = null;
-        for(RowIterable.Cell cell : RowIterable.of(rs)) {
-            if(discColumn.equalsIgnoreCase(cell.getColumnName())) discVal = (String) cell.getValue();
-            else map.put(cell.getColumnName().toLowerCase(Locale.ENGLISH), cell.getValue());
+        Plan<T> pl = plan;
+        if(rs != pl.rs.get()) {
+            pl = resolve(rs, pl);
+            plan = pl;
         }
+        String discVal = pl.discIndex > 0 ? (String) JdbcUtils.getResultSetValue(rs, pl.discIndex) : null;
         if(null == discVal) throw new IllegalArgumentException(format(
                 "Null or absent value of discriminator column: '{}' in row data: '{}'", discColumn, logRS(rs, rowNum)));
-        NamedConstructor<? extends T> nc = ncMap.get(discVal);
-        if(null == nc) throw new IllegalArgumentException(format(
-                "Cannot find subclass for discriminator: '{}', keys: '{}', row data: '{}'", discVal, ncMap.keySet(), logRS(rs, rowNum)));
-        return nc.invoke(map, ADDITIONAL_ALLOWED, INSENSITIVE);
+        SubclassInvoker<T> si = pl.invokers.get(discVal);
+        if(null == si) {
+            NamedConstructor<? extends T> nc = ncMap.get(discVal);
+            if(null == nc) throw new IllegalArgumentException(format(
+                    "Cannot find subclass for discriminator: '{}', keys: '{}', row data: '{}'", discVal, ncMap.keySet(), logRS(rs, rowNum)));
+            si = new SubclassInvoker<T>(nc.forColumns(pl.columns, ADDITIONAL_ALLOWED, INSENSITIVE));
+            pl.invokers.put(discVal, si);
+        }
+        Object[] row = new Object[pl.indexes.length];
+        for(int i = 0; i < row.length; i++) {
+            if(si.used[i]) row[i] = JdbcUtils.getResultSetValue(rs, pl.indexes[i]);
+        }
+        return si.invoker.invoke(row);
+    }
+
+    private Plan<T> resolve(ResultSet rs, Plan<T> previous) throws SQLException {
+        List<String> all = lowerColumns(rs.getMetaData());
+        int discIndex = -1;
+        List<String> columns = new ArrayList<String>(all.size());
+        List<Integer> indexes = new ArrayList<Integer>(all.size());
+        for(int i = 0; i < all.size(); i++) {
+            if(discColumn.equals(all.get(i))) discIndex = i + 1;
+            else {
+                columns.add(all.get(i));
+                indexes.add(i + 1);
+            }
+        }
+        int[] indexesArr = new int[indexes.size()];
+        for(int i = 0; i < indexesArr.length; i++) indexesArr[i] = indexes.get(i);
+        if(null != previous.columns && all.equals(previous.all)) {
+            return new Plan<T>(rs, previous, discIndex, indexesArr);
+        }
+        return new Plan<T>(rs, all, columns, discIndex, indexesArr);
+    }
+
+    // columns resolved for particular result set
+    private static class Plan<T> {
+        // weak to not prevent closed result set from GC
+        private final WeakReference<ResultSet> rs;
+        private final List<String> all;
+        private final List<String> columns;
+        private final int discIndex;
+        // result set indexes of not discriminator columns
+        private final int[] indexes;
+        // discriminator value -> resolved constructor
+        private final ConcurrentMap<String, SubclassInvoker<T>> invokers;
+
+        private Plan(ResultSet rs, List<String> all, List<String> columns, int discIndex, int[] indexes) {
+            this.rs = new WeakReference<ResultSet>(rs);
+            this.all = all;
+            this.columns = columns;
+            this.discIndex = discIndex;
+            this.indexes = indexes;
+            this.invokers = new ConcurrentHashMap<String, SubclassInvoker<T>>();
+        }
+
+        private Plan(ResultSet rs, Plan<T> previous, int discIndex, int[] indexes) {
+            this.rs = new WeakReference<ResultSet>(rs);
+            this.all = previous.all;
+            this.columns = previous.columns;
+            this.discIndex = discIndex;
+            this.indexes = indexes;
+            this.invokers = previous.invokers;
+        }
+    }
+
+    private static class SubclassInvoker<T> {
+        private final NamedConstructor.RowInvoker<? extends T> invoker;
+        private final boolean[] used;
+
+        private SubclassInvoker(NamedConstructor.RowInvoker<? extends T> invoker) {
+            this.invoker = invoker;
+            this.used = new boolean[invoker.getColumns().size()];
+            for(int i = 0; i < used.length; i++) used[i] = invoker.uses(i);
+        }
     }
 }
@@ -3,7 +3,8 @@ package ru.concerteza.util.db.springjdbc.querybuilder;
 import java.io.Serializable;
 
 /**
- * Base class for expressions
+ * Base class for expressions, built-in expressions are appended to output
+ * directly (see {@link #appendTo(StringBuilder)}), {@link #toString()} uses the same method
  *
  * @author alexkasko
  * Date: 11/7/12
@@ -26,4 +27,32 @@ abstract class AbstractExpr implements Expression, Serializable {
     public Expression and(String expr) {
         return new AndExpr(this, new LiteralExpr(expr));
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        appendTo(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Appends expression to output
+     *
+     * @param sb output builder
+     */
+    abstract void appendTo(StringBuilder sb);
+
+    /**
+     * Appends built-in expression directly, other expressions are appended using {@code toString()}
+     *
+     * @param sb output builder
+     * @param expr expression
+     */
+    static void appendExpr(StringBuilder sb, Expression expr) {
+        if(expr instanceof AbstractExpr) ((AbstractExpr) expr).appendTo(sb);
+        else sb.append(expr);
+    }
 }
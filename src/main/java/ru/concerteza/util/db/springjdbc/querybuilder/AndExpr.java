@@ -30,8 +30,10 @@ class AndExpr extends AbstractExpr {
      * {@inheritDoc}
      */
     @Override
-    public String toString() {
-        return left + " and " + right;
+    void appendTo(StringBuilder sb) {
+        appendExpr(sb, left);
+        sb.append(" and ");
+        appendExpr(sb, right);
     }
 
     /**
@@ -0,0 +1,154 @@
+package ru.concerteza.util.db.springjdbc.querybuilder;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.apache.commons.lang.StringUtils.isBlank;
+
+/**
+ * Query template split into literal and clause (slot) segments once on compilation.
+ * Query is assembled into presized {@code StringBuilder}, built-in expressions are appended
+ * to it directly without intermediate strings. Placeholder syntax is the same as in {@link QueryBuilder},
+ * escaped placeholders ({@code $${placeholder_42}}) are unescaped on compilation, clause values are not
+ * substituted recursively. Compiled templates are cached for limited number of distinct templates.
+ * Immutable, thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/16/14
+ * @see QueryBuilder
+ */
+@SuppressWarnings("deprecation") // QueryBuilder, Expression
+public class CompiledQueryTemplate {
+    private static final Pattern CLAUSE_PATTERN = Pattern.compile("[^\\$]\\$\\{(\\w+)\\}");
+    private static final int MAX_CACHED_TEMPLATES = 1024;
+    private static final int CLAUSE_LENGTH_ESTIMATE = 32;
+    private static final ConcurrentMap<String, CompiledQueryTemplate> CACHE = new ConcurrentHashMap<String, CompiledQueryTemplate>();
+
+    private final String template;
+    // literals.length == clauses.size() + 1
+    private final String[] literals;
+    private final List<String> clauses;
+    private final Map<String, Integer> indexes;
+    private final int literalsLength;
+    // racy, used only as capacity hint
+    private int lastLength;
+
+    private CompiledQueryTemplate(String template, String[] literals, List<String> clauses, Map<String, Integer> indexes) {
+        this.template = template;
+        this.literals = literals;
+        this.clauses = clauses;
+        this.indexes = indexes;
+        int len = 0;
+        for(String li : literals) len += li.length();
+        this.literalsLength = len;
+        this.lastLength = len + clauses.size() * CLAUSE_LENGTH_ESTIMATE;
+    }
+
+    /**
+     * Returns cached compiled template
+     *
+     * @param template query template
+     * @return compiled template
+     * @throws IllegalArgumentException on blank template or duplicate clause
+     */
+    public static CompiledQueryTemplate compile(String template) {
+        if(isBlank(template)) throw new IllegalArgumentException("Provided template is blank");
+        CompiledQueryTemplate existed = CACHE.get(template);
+        if(null != existed) return existed;
+        CompiledQueryTemplate created = parse(template);
+        if(CACHE.size() < MAX_CACHED_TEMPLATES) CACHE.putIfAbsent(template, created);
+        return created;
+    }
+
+    /**
+     * @return query template
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return clause names in template order
+     */
+    public List<String> getClauses() {
+        return clauses;
+    }
+
+    /**
+     * @param clauseName clause name
+     * @return clause index in template order, {@code -1} if not found
+     */
+    public int indexOf(String clauseName) {
+        Integer idx = indexes.get(clauseName);
+        return null != idx ? idx : -1;
+    }
+
+    /**
+     * Assembles query from template and clauses values
+     *
+     * @param values clause values in template order
+     * @return query string
+     * @throws IllegalArgumentException on invalid values count
+     * @throws IllegalStateException on not filled clause
+     */
+    public String render(ExpressionList[] values) {
+        if(values.length != clauses.size()) throw new IllegalArgumentException(
+                "Invalid values count: '" + values.length + "', clauses: '" + clauses + "'");
+        StringBuilder sb = new StringBuilder(Math.max(lastLength, literalsLength));
+        sb.append(literals[0]);
+        for(int i = 0; i < values.length; i++) {
+            if(null == values[i]) throw new IllegalStateException(
+                    "Clause: '" + clauses.get(i) + "' wasn't filled, template: '" + template + "'");
+            ExprList.appendList(sb, values[i]);
+            sb.append(literals[i + 1]);
+        }
+        lastLength = sb.length();
+        return sb.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("CompiledQueryTemplate");
+        sb.append("{template='").append(template).append('\'');
+        sb.append(", clauses=").append(clauses);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    private static CompiledQueryTemplate parse(String template) {
+        List<String> literals = new ArrayList<String>();
+        List<String> clauses = new ArrayList<String>();
+        Map<String, Integer> indexes = new HashMap<String, Integer>();
+        Matcher m = CLAUSE_PATTERN.matcher(template);
+        int pos = 0;
+        while(m.find()) {
+            String name = m.group(1);
+            if(indexes.containsKey(name)) throw new IllegalArgumentException(
+                    "Duplicate clause: '" + name +"' found in template: '" + template +"'");
+            indexes.put(name, clauses.size());
+            clauses.add(name);
+            // pattern includes one char before placeholder
+            literals.add(unescape(template.substring(pos, m.start() + 1)));
+            pos = m.end();
+        }
+        literals.add(unescape(template.substring(pos)));
+        return new CompiledQueryTemplate(template, literals.toArray(new String[literals.size()]),
+                ImmutableList.copyOf(clauses), indexes);
+    }
+
+    private static String unescape(String literal) {
+        return literal.replace("$${", "${");
+    }
+}
@@ -7,8 +7,6 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
-import static org.apache.commons.lang.StringUtils.join;
-
 /**
  * Expression list implementation
  *
@@ -52,7 +50,32 @@ class ExprList implements ExpressionList, Serializable {
      */
     @Override
     public String toString() {
-        return join(conds, DELIMITER);
+        StringBuilder sb = new StringBuilder();
+        appendTo(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Appends expressions joined with commas to output
+     *
+     * @param sb output builder
+     */
+    void appendTo(StringBuilder sb) {
+        for(int i = 0; i < conds.size(); i++) {
+            if(i > 0) sb.append(DELIMITER);
+            AbstractExpr.appendExpr(sb, conds.get(i));
+        }
+    }
+
+    /**
+     * Appends built-in expression list directly, other lists are appended using {@code toString()}
+     *
+     * @param sb output builder
+     * @param list expression list
+     */
+    static void appendList(StringBuilder sb, ExpressionList list) {
+        if(list instanceof ExprList) ((ExprList) list).appendTo(sb);
+        else sb.append(list);
     }
 
     /**
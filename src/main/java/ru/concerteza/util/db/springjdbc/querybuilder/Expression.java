@@ -2,7 +2,7 @@ package ru.concerteza.util.db.springjdbc.querybuilder;
 
 /**
  * Interface for expressions.
- * Expression is printed to output using {@link #toString()} method.
+ * Expression is printed to output using {@link #toString()} method (built-in expressions are appended to output directly).
  * All built-in expressions are immutable.
  *
  * @author alexkasko
@@ -27,8 +27,8 @@ class LiteralExpr extends AbstractExpr {
      * {@inheritDoc}
      */
     @Override
-    public String toString() {
-        return literal;
+    void appendTo(StringBuilder sb) {
+        sb.append(literal);
     }
 
     /**
@@ -27,8 +27,10 @@ class NotExpr extends AbstractExpr {
      * {@inheritDoc}
      */
     @Override
-    public String toString() {
-        return "not (" + expr + ")";
+    void appendTo(StringBuilder sb) {
+        sb.append("not (");
+        appendExpr(sb, expr);
+        sb.append(")");
     }
 
     /**
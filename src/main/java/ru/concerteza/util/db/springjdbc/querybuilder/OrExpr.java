@@ -30,8 +30,12 @@ class OrExpr extends AbstractExpr {
      * {@inheritDoc}
      */
     @Override
-    public String toString() {
-        return "((" + left + ") or (" + right + "))";
+    void appendTo(StringBuilder sb) {
+        sb.append("((");
+        appendExpr(sb, left);
+        sb.append(") or (");
+        appendExpr(sb, right);
+        sb.append("))");
     }
 
     /**
@@ -1,12 +1,5 @@
 package ru.concerteza.util.db.springjdbc.querybuilder;
 
-import org.apache.commons.lang.text.StrSubstitutor;
-
-import java.util.HashMap;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 import static org.apache.commons.lang.StringUtils.isBlank;
 
 /**
@@ -15,16 +8,15 @@ import static org.apache.commons.lang.StringUtils.isBlank;
  * Placeholder syntax: {@code ${placeholder_42}
  * Placeholder escaping syntax: {@code $${placeholder_42} (will NOT be parsed)
  * Placeholder name must conform this regex: {@code [a-zA-Z_0-9]+}
+ * Templates are compiled once and cached, see {@link CompiledQueryTemplate}.
  *
  * @author alexkasko
  * Date: 11/7/12
  */
 @Deprecated //use com.alexkasko.springjdbc:query-string-builder
 public class QueryBuilder {
-    private static final Pattern CLAUSE_PATTERN = Pattern.compile("[^\\$]\\$\\{(\\w+)\\}");
-
-    private final String template;
-    private final Map<String, ExpressionList> clauses = new HashMap<String, ExpressionList>();
+    private final CompiledQueryTemplate template;
+    private final ExpressionList[] clauses;
 
     /**
      * Constructor
@@ -32,15 +24,8 @@ public class QueryBuilder {
      * @param template query template
      */
     public QueryBuilder(String template) {
-        if(isBlank(template)) throw new IllegalArgumentException("Provided template is blank");
-        this.template = template;
-        Matcher m = CLAUSE_PATTERN.matcher(template);
-        while (m.find()) {
-            String name = m.group(1);
-            if(clauses.containsKey(name)) throw new IllegalArgumentException(
-                    "Duplicate clause: '" + name +"' found in template: '" + template +"'");
-            clauses.put(name, null);
-        }
+        this.template = CompiledQueryTemplate.compile(template);
+        this.clauses = new ExpressionList[this.template.getClauses().size()];
     }
 
     /**
@@ -85,14 +70,15 @@ public class QueryBuilder {
      */
     public QueryBuilder set(String clauseName, ExpressionList expr) {
         if(isBlank(clauseName)) throw new IllegalArgumentException("Provided clauseName is blank");
-        if(!clauses.containsKey(clauseName)) throw new IllegalArgumentException(
-                "Provided clauseName: '" + clauseName + "' is not found in the template: '" +  template + "'" +
-                " registered clauses: '" + clauses.keySet() + "'" +
+        int idx = template.indexOf(clauseName);
+        if(-1 == idx) throw new IllegalArgumentException(
+                "Provided clauseName: '" + clauseName + "' is not found in the template: '" +  template.getTemplate() + "'" +
+                " registered clauses: '" + template.getClauses() + "'" +
                 " (clause name must conform this regex: '[a-zA-Z_0-9]+')");
-        if(null != clauses.get(clauseName)) throw new IllegalArgumentException(
-                "Provided clauseName: '" + clauseName + "' was already set to: '" + clauses.get(clauseName) + "'");
+        if(null != clauses[idx]) throw new IllegalArgumentException(
+                "Provided clauseName: '" + clauseName + "' was already set to: '" + clauses[idx] + "'");
         if(null == expr) throw new IllegalArgumentException("Provided expr is null");
-        clauses.put(clauseName, expr);
+        clauses[idx] = expr;
         return this;
     }
 
@@ -103,12 +89,6 @@ public class QueryBuilder {
      * @throws IllegalStateException on not filled clause
      */
     public String build() {
-        Map<String, String> map = new HashMap<String, String>();
-        for(Map.Entry<String, ExpressionList> en : clauses.entrySet()) {
-            if(null == en.getValue()) throw new IllegalStateException(
-                    "Clause: '" + en.getKey() + "' wasn't filled, template: '" + template + "'");
-            map.put(en.getKey(), en.getValue().toString());
-        }
-        return StrSubstitutor.replace(template, map);
+        return template.render(clauses);
     }
-}
\ No newline at end of file
+}
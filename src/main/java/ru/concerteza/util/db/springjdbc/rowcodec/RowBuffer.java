@@ -0,0 +1,103 @@
+package ru.concerteza.util.db.springjdbc.rowcodec;
+
+import ru.concerteza.util.io.ReadableByteArrayOutputStream;
+
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer with big-endian typed writes, strings are encoded to UTF-8 directly
+ * into buffer without intermediate byte arrays. Not thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/2/14
+ * @see RowEncoder
+ */
+public class RowBuffer extends ReadableByteArrayOutputStream {
+    /**
+     * @param value value to write
+     */
+    public void writeShort(int value) {
+        ensure(2);
+        buf[count++] = (byte) (value >>> 8);
+        buf[count++] = (byte) value;
+    }
+
+    /**
+     * @param value value to write
+     */
+    public void writeInt(int value) {
+        ensure(4);
+        putInt(count, value);
+        count += 4;
+    }
+
+    /**
+     * @param value value to write
+     */
+    public void writeLong(long value) {
+        ensure(8);
+        for(int shift = 56; shift >= 0; shift -= 8) {
+            buf[count++] = (byte) (value >>> shift);
+        }
+    }
+
+    /**
+     * Writes byte array with {@code int} length prefix
+     *
+     * @param data data to write
+     */
+    public void writeBytes(byte[] data) {
+        writeInt(data.length);
+        write(data, 0, data.length);
+    }
+
+    /**
+     * Writes string as UTF-8 with {@code int} length (in bytes) prefix,
+     * unpaired surrogates are replaced with {@code '?'}
+     *
+     * @param str string to write
+     */
+    public void writeUtf8(String str) {
+        int len = str.length();
+        // 3 bytes max for single char, surrogate pair takes 4 bytes
+        ensure(4 + len * 3);
+        int lenPos = count;
+        count += 4;
+        for(int i = 0; i < len; i++) {
+            char ch = str.charAt(i);
+            if(ch < 0x80) {
+                buf[count++] = (byte) ch;
+            } else if(ch < 0x800) {
+                buf[count++] = (byte) (0xc0 | (ch >> 6));
+                buf[count++] = (byte) (0x80 | (ch & 0x3f));
+            } else if(ch >= Character.MIN_SURROGATE && ch <= Character.MAX_SURROGATE) {
+                if(Character.isHighSurrogate(ch) && i + 1 < len && Character.isLowSurrogate(str.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(ch, str.charAt(++i));
+                    buf[count++] = (byte) (0xf0 | (cp >> 18));
+                    buf[count++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    buf[count++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    buf[count++] = (byte) (0x80 | (cp & 0x3f));
+                } else buf[count++] = '?';
+            } else {
+                buf[count++] = (byte) (0xe0 | (ch >> 12));
+                buf[count++] = (byte) (0x80 | ((ch >> 6) & 0x3f));
+                buf[count++] = (byte) (0x80 | (ch & 0x3f));
+            }
+        }
+        putInt(lenPos, count - lenPos - 4);
+    }
+
+    private void putInt(int pos, int value) {
+        buf[pos] = (byte) (value >>> 24);
+        buf[pos + 1] = (byte) (value >>> 16);
+        buf[pos + 2] = (byte) (value >>> 8);
+        buf[pos + 3] = (byte) value;
+    }
+
+    private void ensure(int len) {
+        int newcount = count + len;
+        if(newcount > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, newcount));
+        }
+    }
+}
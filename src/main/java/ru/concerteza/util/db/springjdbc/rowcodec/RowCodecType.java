@@ -0,0 +1,87 @@
+package ru.concerteza.util.db.springjdbc.rowcodec;
+
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+import static ru.concerteza.util.db.springjdbc.CtzJdbcUtils.javaClassFromSqlType;
+
+/**
+ * Column types supported by {@link RowEncoder} and {@link RowDecoder}, each type has one byte code
+ * that is written into stream header.
+ * Fixed size types are written with one byte null flag before value,
+ * variable size types are written with {@code int} length prefix, {@code -1} length means SQL NULL.
+ *
+ * @author alexkasko
+ * Date: 12/2/14
+ */
+public enum RowCodecType {
+    BOOLEAN(1),
+    BYTE(2),
+    SHORT(3),
+    INT(4),
+    LONG(5),
+    FLOAT(6),
+    DOUBLE(7),
+    // scale and length-prefixed unscaled value bytes
+    DECIMAL(8),
+    // length-prefixed UTF-8
+    STRING(9),
+    BYTES(10),
+    // epoch millis
+    DATE(11),
+    TIME(12),
+    // epoch millis and nanos
+    TIMESTAMP(13),
+    // length-prefixed UTF-8 of object's toString, decoded as string
+    OTHER(14);
+
+    private final byte code;
+
+    RowCodecType(int code) {
+        this.code = (byte) code;
+    }
+
+    /**
+     * @return type code
+     */
+    public byte getCode() {
+        return code;
+    }
+
+    /**
+     * Chooses codec type for JDBC type
+     *
+     * @param sqlType JDBC type from {@link java.sql.Types}
+     * @return codec type, {@code OTHER} for unsupported types
+     */
+    public static RowCodecType forSqlType(int sqlType) {
+        Class<?> clazz = javaClassFromSqlType(sqlType);
+        if(String.class == clazz) return STRING;
+        if(boolean.class == clazz) return BOOLEAN;
+        if(byte.class == clazz) return BYTE;
+        if(short.class == clazz) return SHORT;
+        if(int.class == clazz) return INT;
+        if(long.class == clazz) return LONG;
+        if(float.class == clazz) return FLOAT;
+        if(double.class == clazz) return DOUBLE;
+        if(BigDecimal.class == clazz) return DECIMAL;
+        if(byte[].class == clazz) return BYTES;
+        if(java.sql.Date.class == clazz) return DATE;
+        if(Time.class == clazz) return TIME;
+        if(Timestamp.class == clazz) return TIMESTAMP;
+        return OTHER;
+    }
+
+    /**
+     * @param code type code
+     * @return codec type
+     * @throws IllegalArgumentException on unknown code
+     */
+    public static RowCodecType forCode(byte code) {
+        for(RowCodecType ty : values()) {
+            if(ty.code == code) return ty;
+        }
+        throw new IllegalArgumentException("Unknown row codec type code: '" + code + "'");
+    }
+}
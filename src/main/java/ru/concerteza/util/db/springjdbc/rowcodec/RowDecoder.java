@@ -0,0 +1,152 @@
+package ru.concerteza.util.db.springjdbc.rowcodec;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.lang.builder.ToStringBuilder;
+import ru.concerteza.util.io.RuntimeIOException;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static ru.concerteza.util.db.springjdbc.rowcodec.RowEncoder.*;
+import static ru.concerteza.util.string.CtzConstants.UTF8_CHARSET;
+
+/**
+ * Decoder for the stream written by {@link RowEncoder}. Header is read on creation,
+ * then iterates over rows as arrays of typed values: {@code Boolean}, {@code Byte}, {@code Short},
+ * {@code Integer}, {@code Long}, {@code Float}, {@code Double}, {@code BigDecimal}, {@code String},
+ * {@code byte[]}, {@link java.sql.Date}, {@link Time} and {@link Timestamp}, SQL NULLs are decoded as {@code null}s.
+ * Input stream is not closed by decoder. <b>NOT</b> thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/2/14
+ * @see RowEncoder
+ */
+public class RowDecoder extends AbstractIterator<Object[]> {
+    private final DataInputStream in;
+    private final List<String> names;
+    private final RowCodecType[] types;
+    private byte[] strBuf = new byte[1024];
+
+    /**
+     * @param is encoded stream, will be buffered if it isn't already
+     */
+    public RowDecoder(InputStream is) {
+        this.in = new DataInputStream(is instanceof BufferedInputStream ? is : new BufferedInputStream(is));
+        try {
+            byte version = in.readByte();
+            if(FORMAT_VERSION != version) throw new IOException("Unsupported row stream version: '" + version + "'");
+            int count = in.readInt();
+            List<String> namesList = new ArrayList<String>(count);
+            this.types = new RowCodecType[count];
+            for(int i = 0; i < count; i++) {
+                types[i] = RowCodecType.forCode(in.readByte());
+                namesList.add(readString());
+            }
+            this.names = ImmutableList.copyOf(namesList);
+        } catch(IOException e) {
+            throw new RuntimeIOException(e);
+        }
+    }
+
+    /**
+     * @return column names
+     */
+    public List<String> getColumnNames() {
+        return names;
+    }
+
+    /**
+     * @return column types
+     */
+    public List<RowCodecType> getTypes() {
+        return Arrays.asList(types.clone());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Object[] computeNext() {
+        try {
+            int marker = in.read();
+            if(-1 == marker) return endOfData();
+            if(ROW_MARKER != marker) throw new IOException("Invalid row marker: '" + marker + "', decoder: '" + this + "'");
+            Object[] row = new Object[types.length];
+            for(int i = 0; i < types.length; i++) {
+                row[i] = readColumn(types[i]);
+            }
+            return row;
+        } catch(IOException e) {
+            throw new RuntimeIOException(e);
+        }
+    }
+
+    private Object readColumn(RowCodecType type) throws IOException {
+        switch(type) {
+            case BOOLEAN: return readFlag() ? in.readByte() != 0 : null;
+            case BYTE: return readFlag() ? in.readByte() : null;
+            case SHORT: return readFlag() ? in.readShort() : null;
+            case INT: return readFlag() ? in.readInt() : null;
+            case LONG: return readFlag() ? in.readLong() : null;
+            case FLOAT: return readFlag() ? in.readFloat() : null;
+            case DOUBLE: return readFlag() ? in.readDouble() : null;
+            case DECIMAL: {
+                if(!readFlag()) return null;
+                int scale = in.readInt();
+                byte[] unscaled = new byte[in.readInt()];
+                in.readFully(unscaled);
+                return new BigDecimal(new BigInteger(unscaled), scale);
+            }
+            case BYTES: {
+                int len = in.readInt();
+                if(-1 == len) return null;
+                byte[] data = new byte[len];
+                in.readFully(data);
+                return data;
+            }
+            case DATE: return readFlag() ? new java.sql.Date(in.readLong()) : null;
+            case TIME: return readFlag() ? new Time(in.readLong()) : null;
+            case TIMESTAMP: {
+                if(!readFlag()) return null;
+                Timestamp ts = new Timestamp(in.readLong());
+                ts.setNanos(in.readInt());
+                return ts;
+            }
+            // STRING and OTHER
+            default: return readString();
+        }
+    }
+
+    private boolean readFlag() throws IOException {
+        return NULL_FLAG != in.readByte();
+    }
+
+    private String readString() throws IOException {
+        int len = in.readInt();
+        if(-1 == len) return null;
+        if(len > strBuf.length) strBuf = new byte[Math.max(len, strBuf.length * 2)];
+        in.readFully(strBuf, 0, len);
+        return new String(strBuf, 0, len, UTF8_CHARSET);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("names", names).
+                append("types", Arrays.toString(types)).
+                toString();
+    }
+}
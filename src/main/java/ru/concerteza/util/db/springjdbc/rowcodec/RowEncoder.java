@@ -0,0 +1,202 @@
+package ru.concerteza.util.db.springjdbc.rowcodec;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary encoder for result set rows. Column types are resolved from metadata once on creation.
+ * Stream consists of header (format version, columns count, type code and name for each column)
+ * and rows, each row starts with row marker byte. Use {@link RowDecoder} to read encoded stream back.
+ * Instance may be used with any result set with the same columns, <b>NOT</b> thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/2/14
+ * @see RowCodecType
+ * @see ru.concerteza.util.db.springjdbc.InputStreamOverResultSet
+ */
+public class RowEncoder {
+    static final byte FORMAT_VERSION = 2;
+    static final byte ROW_MARKER = 1;
+    static final byte NULL_FLAG = 0;
+    static final byte VALUE_FLAG = 1;
+
+    private final List<String> names;
+    private final RowCodecType[] types;
+
+    /**
+     * @param rsmd result set metadata
+     * @throws SQLException on metadata access error
+     */
+    public RowEncoder(ResultSetMetaData rsmd) throws SQLException {
+        int count = rsmd.getColumnCount();
+        List<String> namesList = new ArrayList<String>(count);
+        this.types = new RowCodecType[count];
+        for(int i = 0; i < count; i++) {
+            namesList.add(JdbcUtils.lookupColumnName(rsmd, i + 1));
+            types[i] = RowCodecType.forSqlType(rsmd.getColumnType(i + 1));
+        }
+        this.names = ImmutableList.copyOf(namesList);
+    }
+
+    /**
+     * Writes stream header
+     *
+     * @param buffer buffer to write into
+     */
+    public void writeHeader(RowBuffer buffer) {
+        buffer.write(FORMAT_VERSION);
+        buffer.writeInt(types.length);
+        for(int i = 0; i < types.length; i++) {
+            buffer.write(types[i].getCode());
+            buffer.writeUtf8(names.get(i));
+        }
+    }
+
+    /**
+     * Writes current result set row
+     *
+     * @param rs result set
+     * @param buffer buffer to write into
+     * @throws SQLException on result set access error
+     */
+    public void writeRow(ResultSet rs, RowBuffer buffer) throws SQLException {
+        buffer.write(ROW_MARKER);
+        for(int i = 0; i < types.length; i++) {
+            writeColumn(rs, i + 1, types[i], buffer);
+        }
+    }
+
+    /**
+     * @return column names
+     */
+    public List<String> getColumnNames() {
+        return names;
+    }
+
+    /**
+     * @return column types
+     */
+    public List<RowCodecType> getTypes() {
+        return Arrays.asList(types.clone());
+    }
+
+    private static void writeColumn(ResultSet rs, int ind, RowCodecType type, RowBuffer buffer) throws SQLException {
+        switch(type) {
+            case BOOLEAN: {
+                boolean data = rs.getBoolean(ind);
+                if(writeFlag(rs, buffer)) buffer.write(data ? 1 : 0);
+                break;
+            }
+            case BYTE: {
+                byte data = rs.getByte(ind);
+                if(writeFlag(rs, buffer)) buffer.write(data);
+                break;
+            }
+            case SHORT: {
+                short data = rs.getShort(ind);
+                if(writeFlag(rs, buffer)) buffer.writeShort(data);
+                break;
+            }
+            case INT: {
+                int data = rs.getInt(ind);
+                if(writeFlag(rs, buffer)) buffer.writeInt(data);
+                break;
+            }
+            case LONG: {
+                long data = rs.getLong(ind);
+                if(writeFlag(rs, buffer)) buffer.writeLong(data);
+                break;
+            }
+            case FLOAT: {
+                float data = rs.getFloat(ind);
+                if(writeFlag(rs, buffer)) buffer.writeInt(Float.floatToIntBits(data));
+                break;
+            }
+            case DOUBLE: {
+                double data = rs.getDouble(ind);
+                if(writeFlag(rs, buffer)) buffer.writeLong(Double.doubleToLongBits(data));
+                break;
+            }
+            case DECIMAL: {
+                BigDecimal data = rs.getBigDecimal(ind);
+                // scale may be negative, so separate flag is used for NULL
+                if(null != data) {
+                    buffer.write(VALUE_FLAG);
+                    buffer.writeInt(data.scale());
+                    buffer.writeBytes(data.unscaledValue().toByteArray());
+                } else buffer.write(NULL_FLAG);
+                break;
+            }
+            case STRING: {
+                String data = rs.getString(ind);
+                if(null != data) buffer.writeUtf8(data);
+                else buffer.writeInt(-1);
+                break;
+            }
+            case BYTES: {
+                byte[] data = rs.getBytes(ind);
+                if(null != data) buffer.writeBytes(data);
+                else buffer.writeInt(-1);
+                break;
+            }
+            case DATE: {
+                java.sql.Date data = rs.getDate(ind);
+                if(null != data) {
+                    buffer.write(VALUE_FLAG);
+                    buffer.writeLong(data.getTime());
+                } else buffer.write(NULL_FLAG);
+                break;
+            }
+            case TIME: {
+                Time data = rs.getTime(ind);
+                if(null != data) {
+                    buffer.write(VALUE_FLAG);
+                    buffer.writeLong(data.getTime());
+                } else buffer.write(NULL_FLAG);
+                break;
+            }
+            case TIMESTAMP: {
+                Timestamp data = rs.getTimestamp(ind);
+                if(null != data) {
+                    buffer.write(VALUE_FLAG);
+                    buffer.writeLong(data.getTime());
+                    buffer.writeInt(data.getNanos());
+                } else buffer.write(NULL_FLAG);
+                break;
+            }
+            default: {
+                Object data = rs.getObject(ind);
+                if(null != data) buffer.writeUtf8(data.toString());
+                else buffer.writeInt(-1);
+            }
+        }
+    }
+
+    private static boolean writeFlag(ResultSet rs, RowBuffer buffer) throws SQLException {
+        boolean present = !rs.wasNull();
+        buffer.write(present ? VALUE_FLAG : NULL_FLAG);
+        return present;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("names", names).
+                append("types", Arrays.toString(types)).
+                toString();
+    }
+}
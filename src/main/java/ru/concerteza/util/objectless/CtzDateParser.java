@@ -18,14 +18,18 @@ import static ru.concerteza.util.string.CtzConstants.ASCII_CHARSET;
  */
 public class CtzDateParser {
     private static final DateTimeFormatter dtf = DateTimeFormat.forPattern("yyyyMMddHHmmss");
-    private static final ThreadLocal<byte[]> dateBytes;
-    private static final ThreadLocal<Long> dateMillis;
-    static {
-        dateBytes = new ThreadLocal<byte[]>();
-        dateBytes.set(new byte[8]);
-        dateMillis = new ThreadLocal<Long>();
-        dateMillis.set(0L);
-    }
+    private static final ThreadLocal<byte[]> dateBytes = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[8];
+        }
+    };
+    private static final ThreadLocal<Long> dateMillis = new ThreadLocal<Long>() {
+        @Override
+        protected Long initialValue() {
+            return 0L;
+        }
+    };
 
     /**
      * Parse date string into milliseconds using current timezone
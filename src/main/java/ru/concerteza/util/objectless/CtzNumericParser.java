@@ -14,6 +14,12 @@ import static ru.concerteza.util.string.CtzConstants.ASCII_CHARSET;
  * Date: 4/18/13
  */
 public class CtzNumericParser {
+    // exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
     /**
      * Parse long from byte[] string
      *
@@ -128,6 +134,47 @@ public class CtzNumericParser {
         return -result;
     }
 
+    /**
+     * Parse double from byte[] string with optional fractional part separated by dot.
+     * Numbers with mantissa exceeding 2^53 or more than 22 fraction digits (and numbers
+     * in scientific notation) are parsed through {@link Double#parseDouble(String)}.
+     *
+     * @param numStr input string
+     * @param offset number offset in string
+     * @param length number length in string
+     * @return double value
+     */
+    public static double parseDouble(byte[] numStr, int offset, int length) {
+        assert numStr != null : null;
+        assert length > 0 : "empty input";
+        long mantissa = 0;
+        int fractionDigits = -1;
+        int i = 0;
+        boolean fast = true;
+        while (i < length) {
+            char ch = (char) numStr[offset + i];
+            // null-terminated or whitespace-terminated string
+            if('\0' == ch || isWhitespace(ch)) break;
+            i += 1;
+            if('.' == ch && fractionDigits < 0) {
+                fractionDigits = 0;
+                continue;
+            }
+            int digit = digit(ch, 10);
+            if(digit < 0 || mantissa >= MAX_EXACT_MANTISSA / 10) {
+                fast = false;
+                break;
+            }
+            mantissa = mantissa * 10 + digit;
+            if(fractionDigits >= 0) fractionDigits += 1;
+        }
+        if(fast && fractionDigits < POWERS_OF_TEN.length) {
+            // both operands are exact, so division result is correctly rounded
+            return fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        }
+        return Double.parseDouble(new String(numStr, offset, length, ASCII_CHARSET).trim());
+    }
+
     /**
      * Parse IP v.4 address in dot notation from byte[] string
      *
@@ -13,12 +13,13 @@ import javax.inject.Named;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.google.common.base.Preconditions.*;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.Arrays.asList;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
-import static ru.concerteza.util.collection.CtzCollectionUtils.toLowerKeysMap;
 import static ru.concerteza.util.reflect.CtzReflectionUtils.invokeConstructor;
 import static ru.concerteza.util.reflect.named.NamedConstructor.CaseType.INSENSITIVE;
 import static ru.concerteza.util.string.CtzFormatUtils.format;
@@ -36,6 +37,9 @@ import static ru.concerteza.util.string.CtzFormatUtils.format;
  * constructor invocation. All reflection introspection is done on named constructor instantiation.
  * For case insensitive names all {@code @Named} values must be locale insensitive. Null values are allowed
  * only for {@code com.google.common.base.Optional} arguments.
+ * Constructor resolution results are cached by the set of input keys (separately for each match mode and case type),
+ * so for inputs with the same keys (e.g. rows of the same JDBC result) constructor is chosen only once.
+ * Use {@link #forColumns(java.util.List, MatchMode, CaseType)} to invoke constructor on positional rows.
  *
  * @param <T> object type to instantiate
  * @author alexey
@@ -60,9 +64,14 @@ public class NamedConstructor<T> {
      */
     public enum MatchMode {EXACT, OPTIONAL_MISSED_ALLOWED, ADDITIONAL_ALLOWED}
 
+    // limit for resolutions cache size for each match mode and case type
+    private static final int MAX_CACHED_SIGNATURES = 64;
+
     // Lists (with linear search) is deliberate, they will be small
     private final List<SingleNamedConstr<T>> entries;
     private final boolean optional;
+    // input keys -> resolution, index is caseType.ordinal() * MatchMode.values().length + matchMode.ordinal()
+    private final List<ConcurrentMap<Set<String>, Resolution<T>>> resolutions;
 
     /**
      * @param type class to instantiate
@@ -73,6 +82,11 @@ public class NamedConstructor<T> {
         checkNotNull(type, "Provided type is null");
         checkNotNull(genericType, "Provided genericType is null");
         this.optional = Optional.class.isAssignableFrom(type);
+        ImmutableList.Builder<ConcurrentMap<Set<String>, Resolution<T>>> resBuilder = ImmutableList.builder();
+        for(int i = 0; i < CaseType.values().length * MatchMode.values().length; i++) {
+            resBuilder.add(new ConcurrentHashMap<Set<String>, Resolution<T>>());
+        }
+        this.resolutions = resBuilder.build();
         List<ConstrHolder> namedList = findNamed(genericType.isPresent() ? genericType.get() : type);
         if(0 == namedList.size()) {
             this.entries = ImmutableList.of();
@@ -130,9 +144,32 @@ public class NamedConstructor<T> {
      */
     public T invoke(Map<String, ?> map, MatchMode matchMode, CaseType caseType) {
         checkNotNull(map, "Provided map is null");
-        Map<String, ?> inputMap = INSENSITIVE.equals(caseType) ? toLowerKeysMap(map) : map;
-        SingleNamedConstr<T> snc = findSNC(inputMap.keySet(), matchMode, caseType);
-        return invokeSNC(snc, inputMap, matchMode, caseType);
+        Resolution<T> res = resolution(map.keySet(), matchMode, caseType);
+        Object[] args = new Object[res.children.length];
+        for(int i = 0; i < args.length; i++) {
+            Object raw = null != res.keys[i] ? map.get(res.keys[i]) : null;
+            args[i] = instantiateArg(res, i, raw, matchMode, caseType, map);
+        }
+        return invokeConstructor(res.snc.constr, args);
+    }
+
+    /**
+     * Resolves constructor for positional rows with given columns, resolution is cached
+     * by the set of column names
+     *
+     * @param columns column names, for duplicate names last column will be used
+     * @param matchMode match mode
+     * @param caseType case sensivity settings
+     * @return row invoker
+     */
+    public RowInvoker<T> forColumns(List<String> columns, MatchMode matchMode, CaseType caseType) {
+        checkNotNull(columns, "Provided columns are null");
+        Resolution<T> res = resolution(new HashSet<String>(columns), matchMode, caseType);
+        int[] indexes = new int[res.keys.length];
+        for(int i = 0; i < indexes.length; i++) {
+            indexes[i] = null != res.keys[i] ? columns.lastIndexOf(res.keys[i]) : -1;
+        }
+        return new RowInvoker<T>(this, res, ImmutableList.copyOf(columns), indexes, matchMode, caseType);
     }
 
     /**
@@ -206,6 +243,39 @@ public class NamedConstructor<T> {
         return res;
     }
 
+    private Resolution<T> resolution(Set<String> keys, MatchMode matchMode, CaseType caseType) {
+        ConcurrentMap<Set<String>, Resolution<T>> cache = resolutions.get(caseType.ordinal() * MatchMode.values().length + matchMode.ordinal());
+        Resolution<T> res = cache.get(keys);
+        if(null != res) return res;
+        res = resolve(keys, matchMode, caseType);
+        // arbitrary maps may have too many different key sets
+        if(cache.size() < MAX_CACHED_SIGNATURES) cache.putIfAbsent(Collections.unmodifiableSet(new HashSet<String>(keys)), res);
+        return res;
+    }
+
+    private Resolution<T> resolve(Set<String> keys, MatchMode matchMode, CaseType caseType) {
+        // matched name -> input key
+        Map<String, String> inputKeys = new LinkedHashMap<String, String>(keys.size());
+        for(String key : keys) {
+            if(INSENSITIVE.equals(caseType)) {
+                String existed = inputKeys.put(key.toLowerCase(Locale.ENGLISH), key);
+                checkArgument(null == existed, "Duplicate key: '%s' after lowering", key);
+            } else inputKeys.put(key, key);
+        }
+        SingleNamedConstr<T> snc = findSNC(inputKeys.keySet(), matchMode, caseType);
+        String[] argKeys = new String[snc.children.size()];
+        NamedConstructor[] children = new NamedConstructor[snc.children.size()];
+        int i = 0;
+        for(Map.Entry<String, NamedConstructor> pr : snc.children.entrySet()) {
+            String key = CaseType.SENSITIVE.equals(caseType) ? pr.getKey() : pr.getKey().toLowerCase(Locale.ENGLISH);
+            if(!pr.getValue().optional && !MatchMode.OPTIONAL_MISSED_ALLOWED.equals(matchMode))checkArgument(inputKeys.containsKey(key), "No value provided for named argument: '%s', constructor: '%s'", key, this);
+            argKeys[i] = inputKeys.get(key);
+            children[i] = pr.getValue();
+            i += 1;
+        }
+        return new Resolution<T>(snc, argKeys, children);
+    }
+
     // todo: maybe move state checks to nc creation
     private SingleNamedConstr<T> findSNC(Set<String> keys, MatchMode matchMode, CaseType caseType) {
         ImmutableList.Builder<SingleNamedConstr<T>> builder = ImmutableList.builder();
@@ -245,22 +315,12 @@ public class NamedConstructor<T> {
         }
     }
 
-    private T invokeSNC(SingleNamedConstr<T> snc, Map<String, ?> map, MatchMode matchMode, CaseType caseType) {
-        ImmutableList.Builder<Object> builder = ImmutableList.builder();
-        for(Map.Entry<String, NamedConstructor> pr : snc.children.entrySet()) {
-            String key = CaseType.SENSITIVE.equals(caseType) ? pr.getKey() : pr.getKey().toLowerCase(Locale.ENGLISH);
-            if(!pr.getValue().optional && !MatchMode.OPTIONAL_MISSED_ALLOWED.equals(matchMode))checkArgument(map.containsKey(key), "No value provided for named argument: '%s', constructor: '%s'", key, this);
-            Object raw = map.get(key);
-            final Object instantiated;
-            if(null != raw) instantiated = pr.getValue().invoke(raw, matchMode, caseType);
-            else {
-                if(pr.getValue().optional) instantiated = Optional.absent();
-                else throw new IllegalArgumentException(format("Not optional null value on key: '{}' " +
-                        "in provided map: '{}', constructor: '{}'", key, map, this));
-            }
-            builder.add(instantiated);
-        }
-        return invokeConstructor(snc.constr, builder.build().toArray());
+    private Object instantiateArg(Resolution<T> res, int index, Object raw, MatchMode matchMode, CaseType caseType, Object inputForLogging) {
+        NamedConstructor child = res.children[index];
+        if(null != raw) return child.invoke(raw, matchMode, caseType);
+        if(child.optional) return Optional.absent();
+        throw new IllegalArgumentException(format("Not optional null value on key: '{}' " +
+                "in provided input: '{}', constructor: '{}'", res.keys[index], inputForLogging, this));
     }
 
     @Override
@@ -307,6 +367,89 @@ public class NamedConstructor<T> {
         }
     }
 
+    /**
+     * Named constructor resolved for the fixed list of columns, instantiates objects from positional rows
+     * reading constructor arguments by precomputed indexes. Thread-safe.
+     *
+     * @param <T> object type to instantiate
+     */
+    public static class RowInvoker<T> {
+        private final NamedConstructor<T> nc;
+        private final Resolution<T> res;
+        private final List<String> columns;
+        private final int[] indexes;
+        private final MatchMode matchMode;
+        private final CaseType caseType;
+
+        private RowInvoker(NamedConstructor<T> nc, Resolution<T> res, List<String> columns, int[] indexes,
+                           MatchMode matchMode, CaseType caseType) {
+            this.nc = nc;
+            this.res = res;
+            this.columns = columns;
+            this.indexes = indexes;
+            this.matchMode = matchMode;
+            this.caseType = caseType;
+        }
+
+        /**
+         * @param column zero-based column index
+         * @return whether column value is used as constructor argument
+         */
+        public boolean uses(int column) {
+            for(int idx : indexes) {
+                if(idx == column) return true;
+            }
+            return false;
+        }
+
+        /**
+         * Instantiates object from the row, values of unused columns are ignored
+         *
+         * @param row row values in columns order
+         * @return instantiated object
+         */
+        public T invoke(Object[] row) {
+            checkArgument(row.length == columns.size(), "Invalid row length: '%s', columns: '%s'", row.length, columns);
+            Object[] args = new Object[indexes.length];
+            for(int i = 0; i < args.length; i++) {
+                Object raw = indexes[i] >= 0 ? row[indexes[i]] : null;
+                args[i] = nc.instantiateArg(res, i, raw, matchMode, caseType, columns);
+            }
+            return invokeConstructor(res.snc.constr, args);
+        }
+
+        /**
+         * @return column names this invoker was resolved for
+         */
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        @Override
+        public String toString() {
+            return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).
+                    append("constructor", res.snc).
+                    append("columns", columns).
+                    append("matchMode", matchMode).
+                    append("caseType", caseType).
+                    toString();
+        }
+    }
+
+    // constructor chosen for the particular input keys
+    private static class Resolution<T> {
+        private final SingleNamedConstr<T> snc;
+        // input keys in constructor arguments order, null for missed optional arguments
+        private final String[] keys;
+        private final NamedConstructor[] children;
+
+        private Resolution(SingleNamedConstr<T> snc, String[] keys, NamedConstructor[] children) {
+            this.snc = snc;
+            this.keys = keys;
+            this.children = children;
+        }
+    }
+
     private static class NamedConstructorArg {
         private final String name;
         private final Class<?> type;
@@ -0,0 +1,154 @@
+package ru.concerteza.util.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static ru.concerteza.util.string.CtzFormatUtils.format;
+
+/**
+ * Cron runnable for guarded mode of {@link SchedulerCreator}. Runs on timer thread and only hands job off
+ * to worker pool (after optional random delay), so timer thread is never blocked by jobs.
+ * Job never overlaps itself, misfires are handled according to {@link MisfirePolicy}.
+ * Thread-safe.
+ *
+ * User: alexkasko
+ * Date: 1/5/15
+ */
+class GuardedJobRunnable implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(GuardedJobRunnable.class);
+    private static final Random RANDOM = new Random();
+
+    private final ScheduledJobRunner jobRunner;
+    private final ScheduledJob job;
+    private final ScheduledExecutorService timer;
+    private final Executor workers;
+    private final MisfirePolicy policy;
+    private final long misfireThresholdMillis;
+    private final long maxJitterMillis;
+    // guarded by this
+    private boolean running = false;
+    private boolean pending = false;
+    private long pendingScheduled = 0;
+
+    GuardedJobRunnable(ScheduledJobRunner jobRunner, ScheduledJob job, ScheduledExecutorService timer, Executor workers,
+                       MisfirePolicy policy, long misfireThresholdMillis, long maxJitterMillis) {
+        this.jobRunner = jobRunner;
+        this.job = job;
+        this.timer = timer;
+        this.workers = workers;
+        this.policy = policy;
+        this.misfireThresholdMillis = misfireThresholdMillis;
+        this.maxJitterMillis = maxJitterMillis;
+    }
+
+    /**
+     * Called by timer on cron fire
+     */
+    @Override
+    public void run() {
+        long jitter = maxJitterMillis > 0 ? (long) (RANDOM.nextDouble() * maxJitterMillis) : 0;
+        // lateness is measured from this time, not from the time timer gets to hand off
+        long scheduled = System.currentTimeMillis() + jitter;
+        if(jitter > 0) timer.schedule(new Handoff(scheduled), jitter, TimeUnit.MILLISECONDS);
+        else handoff(scheduled);
+    }
+
+    private void handoff(long scheduled) {
+        boolean start;
+        boolean coalesce = MisfirePolicy.SKIP != policy;
+        synchronized (this) {
+            start = !running;
+            if(start) running = true;
+            else if(coalesce) {
+                // only the first missed fire is kept, others are merged into it
+                if(!pending) pendingScheduled = scheduled;
+                pending = true;
+            }
+        }
+        if(start) submit(new Worker(scheduled));
+        else logger.info("Job: '{}' is still running, fire {}", job, coalesce ? "coalesced" : "skipped");
+    }
+
+    private void submit(Worker worker) {
+        try {
+            workers.execute(worker);
+        } catch(RejectedExecutionException e) {
+            logger.error(format("Job: '{}' rejected by worker pool", job), e);
+            synchronized (this) {
+                running = false;
+                pending = false;
+            }
+        }
+    }
+
+    private void start(long late) {
+        if(MisfirePolicy.RUN_ONCE != policy || late <= misfireThresholdMillis) return;
+        // late run covers all the fires missed while it was waiting for worker
+        synchronized (this) {
+            pending = false;
+        }
+        logger.info("Job: '{}' started {} ms late, missed fires are merged into this run", job, late);
+    }
+
+    private void finish() {
+        boolean again;
+        long scheduled;
+        synchronized (this) {
+            again = pending;
+            scheduled = pendingScheduled;
+            pending = false;
+            if(!again) running = false;
+        }
+        if(again) submit(new Worker(scheduled));
+    }
+
+    @Override
+    public String toString() {
+        return job.toString();
+    }
+
+    private class Handoff implements Runnable {
+        private final long scheduled;
+
+        private Handoff(long scheduled) {
+            this.scheduled = scheduled;
+        }
+
+        @Override
+        public void run() {
+            handoff(scheduled);
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final long scheduled;
+
+        private Worker(long scheduled) {
+            this.scheduled = scheduled;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void run() {
+            try {
+                long late = System.currentTimeMillis() - scheduled;
+                if(MisfirePolicy.SKIP == policy && late > misfireThresholdMillis) {
+                    logger.info("Job: '{}' started {} ms late, skipped", job, late);
+                } else {
+                    start(late);
+                    jobRunner.runJob(job);
+                }
+            } catch(Exception e) {
+                logger.error(format("Job: '{}' failed", job), e);
+            } finally {
+                finish();
+            }
+        }
+    }
+}
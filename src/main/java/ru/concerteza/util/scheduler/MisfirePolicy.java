@@ -0,0 +1,27 @@
+package ru.concerteza.util.scheduler;
+
+/**
+ * Policies for handling of job fires, that cannot be run on time, used by {@link SchedulerCreator}
+ * in guarded mode. Fire is considered misfired if the same job is still running (job never overlaps itself)
+ * or if worker pool started it later than misfire threshold after its scheduled time (fire time plus jitter).
+ *
+ * User: alexkasko
+ * Date: 1/5/15
+ */
+public enum MisfirePolicy {
+    /**
+     * Overlapping fires and fires started later than threshold are dropped
+     */
+    SKIP,
+    /**
+     * Overlapping fires are merged into single run, that starts right after current run,
+     * late fires are run
+     */
+    COALESCE,
+    /**
+     * Overlapping fires are merged into single run, that starts right after current run,
+     * late fires are run once: fires missed while late run was waiting for worker are merged into it
+     * instead of being run afterwards
+     */
+    RUN_ONCE
+}
@@ -8,11 +8,19 @@ import org.springframework.scheduling.config.ScheduledTaskRegistrar;
 import ru.concerteza.util.concurrency.ExecutorThreadFactory;
 
 import java.util.Collection;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
 /**
- * Utility class to create Spring's scheduler
+ * Utility class to create Spring's scheduler.
+ * By default jobs are run directly on scheduler threads, so long job delays all the others.
+ * In guarded mode (enabled with {@link #setWorkerExecutor(Executor)}) scheduler threads only hand jobs off
+ * to worker pool, each job never overlaps itself, misfires are handled according to {@link MisfirePolicy}
+ * and start times may be randomly delayed to avoid simultaneous starts of many jobs.
  *
  * User: alexkasko
  * Date: 12/7/14
@@ -23,6 +31,10 @@ public class SchedulerCreator {
     private final ScheduledJobRunner jobRunner;
     private final int schedulerPoolSize;
     private final ThreadFactory threadFactory;
+    private Executor workerExecutor;
+    private MisfirePolicy misfirePolicy = MisfirePolicy.SKIP;
+    private long misfireThresholdMillis = 1000;
+    private long maxJitterMillis = 0;
 
     /**
      * Shortcut constructor
@@ -46,6 +58,56 @@ public class SchedulerCreator {
         this.threadFactory = threadFactory;
     }
 
+    /**
+     * Fluent setter, enables guarded mode
+     *
+     * @param workerExecutor executor to run jobs on
+     * @return creator itself for chained init
+     */
+    public SchedulerCreator setWorkerExecutor(Executor workerExecutor) {
+        checkNotNull(workerExecutor, "Provided worker executor is null");
+        this.workerExecutor = workerExecutor;
+        return this;
+    }
+
+    /**
+     * Fluent setter
+     *
+     * @param misfirePolicy misfire policy for guarded mode, {@link MisfirePolicy#SKIP} by default
+     * @return creator itself for chained init
+     */
+    public SchedulerCreator setMisfirePolicy(MisfirePolicy misfirePolicy) {
+        checkNotNull(misfirePolicy, "Provided misfire policy is null");
+        this.misfirePolicy = misfirePolicy;
+        return this;
+    }
+
+    /**
+     * Fluent setter
+     *
+     * @param misfireThresholdMillis max delay between scheduled time (fire time plus jitter) and start
+     *                               of the job on worker pool for {@link MisfirePolicy#SKIP}
+     *                               and {@link MisfirePolicy#RUN_ONCE}, {@code 1000} by default
+     * @return creator itself for chained init
+     */
+    public SchedulerCreator setMisfireThresholdMillis(long misfireThresholdMillis) {
+        checkArgument(misfireThresholdMillis >= 0, "Misfire threshold must be non-negative, but was: '%s'", misfireThresholdMillis);
+        this.misfireThresholdMillis = misfireThresholdMillis;
+        return this;
+    }
+
+    /**
+     * Fluent setter
+     *
+     * @param maxJitterMillis max random delay of job start in guarded mode, {@code 0} by default
+     * @return creator itself for chained init
+     */
+    public SchedulerCreator setMaxJitterMillis(long maxJitterMillis) {
+        checkArgument(maxJitterMillis >= 0, "Max jitter must be non-negative, but was: '%s'", maxJitterMillis);
+        this.maxJitterMillis = maxJitterMillis;
+        return this;
+    }
+
     /**
      * Creates spring scheduler from the task templates list,
      * created scheduler must be registered in context as {@code @Bean}
@@ -62,7 +124,10 @@ public class SchedulerCreator {
         registrar.setTaskScheduler(cts);
         ImmutableMap.Builder<Runnable,String> builder = ImmutableMap.builder();
         for(ScheduledJob st : scheduledTasks) {
-            builder.put(new TaskCreatorRunnable(jobRunner, st), st.getCronExpr());
+            Runnable runnable = null != workerExecutor ?
+                    new GuardedJobRunnable(jobRunner, st, stpe, workerExecutor, misfirePolicy, misfireThresholdMillis, maxJitterMillis) :
+                    new TaskCreatorRunnable(jobRunner, st);
+            builder.put(runnable, st.getCronExpr());
         }
         registrar.setCronTasks(builder.build());
         return registrar;
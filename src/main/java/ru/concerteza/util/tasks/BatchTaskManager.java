@@ -0,0 +1,39 @@
+package ru.concerteza.util.tasks;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * DAO interface for tasks, that supports bounded claiming and batched updates,
+ * required for {@link TaskEngine} batch mode (see {@link TaskEngine#setBatchSize(int)})
+ *
+ * @author alexkasko
+ * Date: 12/24/14
+ * @see TaskEngine
+ * @see TaskManager
+ */
+@SuppressWarnings("deprecation") // TaskManager, Task
+public interface BatchTaskManager<T extends Task> extends TaskManager<T> {
+    /**
+     * The same as {@link #markProcessingAndLoad()} but returns not more than {@code limit} tasks
+     *
+     * @param limit max count of tasks to return
+     * @return collection of tasks to run
+     */
+    Collection<? extends T> markProcessingAndLoad(int limit);
+
+    /**
+     * Changes stages of multiple tasks, will be called with coalesced stages updates
+     *
+     * @param stages new stages mapped by task ids
+     */
+    void updateStages(Map<Long, String> stages);
+
+    /**
+     * Changes statuses of multiple tasks to default, will be called with coalesced
+     * updates after successful processing of last stages
+     *
+     * @param taskIds tasks ids
+     */
+    void updateStatusesDefault(Collection<Long> taskIds);
+}
@@ -0,0 +1,147 @@
+package ru.concerteza.util.tasks;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Task manager wrapper used by {@link TaskEngine} in batch mode. Stage updates and default status updates
+ * are buffered (only the last stage of each task is kept) and are written with {@link BatchTaskManager}
+ * batch methods on {@link #flush()}, that is called when buffer size reaches {@code flushSize},
+ * on each {@link TaskEngine#fire()}, periodically with flush executor (see {@link TaskEngine#setFlushExecutor})
+ * and on {@link TaskEngine#preDestroy()}. Error and suspended status updates are written immediately,
+ * error updates are preceded by flush, as they set the stage themselves.
+ * Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/24/14
+ */
+@SuppressWarnings("deprecation") // TaskManager, Task
+class CoalescingTaskManager implements TaskManager<Task> {
+    private final BatchTaskManager<? extends Task> target;
+    private final int flushSize;
+    // read lock guards buffer updates, write lock guards buffer swap
+    private final ReadWriteLock bufferLock = new ReentrantReadWriteLock();
+    // serializes flushes, so earlier snapshot cannot overwrite later one
+    private final Object flushLock = new Object();
+    private Map<Long, String> stages = new HashMap<Long, String>();
+    private Set<Long> defaults = new LinkedHashSet<Long>();
+
+    CoalescingTaskManager(BatchTaskManager<? extends Task> target, int flushSize) {
+        this.target = target;
+        this.flushSize = flushSize;
+    }
+
+    /**
+     * Writes buffered updates, stages before statuses
+     */
+    void flush() {
+        synchronized(flushLock) {
+            Map<Long, String> stagesSnapshot;
+            Set<Long> defaultsSnapshot;
+            bufferLock.writeLock().lock();
+            try {
+                stagesSnapshot = stages;
+                defaultsSnapshot = defaults;
+                stages = new HashMap<Long, String>();
+                defaults = new LinkedHashSet<Long>();
+            } finally {
+                bufferLock.writeLock().unlock();
+            }
+            if(stagesSnapshot.size() > 0) target.updateStages(stagesSnapshot);
+            if(defaultsSnapshot.size() > 0) target.updateStatusesDefault(defaultsSnapshot);
+        }
+    }
+
+    /**
+     * Drops buffered updates of the task, waits for in-flight flush to finish
+     *
+     * @param taskId task id
+     */
+    void discard(long taskId) {
+        synchronized(flushLock) {
+            bufferLock.writeLock().lock();
+            try {
+                stages.remove(taskId);
+                defaults.remove(taskId);
+            } finally {
+                bufferLock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<? extends Task> markProcessingAndLoad() {
+        return target.markProcessingAndLoad();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<Long> loadSuspendedIds() {
+        return target.loadSuspendedIds();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateStage(long taskId, String stage) {
+        int size;
+        bufferLock.readLock().lock();
+        try {
+            // buffers are swapped under write lock, so synchronizing on current buffer is enough here
+            synchronized(stages) {
+                stages.put(taskId, stage);
+                size = stages.size();
+            }
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+        if(size >= flushSize) flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateStatusDefault(long taskId) {
+        int size;
+        bufferLock.readLock().lock();
+        try {
+            synchronized(defaults) {
+                defaults.add(taskId);
+                size = defaults.size();
+            }
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+        if(size >= flushSize) flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateStatusSuspended(long taskId) {
+        target.updateStatusSuspended(taskId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateStatusError(long taskId, Exception e, String lastCompletedStage) {
+        // pending stage update must not overwrite last completed stage
+        flush();
+        target.updateStatusError(taskId, e, lastCompletedStage);
+    }
+}
@@ -0,0 +1,22 @@
+package ru.concerteza.util.tasks;
+
+/**
+ * Task, which stages form a graph, {@link TaskEngine} processes independent stages of such tasks concurrently.
+ * {@link #stageChain()} is not used for graph tasks and may return {@code null},
+ * {@link #getStageName()} should return the last completed stage (or initial stage) name.
+ * Tasks returning {@code null} stage graph are processed as usual chain tasks.
+ *
+ * @author alexkasko
+ * Date: 12/28/14
+ * @see TaskStageGraph
+ * @see GraphTaskManager
+ */
+@SuppressWarnings("deprecation") // Task
+public interface GraphTask extends Task {
+    /**
+     * Should be implemented as static method on upper level of hierarchy
+     *
+     * @return stage graph of this task
+     */
+    TaskStageGraph stageGraph();
+}
@@ -0,0 +1,31 @@
+package ru.concerteza.util.tasks;
+
+import java.util.Map;
+
+/**
+ * DAO interface for tasks, that persists per-stage statuses, required for processing
+ * {@link GraphTask}s with {@link TaskEngine}. Stages, that are completed according to
+ * stored statuses, are skipped on task resume.
+ *
+ * @author alexkasko
+ * Date: 12/28/14
+ * @see GraphTask
+ * @see TaskStageGraph
+ */
+@SuppressWarnings("deprecation") // TaskManager
+public interface GraphTaskManager<T extends Task> extends TaskManager<T> {
+    /**
+     * @param taskId task id
+     * @return stored stage statuses mapped by completed stage names, stages never started may be absent
+     */
+    Map<String, TaskStageGraph.StageStatus> loadStageStatuses(long taskId);
+
+    /**
+     * Changes status of single stage, will be called on stage start and finish
+     *
+     * @param taskId task id
+     * @param stage completed stage name
+     * @param status new stage status
+     */
+    void updateStageStatus(long taskId, String stage, TaskStageGraph.StageStatus status);
+}
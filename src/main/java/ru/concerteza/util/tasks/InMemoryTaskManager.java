@@ -0,0 +1,442 @@
+package ru.concerteza.util.tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+
+/**
+ * In-memory reference implementation of {@link LeaseTaskManager}, {@link BatchTaskManager},
+ * {@link GraphTaskManager} and {@link LeaseGraphTaskManager}.
+ * May be shared between multiple {@link TaskEngine} instances to emulate multiple nodes.
+ * New and resumed tasks are claimed in creation order, processing tasks with expired leases are reclaimed.
+ * Tasks claimed with {@link #markProcessingAndLoad()} have no owner and never expire.
+ * Non-fenced stage, stage status and task status updates (except suspension) are rejected for tasks owned by nodes.
+ * Returned tasks are snapshots of stored state. Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/26/14
+ * @see TaskEngine
+ */
+@SuppressWarnings("deprecation") // TaskManager, Task
+public class InMemoryTaskManager implements LeaseGraphTaskManager<InMemoryTaskManager.InMemoryTask>,
+        BatchTaskManager<InMemoryTaskManager.InMemoryTask> {
+
+    /**
+     * Stored task statuses
+     */
+    public enum Status {
+        NEW, PROCESSING, NORMAL, SUSPENDED, RESUMED, ERROR
+    }
+
+    private final Map<Long, InMemoryTask> tasks = new LinkedHashMap<Long, InMemoryTask>();
+    private final Map<Long, Map<String, TaskStageGraph.StageStatus>> stageStatuses =
+            new HashMap<Long, Map<String, TaskStageGraph.StageStatus>>();
+    private long nextId = 1;
+
+    /**
+     * Adds new task
+     *
+     * @param chain task stage chain
+     * @param stage initial stage name
+     * @return task id
+     */
+    public synchronized long add(TaskStageChain chain, String stage) {
+        checkNotNull(chain, "Provided chain is null");
+        chain.forName(stage);
+        long id = nextId++;
+        tasks.put(id, new InMemoryTask(id, chain, null, stage, Status.NEW, null, 0));
+        return id;
+    }
+
+    /**
+     * Adds new graph task
+     *
+     * @param graph task stage graph
+     * @param stage initial stage name
+     * @return task id
+     */
+    public synchronized long add(TaskStageGraph graph, String stage) {
+        checkNotNull(graph, "Provided graph is null");
+        checkArgument(isNotBlank(stage), "Provided stage is blank");
+        long id = nextId++;
+        tasks.put(id, new InMemoryTask(id, null, graph, stage, Status.NEW, null, 0));
+        stageStatuses.put(id, new HashMap<String, TaskStageGraph.StageStatus>());
+        return id;
+    }
+
+    /**
+     * Switches suspended or failed task into 'resumed' status
+     *
+     * @param taskId task id
+     */
+    public synchronized void resume(long taskId) {
+        InMemoryTask ta = load(taskId);
+        checkState(Status.SUSPENDED == ta.status || Status.ERROR == ta.status,
+                "Only suspended or failed tasks may be resumed, task: '%s'", ta);
+        store(ta.with(ta.stage, Status.RESUMED, null, 0));
+    }
+
+    /**
+     * @param taskId task id
+     * @return stored task state
+     */
+    public synchronized InMemoryTask get(long taskId) {
+        return load(taskId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Collection<InMemoryTask> claim(String nodeId, long leaseMillis, int limit) {
+        checkArgument(isNotBlank(nodeId), "Provided node id is blank");
+        checkArgument(leaseMillis > 0, "Lease must be positive, but was: '%s'", leaseMillis);
+        return claimInternal(nodeId, System.currentTimeMillis() + leaseMillis, limit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Collection<Long> renewLeases(String nodeId, Collection<Long> taskIds, long leaseMillis) {
+        long until = System.currentTimeMillis() + leaseMillis;
+        ImmutableList.Builder<Long> lost = ImmutableList.builder();
+        for(Long id : taskIds) {
+            InMemoryTask ta = tasks.get(id);
+            if(isOwned(ta, nodeId)) {
+                store(ta.with(ta.stage, ta.status, nodeId, until));
+            } else lost.add(id);
+        }
+        return lost.build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Collection<InMemoryTask> markProcessingAndLoad() {
+        return claimInternal(null, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Collection<InMemoryTask> markProcessingAndLoad(int limit) {
+        return claimInternal(null, Long.MAX_VALUE, limit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Collection<Long> loadSuspendedIds() {
+        ImmutableList.Builder<Long> res = ImmutableList.builder();
+        for(InMemoryTask ta : tasks.values()) {
+            if(Status.SUSPENDED == ta.status) res.add(ta.id);
+        }
+        return res.build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void updateStage(long taskId, String stage) {
+        InMemoryTask ta = loadNotOwned(taskId);
+        store(ta.with(stage, ta.status, ta.owner, ta.leaseUntil));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean updateStage(String nodeId, long taskId, String stage) {
+        InMemoryTask ta = tasks.get(taskId);
+        if(!isOwned(ta, nodeId)) return false;
+        store(ta.with(stage, ta.status, ta.owner, ta.leaseUntil));
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Collection<Long> updateStages(String nodeId, Map<Long, String> stages) {
+        ImmutableList.Builder<Long> lost = ImmutableList.builder();
+        for(Map.Entry<Long, String> en : stages.entrySet()) {
+            if(!updateStage(nodeId, en.getKey(), en.getValue())) lost.add(en.getKey());
+        }
+        return lost.build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void updateStages(Map<Long, String> stages) {
+        for(Map.Entry<Long, String> en : stages.entrySet()) updateStage(en.getKey(), en.getValue());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void updateStatusDefault(long taskId) {
+        InMemoryTask ta = loadNotOwned(taskId);
+        store(ta.with(ta.stage, Status.NORMAL, null, 0));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean updateStatusDefault(String nodeId, long taskId) {
+        InMemoryTask ta = tasks.get(taskId);
+        if(!isOwned(ta, nodeId)) return false;
+        store(ta.with(ta.stage, Status.NORMAL, null, 0));
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Collection<Long> updateStatusesDefault(String nodeId, Collection<Long> taskIds) {
+        ImmutableList.Builder<Long> lost = ImmutableList.builder();
+        for(Long id : taskIds) {
+            if(!updateStatusDefault(nodeId, id)) lost.add(id);
+        }
+        return lost.build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void updateStatusesDefault(Collection<Long> taskIds) {
+        for(Long id : taskIds) updateStatusDefault(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void updateStatusSuspended(long taskId) {
+        InMemoryTask ta = load(taskId);
+        store(ta.with(ta.stage, Status.SUSPENDED, ta.owner, ta.leaseUntil));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void updateStatusError(long taskId, Exception e, String lastCompletedStage) {
+        InMemoryTask ta = loadNotOwned(taskId);
+        store(ta.with(lastCompletedStage, Status.ERROR, null, 0));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean updateStatusError(String nodeId, long taskId, Exception e, String lastCompletedStage) {
+        InMemoryTask ta = tasks.get(taskId);
+        if(!isOwned(ta, nodeId)) return false;
+        store(ta.with(lastCompletedStage, Status.ERROR, null, 0));
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Map<String, TaskStageGraph.StageStatus> loadStageStatuses(long taskId) {
+        return ImmutableMap.copyOf(loadStageStatusesInternal(taskId));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void updateStageStatus(long taskId, String stage, TaskStageGraph.StageStatus status) {
+        Map<String, TaskStageGraph.StageStatus> statuses = loadStageStatusesInternal(taskId);
+        loadNotOwned(taskId).graph.forName(stage);
+        checkNotNull(status, "Provided status is null");
+        statuses.put(stage, status);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean updateStageStatus(String nodeId, long taskId, String stage, TaskStageGraph.StageStatus status) {
+        Map<String, TaskStageGraph.StageStatus> statuses = loadStageStatusesInternal(taskId);
+        InMemoryTask ta = tasks.get(taskId);
+        if(!isOwned(ta, nodeId)) return false;
+        ta.graph.forName(stage);
+        checkNotNull(status, "Provided status is null");
+        statuses.put(stage, status);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        return new ToStringBuilder(this).
+                append("tasks", tasks.values()).
+                toString();
+    }
+
+    private Collection<InMemoryTask> claimInternal(String nodeId, long leaseUntil, int limit) {
+        checkArgument(limit > 0, "Limit must be positive, but was: '%s'", limit);
+        long now = System.currentTimeMillis();
+        ImmutableList.Builder<InMemoryTask> res = ImmutableList.builder();
+        int count = 0;
+        for(InMemoryTask ta : ImmutableList.copyOf(tasks.values())) {
+            if(count >= limit) break;
+            boolean expired = Status.PROCESSING == ta.status && ta.leaseUntil < now;
+            if(Status.NEW == ta.status || Status.RESUMED == ta.status || expired) {
+                InMemoryTask claimed = ta.with(ta.stage, Status.PROCESSING, nodeId, leaseUntil);
+                store(claimed);
+                res.add(claimed);
+                count += 1;
+            }
+        }
+        return res.build();
+    }
+
+    private InMemoryTask load(long taskId) {
+        InMemoryTask res = tasks.get(taskId);
+        checkArgument(null != res, "Task not found, id: '%s'", taskId);
+        return res;
+    }
+
+    private InMemoryTask loadNotOwned(long taskId) {
+        InMemoryTask res = load(taskId);
+        checkState(null == res.owner, "Task is owned by node, fenced update must be used, task: '%s'", res);
+        return res;
+    }
+
+    // suspended task is still owned until it stops
+    private static boolean isOwned(InMemoryTask ta, String nodeId) {
+        return null != ta && nodeId.equals(ta.owner) && (Status.PROCESSING == ta.status || Status.SUSPENDED == ta.status);
+    }
+
+    private Map<String, TaskStageGraph.StageStatus> loadStageStatusesInternal(long taskId) {
+        Map<String, TaskStageGraph.StageStatus> res = stageStatuses.get(taskId);
+        checkArgument(null != res, "Graph task not found, id: '%s'", taskId);
+        return res;
+    }
+
+    private void store(InMemoryTask task) {
+        tasks.put(task.id, task);
+    }
+
+    /**
+     * Immutable snapshot of stored task
+     */
+    public static class InMemoryTask implements GraphTask {
+        private final long id;
+        private final TaskStageChain chain;
+        private final TaskStageGraph graph;
+        private final String stage;
+        private final Status status;
+        private final String owner;
+        private final long leaseUntil;
+
+        private InMemoryTask(long id, TaskStageChain chain, TaskStageGraph graph, String stage, Status status,
+                             String owner, long leaseUntil) {
+            this.id = id;
+            this.chain = chain;
+            this.graph = graph;
+            this.stage = stage;
+            this.status = status;
+            this.owner = owner;
+            this.leaseUntil = leaseUntil;
+        }
+
+        private InMemoryTask with(String stage, Status status, String owner, long leaseUntil) {
+            return new InMemoryTask(id, chain, graph, stage, status, owner, leaseUntil);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public TaskStageChain stageChain() {
+            return chain;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public TaskStageGraph stageGraph() {
+            return graph;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getStageName() {
+            return stage;
+        }
+
+        /**
+         * @return task status
+         */
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return owner node id, may be null
+         */
+        public String getOwner() {
+            return owner;
+        }
+
+        /**
+         * @return lease expiration time in milliseconds
+         */
+        public long getLeaseUntil() {
+            return leaseUntil;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return new ToStringBuilder(this).
+                    append("id", id).
+                    append("stage", stage).
+                    append("status", status).
+                    append("owner", owner).
+                    append("leaseUntil", leaseUntil).
+                    toString();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ru.concerteza.util.tasks;
+
+/**
+ * DAO interface for tasks, that supports both lease-based claiming and per-stage statuses,
+ * required for processing {@link GraphTask}s with {@link TaskEngine} in clustered mode.
+ * Stage status updates are fenced the same way as stage and status updates of {@link LeaseTaskManager}.
+ * For reference implementation see {@link InMemoryTaskManager}.
+ *
+ * @author alexkasko
+ * Date: 12/28/14
+ * @see LeaseTaskManager
+ * @see GraphTaskManager
+ */
+@SuppressWarnings("deprecation") // Task
+public interface LeaseGraphTaskManager<T extends Task> extends LeaseTaskManager<T>, GraphTaskManager<T> {
+    /**
+     * Fenced variant of {@link #updateStageStatus(long, String, TaskStageGraph.StageStatus)}
+     *
+     * @param nodeId owner node id
+     * @param taskId task id
+     * @param stage completed stage name
+     * @param status new stage status
+     * @return {@code false} if task is not owned by this node any more and status wasn't changed
+     */
+    boolean updateStageStatus(String nodeId, long taskId, String stage, TaskStageGraph.StageStatus status);
+}
@@ -0,0 +1,129 @@
+package ru.concerteza.util.tasks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Task manager wrapper used by {@link TaskEngine} in clustered mode, claims tasks with leases
+ * and writes stage and status updates with fenced {@link LeaseTaskManager} methods.
+ * Updates for tasks, whose leases were lost by this node, are dropped, lost state is checked
+ * on each write, so updates coalesced before lease loss are dropped too. Tasks, that are found
+ * not owned by this node on fenced update, are reported to engine as lost.
+ * Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/26/14
+ */
+@SuppressWarnings("deprecation") // TaskManager, Task
+class LeaseGuardTaskManager implements BatchTaskManager<Task> {
+    private final LeaseTaskManager<? extends Task> target;
+    private final String nodeId;
+    private final long leaseMillis;
+    private final TaskEngine engine;
+
+    /**
+     * @param target target manager
+     * @param nodeId owner node id
+     * @param leaseMillis lease duration in milliseconds
+     * @param engine engine to check and report lost leases
+     */
+    LeaseGuardTaskManager(LeaseTaskManager<? extends Task> target, String nodeId, long leaseMillis, TaskEngine engine) {
+        this.target = target;
+        this.nodeId = nodeId;
+        this.leaseMillis = leaseMillis;
+        this.engine = engine;
+    }
+
+    /**
+     * Claims all available tasks with leases owned by this node
+     *
+     * @return collection of tasks to run
+     */
+    @Override
+    public Collection<? extends Task> markProcessingAndLoad() {
+        return markProcessingAndLoad(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Claims tasks with leases owned by this node
+     *
+     * @param limit max count of tasks to return
+     * @return collection of tasks to run
+     */
+    @Override
+    public Collection<? extends Task> markProcessingAndLoad(int limit) {
+        return target.claim(nodeId, leaseMillis, limit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<Long> loadSuspendedIds() {
+        return target.loadSuspendedIds();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateStage(long taskId, String stage) {
+        if(engine.isLeaseLost(taskId)) return;
+        if(!target.updateStage(nodeId, taskId, stage)) engine.leaseLost(taskId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateStages(Map<Long, String> stages) {
+        Map<Long, String> owned = new LinkedHashMap<Long, String>();
+        for(Map.Entry<Long, String> en : stages.entrySet()) {
+            if(!engine.isLeaseLost(en.getKey())) owned.put(en.getKey(), en.getValue());
+        }
+        if(owned.isEmpty()) return;
+        for(Long id : target.updateStages(nodeId, owned)) engine.leaseLost(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateStatusDefault(long taskId) {
+        if(engine.isLeaseLost(taskId)) return;
+        if(!target.updateStatusDefault(nodeId, taskId)) engine.leaseLost(taskId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateStatusesDefault(Collection<Long> taskIds) {
+        List<Long> owned = new ArrayList<Long>(taskIds.size());
+        for(Long id : taskIds) {
+            if(!engine.isLeaseLost(id)) owned.add(id);
+        }
+        if(owned.isEmpty()) return;
+        for(Long id : target.updateStatusesDefault(nodeId, owned)) engine.leaseLost(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateStatusSuspended(long taskId) {
+        if(!engine.isLeaseLost(taskId)) target.updateStatusSuspended(taskId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateStatusError(long taskId, Exception e, String lastCompletedStage) {
+        if(engine.isLeaseLost(taskId)) return;
+        if(!target.updateStatusError(nodeId, taskId, e, lastCompletedStage)) engine.leaseLost(taskId);
+    }
+}
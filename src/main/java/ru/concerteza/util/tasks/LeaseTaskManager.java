@@ -0,0 +1,92 @@
+package ru.concerteza.util.tasks;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * DAO interface for tasks, that supports lease-based claiming, required for {@link TaskEngine}
+ * clustered mode (see {@link TaskEngine#setNodeId(String)}). Claimed task is owned by the node until
+ * its lease expires, owner node renews leases of running tasks periodically. Tasks with expired leases
+ * may be claimed by any node. Suspension is spread between nodes through {@link #loadSuspendedIds()}.
+ * Stage and status updates of claimed tasks are fenced: they are applied only if task is still owned
+ * by the updating node (e.g. {@code update ... where id = ? and owner = ?}), so node, that has lost its lease
+ * without noticing it, cannot overwrite the state written by new owner.
+ * For reference implementation see {@link InMemoryTaskManager}.
+ *
+ * @author alexkasko
+ * Date: 12/26/14
+ * @see TaskEngine
+ * @see TaskManager
+ */
+@SuppressWarnings("deprecation") // TaskManager, Task
+public interface LeaseTaskManager<T extends Task> extends TaskManager<T> {
+    /**
+     * Loads new and resumed tasks and processing tasks with expired leases, switches them into
+     * 'processing' status and records provided node as owner with lease expiring after {@code leaseMillis}.
+     * Must be atomic between nodes.
+     *
+     * @param nodeId owner node id
+     * @param leaseMillis lease duration in milliseconds
+     * @param limit max count of tasks to return
+     * @return collection of tasks to run
+     */
+    Collection<? extends T> claim(String nodeId, long leaseMillis, int limit);
+
+    /**
+     * Extends leases of tasks owned by provided node
+     *
+     * @param nodeId owner node id
+     * @param taskIds ids of tasks running on this node
+     * @param leaseMillis lease duration in milliseconds
+     * @return ids of tasks, that are not owned by this node any more
+     */
+    Collection<Long> renewLeases(String nodeId, Collection<Long> taskIds, long leaseMillis);
+
+    /**
+     * Fenced variant of {@link #updateStage(long, String)}
+     *
+     * @param nodeId owner node id
+     * @param taskId task id
+     * @param stage new stage
+     * @return {@code false} if task is not owned by this node any more and stage wasn't changed
+     */
+    boolean updateStage(String nodeId, long taskId, String stage);
+
+    /**
+     * Fenced batch variant of {@link #updateStage(long, String)}
+     *
+     * @param nodeId owner node id
+     * @param stages new stages mapped by task ids
+     * @return ids of tasks, that are not owned by this node any more, their stages weren't changed
+     */
+    Collection<Long> updateStages(String nodeId, Map<Long, String> stages);
+
+    /**
+     * Fenced variant of {@link #updateStatusDefault(long)}, releases ownership
+     *
+     * @param nodeId owner node id
+     * @param taskId task id
+     * @return {@code false} if task is not owned by this node any more and status wasn't changed
+     */
+    boolean updateStatusDefault(String nodeId, long taskId);
+
+    /**
+     * Fenced batch variant of {@link #updateStatusDefault(long)}, releases ownership
+     *
+     * @param nodeId owner node id
+     * @param taskIds tasks ids
+     * @return ids of tasks, that are not owned by this node any more, their statuses weren't changed
+     */
+    Collection<Long> updateStatusesDefault(String nodeId, Collection<Long> taskIds);
+
+    /**
+     * Fenced variant of {@link #updateStatusError(long, Exception, String)}, releases ownership
+     *
+     * @param nodeId owner node id
+     * @param taskId task id
+     * @param e exception
+     * @param lastCompletedStage name of last completed stage
+     * @return {@code false} if task is not owned by this node any more and status wasn't changed
+     */
+    boolean updateStatusError(String nodeId, long taskId, Exception e, String lastCompletedStage);
+}
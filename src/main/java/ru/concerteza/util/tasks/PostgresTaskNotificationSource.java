@@ -0,0 +1,175 @@
+package ru.concerteza.util.tasks;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.concerteza.util.concurrency.ExecutorThreadFactory;
+import ru.concerteza.util.db.postgrescopy.PostgresCopyUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static ru.concerteza.util.string.CtzFormatUtils.format;
+
+/**
+ * PostgreSQL LISTEN/NOTIFY notification source. Holds dedicated connection, that listens provided channel,
+ * and checks it for notifications periodically in dedicated daemon thread. Used JDBC driver cannot block
+ * waiting for notifications, so wake-up latency is bounded by check interval plus one round-trip,
+ * while each check is a trivial query on the listening connection: default 10 ms interval gives
+ * millisecond-range latency for about 100 trivial queries per second, longer interval may be used
+ * to lower the load on database server for the cost of latency. Tasks producers should execute {@code NOTIFY channel_name} in the same
+ * transaction, that creates task. Connection is held for the whole source lifetime, so non-pooled data source
+ * should be used, {@code UNLISTEN *} is executed before connection is closed, so pooled connection won't
+ * keep receiving notifications. Connection is reopened on errors, listener is notified after reconnect,
+ * because notifications may be lost while connection was broken. Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/30/14
+ * @see TaskEnginePoller
+ */
+public class PostgresTaskNotificationSource implements TaskNotificationSource {
+    private static final Logger logger = LoggerFactory.getLogger(PostgresTaskNotificationSource.class);
+    private static final Pattern CHANNEL_REGEX = Pattern.compile("^[a-z_][a-z0-9_]*$");
+
+    private final DataSource dataSource;
+    private final String channel;
+    private final long checkIntervalMillis;
+    private final long reconnectDelayMillis;
+    private volatile boolean stopped = false;
+    private Thread thread;
+
+    /**
+     * Constructor with 10 milliseconds check interval and 5 seconds reconnect delay
+     *
+     * @param dataSource data source to open listening connection
+     * @param channel notification channel name
+     */
+    public PostgresTaskNotificationSource(DataSource dataSource, String channel) {
+        this(dataSource, channel, 10, 5000);
+    }
+
+    /**
+     * @param dataSource data source to open listening connection
+     * @param channel notification channel name
+     * @param checkIntervalMillis interval between notification checks, bounds notification latency
+     * @param reconnectDelayMillis delay before reopening connection after error
+     */
+    public PostgresTaskNotificationSource(DataSource dataSource, String channel, long checkIntervalMillis,
+                                          long reconnectDelayMillis) {
+        checkNotNull(dataSource, "Provided data source is null");
+        checkNotNull(channel, "Provided channel is null");
+        checkArgument(CHANNEL_REGEX.matcher(channel).matches(), "Invalid channel name: '%s'", channel);
+        checkArgument(checkIntervalMillis > 0, "Check interval must be positive, but was: '%s'", checkIntervalMillis);
+        checkArgument(reconnectDelayMillis > 0, "Reconnect delay must be positive, but was: '%s'", reconnectDelayMillis);
+        this.dataSource = dataSource;
+        this.channel = channel;
+        this.checkIntervalMillis = checkIntervalMillis;
+        this.reconnectDelayMillis = reconnectDelayMillis;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void start(TaskNotificationListener listener) {
+        checkNotNull(listener, "Provided listener is null");
+        checkState(null == thread, "Notification source is already started");
+        thread = new ExecutorThreadFactory(getClass().getSimpleName()).newThread(new Worker(listener));
+        thread.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void stop() {
+        stopped = true;
+        if(null != thread) thread.interrupt();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("channel", channel).
+                append("checkIntervalMillis", checkIntervalMillis).
+                append("reconnectDelayMillis", reconnectDelayMillis).
+                toString();
+    }
+
+    private class Worker implements Runnable {
+        private final TaskNotificationListener listener;
+
+        private Worker(TaskNotificationListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            try {
+                boolean reconnect = false;
+                while(!stopped) {
+                    try {
+                        listen(reconnect);
+                    } catch(SQLException e) {
+                        if(stopped) break;
+                        logger.warn(format("Error listening channel: '{}', reconnecting", channel), e);
+                    } catch(RuntimeException e) {
+                        if(stopped) break;
+                        logger.warn(format("Error listening channel: '{}', reconnecting", channel), e);
+                    }
+                    reconnect = true;
+                    Thread.sleep(reconnectDelayMillis);
+                }
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            logger.debug("Notification source stopped, channel: '{}'", channel);
+        }
+
+        private void listen(boolean reconnect) throws SQLException, InterruptedException {
+            Connection conn = dataSource.getConnection();
+            try {
+                conn.setAutoCommit(true);
+                PGConnection pgConn = PostgresCopyUtils.unwrap(conn);
+                Statement stmt = conn.createStatement();
+                try {
+                    stmt.execute("LISTEN " + channel);
+                    logger.debug("Listening channel: '{}'", channel);
+                    if(reconnect) listener.onTaskNotification();
+                    while(!stopped) {
+                        // notifications are received only with query results
+                        stmt.execute("SELECT 1");
+                        PGNotification[] received = pgConn.getNotifications();
+                        if(null != received && received.length > 0) listener.onTaskNotification();
+                        Thread.sleep(checkIntervalMillis);
+                    }
+                } finally {
+                    unlisten(stmt);
+                }
+            } finally {
+                conn.close();
+            }
+        }
+
+        private void unlisten(Statement stmt) throws SQLException {
+            try {
+                stmt.execute("UNLISTEN *");
+            } catch(SQLException e) {
+                logger.debug(format("Error unlistening channel: '{}'", channel), e);
+            } finally {
+                stmt.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package ru.concerteza.util.tasks;
+
+/**
+ * Task with priority, stages of tasks with higher priority are dispatched first
+ * by {@link TaskStageDispatcher} among stages waiting for the same processor.
+ * Tasks, that do not implement this interface, have zero priority.
+ *
+ * @author alexkasko
+ * Date: 1/1/15
+ * @see TaskStageDispatcher
+ */
+@SuppressWarnings("deprecation") // Task
+public interface PrioritizedTask extends Task {
+    /**
+     * @return task priority, greater value means higher priority
+     */
+    int getPriority();
+}
@@ -0,0 +1,204 @@
+package ru.concerteza.util.tasks;
+
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static ru.concerteza.util.string.CtzFormatUtils.format;
+import static ru.concerteza.util.tasks.TaskStageGraph.StageStatus;
+
+/**
+ * Single processing run of {@link GraphTask}, used by {@link TaskEngine}.
+ * Stages, that are completed according to stored statuses, are skipped. Each stage is dispatched
+ * as soon as all its dependencies are completed, no threads are blocked while waiting for dependencies.
+ * After error or suspension no new stages are started, task status is updated after all running stages
+ * are finished. In clustered mode stage statuses are written with fenced
+ * {@link LeaseGraphTaskManager} method, task is suspended locally if it is not owned by this node any more.
+ * Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/28/14
+ */
+@SuppressWarnings("deprecation") // TaskEngine, TaskManager, TaskStageProcessor
+class StageGraphRun {
+    private static final Logger logger = LoggerFactory.getLogger(StageGraphRun.class);
+
+    private final TaskEngine engine;
+    private final TaskProcessorProvider provider;
+    private final TaskManager<? extends Task> dao;
+    private final GraphTaskManager<? extends Task> statuses;
+    // null if not clustered
+    private final String nodeId;
+    private final GraphTask task;
+    private final long taskId;
+    private final TaskStageGraph graph;
+    // guarded by this
+    private final Set<String> completed = new HashSet<String>();
+    private final Set<String> started = new HashSet<String>();
+    private int running = 0;
+    private Exception error;
+    private boolean suspended = false;
+    private String lastCompleted;
+
+    StageGraphRun(TaskEngine engine, TaskProcessorProvider provider, TaskManager<? extends Task> dao,
+                  GraphTaskManager<? extends Task> statuses, String nodeId, GraphTask task) {
+        this.engine = engine;
+        this.provider = provider;
+        this.dao = dao;
+        this.statuses = statuses;
+        this.nodeId = nodeId;
+        this.task = task;
+        this.taskId = task.getId();
+        this.graph = task.stageGraph();
+        this.lastCompleted = task.getStageName();
+    }
+
+    /**
+     * Loads stored stage statuses and starts ready stages
+     */
+    void start() {
+        Map<String, StageStatus> stored = statuses.loadStageStatuses(taskId);
+        List<TaskStageGraph.Stage> toStart;
+        synchronized(this) {
+            for(Map.Entry<String, StageStatus> en : stored.entrySet()) {
+                if(StageStatus.COMPLETED == en.getValue()) completed.add(en.getKey());
+            }
+            if(completed.size() > 0) logger.debug("Resuming task, id: '{}', completed stages: {}", taskId, completed);
+            toStart = next();
+        }
+        if(toStart.isEmpty()) finish();
+        else dispatch(toStart);
+    }
+
+    // must be called under lock
+    private List<TaskStageGraph.Stage> next() {
+        if(null != error || suspended) return ImmutableList.of();
+        List<TaskStageGraph.Stage> res = new ArrayList<TaskStageGraph.Stage>();
+        for(TaskStageGraph.Stage st : graph.ready(completed)) {
+            if(!started.contains(st.getCompleted())) res.add(st);
+        }
+        if(res.isEmpty()) return res;
+        if(engine.isSuspended(taskId)) {
+            logger.info("Task, id: '{}' was suspended, terminating execution", taskId);
+            suspended = true;
+            return ImmutableList.of();
+        }
+        for(TaskStageGraph.Stage st : res) started.add(st.getCompleted());
+        running += res.size();
+        return res;
+    }
+
+    private void dispatch(List<TaskStageGraph.Stage> stages) {
+        for(TaskStageGraph.Stage st : stages) {
+            engine.dispatch(st.getProcessorId(), task, new StageJob(st), new StageRejection(st));
+        }
+    }
+
+    private void onStageDone(TaskStageGraph.Stage stage, StageStatus status, Exception err) {
+        List<TaskStageGraph.Stage> toStart;
+        boolean finish;
+        synchronized(this) {
+            running -= 1;
+            if(StageStatus.COMPLETED == status) {
+                completed.add(stage.getCompleted());
+                lastCompleted = stage.getCompleted();
+            }
+            if(StageStatus.SUSPENDED == status) suspended = true;
+            if(null != err && null == error) error = err;
+            toStart = next();
+            finish = 0 == running && toStart.isEmpty();
+        }
+        if(finish) finish();
+        else dispatch(toStart);
+    }
+
+    private void finish() {
+        try {
+            if(null != error) {
+                dao.updateStatusError(taskId, error, lastCompleted);
+            } else if(!suspended) {
+                logger.debug("All stages completed for task, id: '{}'", taskId);
+                dao.updateStatusDefault(taskId);
+            }
+        } finally {
+            engine.release(taskId);
+        }
+    }
+
+    private void updateStageStatus(String stage, StageStatus status) {
+        if(engine.isLeaseLost(taskId)) return;
+        if(null == nodeId) statuses.updateStageStatus(taskId, stage, status);
+        else if(!((LeaseGraphTaskManager<? extends Task>) statuses).updateStageStatus(nodeId, taskId, stage, status)) {
+            engine.leaseLost(taskId);
+        }
+    }
+
+    // rejected stage is treated as failed, so task is finished with error after running stages
+    private class StageRejection implements TaskStageDispatcher.RejectionListener {
+        private final TaskStageGraph.Stage stage;
+
+        private StageRejection(TaskStageGraph.Stage stage) {
+            this.stage = stage;
+        }
+
+        @Override
+        public void onRejected(RuntimeException e) {
+            logger.error(format("Stage: '{}' rejected for task, id: '{}'", stage.getIntermediate(), taskId), e);
+            onStageDone(stage, StageStatus.ERROR, e);
+        }
+    }
+
+    private class StageJob implements Runnable {
+        private final TaskStageGraph.Stage stage;
+
+        private StageJob(TaskStageGraph.Stage stage) {
+            this.stage = stage;
+        }
+
+        @Override
+        public void run() {
+            StageStatus status;
+            Exception err = null;
+            engine.engineListener().stageStarted(taskId, stage.getProcessorId());
+            long started = System.currentTimeMillis();
+            try {
+                logger.debug("Starting stage: '{}' for task, id: '{}'", stage.getIntermediate(), taskId);
+                updateStageStatus(stage.getCompleted(), StageStatus.RUNNING);
+                TaskStageProcessor processor = provider.provide(stage.getProcessorId());
+                checkNotNull(processor, "Null processor returned for id: '%s'", stage.getProcessorId());
+                for(TaskStageListener li : processor.beforeListeners()) li.fire(taskId);
+                processor.process(taskId);
+                for(TaskStageListener li : processor.afterListeners()) li.fire(taskId);
+                logger.debug("Stage: '{}' completed for task, id: '{}'", stage.getCompleted(), taskId);
+                updateStageStatus(stage.getCompleted(), StageStatus.COMPLETED);
+                dao.updateStage(taskId, stage.getCompleted());
+                status = StageStatus.COMPLETED;
+            } catch(TaskSuspendedException e) {
+                logger.info("Task, id: {} was suspended on stage: '{}'", taskId, stage.getIntermediate());
+                status = StageStatus.SUSPENDED;
+            } catch(Exception e) {
+                logger.error(format("Error on stage: '{}' for task, id: '{}'", stage.getIntermediate(), taskId), e);
+                status = StageStatus.ERROR;
+                err = e;
+            }
+            long duration = System.currentTimeMillis() - started;
+            if(StageStatus.COMPLETED == status) engine.engineListener().stageCompleted(taskId, stage.getProcessorId(), duration);
+            else if(StageStatus.SUSPENDED == status) engine.engineListener().stageSuspended(taskId, stage.getProcessorId(), duration);
+            else engine.engineListener().stageFailed(taskId, stage.getProcessorId(), duration, err);
+            try {
+                if(StageStatus.COMPLETED != status) updateStageStatus(stage.getCompleted(), status);
+            } catch(Exception e) {
+                logger.error(format("Error updating stage status for task, id: '{}'", taskId), e);
+            } finally {
+                onStageDone(stage, status, err);
+            }
+        }
+    }
+}
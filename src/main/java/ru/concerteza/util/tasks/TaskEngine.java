@@ -1,15 +1,26 @@
 package ru.concerteza.util.tasks;
 
+import com.google.common.collect.ImmutableList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static java.util.Collections.newSetFromMap;
+import static org.apache.commons.lang.StringUtils.isNotBlank;
 import static ru.concerteza.util.string.CtzFormatUtils.format;
 
 /**
@@ -19,6 +30,27 @@ import static ru.concerteza.util.string.CtzFormatUtils.format;
  * suspend or after successful processing of last stage.
  * Processors must use {@link TaskEngine#isSuspended(long)} method periodically
  * and throw {@link TaskSuspendedException} on successful suspension check.
+ * In batch mode (enabled with {@link #setBatchSize(int)}) tasks are claimed in bounded batches
+ * using {@link BatchTaskManager}, stage and default status updates are coalesced and written in batches
+ * on each fire, periodically if flush executor was set, and on {@link #preDestroy()}.
+ * {@link ru.concerteza.util.concurrency.WorkStealingExecutor} may be used as executor in this mode.
+ * In clustered mode (enabled with {@link #setNodeId(String)}) tasks are claimed with time-limited leases
+ * using {@link LeaseTaskManager}, leases of running tasks are renewed on {@link #heartbeat()}, that also
+ * picks up suspensions made on other nodes. Running tasks, whose leases were lost, are suspended locally
+ * and their further updates are dropped. Stage and status updates are fenced by owner node id (see {@link LeaseTaskManager}).
+ * Task, that is reclaimed by this node while its previous run is still alive, is restarted after previous run stops.
+ * Batch mode may be used together with clustered mode, finished tasks are kept owned (their leases are renewed)
+ * until their coalesced updates are written.
+ * Stages of {@link GraphTask}s are processed as a graph: independent stages are sent to executor concurrently,
+ * dependent stages are started after all their dependencies are completed. Per-stage statuses are stored using
+ * {@link GraphTaskManager}, completed stages are skipped when failed or suspended task is resumed.
+ * In clustered mode graph tasks require {@link LeaseGraphTaskManager}, so stage statuses are fenced too.
+ * With {@link TaskStageDispatcher} (set with {@link #setStageDispatcher(TaskStageDispatcher)}) each stage
+ * is dispatched separately using per-processor concurrency limits and task priorities (see {@link PrioritizedTask}).
+ * Task and stage lifecycle events (including stage failures and suspensions) are sent to
+ * {@link TaskEngineListener}, {@link TaskEngineMetrics} may be used to record execution metrics.
+ * Engine may be fired on schedule (it implements {@link Runnable}) or by {@link TaskEnginePoller}
+ * immediately on new tasks notifications.
  *
  * @author alexey
  * Date: 5/17/12
@@ -28,6 +60,12 @@ import static ru.concerteza.util.string.CtzFormatUtils.format;
  * @see TaskStageChain
  * @see TaskStageProcessor
  * @see TaskSuspendedException
+ * @see BatchTaskManager
+ * @see LeaseTaskManager
+ * @see TaskStageGraph
+ * @see GraphTaskManager
+ * @see TaskEnginePoller
+ * @see TaskStageDispatcher
  */
 @Deprecated // use com.alexkasko.tasks:task-engine
 public class TaskEngine implements Runnable {
@@ -36,8 +74,31 @@ public class TaskEngine implements Runnable {
     private Executor executor;
     private TaskManager<? extends Task> manager;
     private TaskProcessorProvider provider;
+    private int batchSize = 0;
+    private int maxBatchesPerFire = 16;
+    private CoalescingTaskManager coalescer;
+    private TaskManager<? extends Task> updater;
+    private BatchTaskManager<? extends Task> claimer;
+    private String nodeId;
+    private long leaseMillis = 60000;
+    private ScheduledExecutorService heartbeatExecutor;
+    private ScheduledExecutorService flushExecutor;
+    private long flushIntervalMillis = 1000;
+    private ScheduledFuture<?> heartbeatFuture;
+    private ScheduledFuture<?> flushFuture;
+    private TaskStageDispatcher dispatcher;
+    private TaskEngineListener engineListener = new TaskEngineListenerSupertype() {};
 
     private final Set<Long> suspended = newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    // clustered mode state
+    private final Set<Long> running = newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    private final Set<Long> lost = newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    // finished tasks, whose coalesced updates are not written yet, guarded by running lock
+    private final Set<Long> finished = new HashSet<Long>();
+    // tasks reclaimed while their previous runs were alive, guarded by running lock
+    private final Map<Long, Task> reclaimed = new HashMap<Long, Task>();
+    private final Object runningLock = new Object();
+    private final Set<Long> seenSuspended = new HashSet<Long>();
     private final Object fireLock = new Object();
     private final Object suspensionLock = new Object();
 
@@ -70,8 +131,30 @@ public class TaskEngine implements Runnable {
             if(tasks.size() > 0) {
                 logger.info("Suspended tasks cached: {}", tasks);
                 suspended.addAll(tasks);
+                if(null != nodeId) seenSuspended.addAll(tasks);
             }
         }
+        if(null != nodeId && null != heartbeatExecutor) {
+            long period = Math.max(leaseMillis / 3, 1);
+            heartbeatFuture = heartbeatExecutor.scheduleWithFixedDelay(new Heartbeat(), period, period, TimeUnit.MILLISECONDS);
+        }
+        if(batchSize > 0 && null != flushExecutor) {
+            flushFuture = flushExecutor.scheduleWithFixedDelay(new Flusher(), flushIntervalMillis, flushIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Destroy method, stops scheduled heartbeat and flushes, writes coalesced updates in batch mode.
+     * Should be called after stages executor is shut down, updates made after this call are not flushed
+     */
+    public void preDestroy() {
+        try {
+            if(null != heartbeatFuture) heartbeatFuture.cancel(false);
+            if(null != flushFuture) flushFuture.cancel(false);
+        } finally {
+            flush();
+        }
     }
 
     /**
@@ -82,6 +165,7 @@ public class TaskEngine implements Runnable {
      */
     public int fire() {
         synchronized (fireLock) {
+            if(batchSize > 0 || null != nodeId) return fireClaimed();
             Collection<? extends Task> tasksToFire = manager.markProcessingAndLoad();
             if(0 == tasksToFire.size()) {
                 logger.debug("No tasks to fire, returning to sleep");
@@ -93,6 +177,7 @@ public class TaskEngine implements Runnable {
                 checkNotNull(task, "'task' must be non-null");
                 logger.debug("Firing task: '{}'", task);
                 Runnable runnable = new StageRunnable(provider, manager, task);
+                engineListener.taskFired(task.getId());
                 executor.execute(runnable);
                 counter += 1;
             }
@@ -101,6 +186,139 @@ public class TaskEngine implements Runnable {
         }
     }
 
+    /**
+     * Writes coalesced stage and status updates in batch mode, does nothing otherwise.
+     * Called automatically on each {@link #fire()}
+     */
+    public void flush() {
+        synchronized (fireLock) {
+            flushCoalesced();
+        }
+    }
+
+    /**
+     * Renews leases of tasks running on this node and picks up suspensions made on other nodes
+     * in clustered mode. Leases of tasks, that are not owned by this node any more, are lost,
+     * such tasks are suspended locally. Called periodically if heartbeat executor was set.
+     */
+    @SuppressWarnings("unchecked")
+    public void heartbeat() {
+        checkState(null != nodeId, "Heartbeat is supported only in clustered mode");
+        LeaseTaskManager<? extends Task> leaseManager = (LeaseTaskManager<? extends Task>) manager;
+        if(running.size() > 0) {
+            Collection<Long> lostIds = leaseManager.renewLeases(nodeId, ImmutableList.copyOf(running), leaseMillis);
+            for(Long id : lostIds) leaseLost(id);
+        }
+        synchronized (suspensionLock) {
+            Collection<Long> stored = manager.loadSuspendedIds();
+            for(Long id : stored) {
+                if(running.contains(id) && seenSuspended.add(id)) {
+                    logger.info("Task, id: '{}' was suspended on other node", id);
+                    suspended.add(id);
+                }
+            }
+            seenSuspended.retainAll(stored);
+        }
+    }
+
+    private int fireClaimed() {
+        if(null == updater) updater = createUpdater();
+        flushCoalesced();
+        int limit = batchSize > 0 ? batchSize : Integer.MAX_VALUE;
+        int batches = batchSize > 0 ? maxBatchesPerFire : 1;
+        int counter = 0;
+        for(int i = 0; i < batches; i++) {
+            Collection<? extends Task> batch = claimer.markProcessingAndLoad(limit);
+            for(Task task : batch) {
+                checkNotNull(task, "'task' must be non-null");
+                if(null != nodeId && !register(task)) continue;
+                engineListener.taskFired(task.getId());
+                try {
+                    executor.execute(new StageRunnable(provider, updater, task));
+                } catch(RuntimeException e) {
+                    // lease won't be renewed any more, so task may be reclaimed
+                    release(task.getId());
+                    throw e;
+                }
+                counter += 1;
+            }
+            if(batch.size() < limit) break;
+        }
+        if(counter > 0) logger.info("{} tasks fired", counter);
+        else logger.debug("No tasks to fire, returning to sleep");
+        return counter;
+    }
+
+    // lease guard is placed under coalescer, so lost leases are checked on flush
+    @SuppressWarnings("unchecked")
+    private TaskManager<? extends Task> createUpdater() {
+        if(null != nodeId) {
+            checkState(manager instanceof LeaseTaskManager, "Clustered mode requires LeaseTaskManager, but was: '%s'", manager);
+            claimer = new LeaseGuardTaskManager((LeaseTaskManager<? extends Task>) manager, nodeId, leaseMillis, this);
+        } else {
+            checkState(manager instanceof BatchTaskManager, "Batch mode requires BatchTaskManager, but was: '%s'", manager);
+            claimer = (BatchTaskManager<? extends Task>) manager;
+        }
+        if(batchSize > 0) {
+            coalescer = new CoalescingTaskManager(claimer, batchSize);
+            return coalescer;
+        }
+        return claimer;
+    }
+
+    // returns false if previous run of the task is still alive, new run is started after it stops
+    private boolean register(Task task) {
+        long id = task.getId();
+        synchronized (runningLock) {
+            if(running.add(id)) {
+                // lease is owned by this node again
+                lost.remove(id);
+                return true;
+            }
+            if(!finished.remove(id)) {
+                logger.warn("Task, id: '{}' was reclaimed while its previous run is alive, restarting", id);
+                leaseLost(id);
+                reclaimed.put(id, task);
+                return false;
+            }
+            // previous run is finished, but its updates are not written yet
+            lost.add(id);
+        }
+        discardPrevious(id);
+        return true;
+    }
+
+    // task is marked as lost until buffered updates of its previous run are discarded, so in-flight flush drops them
+    private void discardPrevious(long taskId) {
+        if(null != coalescer) coalescer.discard(taskId);
+        synchronized (runningLock) {
+            lost.remove(taskId);
+            suspended.remove(taskId);
+        }
+    }
+
+    // releases finished tasks only after their updates are written, so their leases won't expire before that
+    private void flushCoalesced() {
+        if(null == coalescer) return;
+        List<Long> flushed;
+        synchronized (runningLock) {
+            flushed = ImmutableList.copyOf(finished);
+        }
+        coalescer.flush();
+        if(flushed.isEmpty()) return;
+        synchronized (runningLock) {
+            for(Long id : flushed) {
+                if(finished.remove(id)) forget(id);
+            }
+        }
+    }
+
+    // must be called under running lock
+    private void forget(long taskId) {
+        running.remove(taskId);
+        if(lost.remove(taskId)) suspended.remove(taskId);
+    }
+
     /**
      * Spring scheduler friendly fire wrapper
      */
@@ -112,11 +330,20 @@ public class TaskEngine implements Runnable {
     /**
      * Mark task as suspended
      *
+     * In clustered mode task is suspended locally only if it's running on this node,
+     * other nodes pick up suspension on heartbeat
+     *
      * @param taskId task id
      * @return <code>true</code> if task wasn't already suspended
      */
     public boolean suspend(long taskId) {
         synchronized (suspensionLock) {
+            if(null != nodeId) {
+                boolean res = seenSuspended.add(taskId);
+                if(res) manager.updateStatusSuspended(taskId);
+                if(res && running.contains(taskId)) suspended.add(taskId);
+                return res;
+            }
             boolean res = suspended.add(taskId);
             if(res) manager.updateStatusSuspended(taskId);
             return res;
@@ -145,6 +372,68 @@ public class TaskEngine implements Runnable {
         if(suspended.remove(taskId)) throw new TaskSuspendedException(taskId);
     }
 
+    // clears clustered mode state after task processing, starts new run if task was reclaimed
+    void release(long taskId) {
+        Task next = null;
+        if(null != nodeId) {
+            synchronized (runningLock) {
+                next = reclaimed.remove(taskId);
+                // reclaimed task stays running, in batch mode ownership is kept until coalesced updates are written
+                if(null == next) {
+                    if(null != coalescer) finished.add(taskId);
+                    else forget(taskId);
+                }
+            }
+        }
+        engineListener.taskFinished(taskId);
+        if(null != next) {
+            discardPrevious(taskId);
+            engineListener.taskFired(taskId);
+            try {
+                executor.execute(new StageRunnable(provider, updater, next));
+            } catch(RuntimeException e) {
+                logger.error(format("Error restarting reclaimed task: '{}'", next), e);
+                release(taskId);
+            }
+        }
+    }
+
+    // running task is suspended locally and its further updates are dropped
+    void leaseLost(long taskId) {
+        synchronized (runningLock) {
+            if(!running.contains(taskId) || !lost.add(taskId)) return;
+            suspended.add(taskId);
+        }
+        logger.warn("Lease lost for task, id: '{}', node: '{}', suspending", taskId, nodeId);
+    }
+
+    TaskEngineListener engineListener() {
+        return engineListener;
+    }
+
+    boolean isLeaseLost(long taskId) {
+        return lost.contains(taskId);
+    }
+
+    // sends stage job to stage dispatcher if it was set, to executor otherwise,
+    // rejection is reported to listener in both cases, possibly later from other thread
+    void dispatch(String processorId, Task task, Runnable job, TaskStageDispatcher.RejectionListener onRejected) {
+        if(null == dispatcher) {
+            try {
+                executor.execute(job);
+            } catch(RuntimeException e) {
+                onRejected.onRejected(e);
+            }
+        } else {
+            int priority = task instanceof PrioritizedTask ? ((PrioritizedTask) task).getPriority() : 0;
+            dispatcher.execute(processorId, priority, job, onRejected);
+        }
+    }
+
+    private static boolean isGraphTask(Task task) {
+        return task instanceof GraphTask && null != ((GraphTask) task).stageGraph();
+    }
+
     /**
      * Spring3.1-friendly fluent setter
      *
@@ -178,62 +467,262 @@ public class TaskEngine implements Runnable {
         return this;
     }
 
+    /**
+     * Spring3.1-friendly fluent setter, enables batch mode, {@link BatchTaskManager} must be used in this mode
+     *
+     * @param batchSize max count of tasks claimed at once, also used as coalesced updates flush size
+     * @return engine itself for chained init
+     */
+    public TaskEngine setBatchSize(int batchSize) {
+        checkArgument(batchSize > 0, "Batch size must be positive, but was: '%s'", batchSize);
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Spring3.1-friendly fluent setter
+     *
+     * @param maxBatchesPerFire max count of batches claimed on one {@link #fire()} call in batch mode,
+     *                          {@code 16} by default
+     * @return engine itself for chained init
+     */
+    public TaskEngine setMaxBatchesPerFire(int maxBatchesPerFire) {
+        checkArgument(maxBatchesPerFire > 0, "Max batches must be positive, but was: '%s'", maxBatchesPerFire);
+        this.maxBatchesPerFire = maxBatchesPerFire;
+        return this;
+    }
+
+    /**
+     * Spring3.1-friendly fluent setter, enables clustered mode, {@link LeaseTaskManager} must be used in this mode
+     *
+     * @param nodeId id of this node, must be unique in cluster
+     * @return engine itself for chained init
+     */
+    public TaskEngine setNodeId(String nodeId) {
+        checkArgument(isNotBlank(nodeId), "Provided node id is blank");
+        this.nodeId = nodeId;
+        return this;
+    }
+
+    /**
+     * Spring3.1-friendly fluent setter
+     *
+     * @param leaseMillis task lease duration in clustered mode, {@code 60000} by default
+     * @return engine itself for chained init
+     */
+    public TaskEngine setLeaseMillis(long leaseMillis) {
+        checkArgument(leaseMillis > 0, "Lease must be positive, but was: '%s'", leaseMillis);
+        this.leaseMillis = leaseMillis;
+        return this;
+    }
+
+    /**
+     * Spring3.1-friendly fluent setter
+     *
+     * @param heartbeatExecutor executor, that will be used in clustered mode to run {@link #heartbeat()}
+     *                          with period of one third of lease duration, starting from {@link #postConstruct()}
+     * @return engine itself for chained init
+     */
+    public TaskEngine setHeartbeatExecutor(ScheduledExecutorService heartbeatExecutor) {
+        this.heartbeatExecutor = heartbeatExecutor;
+        return this;
+    }
+
+    /**
+     * Spring3.1-friendly fluent setter
+     *
+     * @param flushExecutor executor, that will be used in batch mode to write coalesced updates
+     *                      with flush interval period, starting from {@link #postConstruct()}
+     * @return engine itself for chained init
+     */
+    public TaskEngine setFlushExecutor(ScheduledExecutorService flushExecutor) {
+        this.flushExecutor = flushExecutor;
+        return this;
+    }
+
+    /**
+     * Spring3.1-friendly fluent setter
+     *
+     * @param flushIntervalMillis coalesced updates flush period in batch mode, {@code 1000} by default
+     * @return engine itself for chained init
+     */
+    public TaskEngine setFlushIntervalMillis(long flushIntervalMillis) {
+        checkArgument(flushIntervalMillis > 0, "Flush interval must be positive, but was: '%s'", flushIntervalMillis);
+        this.flushIntervalMillis = flushIntervalMillis;
+        return this;
+    }
+
+    /**
+     * Spring3.1-friendly fluent setter
+     *
+     * @param dispatcher stage dispatcher, if set, each stage is dispatched separately through it
+     *                   with per-processor concurrency limits and task priorities
+     * @return engine itself for chained init
+     */
+    public TaskEngine setStageDispatcher(TaskStageDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+        return this;
+    }
+
+    /**
+     * Spring3.1-friendly fluent setter
+     *
+     * @param engineListener listener for task and stage lifecycle events, e.g. {@link TaskEngineMetrics}
+     * @return engine itself for chained init
+     */
+    public TaskEngine setEngineListener(TaskEngineListener engineListener) {
+        checkNotNull(engineListener, "Provided engine listener is null");
+        this.engineListener = engineListener;
+        return this;
+    }
+
+    private class Heartbeat implements Runnable {
+        @Override
+        public void run() {
+            try {
+                heartbeat();
+            } catch (Throwable e) {
+                logger.error(format("Heartbeat error, node: '{}'", nodeId), e);
+            }
+        }
+    }
+
+    private class Flusher implements Runnable {
+        @Override
+        public void run() {
+            try {
+                flush();
+            } catch (Throwable e) {
+                logger.error("Coalesced updates flush error", e);
+            }
+        }
+    }
+
+    // marks task as failed and releases it, when its next stage was rejected by executor
+    private class StageRejection implements TaskStageDispatcher.RejectionListener {
+        private final TaskManager dao;
+        private final Task task;
+        private final String lastCompleted;
+
+        private StageRejection(TaskManager dao, Task task, String lastCompleted) {
+            this.dao = dao;
+            this.task = task;
+            this.lastCompleted = lastCompleted;
+        }
+
+        @Override
+        public void onRejected(RuntimeException e) {
+            logger.error(format("Stage rejected for task: '{}'", task), e);
+            try {
+                dao.updateStatusError(task.getId(), e, lastCompleted);
+            } finally {
+                release(task.getId());
+            }
+        }
+    }
+
     // Runnable instead of Callable is deliberate
     private class StageRunnable implements Runnable {
         private final TaskProcessorProvider provider;
         private final TaskManager dao;
         private final Task task;
+        // last completed stage name and whether next stage was dispatched, used with stage dispatcher
+        private final String from;
+        private final boolean dispatched;
 
         StageRunnable(TaskProcessorProvider provider, TaskManager dao, Task task) {
-            checkNotNull(task.stageChain(), "Task must return non-null stageChain");
+            this(provider, dao, task, task.getStageName(), false);
+        }
+
+        private StageRunnable(TaskProcessorProvider provider, TaskManager dao, Task task, String from, boolean dispatched) {
+            if(!isGraphTask(task)) checkNotNull(task.stageChain(), "Task must return non-null stageChain");
             this.provider = provider;
             this.dao = dao;
             this.task = task;
+            this.from = from;
+            this.dispatched = dispatched;
         }
 
         @Override
         public void run() {
+            if(isGraphTask(task)) {
+                runGraph();
+                return;
+            }
+            boolean handedOff = false;
             try {
-                runStages();
+                handedOff = runStages();
             } catch (Exception e) {
                 logger.error(format("System error running task: '{}'", task), e);
+            } finally {
+                if(!handedOff) release(task.getId());
             }
         }
 
+        // graph run releases task itself after the last stage
         @SuppressWarnings("unchecked")
-        private void runStages() {
+        private void runGraph() {
+            try {
+                checkState(manager instanceof GraphTaskManager, "Graph tasks require GraphTaskManager, but was: '%s'", manager);
+                checkState(null == nodeId || manager instanceof LeaseGraphTaskManager,
+                        "Graph tasks in clustered mode require LeaseGraphTaskManager, but was: '%s'", manager);
+                new StageGraphRun(TaskEngine.this, provider, dao, (GraphTaskManager<? extends Task>) manager, nodeId,
+                        (GraphTask) task).start();
+            } catch (Exception e) {
+                logger.error(format("System error running task: '{}'", task), e);
+                release(task.getId());
+            }
+        }
+
+        // returns true if next stage was handed off to stage dispatcher
+        @SuppressWarnings("unchecked")
+        private boolean runStages() {
             final TaskStageChain chain = task.stageChain();
-            TaskStageChain.Stage stage = chain.forName(task.getStageName());
+            TaskStageChain.Stage stage = chain.forName(from);
             boolean markDefaultOnExit = true;
+            boolean permitted = dispatched;
             while (chain.hasNext(stage)) {
                 if (isSuspended(task.getId())) {
                     logger.info("Task, id: '{}' was suspended, terminating execution", task.getId());
                     markDefaultOnExit = false;
                     break;
                 }
-                stage = chain.next(stage);
+                TaskStageChain.Stage next = chain.next(stage);
+                if(null != dispatcher && !permitted) {
+                    dispatch(next.getProcessorId(), task, new StageRunnable(provider, dao, task, stage.getCompleted(), true),
+                            new StageRejection(dao, task, stage.getCompleted()));
+                    return true;
+                }
+                permitted = false;
+                stage = next;
                 logger.debug("Starting stage: '{}' for task, id: '{}'", stage.getIntermediate(), task.getId());
                 TaskStageProcessor processor = provider.provide(stage.getProcessorId());
                 checkNotNull(provider, "Null processor returned for id: '%s'", stage.getProcessorId());
                 dao.updateStage(task.getId(), stage.getIntermediate());
+                engineListener.stageStarted(task.getId(), stage.getProcessorId());
+                long started = System.currentTimeMillis();
                 try {
                     for(TaskStageListener li : processor.beforeListeners()) li.fire(task.getId());
                     processor.process(task.getId());
                     for(TaskStageListener li : processor.afterListeners()) li.fire(task.getId());
                     logger.debug("Stage: '{}' completed for task, id: '{}'", stage.getCompleted(), task.getId());
                     dao.updateStage(task.getId(), stage.getCompleted());
+                    engineListener.stageCompleted(task.getId(), stage.getProcessorId(), System.currentTimeMillis() - started);
                 } catch (TaskSuspendedException e) {
                     logger.info("Task, is: {} was suspended on stage: '{}'", task.getId(), stage.getIntermediate());
+                    engineListener.stageSuspended(task.getId(), stage.getProcessorId(), System.currentTimeMillis() - started);
                     dao.updateStage(task.getId(), chain.previous(stage).getCompleted());
                     markDefaultOnExit = false;
                     break;
                 } catch (Exception e) {
+                    engineListener.stageFailed(task.getId(), stage.getProcessorId(), System.currentTimeMillis() - started, e);
                     dao.updateStatusError(task.getId(), e, chain.previous(stage).getCompleted());
                     markDefaultOnExit = false;
                     break;
                 }
             }
             if(markDefaultOnExit) dao.updateStatusDefault(task.getId());
+            return false;
         }
     }
 }
\ No newline at end of file
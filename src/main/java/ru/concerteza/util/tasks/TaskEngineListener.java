@@ -0,0 +1,58 @@
+package ru.concerteza.util.tasks;
+
+/**
+ * Receives task and stage lifecycle events from {@link TaskEngine}, may be used for instrumentation.
+ * Unlike {@link TaskStageListener}s, engine listener is notified about failed and suspended stages.
+ * Methods are called from engine threads, implementations must be thread-safe and fast.
+ *
+ * @author alexkasko
+ * Date: 1/3/15
+ * @see TaskEngine#setEngineListener(TaskEngineListener)
+ * @see TaskEngineListenerSupertype
+ * @see TaskEngineMetrics
+ */
+public interface TaskEngineListener {
+    /**
+     * Called when task was claimed and sent to execution
+     *
+     * @param taskId task id
+     */
+    void taskFired(long taskId);
+
+    /**
+     * Called before stage listeners and processor
+     *
+     * @param taskId task id
+     * @param processorId stage processor id
+     */
+    void stageStarted(long taskId, String processorId);
+
+    /**
+     * @param taskId task id
+     * @param processorId stage processor id
+     * @param durationMillis stage processing time including stage listeners
+     */
+    void stageCompleted(long taskId, String processorId, long durationMillis);
+
+    /**
+     * @param taskId task id
+     * @param processorId stage processor id
+     * @param durationMillis stage processing time until suspension
+     */
+    void stageSuspended(long taskId, String processorId, long durationMillis);
+
+    /**
+     * @param taskId task id
+     * @param processorId stage processor id
+     * @param durationMillis stage processing time until failure
+     * @param e stage error
+     */
+    void stageFailed(long taskId, String processorId, long durationMillis, Exception e);
+
+    /**
+     * Called when engine finished task processing with any result
+     *
+     * @param taskId task id
+     */
+    void taskFinished(long taskId);
+}
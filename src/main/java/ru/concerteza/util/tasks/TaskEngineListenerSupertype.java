@@ -0,0 +1,52 @@
+package ru.concerteza.util.tasks;
+
+/**
+ * Abstract engine listener supertype, added to make all methods implementation optional.
+ * All methods do nothing.
+ *
+ * @author alexkasko
+ * Date: 1/3/15
+ */
+public abstract class TaskEngineListenerSupertype implements TaskEngineListener {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void taskFired(long taskId) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stageStarted(long taskId, String processorId) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stageCompleted(long taskId, String processorId, long durationMillis) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stageSuspended(long taskId, String processorId, long durationMillis) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stageFailed(long taskId, String processorId, long durationMillis, Exception e) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void taskFinished(long taskId) {
+    }
+}
@@ -0,0 +1,160 @@
+package ru.concerteza.util.tasks;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import ru.concerteza.util.db.metrics.Counter;
+import ru.concerteza.util.db.metrics.Gauge;
+import ru.concerteza.util.db.metrics.Histogram;
+import ru.concerteza.util.db.metrics.InMemoryMetricsRegistry;
+import ru.concerteza.util.db.metrics.MetricsRegistry;
+import ru.concerteza.util.db.metrics.MetricsSnapshot;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+
+/**
+ * Engine listener, that records task execution metrics into provided registry.
+ * Metrics names start with provided prefix:
+ * <ul>
+ *     <li>{@code prefix.fired} counter: tasks sent to execution</li>
+ *     <li>{@code prefix.claim.wait.millis} histogram: time from task claim to its first stage start</li>
+ *     <li>{@code prefix.queued} gauge: claimed tasks, that have no started stages yet</li>
+ *     <li>{@code prefix.active} gauge: running stages count</li>
+ *     <li>{@code prefix.processorId.millis} histogram: stage latency for processor</li>
+ *     <li>{@code prefix.processorId.completed} counter: completed stages for processor</li>
+ *     <li>{@code prefix.processorId.suspended} counter: suspended stages for processor</li>
+ *     <li>{@code prefix.processorId.failed} counter: failed stages for processor</li>
+ * </ul>
+ * Rates may be calculated from counters of consecutive snapshots.
+ * Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 1/3/15
+ * @see TaskEngine#setEngineListener(TaskEngineListener)
+ */
+public class TaskEngineMetrics implements TaskEngineListener {
+    private final MetricsRegistry registry;
+    private final String prefix;
+    private final Counter fired;
+    private final Histogram claimWaitMillis;
+    private final AtomicInteger active = new AtomicInteger();
+    // claim times of tasks without started stages
+    private final ConcurrentMap<Long, Long> claimed = new ConcurrentHashMap<Long, Long>();
+
+    /**
+     * Constructor with in-memory registry and {@code tasks} prefix, metrics are available with {@link #snapshot()}
+     */
+    public TaskEngineMetrics() {
+        this(new InMemoryMetricsRegistry(), "tasks");
+    }
+
+    /**
+     * @param registry metrics registry
+     * @param prefix metrics names prefix
+     */
+    public TaskEngineMetrics(MetricsRegistry registry, String prefix) {
+        checkNotNull(registry, "Provided registry is null");
+        checkArgument(isNotBlank(prefix), "Provided prefix is blank");
+        this.registry = registry;
+        this.prefix = prefix;
+        this.fired = registry.counter(prefix + ".fired");
+        this.claimWaitMillis = registry.histogram(prefix + ".claim.wait.millis");
+        registry.gauge(prefix + ".queued", new QueuedGauge());
+        registry.gauge(prefix + ".active", new ActiveGauge());
+    }
+
+    /**
+     * @return snapshot of all metrics in registry, supported only with in-memory registry
+     */
+    public MetricsSnapshot snapshot() {
+        checkState(registry instanceof InMemoryMetricsRegistry, "Snapshot is supported only for in-memory registry");
+        return ((InMemoryMetricsRegistry) registry).snapshot();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void taskFired(long taskId) {
+        fired.inc(1);
+        claimed.put(taskId, System.currentTimeMillis());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stageStarted(long taskId, String processorId) {
+        active.incrementAndGet();
+        Long claimedAt = claimed.remove(taskId);
+        if(null != claimedAt) claimWaitMillis.update(System.currentTimeMillis() - claimedAt);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stageCompleted(long taskId, String processorId, long durationMillis) {
+        stageFinished(processorId, durationMillis, "completed");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stageSuspended(long taskId, String processorId, long durationMillis) {
+        stageFinished(processorId, durationMillis, "suspended");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stageFailed(long taskId, String processorId, long durationMillis, Exception e) {
+        stageFinished(processorId, durationMillis, "failed");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void taskFinished(long taskId) {
+        claimed.remove(taskId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("registry", registry).
+                append("prefix", prefix).
+                toString();
+    }
+
+    private void stageFinished(String processorId, long durationMillis, String outcome) {
+        active.decrementAndGet();
+        registry.histogram(prefix + "." + processorId + ".millis").update(durationMillis);
+        registry.counter(prefix + "." + processorId + "." + outcome).inc(1);
+    }
+
+    private class QueuedGauge implements Gauge {
+        @Override
+        public long getValue() {
+            return claimed.size();
+        }
+    }
+
+    private class ActiveGauge implements Gauge {
+        @Override
+        public long getValue() {
+            return active.get();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package ru.concerteza.util.tasks;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.concerteza.util.concurrency.ExecutorThreadFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Event-driven alternative to scheduled {@link TaskEngine#fire()} calls. Fires engine in dedicated
+ * daemon thread immediately on {@link #submit(long)} or notification from {@link TaskNotificationSource}.
+ * Missed notifications are covered with adaptive polling: poll delay starts from min delay and is doubled
+ * after each idle poll up to max delay, delay is reset to min after each notification or non-empty poll.
+ * Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/30/14
+ * @see TaskEngine
+ * @see TaskNotificationSource
+ */
+@SuppressWarnings("deprecation") // TaskEngine
+public class TaskEnginePoller implements TaskNotificationListener {
+    private static final Logger logger = LoggerFactory.getLogger(TaskEnginePoller.class);
+
+    private final TaskEngine engine;
+    private final long minDelayMillis;
+    private final long maxDelayMillis;
+    private TaskNotificationSource source;
+    // guarded by this
+    private boolean signalled = false;
+    private boolean started = false;
+    private boolean stopped = false;
+    private Thread thread;
+
+    /**
+     * @param engine task engine to fire
+     * @param minDelayMillis poll delay after notification or non-empty poll
+     * @param maxDelayMillis max poll delay after series of idle polls
+     */
+    public TaskEnginePoller(TaskEngine engine, long minDelayMillis, long maxDelayMillis) {
+        checkNotNull(engine, "Provided engine is null");
+        checkArgument(minDelayMillis > 0, "Min delay must be positive, but was: '%s'", minDelayMillis);
+        checkArgument(maxDelayMillis >= minDelayMillis, "Max delay: '%s' must be not less than min delay: '%s'",
+                maxDelayMillis, minDelayMillis);
+        this.engine = engine;
+        this.minDelayMillis = minDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Fluent setter, must be called before {@link #start()}
+     *
+     * @param source notifications source, will be started and stopped together with this poller
+     * @return poller itself for chained init
+     */
+    public synchronized TaskEnginePoller setNotificationSource(TaskNotificationSource source) {
+        checkState(!started, "Poller is already started");
+        this.source = source;
+        return this;
+    }
+
+    /**
+     * Starts polling thread and notification source
+     */
+    public void start() {
+        synchronized (this) {
+            checkState(!started, "Poller is already started");
+            started = true;
+            thread = new ExecutorThreadFactory(TaskEnginePoller.class.getSimpleName()).newThread(new Worker());
+            thread.start();
+        }
+        if(null != source) source.start(this);
+    }
+
+    /**
+     * Wakes up engine to process given task, that must be already committed in task storage
+     *
+     * @param taskId id of submitted task
+     */
+    public void submit(long taskId) {
+        logger.debug("Task submitted, id: '{}'", taskId);
+        wakeUp();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onTaskNotification() {
+        wakeUp();
+    }
+
+    /**
+     * Stops notification source and polling thread, running tasks are not affected
+     */
+    public void stop() {
+        if(null != source) source.stop();
+        Thread th;
+        synchronized (this) {
+            stopped = true;
+            notifyAll();
+            th = thread;
+        }
+        if(null != th) th.interrupt();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).
+                append("minDelayMillis", minDelayMillis).
+                append("maxDelayMillis", maxDelayMillis).
+                append("source", source).
+                toString();
+    }
+
+    private synchronized void wakeUp() {
+        signalled = true;
+        notifyAll();
+    }
+
+    // returns null if stopped
+    private synchronized Boolean await(long delayMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + delayMillis;
+        long left = delayMillis;
+        while(!signalled && !stopped && left > 0) {
+            wait(left);
+            left = deadline - System.currentTimeMillis();
+        }
+        if(stopped) return null;
+        boolean res = signalled;
+        signalled = false;
+        return res;
+    }
+
+    private class Worker implements Runnable {
+        @Override
+        public void run() {
+            long delay = minDelayMillis;
+            try {
+                for(;;) {
+                    Boolean notified = await(delay);
+                    if(null == notified) break;
+                    int fired = fire();
+                    if(notified || fired > 0) delay = minDelayMillis;
+                    else delay = Math.min(delay * 2, maxDelayMillis);
+                }
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            logger.debug("Poller stopped");
+        }
+
+        private int fire() {
+            try {
+                return engine.fire();
+            } catch(Exception e) {
+                logger.error("Error firing task engine", e);
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ru.concerteza.util.tasks;
+
+/**
+ * Receives notifications about new tasks, available for processing
+ *
+ * @author alexkasko
+ * Date: 12/30/14
+ * @see TaskNotificationSource
+ * @see TaskEnginePoller
+ */
+public interface TaskNotificationListener {
+    /**
+     * Called when new tasks may be available for processing, may be called from any thread
+     */
+    void onTaskNotification();
+}
@@ -0,0 +1,24 @@
+package ru.concerteza.util.tasks;
+
+/**
+ * Source of notifications about new tasks, e.g. database LISTEN/NOTIFY channel or message queue.
+ * Notifications may be lost, {@link TaskEnginePoller} covers missed notifications with periodic polling.
+ *
+ * @author alexkasko
+ * Date: 12/30/14
+ * @see TaskEnginePoller
+ * @see PostgresTaskNotificationSource
+ */
+public interface TaskNotificationSource {
+    /**
+     * Starts sending notifications to provided listener
+     *
+     * @param listener notifications listener
+     */
+    void start(TaskNotificationListener listener);
+
+    /**
+     * Stops sending notifications and releases resources
+     */
+    void stop();
+}
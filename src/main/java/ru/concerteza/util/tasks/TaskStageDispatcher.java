@@ -0,0 +1,355 @@
+package ru.concerteza.util.tasks;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.concerteza.util.db.metrics.Gauge;
+import ru.concerteza.util.db.metrics.Histogram;
+import ru.concerteza.util.db.metrics.MetricsRegistry;
+import ru.concerteza.util.db.metrics.NoOpMetricsRegistry;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+import static ru.concerteza.util.string.CtzFormatUtils.format;
+
+/**
+ * Stage dispatcher for {@link TaskEngine}, that isolates stage processors from each other with bulkheads.
+ * Each processor id has its own queue and concurrency limit, total count of stages sent to executor
+ * is limited with max concurrency, that should be equal to executor threads count.
+ * Stages waiting for the same processor are dispatched in order of task priorities
+ * (see {@link PrioritizedTask}), then in submission order. Processors with waiting stages
+ * are served in round-robin order, so burst of heavy stages cannot starve light ones.
+ * Stages are kept in dispatcher queues until permits are available, no executor threads are blocked.
+ * Jobs may be sent to executor later from other threads, so executor rejections are reported to
+ * {@link RejectionListener} provided with job. Ready jobs are sent to executor in loop, so same-thread
+ * executor won't cause recursion over the queued jobs.
+ * Metrics are recorded for each processor id:
+ * <ul>
+ *     <li>{@code prefix.processorId.queued} gauge: count of stages waiting for permit</li>
+ *     <li>{@code prefix.processorId.active} gauge: count of stages sent to executor</li>
+ *     <li>{@code prefix.processorId.wait.micros} histogram: time from submission to executor dispatch</li>
+ * </ul>
+ * Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 1/1/15
+ * @see TaskEngine#setStageDispatcher(TaskStageDispatcher)
+ */
+public class TaskStageDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(TaskStageDispatcher.class);
+
+    /**
+     * Callback for stage jobs, that were rejected by executor
+     */
+    public interface RejectionListener {
+        /**
+         * Called once for rejected job, job won't be run
+         *
+         * @param e executor exception
+         */
+        void onRejected(RuntimeException e);
+    }
+
+    private final Executor executor;
+    private final int maxConcurrency;
+    private final MetricsRegistry registry;
+    private final String prefix;
+    private final Map<String, Integer> limits = new HashMap<String, Integer>();
+    // guarded by this
+    private final Map<String, Bulkhead> bulkheads = new HashMap<String, Bulkhead>();
+    private final List<Bulkhead> ring = new ArrayList<Bulkhead>();
+    private int ringIndex = 0;
+    private int active = 0;
+    private long seq = 0;
+    // jobs to send to executor from the outer dispatch loop of current thread
+    private final ThreadLocal<ArrayDeque<Job>> pending = new ThreadLocal<ArrayDeque<Job>>();
+
+    /**
+     * @param executor executor to run stages
+     * @param maxConcurrency max count of stages sent to executor at once
+     */
+    public TaskStageDispatcher(Executor executor, int maxConcurrency) {
+        this(executor, maxConcurrency, NoOpMetricsRegistry.INSTANCE, "tasks");
+    }
+
+    /**
+     * @param executor executor to run stages
+     * @param maxConcurrency max count of stages sent to executor at once
+     * @param registry metrics registry
+     * @param prefix metrics names prefix
+     */
+    public TaskStageDispatcher(Executor executor, int maxConcurrency, MetricsRegistry registry, String prefix) {
+        checkNotNull(executor, "Provided executor is null");
+        checkArgument(maxConcurrency > 0, "Max concurrency must be positive, but was: '%s'", maxConcurrency);
+        checkNotNull(registry, "Provided registry is null");
+        checkArgument(isNotBlank(prefix), "Provided prefix is blank");
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+        this.registry = registry;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Fluent setter, processors without limits are limited only with max concurrency
+     *
+     * @param processorId processor id
+     * @param limit max count of concurrently running stages with this processor
+     * @return dispatcher itself for chained init
+     */
+    public synchronized TaskStageDispatcher setProcessorLimit(String processorId, int limit) {
+        checkArgument(isNotBlank(processorId), "Provided processor id is blank");
+        checkArgument(limit > 0, "Limit must be positive, but was: '%s'", limit);
+        limits.put(processorId, limit);
+        Bulkhead bh = bulkheads.get(processorId);
+        if(null != bh) bh.limit = limit;
+        return this;
+    }
+
+    /**
+     * Queues stage job and sends ready jobs to executor, executor rejections are only logged
+     *
+     * @param processorId stage processor id
+     * @param priority task priority
+     * @param job stage job
+     */
+    public void execute(String processorId, int priority, Runnable job) {
+        execute(processorId, priority, job, null);
+    }
+
+    /**
+     * Queues stage job and sends ready jobs to executor
+     *
+     * @param processorId stage processor id
+     * @param priority task priority
+     * @param job stage job
+     * @param onRejected listener to call if job is rejected by executor, may be null
+     */
+    public void execute(String processorId, int priority, Runnable job, RejectionListener onRejected) {
+        checkNotNull(processorId, "Provided processor id is null");
+        checkNotNull(job, "Provided job is null");
+        List<Job> ready;
+        synchronized (this) {
+            Bulkhead bh = bulkhead(processorId);
+            bh.queue.add(new Job(bh, priority, seq++, job, onRejected));
+            ready = poll();
+        }
+        dispatch(ready);
+    }
+
+    /**
+     * @param processorId processor id
+     * @return count of stages waiting for permit
+     */
+    public synchronized int getQueueDepth(String processorId) {
+        Bulkhead bh = bulkheads.get(processorId);
+        return null != bh ? bh.queue.size() : 0;
+    }
+
+    /**
+     * @param processorId processor id
+     * @return count of stages sent to executor
+     */
+    public synchronized int getActiveCount(String processorId) {
+        Bulkhead bh = bulkheads.get(processorId);
+        return null != bh ? bh.active : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        return new ToStringBuilder(this).
+                append("maxConcurrency", maxConcurrency).
+                append("active", active).
+                append("bulkheads", ring).
+                toString();
+    }
+
+    // must be called under lock
+    private Bulkhead bulkhead(String processorId) {
+        Bulkhead res = bulkheads.get(processorId);
+        if(null == res) {
+            Integer limit = limits.get(processorId);
+            res = new Bulkhead(processorId, null != limit ? limit : maxConcurrency);
+            bulkheads.put(processorId, res);
+            ring.add(res);
+            registry.gauge(prefix + "." + processorId + ".queued", new QueuedGauge(res));
+            registry.gauge(prefix + "." + processorId + ".active", new ActiveGauge(res));
+        }
+        return res;
+    }
+
+    // must be called under lock
+    private List<Job> poll() {
+        if(active >= maxConcurrency) return ImmutableList.of();
+        List<Job> res = new ArrayList<Job>();
+        while(active < maxConcurrency) {
+            Job job = nextFair();
+            if(null == job) break;
+            active += 1;
+            job.bulkhead.active += 1;
+            res.add(job);
+        }
+        return res;
+    }
+
+    // round-robin over processors with waiting stages and free permits
+    private Job nextFair() {
+        int size = ring.size();
+        for(int i = 0; i < size; i++) {
+            int idx = (ringIndex + i) % size;
+            Bulkhead bh = ring.get(idx);
+            if(bh.active < bh.limit && !bh.queue.isEmpty()) {
+                ringIndex = (idx + 1) % size;
+                return bh.queue.poll();
+            }
+        }
+        return null;
+    }
+
+    // nested calls (from same-thread executor or from rejection) only add jobs to the outer loop
+    private void dispatch(List<Job> jobs) {
+        if(jobs.isEmpty()) return;
+        ArrayDeque<Job> queue = pending.get();
+        if(null != queue) {
+            queue.addAll(jobs);
+            return;
+        }
+        queue = new ArrayDeque<Job>(jobs);
+        pending.set(queue);
+        try {
+            for(Job job = queue.poll(); null != job; job = queue.poll()) {
+                send(job);
+            }
+        } finally {
+            pending.remove();
+        }
+    }
+
+    private void send(Job job) {
+        job.bulkhead.waitMicros.update((System.nanoTime() - job.queuedNanos) / 1000);
+        try {
+            executor.execute(job);
+        } catch(RuntimeException e) {
+            logger.error(format("Error dispatching stage job for processor: '{}'", job.bulkhead.processorId), e);
+            release(job.bulkhead);
+            job.rejected(e);
+        }
+    }
+
+    private void release(Bulkhead bh) {
+        List<Job> ready;
+        synchronized (this) {
+            active -= 1;
+            bh.active -= 1;
+            ready = poll();
+        }
+        dispatch(ready);
+    }
+
+    private class Bulkhead {
+        private final String processorId;
+        private final PriorityQueue<Job> queue = new PriorityQueue<Job>();
+        private final Histogram waitMicros;
+        private int limit;
+        private int active = 0;
+
+        private Bulkhead(String processorId, int limit) {
+            this.processorId = processorId;
+            this.limit = limit;
+            this.waitMicros = registry.histogram(prefix + "." + processorId + ".wait.micros");
+        }
+
+        @Override
+        public String toString() {
+            return new ToStringBuilder(this).
+                    append("processorId", processorId).
+                    append("limit", limit).
+                    append("active", active).
+                    append("queued", queue.size()).
+                    toString();
+        }
+    }
+
+    private class Job implements Runnable, Comparable<Job> {
+        private final Bulkhead bulkhead;
+        private final int priority;
+        private final long seq;
+        private final Runnable target;
+        private final RejectionListener onRejected;
+        private final long queuedNanos = System.nanoTime();
+
+        private Job(Bulkhead bulkhead, int priority, long seq, Runnable target, RejectionListener onRejected) {
+            this.bulkhead = bulkhead;
+            this.priority = priority;
+            this.seq = seq;
+            this.target = target;
+            this.onRejected = onRejected;
+        }
+
+        private void rejected(RuntimeException e) {
+            if(null == onRejected) return;
+            try {
+                onRejected.onRejected(e);
+            } catch(RuntimeException ex) {
+                logger.error(format("Error handling rejected stage job for processor: '{}'", bulkhead.processorId), ex);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                target.run();
+            } finally {
+                release(bulkhead);
+            }
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            if(priority != other.priority) return priority > other.priority ? -1 : 1;
+            return seq < other.seq ? -1 : (seq == other.seq ? 0 : 1);
+        }
+    }
+
+    private class QueuedGauge implements Gauge {
+        private final Bulkhead bulkhead;
+
+        private QueuedGauge(Bulkhead bulkhead) {
+            this.bulkhead = bulkhead;
+        }
+
+        @Override
+        public long getValue() {
+            synchronized (TaskStageDispatcher.this) {
+                return bulkhead.queue.size();
+            }
+        }
+    }
+
+    private class ActiveGauge implements Gauge {
+        private final Bulkhead bulkhead;
+
+        private ActiveGauge(Bulkhead bulkhead) {
+            this.bulkhead = bulkhead;
+        }
+
+        @Override
+        public long getValue() {
+            synchronized (TaskStageDispatcher.this) {
+                return bulkhead.active;
+            }
+        }
+    }
+}
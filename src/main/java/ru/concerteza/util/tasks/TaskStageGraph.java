@@ -0,0 +1,244 @@
+package ru.concerteza.util.tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Directed acyclic graph of task stages, alternative to linear {@link TaskStageChain}.
+ * Each stage declares stages it depends on, stages without dependencies between each other
+ * are processed by {@link TaskEngine} concurrently. Dependencies must be added before dependent stages,
+ * so graph cannot contain cycles. Must be provided by {@link GraphTask} instances. Immutable, thread-safe.
+ *
+ * @author alexkasko
+ * Date: 12/28/14
+ * @see GraphTask
+ * @see GraphTaskManager
+ */
+public class TaskStageGraph implements Serializable {
+    private static final long serialVersionUID = 4212371862163510781L;
+
+    /**
+     * Per-stage statuses
+     */
+    public enum StageStatus {
+        RUNNING, COMPLETED, SUSPENDED, ERROR
+    }
+
+    private final List<Stage> stages;
+    private final Map<String, Stage> stageMap;
+
+    private TaskStageGraph(List<Stage> stages) {
+        this.stages = stages;
+        ImmutableMap.Builder<String, Stage> bu = ImmutableMap.builder();
+        for(Stage st : stages) bu.put(st.getCompleted(), st);
+        this.stageMap = bu.build();
+    }
+
+    /**
+     * @return new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return all stages in declaration order
+     */
+    public List<Stage> getStages() {
+        return stages;
+    }
+
+    /**
+     * @param completed completed stage name
+     * @return {@link Stage} instance for given name
+     */
+    public Stage forName(String completed) {
+        checkNotNull(completed, "Null stage provided");
+        Stage res = stageMap.get(completed);
+        checkArgument(null != res, "Unknown stage provided: '%s', valid stages are: %s", completed, stages);
+        return res;
+    }
+
+    /**
+     * @param completed names of completed stages
+     * @return not completed stages, whose dependencies are all completed
+     */
+    public List<Stage> ready(Collection<String> completed) {
+        ImmutableList.Builder<Stage> res = ImmutableList.builder();
+        for(Stage st : stages) {
+            if(!completed.contains(st.getCompleted()) && completed.containsAll(st.getDependsOn())) res.add(st);
+        }
+        return res.build();
+    }
+
+    /**
+     * @param completed names of completed stages
+     * @return whether all stages are completed
+     */
+    public boolean isFinished(Collection<String> completed) {
+        for(Stage st : stages) {
+            if(!completed.contains(st.getCompleted())) return false;
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "TaskStageGraph{stages=" + stages + '}';
+    }
+
+    /**
+     * Builder class for {@link TaskStageGraph}, not thread-safe
+     */
+    public static class Builder {
+        private final ImmutableList.Builder<Stage> builder = ImmutableList.builder();
+        private final Set<String> names = new HashSet<String>();
+        private final Set<String> completedNames = new HashSet<String>();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds new enum stage to graph
+         *
+         * @param intermediate intermediate stage, e.g. 'exporting_ftp'
+         * @param completed completed stage, e.g. 'exported_ftp'
+         * @param processorId id of the processor that will be used for this stage
+         * @param dependsOn completed stages this stage depends on
+         * @return builder instance
+         */
+        public Builder add(Enum<?> intermediate, Enum<?> completed, String processorId, Enum<?>... dependsOn) {
+            checkNotNull(intermediate, "Null intermediate stage provided");
+            checkNotNull(completed, "Null completed stage provided");
+            String[] deps = new String[dependsOn.length];
+            for(int i = 0; i < dependsOn.length; i++) {
+                checkNotNull(dependsOn[i], "Null dependency provided");
+                deps[i] = dependsOn[i].name();
+            }
+            return add(intermediate.name(), completed.name(), processorId, deps);
+        }
+
+        /**
+         * Adds new stage to graph
+         *
+         * @param intermediate intermediate stage name, e.g. 'exporting_ftp'
+         * @param completed completed stage name, e.g. 'exported_ftp'
+         * @param processorId id of the processor that will be used for this stage
+         * @param dependsOn completed stage names this stage depends on, must be already added
+         * @return builder instance
+         */
+        public Builder add(String intermediate, String completed, String processorId, String... dependsOn) {
+            checkNotNull(intermediate, "Null intermediate stage provided");
+            checkNotNull(completed, "Null completed stage provided");
+            checkNotNull(processorId, "Null processorId provided");
+            for(String dep : dependsOn) {
+                checkArgument(completedNames.contains(dep), "Unknown dependency: '%s', dependencies must be added first", dep);
+            }
+            checkArgument(names.add(intermediate), "Duplicate stage provided: '%s'", intermediate);
+            checkArgument(names.add(completed), "Duplicate stage provided: '%s'", completed);
+            completedNames.add(completed);
+            builder.add(new Stage(intermediate, completed, processorId, ImmutableSet.copyOf(dependsOn)));
+            return this;
+        }
+
+        /**
+         * @return stage graph instance
+         */
+        public TaskStageGraph build() {
+            List<Stage> stages = builder.build();
+            checkArgument(stages.size() > 0, "Graph must contain at least one stage");
+            return new TaskStageGraph(stages);
+        }
+    }
+
+    /**
+     * Graph stage
+     */
+    public static class Stage implements Serializable {
+        private static final long serialVersionUID = 3390826342573613562L;
+
+        private final String intermediate;
+        private final String completed;
+        private final String processorId;
+        private final Set<String> dependsOn;
+
+        private Stage(String intermediate, String completed, String processorId, Set<String> dependsOn) {
+            this.intermediate = intermediate;
+            this.completed = completed;
+            this.processorId = processorId;
+            this.dependsOn = dependsOn;
+        }
+
+        /**
+         * @return stage name stored while stage is running
+         */
+        public String getIntermediate() {
+            return intermediate;
+        }
+
+        /**
+         * @return stage name stored after stage is completed, also used as stage id
+         */
+        public String getCompleted() {
+            return completed;
+        }
+
+        /**
+         * @return id of processor for this stage
+         */
+        public String getProcessorId() {
+            return processorId;
+        }
+
+        /**
+         * @return completed names of stages, that must be completed before this stage is started
+         */
+        public Set<String> getDependsOn() {
+            return dependsOn;
+        }
+
+        /**
+         * Stages are compared by completed names
+         *
+         * @param o other object
+         * @return whether other object is stage with the same completed name
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Stage stage = (Stage) o;
+            return completed.equals(stage.completed);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return completed.hashCode();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return completed;
+        }
+    }
+}
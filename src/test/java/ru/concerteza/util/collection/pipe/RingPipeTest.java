@@ -0,0 +1,187 @@
+package ru.concerteza.util.collection.pipe;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.concerteza.util.collection.CtzCollectionException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 1/9/15
+ */
+public class RingPipeTest {
+    private static final Logger logger = LoggerFactory.getLogger(RingPipeTest.class);
+    private static final Long EOD = -1L;
+    private static final Long ERROR = -2L;
+
+    @Test
+    public void testSingleThread() throws InterruptedException {
+        for(AbstractRingPipe<Long> pipe : pipes(3)) {
+            assertEquals("Capacity fail", 4, pipe.remainingCapacity());
+            assertNull("Empty fail", pipe.poll());
+            for(long i = 0; i < 4; i++) assertTrue("Offer fail", pipe.offer(i));
+            assertFalse("Full fail", pipe.offer(4L));
+            assertFalse("Timeout fail", pipe.offer(4L, 10, TimeUnit.MILLISECONDS));
+            assertEquals("Peek fail", 0L, (long) pipe.peek());
+            assertEquals("Poll fail", 0L, (long) pipe.poll());
+            List<Long> drained = new ArrayList<Long>();
+            assertEquals("Drain fail", 2, pipe.drainTo(drained, 2));
+            assertEquals("Drain order fail", 2L, (long) drained.get(1));
+            assertEquals("Size fail", 1, pipe.size());
+            // wraps over the end of buffer
+            pipe.putAll(list(4, 7));
+            assertEquals("Batch fail", 4, pipe.takeBatch(drained, 10));
+            assertEquals("Batch order fail", 6L, (long) drained.get(5));
+            assertNull("Timeout fail", pipe.poll(10, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void testSpsc() throws InterruptedException {
+        SpscRingPipe<Long> pipe = new SpscRingPipe<Long>(64);
+        Thread producer = new Thread(new Producer(pipe, 0, 100000, 10, true));
+        producer.start();
+        long expected = 0;
+        Iterator<Long> it = pipe.consumingIterator(EOD, ERROR);
+        while(it.hasNext()) {
+            assertEquals("Order fail", expected, (long) it.next());
+            expected += 1;
+        }
+        producer.join();
+        assertEquals("Count fail", 100000, expected);
+    }
+
+    @Test
+    public void testMpsc() throws InterruptedException {
+        int producersCount = 4;
+        int count = 100000;
+        MpscRingPipe<Long> pipe = new MpscRingPipe<Long>(64, WaitStrategy.PARK);
+        List<Thread> producers = new ArrayList<Thread>();
+        for(int i = 0; i < producersCount; i++) {
+            // each producer publishes its own range, every second one publishes in batches
+            Thread th = new Thread(new Producer(pipe, i * count, count, i % 2 == 0 ? 1 : 7, false));
+            th.start();
+            producers.add(th);
+        }
+        long[] last = new long[producersCount];
+        for(int i = 0; i < producersCount; i++) last[i] = i * count - 1;
+        List<Long> batch = new ArrayList<Long>();
+        int received = 0;
+        while(received < producersCount * count) {
+            batch.clear();
+            pipe.takeBatch(batch, 100);
+            for(Long el : batch) {
+                int pr = (int) (el / count);
+                assertEquals("Producer order fail", last[pr] + 1, (long) el);
+                last[pr] = el;
+            }
+            received += batch.size();
+        }
+        for(Thread th : producers) th.join();
+        assertEquals("Count fail", producersCount * count, received);
+        assertEquals("Empty fail", 0, pipe.size());
+    }
+
+    @Test(expected = CtzCollectionException.class)
+    public void testError() throws InterruptedException {
+        MpscRingPipe<Long> pipe = new MpscRingPipe<Long>(4);
+        pipe.put(42L);
+        pipe.put(ERROR);
+        Iterator<Long> it = pipe.consumingIterator(EOD, ERROR);
+        assertEquals("Element fail", 42L, (long) it.next());
+        it.next();
+    }
+
+    // JMH is not available in this build, so simple throughput comparison is only logged,
+    // element counts are checked to make sure all pipes pass the same data
+    @Test
+    public void testThroughput() throws InterruptedException {
+        int count = 100000;
+        logger.info("ArrayBlockingQueue: " + throughput(new ArrayBlockingQueue<Long>(1024), count) + " ops/s");
+        logger.info("SpscRingPipe: " + throughput(new SpscRingPipe<Long>(1024), count) + " ops/s");
+        logger.info("MpscRingPipe: " + throughput(new MpscRingPipe<Long>(1024), count) + " ops/s");
+    }
+
+    private static List<AbstractRingPipe<Long>> pipes(int capacity) {
+        List<AbstractRingPipe<Long>> res = new ArrayList<AbstractRingPipe<Long>>();
+        res.add(new SpscRingPipe<Long>(capacity, WaitStrategy.BUSY_SPIN));
+        res.add(new MpscRingPipe<Long>(capacity, WaitStrategy.BUSY_SPIN));
+        return res;
+    }
+
+    private static List<Long> list(long from, long to) {
+        List<Long> res = new ArrayList<Long>();
+        for(long i = from; i < to; i++) res.add(i);
+        return res;
+    }
+
+    private static long throughput(BlockingQueue<Long> queue, int count) throws InterruptedException {
+        Thread producer = new Thread(new Producer(queue, 0, count, 1, true));
+        long start = System.nanoTime();
+        producer.start();
+        int received = 0;
+        while(!EOD.equals(queue.take())) {
+            received += 1;
+        }
+        long nanos = System.nanoTime() - start;
+        producer.join();
+        assertEquals("Throughput count fail", count, received);
+        assertTrue("Throughput empty fail", queue.isEmpty());
+        return count * 1000000000L / Math.max(nanos, 1);
+    }
+
+    private static class Producer implements Runnable {
+        private final BlockingQueue<Long> queue;
+        // set only for ring pipes, used for batch publishing
+        private final AbstractRingPipe<Long> pipe;
+        private final long from;
+        private final int count;
+        private final int batchSize;
+        private final boolean sendEod;
+
+        private Producer(AbstractRingPipe<Long> pipe, long from, int count, int batchSize, boolean sendEod) {
+            this(pipe, pipe, from, count, batchSize, sendEod);
+        }
+
+        private Producer(BlockingQueue<Long> queue, long from, int count, int batchSize, boolean sendEod) {
+            this(queue, null, from, count, batchSize, sendEod);
+        }
+
+        private Producer(BlockingQueue<Long> queue, AbstractRingPipe<Long> pipe, long from, int count,
+                         int batchSize, boolean sendEod) {
+            this.queue = queue;
+            this.pipe = pipe;
+            this.from = from;
+            this.count = count;
+            this.batchSize = batchSize;
+            this.sendEod = sendEod;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long to = from + count;
+                for(long i = from; i < to; i += batchSize) {
+                    if(batchSize > 1 && null != pipe) {
+                        pipe.putAll(list(i, Math.min(i + batchSize, to)));
+                    } else queue.put(i);
+                }
+                if(sendEod) queue.put(EOD);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
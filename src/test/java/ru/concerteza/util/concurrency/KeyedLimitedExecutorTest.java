@@ -0,0 +1,184 @@
+package ru.concerteza.util.concurrency;
+
+import org.junit.Test;
+import ru.concerteza.util.db.metrics.InMemoryMetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * User: alexkasko
+ * Date: 1/7/15
+ */
+public class KeyedLimitedExecutorTest {
+
+    @Test
+    public void test() throws Exception {
+        // small pool, that would be exhausted by parked tasks with semaphore-based limiting
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        try {
+            KeyedLimitedExecutor<String> executor = new KeyedLimitedExecutor<String>(pool, 1, registry, "limited");
+            // per-key gauges are registered for explicitly limited keys only
+            executor.setLimit("heavy", 1);
+            CountDownLatch latch = new CountDownLatch(1);
+            Blocking blocking = new Blocking(latch);
+            for(int i = 0; i < 5; i++) executor.execute("heavy", blocking);
+            assertEquals("Queue fail", 4, executor.getQueueLength("heavy"));
+            assertEquals("Active fail", 1, executor.getActiveCount("heavy"));
+            assertEquals("Gauge fail", 4L, (long) registry.snapshot().getGauges().get("limited.heavy.queued"));
+            // other key is not blocked by heavy queue
+            Future<Integer> light = executor.submit("light", new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return 42;
+                }
+            });
+            assertEquals("Light fail", 42, (int) light.get(1, TimeUnit.SECONDS));
+            assertFalse("Dynamic gauge fail", registry.snapshot().getGauges().containsKey("limited.light.queued"));
+            // raised limit drains queue
+            executor.setLimit("heavy", 2);
+            assertEquals("Drain fail", 3, executor.getQueueLength());
+            for(int i = 0; i < 100 && blocking.active.get() < 2; i++) Thread.sleep(10);
+            latch.countDown();
+            for(int i = 0; i < 100 && executor.getActiveCount("heavy") > 0; i++) Thread.sleep(10);
+            assertEquals("Done fail", 5, blocking.done.get());
+            assertEquals("Limit fail", 2, blocking.maxActive.get());
+            assertEquals("Total gauge fail", 0L, (long) registry.snapshot().getGauges().get("limited.queued"));
+            assertEquals("Total active gauge fail", 0L, (long) registry.snapshot().getGauges().get("limited.active"));
+            assertEquals("Release fail", 0, executor.getActiveCount("heavy"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRejected() throws Exception {
+        ManualExecutor target = new ManualExecutor();
+        KeyedLimitedExecutor<String> executor = new KeyedLimitedExecutor<String>(target, 1);
+        Future<Integer> first = executor.submit("foo", new Constant(42));
+        Future<Integer> queued = executor.submit("foo", new Constant(43));
+        assertEquals("Queue fail", 1, executor.getQueueLength("foo"));
+        target.reject = true;
+        // queued task is forwarded to target on release
+        target.runAll();
+        assertEquals("First fail", 42, (int) first.get(1, TimeUnit.SECONDS));
+        assertTrue("Cancel fail", queued.isCancelled());
+        assertEquals("Release fail", 0, executor.getActiveCount("foo"));
+    }
+
+    @Test
+    public void testRejectedWithQueued() throws Exception {
+        final ManualExecutor target = new ManualExecutor();
+        final KeyedLimitedExecutor<String> executor = new KeyedLimitedExecutor<String>(target, 1);
+        final List<Future<Integer>> queued = new ArrayList<Future<Integer>>();
+        // second task is queued for the same key while the first one holds permit and is being forwarded
+        target.onExecute = new Runnable() {
+            @Override
+            public void run() {
+                target.onExecute = null;
+                queued.add(executor.submit("foo", new Constant(43)));
+                throw new RejectedExecutionException();
+            }
+        };
+        try {
+            executor.submit("foo", new Constant(42));
+            fail("Rejection fail");
+        } catch(RejectedExecutionException e) {
+            // expected
+        }
+        assertEquals("Queue fail", 0, executor.getQueueLength("foo"));
+        target.runAll();
+        assertEquals("Queued fail", 43, (int) queued.get(0).get(1, TimeUnit.SECONDS));
+        assertEquals("Idle fail", 0, executor.getKeysCount());
+    }
+
+    @Test
+    public void testIdleKeys() throws Exception {
+        ManualExecutor target = new ManualExecutor();
+        KeyedLimitedExecutor<String> executor = new KeyedLimitedExecutor<String>(target, 1);
+        executor.setLimit("explicit", 2);
+        for(int i = 0; i < 10; i++) executor.submit("dynamic" + i, new Constant(i));
+        executor.submit("explicit", new Constant(42));
+        assertEquals("Keys fail", 11, executor.getKeysCount());
+        target.runAll();
+        // only key with explicit limit is retained
+        assertEquals("Idle fail", 1, executor.getKeysCount());
+        executor.submit("dynamic0", new Constant(42));
+        assertEquals("Reuse fail", 1, executor.getActiveCount("dynamic0"));
+        target.runAll();
+        assertEquals("Reuse idle fail", 1, executor.getKeysCount());
+    }
+
+    private static class ManualExecutor implements Executor {
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+        private boolean reject = false;
+        private Runnable onExecute;
+
+        @Override
+        public void execute(Runnable command) {
+            if(null != onExecute) onExecute.run();
+            if(reject) throw new RejectedExecutionException();
+            tasks.add(command);
+        }
+
+        private void runAll() {
+            List<Runnable> list = new ArrayList<Runnable>(tasks);
+            tasks.clear();
+            for(Runnable re : list) re.run();
+        }
+    }
+
+    private static class Constant implements Callable<Integer> {
+        private final int value;
+
+        private Constant(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public Integer call() throws Exception {
+            return value;
+        }
+    }
+
+    private static class Blocking implements Runnable {
+        private final CountDownLatch latch;
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger maxActive = new AtomicInteger();
+        private final AtomicInteger done = new AtomicInteger();
+
+        private Blocking(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void run() {
+            int act = active.incrementAndGet();
+            synchronized (this) {
+                if(act > maxActive.get()) maxActive.set(act);
+            }
+            try {
+                latch.await(5, TimeUnit.SECONDS);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            active.decrementAndGet();
+            done.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package ru.concerteza.util.db.csv;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.annotation.Nullable;
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static ru.concerteza.util.io.CtzIOUtils.createTmpFile;
+import static ru.concerteza.util.string.CtzConstants.UTF8;
+
+/**
+ * User: alexkasko
+ * Date: 11/24/14
+ */
+public class ParallelCsvReaderTest {
+    private static final int ROWS_COUNT = 10000;
+
+    @Test
+    public void testSplits() throws IOException {
+        File file = writeCsv();
+        MappedCsvFile mcf = new MappedCsvFile(file, ";", UTF8);
+        assertEquals("Headers fail", ImmutableList.of("id", "name"), mcf.getHeaders());
+        List<MappedCsvSplit> splits = mcf.split(7);
+        assertEquals("Splits count fail", 7, splits.size());
+        long pos = mcf.getDataStart();
+        int count = 0;
+        for(MappedCsvSplit sp : splits) {
+            assertEquals("Splits alignment fail", pos, sp.getStart());
+            pos = sp.getEnd();
+            for(Map<String, String> row : sp) {
+                assertEquals("Data fail", "name" + row.get("id"), row.get("name"));
+                count += 1;
+            }
+        }
+        assertEquals("Length fail", file.length(), pos);
+        assertEquals("Rows count fail", ROWS_COUNT, count);
+    }
+
+    @Test
+    public void testOrdered() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        ParallelCsvReader<Integer> reader = new ParallelCsvReader<Integer>(new MappedCsvFile(writeCsv(), ";", UTF8), 5,
+                executor, IdFunction.INSTANCE, 100);
+        Iterator<Integer> iter = reader.orderedIterator();
+        for(int i = 0; i < ROWS_COUNT; i++) {
+            assertEquals("Order fail", i, (int) iter.next());
+        }
+        assertTrue("Size fail", !iter.hasNext());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testUnordered() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ParallelCsvReader<Integer> reader = new ParallelCsvReader<Integer>(new MappedCsvFile(writeCsv(), ";", UTF8), 4,
+                executor, IdFunction.INSTANCE, 100);
+        Set<Integer> set = new HashSet<Integer>();
+        Iterator<Integer> iter = reader.unorderedIterator();
+        while(iter.hasNext()) set.add(iter.next());
+        assertEquals("Size fail", ROWS_COUNT, set.size());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testShortcut() throws IOException {
+        ParallelCsvReader<Map<String, String>> reader = ParallelCsvReader.of(writeCsv(), ";");
+        try {
+            int count = 0;
+            Iterator<Map<String, String>> iter = reader.orderedIterator();
+            while(iter.hasNext()) {
+                assertEquals("Order fail", Integer.toString(count), iter.next().get("id"));
+                count += 1;
+            }
+            assertEquals("Rows count fail", ROWS_COUNT, count);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test(expected = CsvException.class)
+    public void testError() throws IOException {
+        File file = createTmpFile(getClass());
+        FileUtils.writeStringToFile(file, "id;name\n1;foo\n2;bar;baz\n", UTF8);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Iterator<Integer> iter = new ParallelCsvReader<Integer>(new MappedCsvFile(file, ";", UTF8), 2,
+                    executor, IdFunction.INSTANCE).orderedIterator();
+            while(iter.hasNext()) iter.next();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDataSources() throws IOException {
+        List<DataSource> sources = CsvDataSource.mapped(writeCsv(), ";", UTF8, 3);
+        assertEquals("Sources count fail", 3, sources.size());
+        int count = 0;
+        for(DataSource ds : sources) {
+            List<Map<String, Object>> res = new JdbcTemplate(ds).queryForList("select something");
+            count += res.size();
+        }
+        assertEquals("Rows count fail", ROWS_COUNT, count);
+    }
+
+    private File writeCsv() throws IOException {
+        File file = createTmpFile(getClass());
+        StringBuilder sb = new StringBuilder("id;name\n");
+        for(int i = 0; i < ROWS_COUNT; i++) {
+            sb.append(i).append(";name").append(i).append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        FileUtils.writeStringToFile(file, sb.toString(), UTF8);
+        return file;
+    }
+
+    private enum IdFunction implements Function<Map<String, ?>, Integer> {
+        INSTANCE;
+
+        @Override
+        public Integer apply(@Nullable Map<String, ?> input) {
+            return Integer.valueOf((String) input.get("id"));
+        }
+    }
+}
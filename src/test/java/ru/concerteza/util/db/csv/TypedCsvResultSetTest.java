@@ -0,0 +1,108 @@
+package ru.concerteza.util.db.csv;
+
+import org.apache.commons.io.FileUtils;
+import org.joda.time.format.DateTimeFormat;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static ru.concerteza.util.db.csv.CsvColumnType.*;
+import static ru.concerteza.util.io.CtzIOUtils.createTmpFile;
+import static ru.concerteza.util.string.CtzConstants.UTF8;
+
+/**
+ * User: alexkasko
+ * Date: 11/26/14
+ */
+public class TypedCsvResultSetTest {
+    private static final CsvSchema SCHEMA = CsvSchema.builder().
+            column("id", LONG).
+            column("count", INT).
+            column("price", DOUBLE).
+            column("created", DATE).
+            column("name", STRING).
+            build();
+
+    @Test
+    public void test() throws IOException, SQLException {
+        MappedCsvFile file = new MappedCsvFile(writeCsv(), ";\t", UTF8);
+        ResultSet rs = new TypedCsvResultSet(file.split(1).get(0), SCHEMA);
+        assertEquals("Metadata fail", Types.BIGINT, rs.getMetaData().getColumnType(1));
+        assertEquals("Metadata fail", "price", rs.getMetaData().getColumnLabel(3));
+        assertTrue(rs.next());
+        assertEquals("Long fail", 8611563489L, rs.getLong("id"));
+        assertEquals("Int fail", 42, rs.getInt(2));
+        assertEquals("Double fail", 12.75, rs.getDouble("price"), 0);
+        long expected = DateTimeFormat.forPattern("yyyyMMddHHmmss").parseLocalDateTime("20141126153010").toDate().getTime();
+        assertEquals("Date fail", new Timestamp(expected), rs.getTimestamp("created"));
+        assertEquals("String fail", "foo", rs.getString("name"));
+        assertFalse("Null fail", rs.wasNull());
+        assertTrue(rs.next());
+        assertEquals("Negative fail", -17, rs.getLong(1));
+        assertEquals("Null fail", 0, rs.getInt("count"));
+        assertTrue("Null fail", rs.wasNull());
+        assertEquals("Negative fail", -0.5, rs.getDouble("price"), 0);
+        assertNull("Null fail", rs.getTimestamp("created"));
+        assertNull("Null fail", rs.getObject("name"));
+        assertFalse(rs.next());
+        rs.close();
+    }
+
+    @Test
+    public void testDataSource() throws IOException {
+        List<DataSource> sources = CsvDataSource.mapped(writeCsv(), ";\t", UTF8, 1, SCHEMA);
+        List<Map<String, Object>> res = new JdbcTemplate(sources.get(0)).queryForList("select something");
+        assertEquals("Row count fail", 2, res.size());
+        assertEquals("Type fail", 8611563489L, res.get(0).get("id"));
+        assertEquals("Type fail", 42, res.get(0).get("count"));
+        assertEquals("Type fail", 12.75, res.get(0).get("price"));
+    }
+
+    @Test(expected = CsvException.class)
+    public void testSchemaMismatch() throws IOException {
+        MappedCsvFile file = new MappedCsvFile(writeCsv(), ";\t", UTF8);
+        CsvSchema schema = CsvSchema.builder().column("id", LONG).build();
+        new TypedCsvResultSet(file.split(1).get(0), schema);
+    }
+
+    @Test
+    public void testInvalidFields() throws IOException, SQLException {
+        File file = createTmpFile(getClass());
+        FileUtils.writeStringToFile(file, "price;created\n" +
+                "1.5;20141126\n" +
+                "-;20141126153010\n" +
+                ".;20141126153010\n" +
+                "2.5;20141126153010\n", UTF8);
+        CsvSchema schema = CsvSchema.builder().column("price", DOUBLE).column("created", DATE).build();
+        ResultSet rs = new TypedCsvResultSet(new MappedCsvFile(file, ";", UTF8).split(1).get(0), schema);
+        int failed = 0;
+        for(int i = 0; i < 3; i++) {
+            try {
+                rs.next();
+            } catch(CsvException e) {
+                failed += 1;
+            }
+        }
+        assertEquals("Invalid fields fail", 3, failed);
+        assertTrue(rs.next());
+        assertEquals("Double fail", 2.5, rs.getDouble(1), 0);
+    }
+
+    private File writeCsv() throws IOException {
+        File file = createTmpFile(getClass());
+        FileUtils.writeStringToFile(file, "id;\tcount;\tprice;\tcreated;\tname\n" +
+                "8611563489;\t42;\t12.75;\t20141126153010;\tfoo\n" +
+                "-17;\t;\t-0.5;\tNULL;\tNULL\n", UTF8);
+        return file;
+    }
+}
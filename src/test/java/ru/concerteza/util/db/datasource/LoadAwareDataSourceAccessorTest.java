@@ -0,0 +1,88 @@
+package ru.concerteza.util.db.datasource;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.dbcp.BasicDataSource;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 12/18/14
+ */
+public class LoadAwareDataSourceAccessorTest {
+
+    @Test
+    public void testLeastLoaded() throws SQLException {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        LoadAwareDataSourceAccessor acc = new LoadAwareDataSourceAccessor(ImmutableList.of(
+                dataSource("jdbc:h2:mem:load_aware_1"), dataSource("jdbc:h2:mem:load_aware_2")), executor);
+        try {
+            // init pools without tracking
+            for(LoadTrackingDataSource ds : acc) ds.getTarget().getConnection().close();
+            LoadTrackingDataSource busy = acc.get();
+            List<Connection> held = new ArrayList<Connection>();
+            for(int i = 0; i < 3; i++) held.add(busy.getConnection());
+            assertEquals("In-flight fail", 3, busy.getInFlight());
+            for(int i = 0; i < 20; i++) {
+                LoadTrackingDataSource ds = acc.get();
+                assertFalse("Balance fail", busy == ds);
+                Connection conn = ds.getConnection();
+                assertTrue("Valid fail", conn.isValid(1));
+                conn.close();
+                conn.close();
+                assertEquals("Release fail", 0, ds.getInFlight());
+            }
+            for(Connection conn : held) conn.close();
+            assertEquals("Release fail", 0, busy.getInFlight());
+        } finally {
+            acc.close();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testEjection() throws Exception {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        DataSource good = dataSource("jdbc:h2:mem:load_aware_good");
+        DataSource bad = dataSource("jdbc:h2:tcp://127.0.0.1:1/mem:load_aware_bad");
+        LoadAwareDataSourceAccessor acc = new LoadAwareDataSourceAccessor(ImmutableList.of(bad, good), executor, 1, 50, 10);
+        try {
+            int failures = 0;
+            for(int i = 0; i < 20; i++) {
+                try {
+                    acc.get().getConnection().close();
+                } catch(SQLException e) {
+                    failures += 1;
+                }
+            }
+            assertEquals("Failures fail", 1, failures);
+            assertEquals("Ejection fail", 1, acc.healthyCount());
+            // background probes keep failing
+            Thread.sleep(200);
+            assertEquals("Probe fail", 1, acc.healthyCount());
+            for(int i = 0; i < 10; i++) assertSame("Route fail", good, acc.get().getTarget());
+        } finally {
+            acc.close();
+            executor.shutdownNow();
+        }
+    }
+
+    private static DataSource dataSource(String url) {
+        BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName("org.h2.Driver");
+        ds.setUrl(url);
+        return ds;
+    }
+}
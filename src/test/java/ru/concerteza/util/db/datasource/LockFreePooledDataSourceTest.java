@@ -0,0 +1,139 @@
+package ru.concerteza.util.db.datasource;
+
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * User: alexkasko
+ * Date: 12/20/14
+ */
+public class LockFreePooledDataSourceTest {
+
+    @Test
+    public void testReuse() throws SQLException {
+        LockFreePooledDataSource ds = dataSource("jdbc:h2:mem:lock_free_reuse", 2);
+        try {
+            Connection first = ds.getConnection();
+            String physical = first.toString();
+            first.close();
+            first.close();
+            assertTrue("Closed fail", first.isClosed());
+            Connection second = ds.getConnection();
+            assertEquals("Thread affinity fail", physical, second.toString());
+            assertFalse("Closed fail", second.isClosed());
+            Connection third = ds.getConnection();
+            assertEquals("Total fail", 2, ds.getTotalCount());
+            try {
+                ds.getConnection();
+                fail();
+            } catch(SQLException e) {
+                // expected
+            }
+            second.close();
+            third.close();
+            assertEquals("Idle fail", 2, ds.getIdleCount());
+        } finally {
+            ds.close();
+        }
+        assertEquals("Close fail", 0, ds.getTotalCount());
+    }
+
+    @Test
+    public void testRollbackOnReturn() throws SQLException {
+        LockFreePooledDataSource ds = dataSource("jdbc:h2:mem:lock_free_rollback", 1);
+        try {
+            Connection conn = ds.getConnection();
+            conn.createStatement().execute("create table foo(bar int)");
+            int isolation = conn.getTransactionIsolation();
+            conn.setAutoCommit(false);
+            conn.setReadOnly(true);
+            conn.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+            conn.createStatement().execute("insert into foo values(42)");
+            conn.close();
+            Connection next = ds.getConnection();
+            assertTrue("Autocommit fail", next.getAutoCommit());
+            assertFalse("Read-only fail", next.isReadOnly());
+            assertEquals("Isolation fail", isolation, next.getTransactionIsolation());
+            ResultSet rs = next.createStatement().executeQuery("select count(*) from foo");
+            rs.next();
+            assertEquals("Rollback fail", 0, rs.getInt(1));
+            next.close();
+        } finally {
+            ds.close();
+        }
+    }
+
+    @Test
+    public void testValidation() throws Exception {
+        LockFreePooledDataSource ds = dataSource("jdbc:h2:mem:lock_free_validation", 2);
+        ds.setValidationIntervalMillis(20);
+        try {
+            Connection conn = ds.getConnection();
+            Connection idle = ds.getConnection();
+            idle.close();
+            // closes all database connections, including idle one
+            conn.createStatement().execute("shutdown");
+            conn.close();
+            assertEquals("Discard fail", 1, ds.getTotalCount());
+            Thread.sleep(300);
+            assertEquals("Validation fail", 0, ds.getTotalCount());
+            Connection fresh = ds.getConnection();
+            assertTrue("Valid fail", fresh.isValid(1));
+            fresh.close();
+        } finally {
+            ds.close();
+        }
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        final LockFreePooledDataSource ds = dataSource("jdbc:h2:mem:lock_free_concurrent", 3);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for(int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        int res = 0;
+                        for(int j = 0; j < 200; j++) {
+                            Connection conn = ds.getConnection();
+                            if(conn.isValid(1)) res += 1;
+                            conn.close();
+                        }
+                        return res;
+                    }
+                }));
+            }
+            for(Future<Integer> fu : futures) assertEquals("Borrow fail", 200, (int) fu.get());
+            assertTrue("Max active fail", ds.getTotalCount() <= 3);
+            assertEquals("Idle fail", ds.getTotalCount(), ds.getIdleCount());
+        } finally {
+            executor.shutdownNow();
+            ds.close();
+        }
+    }
+
+    private static LockFreePooledDataSource dataSource(String url, int maxActive) {
+        LockFreePooledDataSource ds = new LockFreePooledDataSource();
+        ds.setDriverClassName("org.h2.Driver");
+        ds.setUrl(url);
+        ds.setMaxActive(maxActive);
+        ds.setMaxWaitMillis(100);
+        return ds;
+    }
+}
@@ -0,0 +1,74 @@
+package ru.concerteza.util.db.metrics;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.commons.dbcp.BasicDataSource;
+import org.junit.Test;
+import ru.concerteza.util.db.springjdbc.iterable.CloseableIterator;
+import ru.concerteza.util.db.springjdbc.iterable.IterableNamedParameterJdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 12/22/14
+ */
+public class MetricsDataSourceTest {
+
+    @Test
+    public void test() throws SQLException {
+        BasicDataSource target = new BasicDataSource();
+        target.setDriverClassName("org.h2.Driver");
+        target.setUrl("jdbc:h2:mem:metrics_ds");
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        MetricsDataSource ds = new MetricsDataSource(target, registry, "test");
+        IterableNamedParameterJdbcTemplate jt = new IterableNamedParameterJdbcTemplate(ds);
+        jt.getJdbcOperations().update("create table foo(id int)");
+        for(int i = 0; i < 100; i++) jt.getJdbcOperations().update("insert into foo(id) values(?)", i);
+        CloseableIterator<Integer> iter = jt.queryForIter("select id from foo where id < :max",
+                ImmutableMap.of("max", 42), Integer.class);
+        Connection held = ds.getConnection();
+        assertEquals("Active fail", 2L, (long) registry.snapshot().getGauges().get("test.active"));
+        held.close();
+        int count = 0;
+        while(iter.hasNext()) {
+            iter.next();
+            count += 1;
+        }
+        iter.close();
+        assertEquals("Iter fail", 42, count);
+        assertEquals("Count fail", 100, (int) jt.getJdbcOperations().queryForInt("select count(*) from foo"));
+        MetricsSnapshot snap = registry.snapshot();
+        assertEquals("Active fail", 0L, (long) snap.getGauges().get("test.active"));
+        assertEquals("Rows fail", 43L, (long) snap.getCounters().get("test.rows"));
+        HistogramSnapshot queryRows = snap.getHistograms().get("test.query.rows");
+        assertEquals("Queries fail", 2, queryRows.getCount());
+        assertEquals("Max rows fail", 42, queryRows.getMax());
+        assertEquals("Statements fail", 103, snap.getHistograms().get("test.statement.micros").getCount());
+        assertEquals("Borrow fail", 104, snap.getHistograms().get("test.borrow.micros").getCount());
+        assertEquals("Hold fail", 104, snap.getHistograms().get("test.hold.millis").getCount());
+        assertEquals("Failures fail", 0L, (long) snap.getCounters().get("test.statement.failures"));
+        assertTrue("Dump fail", snap.toString().contains("histogram test.statement.micros: count=103"));
+    }
+
+    @Test
+    public void testHistogram() {
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        Histogram hist = registry.histogram("hist");
+        assertTrue("Same fail", hist == registry.histogram("hist"));
+        for(int i = 1; i <= 1000; i++) hist.update(i);
+        HistogramSnapshot snap = registry.snapshot().getHistograms().get("hist");
+        assertEquals("Count fail", 1000, snap.getCount());
+        assertEquals("Min fail", 1, snap.getMin());
+        assertEquals("Max fail", 1000, snap.getMax());
+        assertEquals("Mean fail", 500.5, snap.getMean(), 0.001);
+        // power-of-two buckets, interpolated
+        assertTrue("P50 fail: " + snap.getP50(), snap.getP50() >= 256 && snap.getP50() < 1024);
+        assertTrue("P99 fail: " + snap.getP99(), snap.getP99() >= 512 && snap.getP99() <= 1000);
+        registry.counter("counter").inc(42);
+        assertEquals("Counter fail", 42L, (long) registry.snapshot().getCounters().get("counter"));
+    }
+}
@@ -0,0 +1,82 @@
+package ru.concerteza.util.db.springjdbc;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.dbcp.BasicDataSource;
+import org.junit.Test;
+import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 12/12/14
+ */
+public class CompiledParameterSourceFactoryTest {
+
+    @Test
+    public void testProperties() {
+        Foo foo = new Foo(42, "foo");
+        CompiledParameterSourceFactory<Foo> factory = CompiledParameterSourceFactory.forProperties(Foo.class);
+        assertSame("Cache fail", factory, CompiledParameterSourceFactory.forProperties(Foo.class));
+        CompiledParameterSourceFactory.CompiledParameterSource<Foo> params = factory.apply(foo);
+        BeanPropertySqlParameterSource expected = new BeanPropertySqlParameterSource(foo);
+        for(String name : Arrays.asList("id", "name")) {
+            assertTrue("Has fail", params.hasValue(name));
+            assertEquals("Value fail", expected.getValue(name), params.getValue(name));
+            assertEquals("Type fail", expected.getSqlType(name), params.getSqlType(name));
+        }
+        assertFalse("Has fail", params.hasValue("secret"));
+        assertSame("Object fail", foo, params.getObject());
+    }
+
+    @Test
+    public void testFields() {
+        SqlParameterSource params = FieldSqlParameterFunction.forClass(Foo.class).apply(new Foo(42, "foo"));
+        assertEquals("Value fail", 42L, params.getValue("id"));
+        assertEquals("Value fail", "foo", params.getValue("name"));
+        assertEquals("Value fail", "foo_secret", params.getValue("secret"));
+        assertFalse("Has fail", params.hasValue("NAME"));
+    }
+
+    @Test
+    public void testInsert() {
+        BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName("org.h2.Driver");
+        ds.setUrl("jdbc:h2:mem:compiledParams");
+        NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(ds);
+        jt.getJdbcOperations().update("create table foo(id bigint, name varchar(255))");
+        List<Foo> foos = Arrays.asList(new Foo(1, "foo"), new Foo(2, "bar"), new Foo(3, null));
+        List<SqlParameterSource> params = Lists.transform(foos, CompiledParameterSourceFactory.forProperties(Foo.class));
+        jt.batchUpdate("insert into foo(id, name) values(:id, :name)", params.toArray(new SqlParameterSource[params.size()]));
+        assertEquals("Count fail", 3, jt.getJdbcOperations().queryForInt("select count(*) from foo"));
+        assertEquals("Data fail", "bar", jt.getJdbcOperations().queryForObject("select name from foo where id = 2", String.class));
+    }
+
+    public static class Foo {
+        private final long id;
+        private final String name;
+        private final String secret;
+
+        public Foo(long id, String name) {
+            this.id = id;
+            this.name = name;
+            this.secret = name + "_secret";
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
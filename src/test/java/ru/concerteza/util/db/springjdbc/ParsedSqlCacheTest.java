@@ -0,0 +1,52 @@
+package ru.concerteza.util.db.springjdbc;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.dbcp.BasicDataSource;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * User: alexkasko
+ * Date: 12/14/14
+ */
+public class ParsedSqlCacheTest {
+
+    @Test
+    public void testExpand() {
+        ParsedSqlCache cache = new ParsedSqlCache(2);
+        String sql = "select val from foo where id in (:ids) and val <> :val";
+        assertSame("Cache fail", cache.parse(sql), cache.parse(sql));
+        ParsedSqlCache.ExpandedSql two = cache.expand(sql, new MapSqlParameterSource("ids", ImmutableList.of(1, 2)).addValue("val", "a"));
+        assertEquals("Expand fail", "select val from foo where id in (?, ?) and val <> ?", two.getSql());
+        ParsedSqlCache.ExpandedSql three = cache.expand(sql, new MapSqlParameterSource("ids", ImmutableList.of(1, 2, 3)).addValue("val", "a"));
+        assertEquals("Expand fail", "select val from foo where id in (?, ?, ?) and val <> ?", three.getSql());
+        ParsedSqlCache.ExpandedSql twoAgain = cache.expand(sql, new MapSqlParameterSource("ids", ImmutableList.of(4, 5)).addValue("val", "b"));
+        assertSame("Shape cache fail", two.getSql(), twoAgain.getSql());
+        assertEquals("Values fail", "b", twoAgain.getValues()[1]);
+        // eviction
+        cache.parse("select 1 from dual");
+        cache.parse("select 2 from dual");
+        assertEquals("Size fail", 2, cache.size());
+    }
+
+    @Test
+    public void testCreator() {
+        BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName("org.h2.Driver");
+        ds.setUrl("jdbc:h2:mem:parsedSqlCache");
+        JdbcTemplate jt = new JdbcTemplate(ds);
+        jt.update("create table foo(id int, val varchar(255))");
+        for(int i = 0; i < 10; i++) jt.update("insert into foo(id, val) values(?, ?)", i, "val" + i);
+        String sql = "select val from foo where id in (:ids) and val <> :val order by id";
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", ImmutableList.of(1, 2, 3)).addValue("val", "val2");
+        List<String> res = jt.query(new CachedNamedParameterStatementCreator(sql, params), new SingleColumnRowMapper<String>(String.class));
+        assertEquals("Data fail", ImmutableList.of("val1", "val3"), res);
+    }
+}
@@ -0,0 +1,103 @@
+package ru.concerteza.util.db.springjdbc.batch;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.dbcp.BasicDataSource;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.concerteza.util.collection.accessor.RoundRobinAccessor;
+import ru.concerteza.util.db.springjdbc.FieldSqlParameterFunction;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * User: alexkasko
+ * Date: 12/10/14
+ */
+public class BatchWriterTest {
+    private static final AtomicInteger FLAKY_CALLS = new AtomicInteger();
+
+    @Test
+    public void test() {
+        DataSource ds = dataSource("batch_writer");
+        JdbcTemplate jt = new JdbcTemplate(ds);
+        jt.update("create table foo(id int primary key, val varchar(255))");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            BatchWriter<Foo> writer = new BatchWriter<Foo>(RoundRobinAccessor.of(ImmutableList.of(ds, ds)), executor,
+                    "insert into foo(id, val) values(:id, :val)", FieldSqlParameterFunction.forClass(Foo.class), 100, 4, 3, 0);
+            BatchWriteResult res = writer.write(rows(0, 1050).iterator());
+            assertEquals("Rows fail", 1050, res.getRows());
+            assertEquals("Batches fail", 11, res.getBatches());
+            assertEquals("Retries fail", 0, res.getRetries());
+            assertTrue("Rate fail", res.getRowsPerSecond() > 0);
+            assertEquals("Count fail", 1050, jt.queryForInt("select count(*) from foo"));
+            assertEquals("Data fail", "val1049", jt.queryForObject("select val from foo where id = 1049", String.class));
+            // duplicate keys in the last write
+            try {
+                writer.write(rows(1050, 1350).iterator());
+                writer.write(rows(2000, 2350).iterator());
+                writer.write(rows(1200, 1250).iterator());
+                fail("No duplicate key error");
+            } catch(BatchWriteException e) {
+                assertEquals("Written fail", 0, e.getWrittenRows());
+            }
+            assertEquals("Rollback fail", 1700, jt.queryForInt("select count(*) from foo"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRetry() {
+        DataSource ds = dataSource("batch_writer_retry");
+        JdbcTemplate jt = new JdbcTemplate(ds);
+        jt.update("create alias flaky for \"" + BatchWriterTest.class.getName() + ".flaky\"");
+        jt.update("create table bar(id int primary key, val varchar(255))");
+        FLAKY_CALLS.set(0);
+        BatchWriter<Foo> writer = new BatchWriter<Foo>(ds, "insert into bar(id, val) values(flaky(:id), :val)",
+                FieldSqlParameterFunction.forClass(Foo.class), 10);
+        BatchWriteResult res = writer.write(rows(0, 25).iterator());
+        assertEquals("Rows fail", 25, res.getRows());
+        assertEquals("Retries fail", 1, res.getRetries());
+        assertEquals("Count fail", 25, jt.queryForInt("select count(*) from bar"));
+    }
+
+    // serialization failure on the fifteenth call
+    public static int flaky(int id) throws SQLException {
+        if(15 == FLAKY_CALLS.incrementAndGet()) throw new SQLException("flaky", "40001");
+        return id;
+    }
+
+    private static DataSource dataSource(String name) {
+        BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName("org.h2.Driver");
+        ds.setUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        return ds;
+    }
+
+    private static List<Foo> rows(int from, int to) {
+        List<Foo> res = new ArrayList<Foo>();
+        for(int i = from; i < to; i++) res.add(new Foo(i, "val" + i));
+        return res;
+    }
+
+    private static class Foo {
+        private final int id;
+        private final String val;
+
+        private Foo(int id, String val) {
+            this.id = id;
+            this.val = val;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ru.concerteza.util.db.springjdbc.checksum;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.dbcp.BasicDataSource;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.concerteza.util.collection.accessor.RoundRobinAccessor;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 12/4/14
+ */
+public class ChunkedChecksumEngineTest {
+
+    @Test
+    public void test() {
+        DataSource first = createDataSource("checksum_first");
+        DataSource second = createDataSource("checksum_second");
+        new JdbcTemplate(second).update("update foo set val = 'changed' where id = 42");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ChunkedChecksumEngine firstEngine = new ChunkedChecksumEngine(RoundRobinAccessor.of(ImmutableList.of(first, first)), executor);
+            ChunkedChecksumEngine secondEngine = new ChunkedChecksumEngine(RoundRobinAccessor.of(ImmutableList.of(second)), executor);
+            KeyRange range = firstEngine.keyRange("foo", "id").span(secondEngine.keyRange("foo", "id"));
+            assertEquals("Range fail", new KeyRange(1, 101), range);
+            String sql = ChunkedChecksumEngine.rangeSql("foo", "id");
+            ChecksumTree firstTree = firstEngine.checksum(sql, range, 10);
+            ChecksumTree secondTree = secondEngine.checksum(sql, range, 10);
+            assertFalse("Leaf fail", firstTree.isLeaf());
+            assertEquals("Self diff fail", 0, firstTree.diff(firstEngine.checksum(sql, range, 10)).size());
+            List<KeyRange> diff = firstTree.diff(secondTree);
+            assertEquals("Diff size fail", 1, diff.size());
+            assertEquals("Diff fail", new KeyRange(41, 51), diff.get(0));
+            // descend into mismatched chunk
+            List<KeyRange> narrowed = firstEngine.checksum(sql, diff.get(0), 10).diff(secondEngine.checksum(sql, diff.get(0), 10));
+            assertEquals("Narrowed fail", ImmutableList.of(new KeyRange(42, 43)), narrowed);
+            assertTrue("Empty fail", firstEngine.checksum(sql, new KeyRange(1000, 1000), 10).isLeaf());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDiffTable() {
+        DataSource first = createDataSource("checksum_diff_first");
+        DataSource second = createDataSource("checksum_diff_second");
+        JdbcTemplate jt = new JdbcTemplate(second);
+        jt.update("delete from foo where id = 1");
+        jt.update("insert into foo(id, val) values(?, 'max')", Long.MAX_VALUE);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ChunkedChecksumEngine firstEngine = new ChunkedChecksumEngine(RoundRobinAccessor.of(ImmutableList.of(first)), executor);
+            ChunkedChecksumEngine secondEngine = new ChunkedChecksumEngine(RoundRobinAccessor.of(ImmutableList.of(second)), executor);
+            assertEquals("Max range fail", new KeyRange(2, Long.MAX_VALUE), secondEngine.keyRange("foo", "id"));
+            List<KeyRange> diff = firstEngine.diffTable(secondEngine, "foo", "id", 4);
+            assertEquals("Diff size fail", 2, diff.size());
+            assertEquals("Diff start fail", 1, diff.get(0).getStart());
+            assertEquals("Diff end fail", Long.MAX_VALUE, diff.get(1).getEnd());
+            assertEquals("Self diff fail", 0, secondEngine.diffTable(secondEngine, "foo", "id", 4).size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSplit() {
+        List<KeyRange> split = new KeyRange(0, 10).split(3);
+        assertEquals("Split fail", ImmutableList.of(new KeyRange(0, 4), new KeyRange(4, 7), new KeyRange(7, 10)), split);
+        assertEquals("Small split fail", 2, new KeyRange(0, 2).split(3).size());
+        List<KeyRange> wide = new KeyRange(Long.MIN_VALUE, Long.MAX_VALUE).split(4);
+        assertEquals("Wide split fail", 4, wide.size());
+        assertEquals("Wide start fail", Long.MIN_VALUE, wide.get(0).getStart());
+        assertEquals("Wide end fail", Long.MAX_VALUE, wide.get(3).getLast());
+        for(int i = 1; i < wide.size(); i++) {
+            assertEquals("Adjacent fail", wide.get(i - 1).getEnd(), wide.get(i).getStart());
+        }
+    }
+
+    private static DataSource createDataSource(String name) {
+        BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName("org.h2.Driver");
+        ds.setUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jt = new JdbcTemplate(ds);
+        jt.update("create table foo(id bigint, val varchar(255))");
+        for(int i = 1; i <= 100; i++) {
+            jt.update("insert into foo(id, val) values(?, ?)", i, "val_" + i);
+        }
+        return ds;
+    }
+}
@@ -13,7 +13,11 @@ import javax.persistence.*;
 import java.util.*;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static ru.concerteza.util.date.hibernate.PersistentLocalDateTime.LOCAL_DATE_TIME_TYPE;
 
 /**
@@ -89,6 +93,111 @@ public class EntityMapperTest {
         jt.update("drop table foo");
     }
 
+    @Test
+    public void testCompiledRs() {
+        jt.update("create table foo(foo_id bigint, val varchar(255))");
+        jt.update("insert into foo(foo_id, val) values(1, 'foo')");
+        jt.update("insert into foo(foo_id, val) values(2, null)");
+        EntityMapper<Foo> mapper = EntityMapper.compiledForClass(Foo.class);
+        checkSimple(jt.queryForObject("select foo_id, val from foo where foo_id = 1", mapper));
+        // another columns order with the same mapper
+        checkSimple(jt.queryForObject("select val, foo_id as FOO_ID from foo where foo_id = 1", mapper));
+        List<Foo> list = jt.query("select * from foo order by foo_id", mapper);
+        assertEquals("Size fail", 2, list.size());
+        assertEquals("Field fail", 2L, list.get(1).id);
+        assertNull("Null fail", list.get(1).val);
+        jt.update("drop table foo");
+    }
+
+    @Test
+    public void testCompiledMap() {
+        Foo foo = EntityMapper.compiledForClass(Foo.class).map(ImmutableMap.of("foo_id", 1L, "val", "foo"));
+        checkSimple(foo);
+    }
+
+    @Test
+    public void testCompiledFiltersRs() {
+        jt.update("create table foo(id bigint, val varchar(255), da timestamp)");
+        jt.update("insert into foo(id, val, da) values(1, '{\"foo\": 42, \"bar\": \"aaa\"}', '2012-01-01 01:23:45')");
+        EntityMapper<TableBean> fused = EntityMapper.compiledForClass(TableBean.class,
+                EntityFilters.columnsToLower(),
+                EntityFilters.toLocalDateTime("da"),
+                EntityFilters.fromJson(new Gson(), "val", FooJsonBean.class));
+        checkFilters(jt.queryForObject("select * from foo where id = 1", fused));
+        // not fusable filter goes through map adapter
+        EntityMapper<TableBean> adapted = EntityMapper.compiledForClass(TableBean.class,
+                EntityFilters.columnsToLower(),
+                EntityFilters.toLocalDateTime("da"),
+                new RenameFilter("json_val", "val"),
+                EntityFilters.fromJson(new Gson(), "val", FooJsonBean.class));
+        checkFilters(jt.queryForObject("select id, val as json_val, da from foo where id = 1", adapted));
+        jt.update("drop table foo");
+    }
+
+    @Test
+    public void testFusedChain() {
+        FusedFilterChain chain = FusedFilterChain.compile(Arrays.asList("ID", "NUM", "VAL"), Arrays.asList(
+                EntityFilters.identity(),
+                EntityFilters.columnsToLower(),
+                EntityFilters.toInteger("id", "num"),
+                EntityFilters.toDouble("num")));
+        assertEquals("Names fail", Arrays.asList("id", "num", "val"), chain.getNames());
+        assertFalse("Tail fail", chain.hasTail());
+        assertFalse("Converted fail", chain.isConverted(2));
+        Object[] row = new Object[]{"42", 2D, "foo"};
+        chain.apply(row);
+        assertEquals("Integer fail", 42, row[0]);
+        assertEquals("Fused fail", 2D, row[1]);
+        assertEquals("Not converted fail", "foo", row[2]);
+        Map<String, ?> map = chain.toMap(row);
+        assertEquals("Map fail", 42, map.get("ID"));
+        // not converted column is checked by column filter
+        assertTrue("Null check fail", chain.isNullChecked(2));
+        try {
+            chain.apply(new Object[]{"42", 2D, null});
+            fail("Null fail");
+        } catch(NullPointerException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFusedOverride() {
+        FusedFilterChain chain = FusedFilterChain.compile(Arrays.asList("ID", "VAL"), Arrays.asList(
+                EntityFilters.columnsToLower(),
+                new ExtraColumnFilter("val")));
+        // filter with overridden apply is not fused
+        assertTrue("Tail fail", chain.hasTail());
+        assertFalse("Converted fail", chain.isConverted(1));
+        Object[] row = new Object[]{42, "foo"};
+        chain.apply(row);
+        Map<String, ?> map = chain.toMap(row);
+        assertEquals("Override fail", "bar", map.get("extra"));
+        assertEquals("Convert fail", "FOO", map.get("val"));
+    }
+
+    @Test
+    public void testFusedNulls() {
+        jt.update("create table foo(foo_id bigint, val varchar(255), extra varchar(255))");
+        jt.update("insert into foo(foo_id, val, extra) values(1, null, 'bar')");
+        jt.update("insert into foo(foo_id, val, extra) values(2, 'foo', null)");
+        EntityFilter lower = EntityFilters.columnsToLower();
+        EntityFilter nullToFoo = new NullToFooFilter("val");
+        for(EntityMapper<Foo> mapper : Arrays.asList(EntityMapper.forClass(Foo.class, lower, nullToFoo),
+                EntityMapper.compiledForClass(Foo.class, lower, nullToFoo))) {
+            // filter maps null to value
+            checkSimple(jt.queryForObject("select foo_id, val, extra from foo where foo_id = 1", mapper));
+            // null in not converted and not mapped column is rejected
+            try {
+                jt.queryForObject("select foo_id, val, extra from foo where foo_id = 2", mapper);
+                fail("Null fail: " + mapper);
+            } catch(NullPointerException e) {
+                // expected
+            }
+        }
+        jt.update("drop table foo");
+    }
+
     private EntityMapper<Parent> subclassesMapper() {
         return EntityMapper.builder(new ChildChooser()).build();
     }
@@ -184,6 +293,54 @@ public class EntityMapperTest {
         private String secondChildField;
     }
 
+    private static class NullToFooFilter extends ColumnListFilter<String> {
+        private NullToFooFilter(String... columns) {
+            super(columns);
+        }
+
+        @Override
+        protected String filterColumn(String colname, Object value) {
+            return null != value ? value.toString() : "foo";
+        }
+    }
+
+    private static class ExtraColumnFilter extends ColumnListFilter<String> {
+        private ExtraColumnFilter(String... columns) {
+            super(columns);
+        }
+
+        @Override
+        public Map<String, ?> apply(Map<String, ?> data) {
+            Map<String, Object> res = new LinkedHashMap<String, Object>(super.apply(data));
+            res.put("extra", "bar");
+            return res;
+        }
+
+        @Override
+        protected String filterColumn(String colname, Object value) {
+            return value.toString().toUpperCase(Locale.ENGLISH);
+        }
+    }
+
+    private static class RenameFilter implements EntityFilter {
+        private final String from;
+        private final String to;
+
+        private RenameFilter(String from, String to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Map<String, ?> apply(Map<String, ?> input) {
+            Map<String, Object> res = new LinkedHashMap<String, Object>();
+            for(Map.Entry<String, ?> en : input.entrySet()) {
+                res.put(from.equals(en.getKey()) ? to : en.getKey(), en.getValue());
+            }
+            return res;
+        }
+    }
+
     private static class ChildChooser implements EntityChooser<Parent> {
 
         @Override
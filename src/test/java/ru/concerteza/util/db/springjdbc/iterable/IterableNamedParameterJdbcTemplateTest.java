@@ -4,12 +4,20 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import org.apache.commons.dbcp.BasicDataSource;
 import org.junit.Test;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * User: alexkasko
@@ -43,6 +51,78 @@ public class IterableNamedParameterJdbcTemplateTest {
         validateIter(iterPrepared);
     }
 
+    @Test
+    public void testPrefetching() {
+        jt.getJdbcOperations().update("create table bar(id int)");
+        for(int i = 0; i < 1000; i++) jt.getJdbcOperations().update("insert into bar(id) values(?)", i);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            // exhaustion
+            CloseableIterator<Integer> iter = new PrefetchingCloseableIterator<Integer>(jt.getIterableJdbcOperations()
+                    .queryForIter("select id from bar order by id", Integer.class), executor, 16, 2);
+            int count = 0;
+            while(iter.hasNext()) assertEquals("Order fail", count++, (int) iter.next());
+            assertEquals("Size fail", 1000, count);
+            assertTrue("Close fail", iter.isClosed());
+            // early close
+            CloseableIterator<Integer> early = PrefetchingCloseableIterator.of(jt.getIterableJdbcOperations()
+                    .queryForIter("select id from bar order by id", Integer.class), executor);
+            assertEquals("Data fail", 0, (int) early.next());
+            early.close();
+            assertFalse("Closed fail", early.hasNext());
+            // error propagation
+            CloseableIterator<Integer> failing = new PrefetchingCloseableIterator<Integer>(jt.getIterableJdbcOperations()
+                    .queryForIter("select id from bar order by id", new FailingMapper()), executor, 16, 2);
+            try {
+                while(failing.hasNext()) failing.next();
+                fail("No error propagated");
+            } catch(IllegalStateException e) {
+                assertEquals("Error fail", "fail on 500", e.getMessage());
+            }
+            assertTrue("Close fail", failing.isClosed());
+        } finally {
+            executor.shutdownNow();
+            jt.getJdbcOperations().update("drop table bar");
+        }
+    }
+
+    @Test
+    public void testStreaming() {
+        BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName("org.h2.Driver");
+        ds.setUrl("jdbc:h2:mem:streaming");
+        IterableJdbcTemplate ijt = new IterableJdbcTemplate(ds);
+        ijt.update("create table baz(id int, val varchar(100))");
+        for(int i = 0; i < 1000; i++) ijt.update("insert into baz(id, val) values(?, ?)", i, "val" + i);
+        // 4096 / 256 = 16 rows fetched before the first execution, 4096 / (16 + 4 + 16 + 200) = 17 rows after
+        StreamingPolicy policy = new StreamingPolicy(4096, 1, 256);
+        ijt.setStreamingPolicy(policy);
+        String sql = "select id, val from baz order by id";
+        for(int run = 0; run < 2; run++) {
+            CloseableIterator<Map<String, Object>> iter = ijt.queryForIter(sql);
+            int count = 0;
+            while(iter.hasNext()) assertEquals("Order fail", count++, iter.next().get("id"));
+            assertEquals("Size fail", 1000, count);
+            assertTrue("Close fail", iter.isClosed());
+        }
+        QueryFetchStats st = policy.getStats(sql);
+        assertEquals("Driver fail", JdbcDriverType.H2, st.getDriver());
+        assertEquals("Executions fail", 2, st.getExecutions());
+        assertEquals("Rows fail", 2000, st.getRows());
+        assertEquals("Width fail", 236, st.getRowWidth());
+        assertEquals("Fetch size fail", 17, st.getFetchSize());
+        // 1 + (1000 - 16) / 17 + 1 = 59, then 1 + (1000 - 17) / 17 + 1 = 59
+        assertEquals("Round-trips fail", 118, st.getRoundTrips());
+        // prepared statement path
+        CloseableIterator<Integer> prepared = ijt.queryForIter("select id from baz where id < ?",
+                new Object[]{10}, new SingleColumnRowMapper<Integer>(Integer.class));
+        assertEquals("Size fail", 10, ImmutableList.copyOf(prepared).size());
+        assertEquals("Stats fail", 1, policy.getStats("select id from baz where id < ?").getExecutions());
+        assertEquals("Driver fail", JdbcDriverType.POSTGRESQL, JdbcDriverType.forUrl("jdbc:postgresql://127.0.0.1/test"));
+        assertEquals("Driver fail", JdbcDriverType.JTDS, JdbcDriverType.forDriverName("jTDS Type 4 JDBC Driver for MS SQL Server and Sybase"));
+        assertEquals("Driver fail", JdbcDriverType.OTHER, JdbcDriverType.forUrl("jdbc:mysql://127.0.0.1/test"));
+    }
+
     private void validateIter(CloseableIterator<String> iter) {
         assertFalse("Open fail", iter.isClosed());
         List<String> list = ImmutableList.copyOf(iter);
@@ -51,4 +131,13 @@ public class IterableNamedParameterJdbcTemplateTest {
         assertEquals("Data fail", "bar", list.get(0));
         assertEquals("Data fail", "baz", list.get(1));
     }
+
+    private static class FailingMapper implements RowMapper<Integer> {
+        @Override
+        public Integer mapRow(ResultSet rs, int rowNum) throws SQLException {
+            int res = rs.getInt(1);
+            if(500 == res) throw new IllegalStateException("fail on 500");
+            return res;
+        }
+    }
 }
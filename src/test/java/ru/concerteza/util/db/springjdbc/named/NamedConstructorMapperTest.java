@@ -34,6 +34,19 @@ public class NamedConstructorMapperTest {
         assertEquals("Data fail", "42", foo.baz);
     }
 
+    @Test
+    public void testColumnsChange() throws Exception {
+        NamedConstructorMapper<Foo> mapper = NamedConstructorMapper.forClass(Foo.class);
+        Resource first = new ByteArrayResource("bar|baz\n41|42".getBytes(UTF8));
+        Foo foo1 = new NamedParameterJdbcTemplate(new CsvDataSource(first, "|", UTF8)).getJdbcOperations().queryForObject("some sql", mapper);
+        assertEquals("Data fail", "41", foo1.bar);
+        // the same mapper with another columns order
+        Resource second = new ByteArrayResource("baz|other|BAR\n44|45|43".getBytes(UTF8));
+        Foo foo2 = new NamedParameterJdbcTemplate(new CsvDataSource(second, "|", UTF8)).getJdbcOperations().queryForObject("some sql", mapper);
+        assertEquals("Data fail", "43", foo2.bar);
+        assertEquals("Data fail", "44", foo2.baz);
+    }
+
     @Test
     public void testSubclasses() throws UnsupportedEncodingException {
         Resource resource = new ByteArrayResource("disc|foo|bar|baz\nfirst|40|41|NULL\nsecond|43|NULL|45".getBytes(UTF8));
@@ -1,9 +1,11 @@
 package ru.concerteza.util.db.springjdbc.querybuilder;
 
-import org.junit.Assert;
+import com.google.common.collect.ImmutableList;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 import static ru.concerteza.util.db.springjdbc.querybuilder.Expressions.*;
 
 /**
@@ -43,4 +45,26 @@ public class QueryBuilderTest {
                 " order by dep.id desc, cust.salary" +
                 " limit :limit offset :offset", sql);
     }
+
+    @Test
+    public void testCompiled() {
+        String template = "select * from foo where ${where} and val <> '$${escaped}' order by ${order}";
+        CompiledQueryTemplate compiled = CompiledQueryTemplate.compile(template);
+        assertSame("Cache fail", compiled, CompiledQueryTemplate.compile(template));
+        assertEquals("Clauses fail", ImmutableList.of("where", "order"), compiled.getClauses());
+        for(int i = 0; i < 3; i++) {
+            String sql = QueryBuilder.query(template)
+                    .set("where", or("a = :a", not("b = " + i)))
+                    .set("order", list("id").comma("val desc"))
+                    .build();
+            assertEquals("Render fail", "select * from foo where ((a = :a) or (not (b = " + i + ")))" +
+                    " and val <> '${escaped}' order by id, val desc", sql);
+        }
+        try {
+            QueryBuilder.query(template).set("where", "1 = 1").build();
+            fail("No unfilled clause error");
+        } catch(IllegalStateException e) {
+            // expected
+        }
+    }
 }
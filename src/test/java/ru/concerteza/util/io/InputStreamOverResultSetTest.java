@@ -4,24 +4,35 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import junit.framework.Assert;
 import org.apache.commons.lang.UnhandledException;
+import org.apache.commons.dbcp.BasicDataSource;
+import org.h2.tools.SimpleResultSet;
 import org.junit.Test;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import ru.concerteza.util.db.csv.CsvDataSource;
 import ru.concerteza.util.db.springjdbc.InputStreamOverResultSet;
+import ru.concerteza.util.db.springjdbc.rowcodec.RowBuffer;
+import ru.concerteza.util.db.springjdbc.rowcodec.RowCodecType;
+import ru.concerteza.util.db.springjdbc.rowcodec.RowDecoder;
+import ru.concerteza.util.db.springjdbc.rowcodec.RowEncoder;
 
 import java.io.*;
+import java.math.BigDecimal;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.List;
 
 import static org.apache.commons.io.IOUtils.closeQuietly;
 import static org.apache.commons.lang.RandomStringUtils.random;
 import static org.apache.commons.lang.RandomStringUtils.randomNumeric;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static ru.concerteza.util.string.CtzConstants.UTF8;
 
 /**
@@ -76,6 +87,64 @@ public class InputStreamOverResultSetTest {
         assertEquals("Data fail", DATA.get(5), read.get(5));
     }
 
+    @Test
+    public void testTyped() {
+        BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName("org.h2.Driver");
+        ds.setUrl("jdbc:h2:mem:");
+        JdbcTemplate jt = new JdbcTemplate(ds);
+        jt.update("create table foo(id bigint, num int, dec decimal(10, 3), flag boolean, val varchar(100000), ts timestamp)");
+        String large = randomNumeric(70000);
+        jt.update("insert into foo values(1, 42, 12.345, true, ?, '2012-01-01 01:23:45.123')", large);
+        jt.update("insert into foo values(2, null, null, null, null, null)");
+        List<Object[]> rows = jt.query("select * from foo order by id", new ResultSetExtractor<List<Object[]>>() {
+            @Override
+            public List<Object[]> extractData(ResultSet rs) throws SQLException, DataAccessException {
+                RowDecoder decoder = new RowDecoder(InputStreamOverResultSet.of(rs));
+                assertEquals("Header fail", ImmutableList.of("ID", "NUM", "DEC", "FLAG", "VAL", "TS"), decoder.getColumnNames());
+                assertEquals("Types fail", RowCodecType.DECIMAL, decoder.getTypes().get(2));
+                return Lists.newArrayList(decoder);
+            }
+        });
+        jt.update("drop table foo");
+        assertEquals("Size fail", 2, rows.size());
+        assertEquals("Long fail", 1L, rows.get(0)[0]);
+        assertEquals("Int fail", 42, rows.get(0)[1]);
+        assertEquals("Decimal fail", new BigDecimal("12.345"), rows.get(0)[2]);
+        assertEquals("Boolean fail", true, rows.get(0)[3]);
+        assertEquals("Large string fail", large, rows.get(0)[4]);
+        assertEquals("Timestamp fail", Timestamp.valueOf("2012-01-01 01:23:45.123"), rows.get(0)[5]);
+        assertEquals("Long fail", 2L, rows.get(1)[0]);
+        for(int i = 1; i < rows.get(1).length; i++) {
+            assertNull("Null fail", rows.get(1)[i]);
+        }
+    }
+
+    @Test
+    public void testDecimalScales() throws SQLException {
+        List<BigDecimal> decimals = ImmutableList.of(new BigDecimal("1E+1"), new BigDecimal("-12345E+5"),
+                new BigDecimal("42"), BigDecimal.ZERO, new BigDecimal("0.001"));
+        SimpleResultSet rs = new SimpleResultSet();
+        rs.addColumn("DEC", Types.DECIMAL, 20, 0);
+        rs.addColumn("VAL", Types.VARCHAR, 10, 0);
+        for(BigDecimal bd : decimals) rs.addRow(bd, "foo");
+        rs.addRow(null, "bar");
+        RowEncoder encoder = new RowEncoder(rs.getMetaData());
+        RowBuffer buffer = new RowBuffer();
+        encoder.writeHeader(buffer);
+        while(rs.next()) encoder.writeRow(rs, buffer);
+        List<Object[]> rows = Lists.newArrayList(new RowDecoder(new ByteArrayInputStream(buffer.toByteArray())));
+        assertEquals("Size fail", decimals.size() + 1, rows.size());
+        for(int i = 0; i < decimals.size(); i++) {
+            BigDecimal read = (BigDecimal) rows.get(i)[0];
+            assertEquals("Decimal fail", decimals.get(i), read);
+            assertEquals("Scale fail", decimals.get(i).scale(), read.scale());
+            assertEquals("Following column fail", "foo", rows.get(i)[1]);
+        }
+        assertNull("Null fail", rows.get(decimals.size())[0]);
+        assertEquals("Following column fail", "bar", rows.get(decimals.size())[1]);
+    }
+
     public String createData() {
         StringBuilder sb = new StringBuilder("foo|bar|baz\n");
         sb.append(DATA.get(0));
@@ -100,14 +169,12 @@ public class InputStreamOverResultSetTest {
             InputStream is = null;
             try {
                 is = InputStreamOverResultSet.of(rs);
-                DataInputStream ois = new DataInputStream(is);
+                RowDecoder decoder = new RowDecoder(is);
                 List<String> res = Lists.newArrayList();
-                for(int i = 0; i < 6; i++) {
-                    res.add(ois.readUTF());
+                while(decoder.hasNext()) {
+                    for(Object obj : decoder.next()) res.add((String) obj);
                 }
                 return res;
-            } catch(IOException e) {
-                throw new RuntimeIOException(e);
             } finally {
                 closeQuietly(is);
             }
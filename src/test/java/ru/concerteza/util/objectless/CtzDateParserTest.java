@@ -5,6 +5,9 @@ import org.joda.time.format.DateTimeFormatter;
 import org.junit.Test;
 
 import java.text.ParseException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static java.lang.System.arraycopy;
 import static org.junit.Assert.assertEquals;
@@ -30,4 +33,18 @@ public class CtzDateParserTest {
         assertEquals("offset fail", parseDate(arr, 442),
                 dtf.parseLocalDateTime("20120208113042").toDate().getTime());
     }
+
+    @Test
+    public void testOtherThread() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        long parsed = executor.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return parseDate("20120207203049".getBytes(ASCII_CHARSET), 0);
+            }
+        }).get();
+        executor.shutdown();
+        assertEquals("other thread fail", parsed,
+                DateTimeFormat.forPattern("yyyyMMddHHmmss").parseLocalDateTime("20120207203049").toDate().getTime());
+    }
 }
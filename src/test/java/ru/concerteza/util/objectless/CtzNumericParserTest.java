@@ -4,6 +4,7 @@ import org.junit.Test;
 
 import static java.lang.System.arraycopy;
 import static org.junit.Assert.assertEquals;
+import static ru.concerteza.util.objectless.CtzNumericParser.parseDouble;
 import static ru.concerteza.util.objectless.CtzNumericParser.parseInt;
 import static ru.concerteza.util.objectless.CtzNumericParser.parseIpV4;
 import static ru.concerteza.util.objectless.CtzNumericParser.parseLong;
@@ -34,6 +35,21 @@ public class CtzNumericParserTest {
         assertEquals(Integer.parseInt("611825742"), parseInt(arr, 442, data.length));
     }
 
+    @Test
+    public void testDouble() {
+        assertDouble("42");
+        assertDouble("12.75");
+        assertDouble("0.1");
+        assertDouble(".5");
+        assertDouble("3.14159265358979");
+        assertDouble("123456789012345678901.5");
+        assertDouble("1.5e10");
+        byte[] data = "611825.742".getBytes(ASCII_CHARSET);
+        byte[] arr = new byte[1000];
+        arraycopy(data, 0, arr, 442, data.length);
+        assertEquals(Double.parseDouble("611825.742"), parseDouble(arr, 442, data.length), 0);
+    }
+
     @Test
     public void testIpV4() {
         assertEquals(3378010069L, parseIpV4("201.88.87.213".getBytes(ASCII_CHARSET)));
@@ -44,5 +60,9 @@ public class CtzNumericParserTest {
         arraycopy(data, 0, arr, 442, data.length);
         assertEquals(167779082L, parseIpV4(arr, 442));
     }
-}
 
+    private static void assertDouble(String str) {
+        byte[] bytes = str.getBytes(ASCII_CHARSET);
+        assertEquals(str, Double.parseDouble(str), parseDouble(bytes, 0, bytes.length), 0);
+    }
+}
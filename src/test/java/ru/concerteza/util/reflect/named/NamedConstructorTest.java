@@ -14,8 +14,11 @@ import java.util.List;
 import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertTrue;
+import static ru.concerteza.util.reflect.named.NamedConstructor.CaseType.INSENSITIVE;
+import static ru.concerteza.util.reflect.named.NamedConstructor.MatchMode.ADDITIONAL_ALLOWED;
 
 /**
  * User: alexey
@@ -56,6 +59,26 @@ public class NamedConstructorTest {
         assertEquals("Nodes fail", 42, pa.nodes.get(1).val);
     }
 
+    @Test
+    public void testInsensitive() {
+        NamedConstructor<Child> nc = NamedConstructor.of(Child.class);
+        // resolution is cached for the same key set
+        for(int i = 0; i < 2; i++) {
+            Child ch = nc.invoke(ImmutableMap.of("BAR", "40", "baz", "41"), ADDITIONAL_ALLOWED, INSENSITIVE);
+            assertEquals("Field fail", "40", ch.bar);
+        }
+    }
+
+    @Test
+    public void testRows() {
+        NamedConstructor<Child> nc = NamedConstructor.of(Child.class);
+        NamedConstructor.RowInvoker<Child> invoker = nc.forColumns(ImmutableList.of("baz", "bar"), ADDITIONAL_ALLOWED, INSENSITIVE);
+        assertFalse("Uses fail", invoker.uses(0));
+        assertTrue("Uses fail", invoker.uses(1));
+        assertEquals("Field fail", "40", invoker.invoke(new Object[]{null, "40"}).bar);
+        assertEquals("Field fail", "42", invoker.invoke(new Object[]{"41", "42"}).bar);
+    }
+
     private static class Parent {
         private final String foo;
         private final Optional<Child> child;
@@ -0,0 +1,141 @@
+package ru.concerteza.util.scheduler;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * User: alexkasko
+ * Date: 1/5/15
+ */
+public class GuardedJobRunnableTest {
+
+    @Test
+    public void testSkip() throws InterruptedException {
+        assertEquals("Skip fail", 1, runOverlapping(MisfirePolicy.SKIP));
+    }
+
+    @Test
+    public void testCoalesce() throws InterruptedException {
+        assertEquals("Coalesce fail", 2, runOverlapping(MisfirePolicy.COALESCE));
+    }
+
+    @Test
+    public void testRunOnce() throws InterruptedException {
+        assertEquals("Run once fail", 2, runOverlapping(MisfirePolicy.RUN_ONCE));
+    }
+
+    @Test
+    public void testLate() throws InterruptedException {
+        assertEquals("Late skip fail", 0, runLate(MisfirePolicy.SKIP));
+        assertEquals("Late coalesce fail", 2, runLate(MisfirePolicy.COALESCE));
+        assertEquals("Late run once fail", 1, runLate(MisfirePolicy.RUN_ONCE));
+    }
+
+    @Test
+    public void testJitter() throws InterruptedException {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        ExecutorService workers = Executors.newCachedThreadPool();
+        try {
+            BlockingRunner runner = new BlockingRunner(new CountDownLatch(0));
+            GuardedJobRunnable guarded = new GuardedJobRunnable(runner, new Job(), timer, workers,
+                    MisfirePolicy.SKIP, 1000, 100);
+            guarded.run();
+            runner.started.await(1, TimeUnit.SECONDS);
+            assertEquals("Jitter fail", 1, runner.runs.get());
+        } finally {
+            timer.shutdownNow();
+            workers.shutdownNow();
+        }
+    }
+
+    private static int runOverlapping(MisfirePolicy policy) throws InterruptedException {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        ExecutorService workers = Executors.newCachedThreadPool();
+        try {
+            CountDownLatch latch = new CountDownLatch(1);
+            BlockingRunner runner = new BlockingRunner(latch);
+            GuardedJobRunnable guarded = new GuardedJobRunnable(runner, new Job(), timer, workers, policy, 1000, 0);
+            guarded.run();
+            runner.started.await(1, TimeUnit.SECONDS);
+            // fires while job is running
+            guarded.run();
+            guarded.run();
+            latch.countDown();
+            Thread.sleep(100);
+            assertEquals("Overlap fail", 1, runner.maxActive.get());
+            return runner.runs.get();
+        } finally {
+            timer.shutdownNow();
+            workers.shutdownNow();
+        }
+    }
+
+    private static int runLate(MisfirePolicy policy) throws InterruptedException {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        ExecutorService workers = Executors.newSingleThreadExecutor();
+        try {
+            // occupy single worker
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(200);
+                    } catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            BlockingRunner runner = new BlockingRunner(new CountDownLatch(0));
+            GuardedJobRunnable guarded = new GuardedJobRunnable(runner, new Job(), timer, workers, policy, 50, 0);
+            guarded.run();
+            // fires while job is waiting for worker
+            guarded.run();
+            Thread.sleep(400);
+            return runner.runs.get();
+        } finally {
+            timer.shutdownNow();
+            workers.shutdownNow();
+        }
+    }
+
+    private static class Job implements ScheduledJob {
+        @Override
+        public String getCronExpr() {
+            return "* * * * * *";
+        }
+    }
+
+    private static class BlockingRunner implements ScheduledJobRunner<Job> {
+        private final CountDownLatch latch;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final AtomicInteger runs = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger maxActive = new AtomicInteger();
+
+        private BlockingRunner(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void runJob(Job st) {
+            int act = active.incrementAndGet();
+            if(act > maxActive.get()) maxActive.set(act);
+            runs.incrementAndGet();
+            started.countDown();
+            try {
+                latch.await(1, TimeUnit.SECONDS);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            active.decrementAndGet();
+        }
+    }
+}
@@ -6,8 +6,11 @@ import org.junit.Test;
 import org.springframework.scheduling.config.ScheduledTaskRegistrar;
 
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
 
 /**
  * User: alexkasko
@@ -29,6 +32,29 @@ public class SchedulerCreatorTest {
         assertEquals(42, tc.created.get(1).intValue());
     }
 
+    @Test
+    public void testGuarded() throws InterruptedException {
+        TestRunner tc = new TestRunner();
+        ExecutorService workers = Executors.newCachedThreadPool();
+        try {
+            ScheduledTaskRegistrar str = new SchedulerCreator(tc)
+                    .setWorkerExecutor(workers)
+                    .setMisfirePolicy(MisfirePolicy.COALESCE)
+                    .setMaxJitterMillis(100)
+                    .createScheduler(ImmutableList.of(new TestTask(42, "* * * * * *")));
+            str.afterPropertiesSet();
+            Thread.sleep(2000);
+            str.destroy();
+            Thread.sleep(200);
+            // fire near the end may be jittered past destroy
+            int runs = tc.created.size();
+            assertTrue("Runs count fail: " + runs, runs >= 1 && runs <= 3);
+            for(Integer id : tc.created) assertEquals(42, id.intValue());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
     private static class TestTask implements ScheduledJob {
         final int id;
         final String cronExpr;
@@ -0,0 +1,193 @@
+package ru.concerteza.util.tasks;
+
+import org.junit.Test;
+import ru.concerteza.util.concurrency.WorkStealingExecutor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 12/24/14
+ */
+public class TaskEngineBatchTest {
+    private static final int TASKS_COUNT = 5000;
+    private static final long FAILING_TASK_ID = 42;
+    private static final TaskStageChain CHAIN = TaskStageChain.builder("created")
+            .add("running_data", "data_loaded", "data")
+            .add("running_reports", "finished", "reports")
+            .build();
+
+    private final AtomicInteger processed = new AtomicInteger();
+
+    @Test
+    public void test() throws InterruptedException {
+        BatchManager manager = new BatchManager();
+        WorkStealingExecutor executor = new WorkStealingExecutor(4, "TaskEngineBatchTest");
+        ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor();
+        TaskEngine engine = new TaskEngine(executor, manager, new Provider())
+                .setBatchSize(100)
+                .setMaxBatchesPerFire(10)
+                .setFlushExecutor(flushExecutor)
+                .setFlushIntervalMillis(50);
+        engine.postConstruct();
+        try {
+            int fired = 0;
+            while(fired < TASKS_COUNT) {
+                fired += engine.fire();
+            }
+            assertEquals("Fire fail", TASKS_COUNT, fired);
+            while(processed.get() < TASKS_COUNT * 2) Thread.sleep(10);
+            // last updates are written by scheduled flush
+            long deadline = System.currentTimeMillis() + 5000;
+            while(manager.countProcessing() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            assertEquals("Scheduled flush fail", 0, manager.countProcessing());
+        } finally {
+            executor.shutdown();
+            engine.preDestroy();
+            flushExecutor.shutdown();
+        }
+        for(BatchTask ta : manager.tasks.values()) {
+            if(FAILING_TASK_ID == ta.id) {
+                assertEquals("Error stage fail", "data_loaded", ta.stage);
+                assertEquals("Error status fail", "error", ta.status);
+            } else {
+                assertEquals("Stage fail", "finished", ta.stage);
+                assertEquals("Status fail", "default", ta.status);
+            }
+        }
+        assertTrue("Claims fail: " + manager.claims.get(), manager.claims.get() <= TASKS_COUNT / 100 + 1);
+        // 4 stage updates per task without coalescing
+        assertTrue("Coalescing fail: " + manager.stageBatches.get(), manager.stageBatches.get() < TASKS_COUNT * 4 / 100 + 10);
+    }
+
+    private static class BatchTask implements Task {
+        private final long id;
+        private volatile String stage = "created";
+        private volatile String status = "default";
+
+        private BatchTask(long id) {
+            this.id = id;
+        }
+
+        @Override
+        public TaskStageChain stageChain() {
+            return CHAIN;
+        }
+
+        @Override
+        public long getId() {
+            return id;
+        }
+
+        @Override
+        public String getStageName() {
+            return stage;
+        }
+    }
+
+    private static class BatchManager implements BatchTaskManager<BatchTask> {
+        private final Map<Long, BatchTask> tasks = new ConcurrentHashMap<Long, BatchTask>();
+        private final AtomicInteger claims = new AtomicInteger();
+        private final AtomicInteger stageBatches = new AtomicInteger();
+        private long nextId = 0;
+
+        private BatchManager() {
+            for(long i = 0; i < TASKS_COUNT; i++) tasks.put(i, new BatchTask(i));
+        }
+
+        @Override
+        public synchronized Collection<BatchTask> markProcessingAndLoad(int limit) {
+            claims.incrementAndGet();
+            List<BatchTask> res = new ArrayList<BatchTask>();
+            while(res.size() < limit && nextId < TASKS_COUNT) {
+                BatchTask ta = tasks.get(nextId++);
+                ta.status = "processing";
+                res.add(ta);
+            }
+            return res;
+        }
+
+        @Override
+        public Collection<BatchTask> markProcessingAndLoad() {
+            throw new UnsupportedOperationException();
+        }
+
+        private int countProcessing() {
+            int res = 0;
+            for(BatchTask ta : tasks.values()) {
+                if("processing".equals(ta.status)) res += 1;
+            }
+            return res;
+        }
+
+        @Override
+        public void updateStages(Map<Long, String> stages) {
+            stageBatches.incrementAndGet();
+            for(Map.Entry<Long, String> en : stages.entrySet()) tasks.get(en.getKey()).stage = en.getValue();
+        }
+
+        @Override
+        public void updateStatusesDefault(Collection<Long> taskIds) {
+            for(Long id : taskIds) tasks.get(id).status = "default";
+        }
+
+        @Override
+        public Collection<Long> loadSuspendedIds() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void updateStage(long taskId, String stage) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void updateStatusDefault(long taskId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void updateStatusSuspended(long taskId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void updateStatusError(long taskId, Exception e, String lastCompletedStage) {
+            BatchTask ta = tasks.get(taskId);
+            ta.status = "error";
+            ta.stage = lastCompletedStage;
+        }
+    }
+
+    private class Provider implements TaskProcessorProvider {
+        @Override
+        public TaskStageProcessor provide(String id) {
+            return "data".equals(id) ? new CountingProcessor(-1) : new CountingProcessor(FAILING_TASK_ID);
+        }
+    }
+
+    private class CountingProcessor extends TaskStageProcessorSupertype {
+        private final long failOn;
+
+        private CountingProcessor(long failOn) {
+            this.failOn = failOn;
+        }
+
+        @Override
+        public void process(long taskId) throws Exception {
+            processed.incrementAndGet();
+            if(failOn == taskId) throw new RuntimeException("Fail on: " + taskId);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package ru.concerteza.util.tasks;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static ru.concerteza.util.tasks.InMemoryTaskManager.Status;
+import static ru.concerteza.util.tasks.TaskStageGraph.StageStatus;
+
+/**
+ * User: alexkasko
+ * Date: 12/26/14
+ */
+public class TaskEngineClusterTest {
+    private static final TaskStageChain CHAIN = TaskStageChain.builder("created")
+            .add("running_data", "data_loaded", "data")
+            .add("running_reports", "finished", "reports")
+            .build();
+    private static final TaskStageGraph GRAPH = TaskStageGraph.builder()
+            .add("running_data", "data_loaded", "data")
+            .build();
+
+    private final ConcurrentMap<Long, AtomicInteger> processed = new ConcurrentHashMap<Long, AtomicInteger>();
+    private final Map<Long, CountDownLatch> blocked = new ConcurrentHashMap<Long, CountDownLatch>();
+    private final Map<Long, CountDownLatch> started = new ConcurrentHashMap<Long, CountDownLatch>();
+    private final Set<Long> failing = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+    @Test
+    public void testSharing() throws Exception {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        for(int i = 0; i < 20; i++) manager.add(CHAIN, "created");
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            TaskEngine node1 = engine(manager, executor, "node1", 60000);
+            TaskEngine node2 = engine(manager, executor, "node2", 60000);
+            int fired = node1.fire() + node2.fire();
+            assertEquals("Fire fail", 20, fired);
+            assertEquals("Claim fail", 0, node2.fire());
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            for(long id = 1; id <= 20; id++) {
+                assertEquals("Process fail", 2, processed.get(id).get());
+                assertEquals("Stage fail", "finished", manager.get(id).getStageName());
+                assertEquals("Status fail", Status.NORMAL, manager.get(id).getStatus());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReclaim() throws Exception {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        long id = manager.add(CHAIN, "created");
+        block(id);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            TaskEngine node1 = engine(manager, executor, "node1", 50);
+            TaskEngine node2 = engine(manager, executor, "node2", 60000);
+            assertEquals("Fire fail", 1, node1.fire());
+            assertTrue(started.get(id).await(5, TimeUnit.SECONDS));
+            assertEquals("Owner fail", "node1", manager.get(id).getOwner());
+            // node1 hangs without heartbeat
+            Thread.sleep(100);
+            CountDownLatch node1Latch = blocked.remove(id);
+            assertEquals("Reclaim fail", 1, node2.fire());
+            waitFor(manager, id, Status.NORMAL);
+            assertEquals("Stage fail", "finished", manager.get(id).getStageName());
+            // node1 wakes up
+            node1.heartbeat();
+            node1Latch.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            // stale updates from node1 were dropped
+            assertEquals("Stage fail", "finished", manager.get(id).getStageName());
+            assertEquals("Status fail", Status.NORMAL, manager.get(id).getStatus());
+            assertNull("Owner fail", manager.get(id).getOwner());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFencing() throws Exception {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        long id = manager.add(CHAIN, "created");
+        block(id);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            TaskEngine node1 = engine(manager, executor, "node1", 50);
+            TaskEngine node2 = engine(manager, executor, "node2", 60000);
+            assertEquals("Fire fail", 1, node1.fire());
+            assertTrue(started.get(id).await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            CountDownLatch node1Latch = blocked.remove(id);
+            assertEquals("Reclaim fail", 1, node2.fire());
+            waitFor(manager, id, Status.NORMAL);
+            // node1 wakes up without heartbeat, its updates are rejected by owner check
+            node1Latch.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals("Stage fail", "finished", manager.get(id).getStageName());
+            assertEquals("Status fail", Status.NORMAL, manager.get(id).getStatus());
+            assertNull("Owner fail", manager.get(id).getOwner());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testGraphFencing() throws Exception {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        long id = manager.add(GRAPH, "created");
+        block(id);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            TaskEngine node1 = engine(manager, executor, "node1", 50);
+            TaskEngine node2 = engine(manager, executor, "node2", 60000);
+            assertEquals("Fire fail", 1, node1.fire());
+            assertTrue(started.get(id).await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            CountDownLatch node1Latch = blocked.remove(id);
+            assertEquals("Reclaim fail", 1, node2.fire());
+            waitFor(manager, id, Status.NORMAL);
+            assertEquals("Stage status fail", StageStatus.COMPLETED, manager.loadStageStatuses(id).get("data_loaded"));
+            // node1 wakes up without heartbeat and fails the stage, its stage status update is rejected by owner check
+            failing.add(id);
+            node1Latch.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals("Stage status fail", StageStatus.COMPLETED, manager.loadStageStatuses(id).get("data_loaded"));
+            assertEquals("Status fail", Status.NORMAL, manager.get(id).getStatus());
+            assertNull("Owner fail", manager.get(id).getOwner());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRestart() throws Exception {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        long id = manager.add(CHAIN, "created");
+        block(id);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            TaskEngine node1 = engine(manager, executor, "node1", 50);
+            assertEquals("Fire fail", 1, node1.fire());
+            assertTrue(started.get(id).await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            // reclaimed by the same node while previous run hangs
+            assertEquals("Reclaim fail", 0, node1.fire());
+            releaseAll();
+            waitFor(manager, id, Status.NORMAL);
+            assertEquals("Stage fail", "finished", manager.get(id).getStageName());
+            // previous run was suspended, new run continued from stored intermediate stage
+            assertEquals("Process fail", 1, processed.get(id).get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        for(int i = 0; i < 3; i++) manager.add(CHAIN, "created");
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            TaskEngine node = engine(manager, executor, "node1", 60000).setBatchSize(5);
+            assertEquals("Fire fail", 3, node.fire());
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            // finished tasks are owned until updates are written
+            assertEquals("Owner fail", "node1", manager.get(1).getOwner());
+            node.flush();
+            for(long id = 1; id <= 3; id++) {
+                assertEquals("Stage fail", "finished", manager.get(id).getStageName());
+                assertEquals("Status fail", Status.NORMAL, manager.get(id).getStatus());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSuspension() throws Exception {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        long id = manager.add(CHAIN, "created");
+        block(id);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            TaskEngine node1 = engine(manager, executor, "node1", 60000);
+            TaskEngine node2 = engine(manager, executor, "node2", 60000);
+            assertEquals("Fire fail", 1, node1.fire());
+            assertTrue(started.get(id).await(5, TimeUnit.SECONDS));
+            assertTrue("Suspend fail", node2.suspend(id));
+            node1.heartbeat();
+            releaseAll();
+            waitFor(manager, id, Status.SUSPENDED);
+            Thread.sleep(50);
+            assertEquals("Rollback fail", "created", manager.get(id).getStageName());
+            manager.resume(id);
+            assertEquals("Resume fail", 1, node2.fire());
+            waitFor(manager, id, Status.NORMAL);
+            assertEquals("Stage fail", "finished", manager.get(id).getStageName());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private TaskEngine engine(InMemoryTaskManager manager, ExecutorService executor, String nodeId, long leaseMillis) {
+        Provider provider = new Provider();
+        TaskEngine res = new TaskEngine(executor, manager, provider)
+                .setNodeId(nodeId)
+                .setLeaseMillis(leaseMillis);
+        provider.engine = res;
+        return res;
+    }
+
+    private void block(long id) {
+        blocked.put(id, new CountDownLatch(1));
+        started.put(id, new CountDownLatch(1));
+    }
+
+    private void releaseAll() {
+        for(CountDownLatch la : blocked.values()) la.countDown();
+    }
+
+    private static void waitFor(InMemoryTaskManager manager, long id, Status status) throws InterruptedException {
+        for(int i = 0; i < 500 && status != manager.get(id).getStatus(); i++) Thread.sleep(10);
+        assertEquals("Status fail", status, manager.get(id).getStatus());
+    }
+
+    private class Provider implements TaskProcessorProvider {
+        private TaskEngine engine;
+
+        @Override
+        public TaskStageProcessor provide(String id) {
+            return new Processor(engine);
+        }
+    }
+
+    private class Processor extends TaskStageProcessorSupertype {
+        private final TaskEngine engine;
+
+        private Processor(TaskEngine engine) {
+            this.engine = engine;
+        }
+
+        @Override
+        public void process(long taskId) throws Exception {
+            CountDownLatch st = started.get(taskId);
+            if(null != st) st.countDown();
+            CountDownLatch bl = blocked.get(taskId);
+            if(null != bl) bl.await(5, TimeUnit.SECONDS);
+            engine.checkSuspended(taskId);
+            if(failing.contains(taskId)) throw new IllegalStateException("Stage failed for task, id: " + taskId);
+            processed.putIfAbsent(taskId, new AtomicInteger());
+            processed.get(taskId).incrementAndGet();
+        }
+    }
+}
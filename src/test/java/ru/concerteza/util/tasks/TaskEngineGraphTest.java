@@ -0,0 +1,118 @@
+package ru.concerteza.util.tasks;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static ru.concerteza.util.tasks.InMemoryTaskManager.Status;
+import static ru.concerteza.util.tasks.TaskStageGraph.StageStatus;
+
+/**
+ * User: alexkasko
+ * Date: 12/28/14
+ */
+public class TaskEngineGraphTest {
+    // load, then export to three destinations concurrently, then report
+    private static final TaskStageGraph GRAPH = TaskStageGraph.builder()
+            .add("loading", "loaded", "load")
+            .add("exporting_ftp", "exported_ftp", "ftp", "loaded")
+            .add("exporting_mail", "exported_mail", "mail", "loaded")
+            .add("exporting_db", "exported_db", "db", "loaded")
+            .add("reporting", "reported", "report", "exported_ftp", "exported_mail", "exported_db")
+            .build();
+
+    private final ConcurrentMap<String, AtomicInteger> processed = new ConcurrentHashMap<String, AtomicInteger>();
+    private final Map<String, Boolean> failing = new ConcurrentHashMap<String, Boolean>();
+    private volatile CyclicBarrier exportBarrier = new CyclicBarrier(3);
+
+    @Test
+    public void testConcurrent() throws Exception {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        long id = manager.add(GRAPH, "created");
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            TaskEngine engine = new TaskEngine(executor, manager, new Provider());
+            assertEquals("Fire fail", 1, engine.fire());
+            waitFor(manager, id, Status.NORMAL);
+            // export stages would time out on barrier if not run concurrently
+            for(String pr : new String[]{"load", "ftp", "mail", "db", "report"}) {
+                assertEquals("Process fail: " + pr, 1, processed.get(pr).get());
+            }
+            for(TaskStageGraph.Stage st : GRAPH.getStages()) {
+                assertEquals("Stage status fail", StageStatus.COMPLETED, manager.loadStageStatuses(id).get(st.getCompleted()));
+            }
+            assertEquals("Stage fail", "reported", manager.get(id).getStageName());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        long id = manager.add(GRAPH, "created");
+        failing.put("mail", true);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            TaskEngine engine = new TaskEngine(executor, manager, new Provider());
+            assertEquals("Fire fail", 1, engine.fire());
+            waitFor(manager, id, Status.ERROR);
+            Map<String, StageStatus> statuses = manager.loadStageStatuses(id);
+            assertEquals("Stage status fail", StageStatus.COMPLETED, statuses.get("exported_ftp"));
+            assertEquals("Stage status fail", StageStatus.COMPLETED, statuses.get("exported_db"));
+            assertEquals("Stage status fail", StageStatus.ERROR, statuses.get("exported_mail"));
+            assertFalse("Join fail", statuses.containsKey("reported"));
+            // resume runs failed stage and join stage only
+            failing.clear();
+            exportBarrier = new CyclicBarrier(1);
+            manager.resume(id);
+            assertEquals("Resume fail", 1, engine.fire());
+            waitFor(manager, id, Status.NORMAL);
+            assertEquals("Load fail", 1, processed.get("load").get());
+            assertEquals("Export fail", 1, processed.get("ftp").get());
+            assertEquals("Export fail", 2, processed.get("mail").get());
+            assertEquals("Report fail", 1, processed.get("report").get());
+            assertTrue("Finish fail", GRAPH.isFinished(manager.loadStageStatuses(id).keySet()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void waitFor(InMemoryTaskManager manager, long id, Status status) throws InterruptedException {
+        for(int i = 0; i < 500 && status != manager.get(id).getStatus(); i++) Thread.sleep(10);
+        assertEquals("Status fail", status, manager.get(id).getStatus());
+    }
+
+    private class Provider implements TaskProcessorProvider {
+        @Override
+        public TaskStageProcessor provide(String id) {
+            return new Processor(id);
+        }
+    }
+
+    private class Processor extends TaskStageProcessorSupertype {
+        private final String id;
+
+        private Processor(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public void process(long taskId) throws Exception {
+            processed.putIfAbsent(id, new AtomicInteger());
+            processed.get(id).incrementAndGet();
+            if("ftp".equals(id) || "mail".equals(id) || "db".equals(id)) exportBarrier.await(5, TimeUnit.SECONDS);
+            if(failing.containsKey(id)) throw new RuntimeException("Fail on: " + id);
+        }
+    }
+}
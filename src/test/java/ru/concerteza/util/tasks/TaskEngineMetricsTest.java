@@ -0,0 +1,66 @@
+package ru.concerteza.util.tasks;
+
+import org.junit.Test;
+import ru.concerteza.util.concurrency.SameThreadExecutor;
+import ru.concerteza.util.db.metrics.MetricsSnapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 1/3/15
+ */
+public class TaskEngineMetricsTest {
+    private static final long FAILING_TASK_ID = 2;
+    private static final long SUSPENDED_TASK_ID = 3;
+    private static final TaskStageChain CHAIN = TaskStageChain.builder("created")
+            .add("running_data", "data_loaded", "data")
+            .add("running_reports", "finished", "reports")
+            .build();
+
+    @Test
+    public void test() {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        for(int i = 0; i < 3; i++) manager.add(CHAIN, "created");
+        TaskEngineMetrics metrics = new TaskEngineMetrics();
+        TaskEngine engine = new TaskEngine(new SameThreadExecutor(), manager, new Provider())
+                .setEngineListener(metrics);
+        assertEquals("Fire fail", 3, engine.fire());
+        MetricsSnapshot snap = metrics.snapshot();
+        assertEquals("Fired fail", 3L, (long) snap.getCounters().get("tasks.fired"));
+        assertEquals("Claim wait fail", 3, snap.getHistograms().get("tasks.claim.wait.millis").getCount());
+        assertEquals("Data completed fail", 3L, (long) snap.getCounters().get("tasks.data.completed"));
+        assertEquals("Reports completed fail", 1L, (long) snap.getCounters().get("tasks.reports.completed"));
+        assertEquals("Reports failed fail", 1L, (long) snap.getCounters().get("tasks.reports.failed"));
+        assertEquals("Reports suspended fail", 1L, (long) snap.getCounters().get("tasks.reports.suspended"));
+        assertEquals("Data latency fail", 3, snap.getHistograms().get("tasks.data.millis").getCount());
+        assertEquals("Reports latency fail", 3, snap.getHistograms().get("tasks.reports.millis").getCount());
+        assertTrue("Latency fail", snap.getHistograms().get("tasks.reports.millis").getMax() >= 10);
+        assertEquals("Active fail", 0L, (long) snap.getGauges().get("tasks.active"));
+        assertEquals("Queued fail", 0L, (long) snap.getGauges().get("tasks.queued"));
+    }
+
+    private static class Provider implements TaskProcessorProvider {
+        @Override
+        public TaskStageProcessor provide(String id) {
+            return "data".equals(id) ? new DataProcessor() : new ReportsProcessor();
+        }
+    }
+
+    private static class DataProcessor extends TaskStageProcessorSupertype {
+        @Override
+        public void process(long taskId) throws Exception {
+            // no-op
+        }
+    }
+
+    private static class ReportsProcessor extends TaskStageProcessorSupertype {
+        @Override
+        public void process(long taskId) throws Exception {
+            Thread.sleep(10);
+            if(FAILING_TASK_ID == taskId) throw new RuntimeException("Fail on: " + taskId);
+            if(SUSPENDED_TASK_ID == taskId) throw new TaskSuspendedException(taskId);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ru.concerteza.util.tasks;
+
+import org.junit.Test;
+import ru.concerteza.util.concurrency.SameThreadExecutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static ru.concerteza.util.tasks.InMemoryTaskManager.Status;
+
+/**
+ * User: alexkasko
+ * Date: 12/30/14
+ */
+public class TaskEnginePollerTest {
+    private static final TaskStageChain CHAIN = TaskStageChain.builder("created")
+            .add("running", "finished", "noop")
+            .build();
+
+    @Test
+    public void testSubmit() throws InterruptedException {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        TaskEngine engine = new TaskEngine(new SameThreadExecutor(), manager, new Provider());
+        TaskEnginePoller poller = new TaskEnginePoller(engine, 10, 60000);
+        poller.start();
+        try {
+            // let poller back off
+            Thread.sleep(300);
+            long id = manager.add(CHAIN, "created");
+            long start = System.currentTimeMillis();
+            poller.submit(id);
+            waitFor(manager, id);
+            long latency = System.currentTimeMillis() - start;
+            assertTrue("Latency fail: " + latency, latency < 1000);
+        } finally {
+            poller.stop();
+        }
+    }
+
+    @Test
+    public void testNotification() throws InterruptedException {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        TaskEngine engine = new TaskEngine(new SameThreadExecutor(), manager, new Provider());
+        Source source = new Source();
+        TaskEnginePoller poller = new TaskEnginePoller(engine, 10, 60000).setNotificationSource(source);
+        poller.start();
+        try {
+            Thread.sleep(300);
+            long id = manager.add(CHAIN, "created");
+            source.listener.onTaskNotification();
+            waitFor(manager, id);
+        } finally {
+            poller.stop();
+        }
+        assertTrue("Stop fail", source.stopped);
+    }
+
+    @Test
+    public void testPolling() throws InterruptedException {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        TaskEngine engine = new TaskEngine(new SameThreadExecutor(), manager, new Provider());
+        TaskEnginePoller poller = new TaskEnginePoller(engine, 10, 50);
+        poller.start();
+        try {
+            Thread.sleep(300);
+            // missed notification
+            long id = manager.add(CHAIN, "created");
+            waitFor(manager, id);
+        } finally {
+            poller.stop();
+        }
+    }
+
+    private static void waitFor(InMemoryTaskManager manager, long id) throws InterruptedException {
+        for(int i = 0; i < 100 && Status.NORMAL != manager.get(id).getStatus(); i++) Thread.sleep(10);
+        assertEquals("Status fail", Status.NORMAL, manager.get(id).getStatus());
+    }
+
+    private static class Source implements TaskNotificationSource {
+        private volatile TaskNotificationListener listener;
+        private volatile boolean stopped = false;
+
+        @Override
+        public void start(TaskNotificationListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void stop() {
+            stopped = true;
+        }
+    }
+
+    private static class Provider implements TaskProcessorProvider {
+        @Override
+        public TaskStageProcessor provide(String id) {
+            return new TaskStageProcessorSupertype() {
+                @Override
+                public void process(long taskId) throws Exception {
+                    // no-op
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package ru.concerteza.util.tasks;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import ru.concerteza.util.concurrency.SameThreadExecutor;
+import ru.concerteza.util.db.metrics.InMemoryMetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static ru.concerteza.util.tasks.InMemoryTaskManager.Status;
+
+/**
+ * User: alexkasko
+ * Date: 1/1/15
+ */
+public class TaskStageDispatcherTest {
+    private static final TaskStageChain HEAVY = TaskStageChain.builder("created")
+            .add("exporting", "exported", "export")
+            .add("notifying", "notified", "notify")
+            .build();
+    private static final TaskStageChain LIGHT = TaskStageChain.builder("created")
+            .add("notifying", "notified", "notify")
+            .build();
+
+    private final AtomicInteger exportActive = new AtomicInteger();
+    private final AtomicInteger exportMax = new AtomicInteger();
+    private final AtomicInteger exportDone = new AtomicInteger();
+    private final AtomicInteger lightNotified = new AtomicInteger();
+    private final AtomicInteger exportsAtLightDone = new AtomicInteger(-1);
+    private final AtomicInteger notified = new AtomicInteger();
+
+    @Test
+    public void testPriority() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        TaskStageDispatcher dispatcher = new TaskStageDispatcher(executor, 1, registry, "tasks");
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        try {
+            dispatcher.execute("foo", 0, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        latch.await(5, TimeUnit.SECONDS);
+                    } catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            for(int pr : new int[]{1, 5, 3, 5}) dispatcher.execute("foo", pr, new Recorder(order, pr));
+            assertEquals("Depth fail", 4, dispatcher.getQueueDepth("foo"));
+            assertEquals("Gauge fail", 4L, (long) registry.snapshot().getGauges().get("tasks.foo.queued"));
+            assertEquals("Active fail", 1, dispatcher.getActiveCount("foo"));
+            latch.countDown();
+            for(int i = 0; i < 500 && order.size() < 4; i++) Thread.sleep(10);
+            assertEquals("Order fail", ImmutableList.of(5, 5, 3, 1), order);
+            assertEquals("Wait fail", 5, registry.snapshot().getHistograms().get("tasks.foo.wait.micros").getCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBulkheads() throws InterruptedException {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        for(int i = 0; i < 10; i++) manager.add(HEAVY, "created");
+        for(int i = 0; i < 10; i++) manager.add(LIGHT, "created");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            TaskStageDispatcher dispatcher = new TaskStageDispatcher(executor, 4)
+                    .setProcessorLimit("export", 2);
+            TaskEngine engine = new TaskEngine(executor, manager, new Provider())
+                    .setStageDispatcher(dispatcher);
+            assertEquals("Fire fail", 20, engine.fire());
+            for(long id = 1; id <= 20; id++) {
+                for(int i = 0; i < 500 && Status.NORMAL != manager.get(id).getStatus(); i++) Thread.sleep(10);
+                assertEquals("Status fail", Status.NORMAL, manager.get(id).getStatus());
+                assertEquals("Stage fail", "notified", manager.get(id).getStageName());
+            }
+            assertEquals("Limit fail", 2, exportMax.get());
+            assertEquals("Notify fail", 20, notified.get());
+            // light tasks were not starved by heavy exports
+            assertTrue("Starvation fail: " + exportsAtLightDone.get(), exportsAtLightDone.get() < 10);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSameThread() {
+        final TaskStageDispatcher dispatcher = new TaskStageDispatcher(new SameThreadExecutor(), 1);
+        final AtomicInteger counter = new AtomicInteger();
+        // jobs queued by running job are dispatched in loop after it, not recursively
+        dispatcher.execute("foo", 0, new Runnable() {
+            @Override
+            public void run() {
+                for(int i = 0; i < 100000; i++) {
+                    dispatcher.execute("foo", 0, new Runnable() {
+                        @Override
+                        public void run() {
+                            counter.incrementAndGet();
+                        }
+                    });
+                }
+            }
+        });
+        assertEquals("Count fail", 100000, counter.get());
+        assertEquals("Active fail", 0, dispatcher.getActiveCount("foo"));
+    }
+
+    @Test
+    public void testRejection() {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        long id = manager.add(HEAVY, "created");
+        ExecutorService rejecting = Executors.newSingleThreadExecutor();
+        rejecting.shutdown();
+        TaskStageDispatcher dispatcher = new TaskStageDispatcher(rejecting, 1);
+        TaskEngine engine = new TaskEngine(new SameThreadExecutor(), manager, new Provider())
+                .setStageDispatcher(dispatcher);
+        assertEquals("Fire fail", 1, engine.fire());
+        assertEquals("Status fail", Status.ERROR, manager.get(id).getStatus());
+        assertEquals("Stage fail", "created", manager.get(id).getStageName());
+        assertEquals("Active fail", 0, dispatcher.getActiveCount("export"));
+    }
+
+    private static class Recorder implements Runnable {
+        private final List<Integer> order;
+        private final int priority;
+
+        private Recorder(List<Integer> order, int priority) {
+            this.order = order;
+            this.priority = priority;
+        }
+
+        @Override
+        public void run() {
+            order.add(priority);
+        }
+    }
+
+    private class Provider implements TaskProcessorProvider {
+        @Override
+        public TaskStageProcessor provide(String id) {
+            return "export".equals(id) ? new ExportProcessor() : new NotifyProcessor();
+        }
+    }
+
+    private class ExportProcessor extends TaskStageProcessorSupertype {
+        @Override
+        public void process(long taskId) throws Exception {
+            int act = exportActive.incrementAndGet();
+            for(int max = exportMax.get(); act > max && !exportMax.compareAndSet(max, act); max = exportMax.get()) {
+                // retry
+            }
+            Thread.sleep(30);
+            exportActive.decrementAndGet();
+            exportDone.incrementAndGet();
+        }
+    }
+
+    private class NotifyProcessor extends TaskStageProcessorSupertype {
+        @Override
+        public void process(long taskId) throws Exception {
+            notified.incrementAndGet();
+            if(taskId > 10 && 10 == lightNotified.incrementAndGet()) exportsAtLightDone.set(exportDone.get());
+        }
+    }
+}